@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.query.Aggregation;
+import com.stratio.cassandra.index.query.AggregationResult;
+import com.stratio.cassandra.index.query.AggregationResults;
+import com.stratio.cassandra.index.query.Aggregator;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Collector} computing a list of {@link Aggregation}s over all the matching documents, without scoring nor
+ * sorting them. It also keeps the first document collected from each searched index reader, so the aggregation results
+ * can be carried by a row read from the same index reader.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class AggregationCollector extends Collector
+{
+    private final List<Aggregation> aggregations;
+    private final List<Aggregator> aggregators;
+    private int numDocs;
+    private int docBase;
+    private int firstDoc = -1;
+
+    /**
+     * Builds a new {@link AggregationCollector} computing the specified {@link Aggregation}s.
+     *
+     * @param aggregations The {@link Aggregation}s to be computed.
+     * @param schema       The {@link Schema} to be used.
+     */
+    public AggregationCollector(List<Aggregation> aggregations, Schema schema)
+    {
+        this.aggregations = aggregations;
+        this.aggregators = new ArrayList<>(aggregations.size());
+        for (Aggregation aggregation : aggregations)
+        {
+            aggregators.add(aggregation.aggregator(schema));
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setScorer(Scorer scorer)
+    {
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException
+    {
+        docBase = context.docBase;
+        for (Aggregator aggregator : aggregators)
+        {
+            aggregator.setNextReader(context.reader());
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void collect(int doc)
+    {
+        for (Aggregator aggregator : aggregators)
+        {
+            aggregator.collect(doc);
+        }
+        if (firstDoc < 0)
+        {
+            firstDoc = docBase + doc;
+        }
+        numDocs++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean acceptsDocsOutOfOrder()
+    {
+        return true;
+    }
+
+    /**
+     * Returns the number of collected documents.
+     *
+     * @return The number of collected documents.
+     */
+    public int getNumDocs()
+    {
+        return numDocs;
+    }
+
+    /**
+     * Forgets the first collected document, so the next collected document is taken as the first one of a new index
+     * reader. The aggregation results are kept.
+     */
+    public void setNextSearcher()
+    {
+        firstDoc = -1;
+    }
+
+    /**
+     * Returns the top level id of the first document collected since the last call to {@link #setNextSearcher()}.
+     *
+     * @return The id of the first collected document, or {@code -1} if there is none.
+     */
+    public int getFirstDoc()
+    {
+        return firstDoc;
+    }
+
+    /**
+     * Returns the {@link AggregationResults} of the collected documents.
+     *
+     * @return The {@link AggregationResults} of the collected documents.
+     */
+    public AggregationResults getResults()
+    {
+        Map<String, AggregationResult> results = new LinkedHashMap<>(aggregations.size());
+        for (int i = 0; i < aggregations.size(); i++)
+        {
+            results.put(aggregations.get(i).getName(), aggregators.get(i).getResult());
+        }
+        return new AggregationResults(results);
+    }
+}
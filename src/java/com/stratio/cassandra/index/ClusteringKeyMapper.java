@@ -33,6 +33,7 @@ import org.apache.cassandra.db.filter.ColumnSlice;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.CompositeType;
 import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
@@ -54,6 +55,12 @@ public abstract class ClusteringKeyMapper
     /** The Lucene field name */
     public static final String FIELD_NAME = "_clustering_key";
 
+    /** The Lucene doc values field name. */
+    public static final String DOC_VALUES_FIELD_NAME = "_clustering_key_dv";
+
+    /** The Lucene sorted doc values field name. */
+    public static final String SORTED_FIELD_NAME = "_clustering_key_sorted";
+
     /** The column family meta data */
     protected final CFMetaData metadata;
 
@@ -63,6 +70,26 @@ public abstract class ClusteringKeyMapper
     /** The clustering key type as composite */
     protected final CompositeType compositeType;
 
+    /** The per thread reusable key field. */
+    private final ThreadLocal<Field> keyField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new StringField(FIELD_NAME, "", Field.Store.YES);
+        }
+    };
+
+    /** The per thread reusable key doc values field. */
+    private final ThreadLocal<Field> docValuesField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new BinaryDocValuesField(DOC_VALUES_FIELD_NAME, new BytesRef());
+        }
+    };
+
     /**
      * Returns a new {@code ClusteringKeyMapper} according to the specified column family meta data.
      *
@@ -99,9 +126,25 @@ public abstract class ClusteringKeyMapper
 
     public final void addFields(Document document, CellName cellName)
     {
-        String serializedKey = ByteBufferUtils.toString(cellName.toByteBuffer());
-        Field field = new StringField(FIELD_NAME, serializedKey, Field.Store.YES);
+        ByteBuffer bb = cellName.toByteBuffer();
+        Field field = keyField.get();
+        field.setStringValue(ByteBufferUtils.toString(bb));
         document.add(field);
+        Field docValues = docValuesField.get();
+        docValues.setBytesValue(ByteBufferUtils.bytesRef(bb));
+        document.add(docValues);
+        addSortFields(document, cellName);
+    }
+
+    /**
+     * Adds to the specified {@link Document} the fields required by {@link #sortFields(boolean)} for the specified
+     * clustering key, if any.
+     *
+     * @param document The {@link Document} in which the fields are going to be added.
+     * @param cellName The clustering key.
+     */
+    protected void addSortFields(Document document, CellName cellName)
+    {
     }
 
     public final CellName clusteringKey(ColumnFamily columnFamily)
@@ -210,10 +253,19 @@ public abstract class ClusteringKeyMapper
         return clusteringKey(row.cf);
     }
 
+    /**
+     * Returns the clustering key contained in the specified Lucene {@link Document}. The clustering key is taken from
+     * the doc values field if it has been loaded, or from the stored field otherwise.
+     *
+     * @param document The {@link Document} containing the clustering key to be get.
+     * @return The clustering key contained in the specified Lucene {@link Document}.
+     */
     public final CellName clusteringKey(Document document)
     {
-        String string = document.get(FIELD_NAME);
-        ByteBuffer bb = ByteBufferUtils.fromString(string);
+        BytesRef bytesRef = document.getBinaryValue(DOC_VALUES_FIELD_NAME);
+        ByteBuffer bb = bytesRef == null
+                        ? ByteBufferUtils.fromString(document.get(FIELD_NAME))
+                        : ByteBufferUtils.byteBuffer(bytesRef);
         return cellNameType.cellFromByteBuffer(bb);
     }
 
@@ -322,6 +374,24 @@ public abstract class ClusteringKeyMapper
         return columnSlices;
     }
 
+    /**
+     * Returns the sorted and non overlapping {@link ColumnSlice}s selecting the logic CQL3 rows in the specified
+     * clustering key ranges.
+     *
+     * @param ranges The last clustering key of each range, mapped by the first clustering key of the range.
+     * @return The sorted and non overlapping {@link ColumnSlice}s selecting the rows in {@code ranges}.
+     */
+    public final ColumnSlice[] columnSlices(Map<CellName, CellName> ranges)
+    {
+        ColumnSlice[] columnSlices = new ColumnSlice[ranges.size()];
+        int i = 0;
+        for (Map.Entry<CellName, CellName> range : ranges.entrySet())
+        {
+            columnSlices[i++] = new ColumnSlice(start(range.getKey()), end(range.getValue()));
+        }
+        return ColumnSlice.deoverlapSlices(columnSlices, cellNameType);
+    }
+
     public final List<CellName> sort(List<CellName> clusteringKeys)
     {
         List<CellName> result = new ArrayList<>(clusteringKeys);
@@ -339,9 +409,10 @@ public abstract class ClusteringKeyMapper
     /**
      * Returns a Lucene {@link SortField} array for sorting documents/rows according to the column family name.
      *
+     * @param sortedDocValues If all the documents have the fields added by {@link #addSortFields(Document, CellName)}.
      * @return A Lucene {@link SortField} array for sorting documents/rows according to the column family name.
      */
-    public abstract SortField[] sortFields();
+    public abstract SortField[] sortFields(boolean sortedDocValues);
 
     public abstract Query query(Composite start, Composite stop);
 
@@ -97,7 +97,7 @@ public class ClusteringKeyMapperColumns extends ClusteringKeyMapper
     }
 
     @Override
-    public SortField[] sortFields()
+    public SortField[] sortFields(boolean sortedDocValues)
     {
         SortField[] sortFields = new SortField[numClusteringColumns];
         for (int i = 0; i < numClusteringColumns; i++)
@@ -15,12 +15,18 @@
  */
 package com.stratio.cassandra.index;
 
+import com.stratio.cassandra.index.util.ByteComparableSerializer;
 import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.composites.Composite;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.search.FieldComparator;
 import org.apache.lucene.search.FieldComparatorSource;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
 
@@ -28,13 +34,31 @@ import java.io.IOException;
  * {@link ClusteringKeyMapper} that stores a binary representation of the clustering key.
  * <p/>
  * It uses custom {@link SortField}s and {@link Query}s, having worst performance than other implementations but being
- * applicable to any schema.
+ * applicable to any schema. If all the clustering columns types can be serialized preserving their order, the
+ * clustering keys are also indexed as sorted doc values, so they can be sorted comparing raw bytes instead of
+ * deserializing them.
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
 public class ClusteringKeyMapperGeneric extends ClusteringKeyMapper
 {
 
+    /** The number of clustering columns. */
+    private final int numClusteringColumns;
+
+    /** If the clustering keys can be serialized preserving their order. */
+    private final boolean sortable;
+
+    /** The per thread reusable sorted key field. */
+    private final ThreadLocal<Field> sortedField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new SortedDocValuesField(SORTED_FIELD_NAME, new BytesRef());
+        }
+    };
+
     /**
      * Returns a new {@code ClusteringKeyMapper} according to the specified column family meta data.
      *
@@ -43,6 +67,8 @@ public class ClusteringKeyMapperGeneric extends ClusteringKeyMapper
     private ClusteringKeyMapperGeneric(CFMetaData metadata)
     {
         super(metadata);
+        numClusteringColumns = metadata.clusteringColumns().size();
+        sortable = ByteComparableSerializer.supports(cellNameType, numClusteringColumns);
     }
 
     /**
@@ -56,9 +82,26 @@ public class ClusteringKeyMapperGeneric extends ClusteringKeyMapper
         return new ClusteringKeyMapperGeneric(metadata);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    protected void addSortFields(Document document, CellName cellName)
+    {
+        if (sortable)
+        {
+            Field field = sortedField.get();
+            field.setBytesValue(ByteComparableSerializer.serialize(cellName, cellNameType, numClusteringColumns));
+            document.add(field);
+        }
+    }
+
+    /** {@inheritDoc} */
     @Override
-    public SortField[] sortFields()
+    public SortField[] sortFields(boolean sortedDocValues)
     {
+        if (sortable && sortedDocValues)
+        {
+            return new SortField[]{new SortField(SORTED_FIELD_NAME, SortField.Type.STRING)};
+        }
         return new SortField[]{
                 new SortField(FIELD_NAME, new FieldComparatorSource()
                 {
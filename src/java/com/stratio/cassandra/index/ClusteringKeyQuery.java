@@ -53,6 +53,31 @@ class ClusteringKeyQuery extends MultiTermQuery
         return new FullKeyDataRangeFilteredTermsEnum(terms.iterator(null));
     }
 
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!super.equals(obj))
+        {
+            return false;
+        }
+        ClusteringKeyQuery other = (ClusteringKeyQuery) obj;
+        return (start == null ? other.start == null : start.equals(other.start)) &&
+               (stop == null ? other.stop == null : stop.equals(other.stop));
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = super.hashCode();
+        result = 31 * result + (start == null ? 0 : start.hashCode());
+        result = 31 * result + (stop == null ? 0 : stop.hashCode());
+        return result;
+    }
+
     @Override
     public String toString(String field)
     {
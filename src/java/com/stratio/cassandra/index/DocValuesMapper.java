@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.Column;
+import com.stratio.cassandra.index.schema.ColumnMapper;
+import com.stratio.cassandra.index.schema.ColumnMapperText;
+import com.stratio.cassandra.index.schema.Columns;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Class for adding to Lucene {@link Document}s the doc values of the mapped single valued columns, which allow reading
+ * their values per document, as it's done by the aggregations, without uninverting the indexed terms into the heap.
+ * Collection and text columns have no doc values, because they can have several terms per document.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class DocValuesMapper
+{
+    /** The mapping {@link Schema}. */
+    private final Schema schema;
+
+    /** The names of the columns with doc values. */
+    private final Set<String> columns;
+
+    /**
+     * Builds a new {@link DocValuesMapper} for the specified column family metadata and {@link Schema}.
+     *
+     * @param metadata The column family metadata.
+     * @param schema   The mapping {@link Schema}.
+     */
+    private DocValuesMapper(CFMetaData metadata, Schema schema)
+    {
+        this.schema = schema;
+        columns = new HashSet<>();
+        for (String name : schema.getMappedColumns())
+        {
+            ColumnDefinition columnDefinition = metadata.getColumnDefinition(UTF8Type.instance.decompose(name));
+            ColumnMapper<?> columnMapper = schema.getMapper(name);
+            if (columnDefinition != null &&
+                !columnDefinition.type.isCollection() &&
+                !(columnMapper instanceof ColumnMapperText))
+            {
+                columns.add(name);
+            }
+        }
+    }
+
+    /**
+     * Returns a new {@link DocValuesMapper} for the specified column family metadata and {@link Schema}.
+     *
+     * @param metadata The column family metadata.
+     * @param schema   The mapping {@link Schema}.
+     * @return A new {@link DocValuesMapper} for the specified column family metadata and {@link Schema}.
+     */
+    public static DocValuesMapper instance(CFMetaData metadata, Schema schema)
+    {
+        return new DocValuesMapper(metadata, schema);
+    }
+
+    /**
+     * Returns {@code true} if the specified field has doc values, {@code false} otherwise.
+     *
+     * @param field A field name.
+     * @return {@code true} if {@code field} has doc values, {@code false} otherwise.
+     */
+    public boolean hasDocValues(String field)
+    {
+        return columns.contains(field);
+    }
+
+    /**
+     * Adds to the specified {@link Document} the doc values of the specified {@link Columns}.
+     *
+     * @param document The document in which the fields are going to be added.
+     * @param columns  The {@link Columns} of a CQL3 logic row.
+     */
+    public void addFields(Document document, Columns columns)
+    {
+        for (Column column : columns)
+        {
+            String name = column.getName();
+            if (this.columns.contains(name))
+            {
+                Field field = schema.getMapper(name).docValuesField(column.getFieldName(), column.getValue());
+                document.add(field);
+            }
+        }
+    }
+}
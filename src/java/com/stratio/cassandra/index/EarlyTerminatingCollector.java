@@ -0,0 +1,188 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.sorter.SortingMergePolicy;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldComparator;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+
+import java.io.IOException;
+
+/**
+ * {@link Collector} that early terminates the collection of the index segments sorted by {@link SortingMergePolicy},
+ * as soon as the wrapped {@link Collector} has received the requested number of hits. It requires the wrapped {@link
+ * Collector} to sort by a prefix of the index {@link Sort}, because then the first hits of a sorted segment are its
+ * best hits.
+ * <p/>
+ * Unlike {@link org.apache.lucene.index.sorter.EarlyTerminatingSortingCollector}, it supports paging: the hits of a
+ * sorted segment not following the last hit of the previous page are not counted, because they are discarded by the
+ * wrapped {@link Collector}.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class EarlyTerminatingCollector extends Collector
+{
+    /** The wrapped {@link Collector}. */
+    private final Collector in;
+
+    /** The {@link Sort} used by the wrapped {@link Collector}. */
+    private final Sort sort;
+
+    /** The {@link Sort} of the index segments. */
+    private final Sort indexSort;
+
+    /** The number of hits to be collected per sorted segment. */
+    private final int numDocsToCollect;
+
+    /** The last hit of the previous page, maybe {@code null} meaning the first page. */
+    private final FieldDoc after;
+
+    /** The comparators of the current segment against {@link #after}, {@code null} if not needed. */
+    private FieldComparator<?>[] comparators;
+
+    /** The reverse multipliers of {@link #comparators}. */
+    private int[] reverseMul;
+
+    private int docBase;
+    private boolean segmentSorted;
+    private int numCollected;
+
+    /**
+     * Returns {@code true} if the specified search {@link Sort} is a prefix of the specified index {@link Sort}, so
+     * the searches using it can be early terminated, {@code false} otherwise.
+     *
+     * @param sort      A search {@link Sort}.
+     * @param indexSort The {@link Sort} of the index segments.
+     * @return {@code true} if {@code sort} is a prefix of {@code indexSort}, {@code false} otherwise.
+     */
+    public static boolean canEarlyTerminate(Sort sort, Sort indexSort)
+    {
+        SortField[] sortFields = sort.getSort();
+        SortField[] indexSortFields = indexSort.getSort();
+        if (sortFields.length > indexSortFields.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < sortFields.length; i++)
+        {
+            if (!sortFields[i].equals(indexSortFields[i]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds a new {@link EarlyTerminatingCollector}.
+     *
+     * @param in               The wrapped {@link Collector}.
+     * @param sort             The {@link Sort} used by {@code in}, which must be a prefix of {@code indexSort}.
+     * @param indexSort        The {@link Sort} of the index segments.
+     * @param numDocsToCollect The number of hits to be collected per sorted segment.
+     * @param after            The last hit of the previous page, maybe {@code null} meaning the first page.
+     */
+    public EarlyTerminatingCollector(Collector in, Sort sort, Sort indexSort, int numDocsToCollect, FieldDoc after)
+    {
+        if (!canEarlyTerminate(sort, indexSort))
+        {
+            throw new IllegalArgumentException(String.format("Sort %s is not a prefix of index sort %s",
+                                                             sort,
+                                                             indexSort));
+        }
+        this.in = in;
+        this.sort = sort;
+        this.indexSort = indexSort;
+        this.numDocsToCollect = numDocsToCollect;
+        this.after = after;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setScorer(Scorer scorer) throws IOException
+    {
+        in.setScorer(scorer);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setNextReader(AtomicReaderContext context) throws IOException
+    {
+        in.setNextReader(context);
+        docBase = context.docBase;
+        segmentSorted = SortingMergePolicy.isSorted(context.reader(), indexSort);
+        numCollected = 0;
+        comparators = null;
+        if (segmentSorted && after != null)
+        {
+            SortField[] sortFields = sort.getSort();
+            comparators = new FieldComparator<?>[sortFields.length];
+            reverseMul = new int[sortFields.length];
+            for (int i = 0; i < sortFields.length; i++)
+            {
+                FieldComparator<Object> comparator = (FieldComparator<Object>) sortFields[i].getComparator(1, i);
+                comparator.setTopValue(after.fields[i]);
+                comparators[i] = comparator.setNextReader(context);
+                reverseMul[i] = sortFields[i].getReverse() ? -1 : 1;
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void collect(int doc) throws IOException
+    {
+        in.collect(doc);
+        if (segmentSorted && (comparators == null || isAfter(doc)) && ++numCollected >= numDocsToCollect)
+        {
+            throw new CollectionTerminatedException();
+        }
+    }
+
+    /**
+     * Returns {@code true} if the specified document of the current segment follows the last hit of the previous
+     * page, {@code false} otherwise.
+     *
+     * @param doc A document id relative to the current segment.
+     * @return {@code true} if {@code doc} follows the last hit of the previous page, {@code false} otherwise.
+     */
+    private boolean isAfter(int doc) throws IOException
+    {
+        for (int i = 0; i < comparators.length; i++)
+        {
+            int comp = reverseMul[i] * comparators[i].compareTop(doc);
+            if (comp != 0)
+            {
+                return comp < 0;
+            }
+        }
+        return doc + docBase > after.doc;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean acceptsDocsOutOfOrder()
+    {
+        return !segmentSorted && in.acceptsDocsOutOfOrder();
+    }
+}
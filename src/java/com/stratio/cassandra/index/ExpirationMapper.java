@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.db.Cell;
+import org.apache.cassandra.db.ExpiringCell;
+import org.apache.cassandra.db.Row;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+
+/**
+ * Class for mapping the expiration time of the CQL3 rows written with TTL to Lucene {@link Document}s, so the
+ * documents of the expired rows can be discarded by searches and deleted without reading the rows from Cassandra.
+ * <p/>
+ * The expiration time of a row is the local time in seconds when its last live cell expires, that is, when the row
+ * disappears. The rows having any live cell without TTL never expire, so their documents have no expiration field.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class ExpirationMapper
+{
+    /** The Lucene field name. */
+    public static final String FIELD_NAME = "_expiration";
+
+    /** The Lucene doc values field name. */
+    public static final String DOC_VALUES_FIELD_NAME = "_expiration_dv";
+
+    /** The per thread reusable expiration field. */
+    private final ThreadLocal<Field> expirationField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new IntField(FIELD_NAME, 0, Store.NO);
+        }
+    };
+
+    /** The per thread reusable expiration doc values field. */
+    private final ThreadLocal<Field> docValuesField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new NumericDocValuesField(DOC_VALUES_FIELD_NAME, 0);
+        }
+    };
+
+    /**
+     * Returns a new {@link ExpirationMapper}.
+     *
+     * @return A new {@link ExpirationMapper}.
+     */
+    public static ExpirationMapper instance()
+    {
+        return new ExpirationMapper();
+    }
+
+    /**
+     * Returns the local time in seconds when the specified {@link Row} expires, or {@code null} if it never expires.
+     *
+     * @param row A {@link Row}.
+     * @return The local time in seconds when {@code row} expires, or {@code null} if it never expires.
+     */
+    public static Integer expiration(Row row)
+    {
+        Integer expiration = null;
+        for (Cell cell : row.cf)
+        {
+            if (cell instanceof ExpiringCell)
+            {
+                int localExpirationTime = cell.getLocalDeletionTime();
+                expiration = expiration == null ? localExpirationTime : Math.max(expiration, localExpirationTime);
+            }
+            else if (cell.isLive())
+            {
+                return null;
+            }
+        }
+        return expiration;
+    }
+
+    /**
+     * Adds to the specified {@link Document} the expiration time of the specified {@link Row}, if it expires, both as
+     * an indexed field and as doc values. The added {@link Field}s are reused by the next call from the same thread.
+     *
+     * @param document The {@link Document} in which the field is going to be added.
+     * @param row      The {@link Row} represented by {@code document}.
+     */
+    public void addFields(Document document, Row row)
+    {
+        Integer expiration = expiration(row);
+        if (expiration != null)
+        {
+            Field field = expirationField.get();
+            field.setIntValue(expiration);
+            document.add(field);
+            Field docValues = docValuesField.get();
+            docValues.setLongValue(expiration);
+            document.add(docValues);
+        }
+    }
+
+    /**
+     * Returns a Lucene {@link Query} retrieving the {@link Document}s of the rows expired at the specified time.
+     *
+     * @param nowInSeconds The local time in seconds.
+     * @return A Lucene {@link Query} retrieving the {@link Document}s of the rows expired at {@code nowInSeconds}.
+     */
+    public Query expiredQuery(int nowInSeconds)
+    {
+        return NumericRangeQuery.newIntRange(FIELD_NAME, null, nowInSeconds, true, true);
+    }
+
+    /**
+     * Returns a Lucene {@link Filter} discarding the {@link Document}s of the rows expired at the specified time.
+     *
+     * @param nowInSeconds The local time in seconds.
+     * @return A Lucene {@link Filter} discarding the {@link Document}s of the rows expired at {@code nowInSeconds}.
+     */
+    public Filter notExpiredFilter(int nowInSeconds)
+    {
+        return new NotExpiredFilter(nowInSeconds);
+    }
+}
@@ -47,6 +47,16 @@ public class FullKeyMapper
      */
     public CompositeType type;
 
+    /** The per thread reusable key field. */
+    private final ThreadLocal<Field> keyField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new StringField(FIELD_NAME, "", Store.NO);
+        }
+    };
+
     /**
      * Returns a new {@link FullKeyMapper} using the specified column family metadata.
      *
@@ -97,7 +107,8 @@ public class FullKeyMapper
     public void addFields(Document document, DecoratedKey partitionKey, CellName clusteringKey)
     {
         ByteBuffer fullKey = byteBuffer(partitionKey, clusteringKey);
-        Field field = new StringField(FIELD_NAME, ByteBufferUtils.toString(fullKey), Store.NO);
+        Field field = keyField.get();
+        field.setStringValue(ByteBufferUtils.toString(fullKey));
         document.add(field);
     }
 
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.query.builder.MatchConditionBuilder;
+import com.stratio.cassandra.index.query.builder.RangeConditionBuilder;
+import com.stratio.cassandra.index.schema.ColumnMapper;
+import com.stratio.cassandra.index.schema.ColumnMapperBigDecimal;
+import com.stratio.cassandra.index.schema.ColumnMapperBlob;
+import com.stratio.cassandra.index.schema.ColumnMapperDate;
+import com.stratio.cassandra.index.schema.ColumnMapperDouble;
+import com.stratio.cassandra.index.schema.ColumnMapperFloat;
+import com.stratio.cassandra.index.schema.ColumnMapperInteger;
+import com.stratio.cassandra.index.schema.ColumnMapperLong;
+import com.stratio.cassandra.index.schema.ColumnMapperString;
+import com.stratio.cassandra.index.schema.ColumnMapperText;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.util.Log;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.cql3.Operator;
+import org.apache.cassandra.db.IndexExpression;
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.marshal.DateType;
+import org.apache.cassandra.db.marshal.DecimalType;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.FloatType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.db.marshal.TimestampType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+
+import java.util.List;
+
+/**
+ * Class for mapping the {@link IndexExpression}s not relative to the index into Lucene {@link Query}s, so they can be
+ * used for discarding documents before reading their rows from Cassandra.
+ * <p/>
+ * An expression is only mapped if the {@link ColumnMapper} of its column guarantees that no row satisfying it will be
+ * discarded. Equality requires a not analyzed mapper distinguishing only values that Cassandra also distinguishes, and
+ * ranges require a mapper preserving the order of the column type. The mapped expressions must still be checked
+ * against the read rows, because the index could be slightly out of date.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class IndexExpressionMapper
+{
+    /** The indexed column family metadata. */
+    private final CFMetaData metadata;
+
+    /** The mapping {@link Schema}. */
+    private final Schema schema;
+
+    /**
+     * Builds a new {@link IndexExpressionMapper} for the specified column family metadata and {@link Schema}.
+     *
+     * @param metadata The indexed column family metadata.
+     * @param schema   The mapping {@link Schema}.
+     */
+    public IndexExpressionMapper(CFMetaData metadata, Schema schema)
+    {
+        this.metadata = metadata;
+        this.schema = schema;
+    }
+
+    /**
+     * Returns a Lucene {@link Query} matching at least all the documents satisfying the specified {@link
+     * IndexExpression}s, or {@code null} if none of them can be mapped.
+     *
+     * @param expressions A list of {@link IndexExpression}s.
+     * @return A Lucene {@link Query} matching at least all the documents satisfying {@code expressions}.
+     */
+    public Query query(List<IndexExpression> expressions)
+    {
+        BooleanQuery booleanQuery = new BooleanQuery();
+        for (IndexExpression expression : expressions)
+        {
+            Query query = query(expression);
+            if (query != null)
+            {
+                booleanQuery.add(query, BooleanClause.Occur.MUST);
+            }
+        }
+        return booleanQuery.clauses().isEmpty() ? null : booleanQuery;
+    }
+
+    /**
+     * Returns {@code true} if all the specified {@link IndexExpression}s are mapped to Lucene {@link Query}s matching
+     * exactly the documents satisfying them, so the matching documents don't need to be checked against the rows,
+     * {@code false} otherwise. This requires mappers whose indexed values are equal only if the column values are
+     * equal.
+     *
+     * @param expressions A list of {@link IndexExpression}s.
+     * @return {@code true} if all the {@code expressions} are exactly mapped, {@code false} otherwise.
+     */
+    public boolean isExact(List<IndexExpression> expressions)
+    {
+        for (IndexExpression expression : expressions)
+        {
+            ColumnDefinition columnDefinition = metadata.getColumnDefinition(expression.column);
+            if (columnDefinition == null || query(expression) == null)
+            {
+                return false;
+            }
+            ColumnMapper<?> mapper = schema.getMapper(columnDefinition.name.toString());
+            AbstractType<?> type = columnDefinition.type;
+            boolean isBlob = mapper instanceof ColumnMapperBlob && type instanceof BytesType;
+            if (!isMonotonic(mapper, type) && !(isBlob && expression.operator == Operator.EQ))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a Lucene {@link Query} matching at least all the documents satisfying the specified {@link
+     * IndexExpression}, or {@code null} if it can't be mapped.
+     *
+     * @param expression An {@link IndexExpression}.
+     * @return A Lucene {@link Query} matching at least all the documents satisfying {@code expression}.
+     */
+    private Query query(IndexExpression expression)
+    {
+        ColumnDefinition columnDefinition = metadata.getColumnDefinition(expression.column);
+        if (columnDefinition == null || columnDefinition.type.isCollection())
+        {
+            return null;
+        }
+        String name = columnDefinition.name.toString();
+        ColumnMapper<?> mapper = schema.getMapper(name);
+        if (mapper == null)
+        {
+            return null;
+        }
+        AbstractType<?> type = columnDefinition.type;
+        try
+        {
+            Object value = type.compose(expression.value);
+            if (mapper instanceof ColumnMapperBlob) // Query by the indexed hex string instead of the buffer
+            {
+                value = ((ColumnMapperBlob) mapper).indexValue(name, value);
+            }
+            switch (expression.operator)
+            {
+                case EQ:
+                    return isExact(mapper, type) ? new MatchConditionBuilder(name, value).build().query(schema) : null;
+                case GT:
+                    return isMonotonic(mapper, type) ? range(name, value, null, false, false) : null;
+                case GTE:
+                    return isMonotonic(mapper, type) ? range(name, value, null, true, false) : null;
+                case LT:
+                    return isMonotonic(mapper, type) ? range(name, null, value, false, false) : null;
+                case LTE:
+                    return isMonotonic(mapper, type) ? range(name, null, value, false, true) : null;
+                default:
+                    return null;
+            }
+        }
+        catch (Exception e)
+        {
+            Log.debug("Expression %s can't be mapped to a Lucene query: %s", expression, e.getMessage());
+            return null;
+        }
+    }
+
+    private Query range(String name, Object lower, Object upper, boolean includeLower, boolean includeUpper)
+    {
+        return new RangeConditionBuilder(name).lower(lower)
+                                              .upper(upper)
+                                              .includeLower(includeLower)
+                                              .includeUpper(includeUpper)
+                                              .build()
+                                              .query(schema);
+    }
+
+    /**
+     * Returns {@code true} if the specified {@link ColumnMapper} maps the values of the specified type that are equal
+     * for Cassandra to the same indexed value, {@code false} otherwise.
+     *
+     * @param mapper A {@link ColumnMapper}.
+     * @param type   The column type.
+     * @return {@code true} if {@code mapper} keeps the equality of {@code type} values, {@code false} otherwise.
+     */
+    private boolean isExact(ColumnMapper<?> mapper, AbstractType<?> type)
+    {
+        if (mapper instanceof ColumnMapperText || mapper instanceof ColumnMapperBigDecimal)
+        {
+            return false;
+        }
+        return !(type instanceof DecimalType) || !(mapper.baseClass() == String.class);
+    }
+
+    /**
+     * Returns {@code true} if the specified {@link ColumnMapper} preserves the Cassandra order of the values of the
+     * specified type, {@code false} otherwise.
+     *
+     * @param mapper A {@link ColumnMapper}.
+     * @param type   The column type.
+     * @return {@code true} if {@code mapper} preserves the order of {@code type} values, {@code false} otherwise.
+     */
+    private boolean isMonotonic(ColumnMapper<?> mapper, AbstractType<?> type)
+    {
+        if (mapper instanceof ColumnMapperString)
+        {
+            return type instanceof UTF8Type || type instanceof AsciiType;
+        }
+        else if (mapper instanceof ColumnMapperInteger)
+        {
+            return type instanceof Int32Type;
+        }
+        else if (mapper instanceof ColumnMapperLong)
+        {
+            return type instanceof Int32Type || type instanceof LongType;
+        }
+        else if (mapper instanceof ColumnMapperFloat)
+        {
+            return type instanceof FloatType;
+        }
+        else if (mapper instanceof ColumnMapperDouble)
+        {
+            return type instanceof FloatType || type instanceof DoubleType;
+        }
+        else if (mapper instanceof ColumnMapperDate)
+        {
+            return type instanceof TimestampType ||
+                   type instanceof DateType ||
+                   type instanceof Int32Type ||
+                   type instanceof LongType;
+        }
+        return false;
+    }
+}
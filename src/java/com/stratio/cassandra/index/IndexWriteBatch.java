@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Row;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of writes to a {@link ShardedLuceneIndex}, grouped by the shard containing their partition. Each write
+ * carries its {@link Term} and its {@link Row}, whose {@link org.apache.lucene.document.Document} is built when the
+ * batch is applied, or its deletion {@link Term} or {@link Query}. The writes of each shard are applied in order with
+ * bulk Lucene updates and deletes.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class IndexWriteBatch
+{
+    private final ShardedLuceneIndex luceneIndex;
+    private final List<Write>[] shards;
+    private int size = 0;
+
+    /**
+     * Builds a new empty {@link IndexWriteBatch} for the specified {@link ShardedLuceneIndex}.
+     *
+     * @param luceneIndex The {@link ShardedLuceneIndex} where the writes are going to be applied.
+     */
+    @SuppressWarnings("unchecked")
+    public IndexWriteBatch(ShardedLuceneIndex luceneIndex)
+    {
+        this.luceneIndex = luceneIndex;
+        this.shards = new List[luceneIndex.getNumShards()];
+    }
+
+    private void add(DecoratedKey partitionKey, Write write)
+    {
+        int shard = luceneIndex.shard(partitionKey.getToken());
+        if (shards[shard] == null)
+        {
+            shards[shard] = new ArrayList<>();
+        }
+        shards[shard].add(write);
+        size++;
+    }
+
+    /**
+     * Adds the update of the document of the specified {@link Row}, replacing the documents containing the specified
+     * {@link Term}.
+     *
+     * @param partitionKey The partition key of the {@link Row}.
+     * @param term         The {@link Term} identifying the {@link Row}.
+     * @param row          The {@link Row} to be indexed.
+     */
+    public void upsert(DecoratedKey partitionKey, Term term, Row row)
+    {
+        add(partitionKey, new Write(term, row, null));
+    }
+
+    /**
+     * Adds the deletion of the documents containing the specified {@link Term}.
+     *
+     * @param partitionKey The partition key of the documents to be deleted.
+     * @param term         The {@link Term} identifying the documents to be deleted.
+     */
+    public void delete(DecoratedKey partitionKey, Term term)
+    {
+        add(partitionKey, new Write(term, null, null));
+    }
+
+    /**
+     * Adds the deletion of the documents satisfying the specified {@link Query}.
+     *
+     * @param partitionKey The partition key of the documents to be deleted.
+     * @param query        The {@link Query} identifying the documents to be deleted.
+     */
+    public void delete(DecoratedKey partitionKey, Query query)
+    {
+        add(partitionKey, new Write(null, null, query));
+    }
+
+    /**
+     * Returns the number of writes in this batch.
+     *
+     * @return The number of writes in this batch.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Applies all the writes of this batch to their shards and empties it.
+     */
+    public void apply()
+    {
+        for (int i = 0; i < shards.length; i++)
+        {
+            List<Write> writes = shards[i];
+            if (writes != null && !writes.isEmpty())
+            {
+                luceneIndex.write(i, writes);
+                writes.clear();
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * A write to a shard, which can be an update of the document of a {@link Row} identified by a {@link Term}, a
+     * deletion of the documents containing a {@link Term} or a deletion of the documents satisfying a {@link Query}.
+     */
+    static class Write
+    {
+        /** The {@link Term} of the updated or deleted documents, {@code null} for deletions by {@link Query}. */
+        final Term term;
+
+        /** The {@link Row} whose document is updated, {@code null} for deletions. */
+        final Row row;
+
+        /** The {@link Query} of the deleted documents, {@code null} for deletions by {@link Term} and updates. */
+        final Query query;
+
+        Write(Term term, Row row, Query query)
+        {
+            this.term = term;
+            this.row = row;
+            this.query = query;
+        }
+
+        /**
+         * Returns if this write is an update.
+         *
+         * @return {@code true} if this write is an update, {@code false} if it is a deletion.
+         */
+        boolean isUpsert()
+        {
+            return row != null;
+        }
+    }
+}
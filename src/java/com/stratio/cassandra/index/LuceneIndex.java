@@ -16,23 +16,43 @@
 package com.stratio.cassandra.index;
 
 import com.stratio.cassandra.index.util.Log;
+import org.apache.cassandra.db.Row;
 import org.apache.cassandra.io.util.FileUtils;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.index.*;
-import org.apache.lucene.index.sorter.EarlyTerminatingSortingCollector;
 import org.apache.lucene.index.sorter.SortingMergePolicy;
 import org.apache.lucene.search.*;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.NRTCachingDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.Version;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Class wrapping a Lucene directory and its readers , writers and searchers for NRT.
@@ -41,64 +61,115 @@ import java.util.Set;
  */
 public class LuceneIndex
 {
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    /** The commit user data key of the index format version. */
+    private static final String FORMAT_VERSION_KEY = "format_version";
+
+    /** The format version of the indexes without keys in binary doc values. */
+    private static final int LEGACY_FORMAT_VERSION = 1;
+
+    /** The format version of the indexes with all the keys in binary doc values. */
+    private static final int KEY_DOC_VALUES_FORMAT_VERSION = 2;
+
+    /** The format version of the indexes with all the keys also in order preserving sorted doc values. */
+    private static final int SORTED_KEY_DOC_VALUES_FORMAT_VERSION = 3;
+
+    /** The format version of the indexes with all the mapped single valued columns also in doc values. */
+    private static final int CURRENT_FORMAT_VERSION = 4;
+
     private final RowMapper rowMapper;
     private final String path;
     private final Double refreshSeconds;
+    private final Double minRefreshSeconds;
     private final Integer ramBufferMB;
     private final Integer maxMergeMB;
     private final Integer maxCachedMB;
+    private final ExecutorService searchExecutor;
+    private final boolean useCompoundFile;
     private final Analyzer analyzer;
+    private final Codec codec;
+    private final RowIndexMetrics metrics;
+    private final SearchCache searchCache;
 
     private File file;
     private Directory directory;
     private IndexWriter indexWriter;
+    private TrackingIndexWriter trackingIndexWriter;
     private SearcherManager searcherManager;
     private ControlledRealTimeReopenThread<IndexSearcher> searcherReopener;
+    private volatile int formatVersion;
 
-    private Sort sort;
+    /** The lock preventing the index readers refresh while a batch of writes is being applied. */
+    private final ReadWriteLock refreshLock = new ReentrantReadWriteLock();
+
+    /** The time in milliseconds of the oldest change not visible to searches yet, {@code 0} if there is none. */
+    private final AtomicLong oldestUnrefreshedChange = new AtomicLong();
+
+    private Sort naturalSort;
+    private Sort indexSort;
+    private boolean naturalIndexSort;
 
     /**
      * Builds a new {@code RowDirectory} using the specified directory path and analyzer.
      *
-     * @param rowMapper      A {@link RowMapper}.
-     * @param path           The analyzer to be used. The path of the directory in where the Lucene files will be
-     *                       stored.
-     * @param refreshSeconds The index readers refresh time in seconds. No guarantees that the writings are visible
-     *                       until this time.
-     * @param ramBufferMB    The index writer buffer size in MB.
-     * @param maxMergeMB     NRTCachingDirectory max merge size in MB.
-     * @param maxCachedMB    NRTCachingDirectory max cached MB.
-     * @param analyzer       The default {@link Analyzer}.
+     * @param rowMapper         A {@link RowMapper}.
+     * @param path              The analyzer to be used. The path of the directory in where the Lucene files will be
+     *                          stored.
+     * @param refreshSeconds    The index readers refresh time in seconds. No guarantees that the writings are visible
+     *                          until this time.
+     * @param minRefreshSeconds The index readers refresh time in seconds while there are searches waiting for the
+     *                          writings to be visible.
+     * @param ramBufferMB       The index writer buffer size in MB.
+     * @param maxMergeMB        NRTCachingDirectory max merge size in MB.
+     * @param maxCachedMB       NRTCachingDirectory max cached MB.
+     * @param searchExecutor    The shared executor for searching the index segments in parallel, {@code null} means
+     *                          that the searches are run by the calling thread. It isn't shut down by this index.
+     * @param useCompoundFile   If the index segments must be packed into compound files. Otherwise, each segment is
+     *                          kept in several files, which saves the packing I/O at the cost of more open files.
+     * @param analyzer          The default {@link Analyzer}.
+     * @param codec             The Lucene {@link Codec} of the index segments.
+     * @param metrics           The {@link RowIndexMetrics} where the search times and indexing errors are recorded.
+     * @param searchCache       The {@link SearchCache} where the pages of search results are cached.
      */
     public LuceneIndex(RowMapper rowMapper,
                        String path,
                        Double refreshSeconds,
+                       Double minRefreshSeconds,
                        Integer ramBufferMB,
                        Integer maxMergeMB,
                        Integer maxCachedMB,
-                       Analyzer analyzer)
+                       ExecutorService searchExecutor,
+                       boolean useCompoundFile,
+                       Analyzer analyzer,
+                       Codec codec,
+                       RowIndexMetrics metrics,
+                       SearchCache searchCache)
     {
         this.rowMapper = rowMapper;
         this.path = path;
         this.refreshSeconds = refreshSeconds;
+        this.minRefreshSeconds = minRefreshSeconds;
         this.ramBufferMB = ramBufferMB;
         this.maxMergeMB = maxMergeMB;
         this.maxCachedMB = maxCachedMB;
+        this.searchExecutor = searchExecutor;
+        this.useCompoundFile = useCompoundFile;
         this.analyzer = analyzer;
+        this.codec = codec;
+        this.metrics = metrics;
+        this.searchCache = searchCache;
     }
 
     /**
-     * Initializes this using the specified {@link Sort} for trying to keep the {@link Document}s sorted.
-     *
-     * @param sort The {@link Sort} to be used.
+     * Initializes this trying to keep the {@link Document}s sorted by the index {@link Sort} of the {@link RowMapper}.
+     * The keys are sorted using their order preserving sorted doc values if all the {@link Document}s have them.
      */
-    public void init(Sort sort)
+    public void init()
     {
         Log.debug("Initializing index");
         try
         {
-            this.sort = sort;
-
             // Get directory file
             file = new File(path);
 
@@ -106,13 +177,49 @@ public class LuceneIndex
             FSDirectory fsDirectory = FSDirectory.open(file);
             directory = new NRTCachingDirectory(fsDirectory, maxMergeMB, maxCachedMB);
 
+            // Read index format version, new indexes get the current one
+            String formatVersionValue = null;
+            boolean isEmpty = true;
+            if (DirectoryReader.indexExists(directory))
+            {
+                SegmentInfos segmentInfos = new SegmentInfos();
+                segmentInfos.read(directory);
+                formatVersionValue = segmentInfos.getUserData().get(FORMAT_VERSION_KEY);
+                isEmpty = segmentInfos.totalDocCount() == 0;
+            }
+            if (formatVersionValue != null)
+            {
+                formatVersion = Integer.parseInt(formatVersionValue);
+            }
+            else
+            {
+                formatVersion = isEmpty ? CURRENT_FORMAT_VERSION : LEGACY_FORMAT_VERSION;
+            }
+            Log.info("Index format version is %d", formatVersion);
+
+            // Setup sorting, keeping it until restart even if the format version is upgraded by truncation
+            boolean sortedKeyDocValues = formatVersion >= SORTED_KEY_DOC_VALUES_FORMAT_VERSION;
+            naturalSort = rowMapper.sort(sortedKeyDocValues);
+            indexSort = rowMapper.indexSort(sortedKeyDocValues);
+            naturalIndexSort = EarlyTerminatingCollector.canEarlyTerminate(naturalSort, indexSort);
+
             // Setup index writer
             IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, analyzer);
             config.setRAMBufferSizeMB(ramBufferMB);
             config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
-            config.setUseCompoundFile(true);
-            config.setMergePolicy(new SortingMergePolicy(config.getMergePolicy(), sort));
+            config.setCodec(codec);
+            config.setUseCompoundFile(useCompoundFile);
+            if (!useCompoundFile)
+            {
+                config.getMergePolicy().setNoCFSRatio(0.0);
+            }
+            config.setMergePolicy(new SortingMergePolicy(config.getMergePolicy(), indexSort));
+            config.setIndexDeletionPolicy(new SnapshotDeletionPolicy(config.getIndexDeletionPolicy()));
             indexWriter = new IndexWriter(directory, config);
+            if (formatVersionValue == null)
+            {
+                setFormatVersion(formatVersion);
+            }
 
             // Setup NRT search
             SearcherFactory searcherFactory = new SearcherFactory()
@@ -124,12 +231,37 @@ public class LuceneIndex
                     return searcher;
                 }
             };
-            TrackingIndexWriter trackingIndexWriter = new TrackingIndexWriter(indexWriter);
+            trackingIndexWriter = new TrackingIndexWriter(indexWriter);
             searcherManager = new SearcherManager(indexWriter, true, searcherFactory);
+            searcherManager.addListener(new ReferenceManager.RefreshListener()
+            {
+                @Override
+                public void beforeRefresh()
+                {
+                    refreshLock.writeLock().lock(); // Released after refresh
+                    oldestUnrefreshedChange.set(0);
+                }
+
+                @Override
+                public void afterRefresh(boolean didRefresh)
+                {
+                    try
+                    {
+                        if (didRefresh)
+                        {
+                            searchCache.invalidatePages();
+                        }
+                    }
+                    finally
+                    {
+                        refreshLock.writeLock().unlock();
+                    }
+                }
+            });
             searcherReopener = new ControlledRealTimeReopenThread<>(trackingIndexWriter,
                                                                     searcherManager,
                                                                     refreshSeconds,
-                                                                    refreshSeconds);
+                                                                    minRefreshSeconds);
             searcherReopener.start(); // Start the refresher thread
         }
         catch (IOException e)
@@ -139,6 +271,43 @@ public class LuceneIndex
         }
     }
 
+    /**
+     * Sets the format version of the index, which will be persisted with the next commit.
+     *
+     * @param formatVersion The index format version.
+     */
+    private void setFormatVersion(int formatVersion)
+    {
+        Map<String, String> commitData = new HashMap<>(indexWriter.getCommitData());
+        commitData.put(FORMAT_VERSION_KEY, Integer.toString(formatVersion));
+        indexWriter.setCommitData(commitData);
+        this.formatVersion = formatVersion;
+    }
+
+    /**
+     * Returns {@code true} if all the {@link Document}s in the index have their keys in binary doc values, {@code
+     * false} if the keys must be read from stored fields. Indexes created before the introduction of doc values keep
+     * using stored fields until they are rebuilt.
+     *
+     * @return {@code true} if all the {@link Document}s in the index have their keys in binary doc values.
+     */
+    public boolean hasKeyDocValues()
+    {
+        return formatVersion >= KEY_DOC_VALUES_FORMAT_VERSION;
+    }
+
+    /**
+     * Returns {@code true} if all the {@link Document}s in the index have the values of their mapped single valued
+     * columns in doc values, {@code false} otherwise. Indexes created before the introduction of column doc values
+     * can't compute aggregations until they are rebuilt.
+     *
+     * @return {@code true} if all the {@link Document}s in the index have their column values in doc values.
+     */
+    public boolean hasColumnDocValues()
+    {
+        return formatVersion >= CURRENT_FORMAT_VERSION;
+    }
+
     /**
      * Updates the specified {@link Document} by first deleting the documents containing {@code Term} and then adding
      * the new document. The delete and then add are atomic as seen by a reader on the same index (flush may happen only
@@ -152,7 +321,8 @@ public class LuceneIndex
         Log.debug("Updating document %s with term %s", document, term);
         try
         {
-            indexWriter.updateDocument(term, document);
+            trackingIndexWriter.updateDocument(term, document);
+            changed();
         }
         catch (IOException e)
         {
@@ -161,6 +331,157 @@ public class LuceneIndex
         }
     }
 
+    /**
+     * Applies the specified writes in order. The consecutive updates are applied at once, deleting the documents
+     * containing any of their {@link Term}s and then adding all their documents, and only the last update of each
+     * {@link Term} is kept. The consecutive deletions are also applied at once. The documents are built from their
+     * {@link Row}s as Lucene consumes them, so each one is indexed before the {@link RowMapper} reuses it. The index
+     * readers are not refreshed while the writes are being applied, so the searches never see them halfway. The
+     * documents of each group of updates are added as a single Lucene block. If that block is discarded because of a
+     * failing document, the updates are applied one by one, so a bad document doesn't discard the others.
+     *
+     * @param writes The writes to be applied.
+     */
+    public void write(List<IndexWriteBatch.Write> writes)
+    {
+        Log.debug("Applying %d writes", writes.size());
+        refreshLock.readLock().lock();
+        try
+        {
+            Map<Term, Row> upserts = new LinkedHashMap<>();
+            List<Term> deletedTerms = new ArrayList<>();
+            List<Query> deletedQueries = new ArrayList<>();
+            for (IndexWriteBatch.Write write : writes)
+            {
+                if (write.isUpsert())
+                {
+                    delete(deletedTerms, deletedQueries);
+                    upserts.put(write.term, write.row);
+                }
+                else
+                {
+                    upsert(upserts);
+                    if (write.term != null)
+                    {
+                        deletedTerms.add(write.term);
+                    }
+                    else
+                    {
+                        deletedQueries.add(write.query);
+                    }
+                }
+            }
+            upsert(upserts);
+            delete(deletedTerms, deletedQueries);
+            changed();
+        }
+        catch (IOException e)
+        {
+            Log.error(e, "Error while applying %d writes", writes.size());
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            refreshLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Replaces the documents containing each of the specified {@link Term}s by the document of the mapped {@link Row},
+     * and empties the specified map.
+     * <p/>
+     * This is not one {@link TrackingIndexWriter#updateDocument(Term, Iterable)} per {@link Row}, but a single deletion
+     * of all the {@link Term}s followed by a single {@link TrackingIndexWriter#addDocuments(Iterable)}. Lucene adds the
+     * documents as a block with consecutive doc ids, atomically as seen by readers, and if any document fails then the
+     * whole block is discarded. Nothing relies on the documents staying together, so the sorting merges are free to
+     * split the block. If the block is discarded, the documents are added again one by one with {@link
+     * TrackingIndexWriter#updateDocument(Term, Iterable)}, so only the failing documents are lost. In that case, the
+     * already deleted old documents are briefly missing, but the readers are not refreshed until all the writes are
+     * applied.
+     *
+     * @param upserts The {@link Row}s to be indexed mapped by the {@link Term}s of their documents.
+     * @throws IOException If the index can't be written.
+     */
+    private void upsert(Map<Term, Row> upserts) throws IOException
+    {
+        if (upserts.isEmpty())
+        {
+            return;
+        }
+        final Collection<Row> rows = upserts.values();
+        trackingIndexWriter.deleteDocuments(upserts.keySet().toArray(new Term[upserts.size()]));
+        try
+        {
+            trackingIndexWriter.addDocuments(new Iterable<Document>()
+            {
+                @Override
+                public Iterator<Document> iterator()
+                {
+                    final Iterator<Row> iterator = rows.iterator();
+                    return new Iterator<Document>()
+                    {
+                        @Override
+                        public boolean hasNext()
+                        {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Document next()
+                        {
+                            return rowMapper.document(iterator.next());
+                        }
+
+                        @Override
+                        public void remove()
+                        {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            Log.error(e, "Error while adding %d documents, adding them one by one", upserts.size());
+            for (Map.Entry<Term, Row> entry : upserts.entrySet())
+            {
+                try
+                {
+                    trackingIndexWriter.updateDocument(entry.getKey(), rowMapper.document(entry.getValue()));
+                }
+                catch (RuntimeException ex)
+                {
+                    Log.error(ex, "Error while updating document with term %s", entry.getKey());
+                    metrics.indexingErrors.inc();
+                }
+            }
+        }
+        upserts.clear();
+    }
+
+    /**
+     * Deletes the documents containing any of the specified {@link Term}s or satisfying any of the specified {@link
+     * Query}s, and empties both lists.
+     *
+     * @param terms   The {@link Term}s of the documents to be deleted.
+     * @param queries The {@link Query}s of the documents to be deleted.
+     * @throws IOException If the index can't be written.
+     */
+    private void delete(List<Term> terms, List<Query> queries) throws IOException
+    {
+        if (!terms.isEmpty())
+        {
+            trackingIndexWriter.deleteDocuments(terms.toArray(new Term[terms.size()]));
+            terms.clear();
+        }
+        if (!queries.isEmpty())
+        {
+            trackingIndexWriter.deleteDocuments(queries.toArray(new Query[queries.size()]));
+            queries.clear();
+        }
+    }
+
     /**
      * Deletes all the {@link Document}s containing the specified {@link Term}.
      *
@@ -171,7 +492,8 @@ public class LuceneIndex
         Log.debug(String.format("Deleting by term %s", term));
         try
         {
-            indexWriter.deleteDocuments(term);
+            trackingIndexWriter.deleteDocuments(term);
+            changed();
         }
         catch (IOException e)
         {
@@ -190,7 +512,8 @@ public class LuceneIndex
         Log.debug("Deleting by query %s", query);
         try
         {
-            indexWriter.deleteDocuments(query);
+            trackingIndexWriter.deleteDocuments(query);
+            changed();
         }
         catch (IOException e)
         {
@@ -199,6 +522,17 @@ public class LuceneIndex
         }
     }
 
+    /**
+     * Records that the index has changed, so the changes are not visible to searches until the next refresh.
+     */
+    private void changed()
+    {
+        if (oldestUnrefreshedChange.get() == 0)
+        {
+            oldestUnrefreshedChange.compareAndSet(0, System.currentTimeMillis());
+        }
+    }
+
     /**
      * Deletes all the {@link Document}s.
      */
@@ -207,7 +541,10 @@ public class LuceneIndex
         Log.info("Truncating index");
         try
         {
-            indexWriter.deleteAll();
+            trackingIndexWriter.deleteAll();
+            changed();
+            indexWriter.setCommitData(new HashMap<String, String>());
+            setFormatVersion(CURRENT_FORMAT_VERSION);
         }
         catch (IOException e)
         {
@@ -216,6 +553,25 @@ public class LuceneIndex
         }
     }
 
+    /**
+     * Deletes all the {@link Document}s at once, dropping all the segments without evaluating any query, but keeping
+     * the commit data, such as the index format version.
+     */
+    public void deleteAll()
+    {
+        Log.info("Deleting all documents");
+        try
+        {
+            trackingIndexWriter.deleteAll();
+            changed();
+        }
+        catch (IOException e)
+        {
+            Log.error(e, "Error while deleting all documents");
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Commits the pending changes.
      */
@@ -233,6 +589,66 @@ public class LuceneIndex
         }
     }
 
+    /**
+     * Commits the pending changes and hard links the files of the resulting commit into the specified directory, so
+     * they can be restored by copying them back into the index directory. The specified data is added to the commit
+     * user data of the snapshot, but not to the later commits.
+     *
+     * @param directory    The directory where the snapshot files are going to be linked.
+     * @param snapshotData The data to be added to the commit user data of the snapshot.
+     */
+    public void snapshot(File directory, Map<String, String> snapshotData)
+    {
+        Log.info("Snapshotting index into %s", directory);
+        SnapshotDeletionPolicy deletionPolicy = (SnapshotDeletionPolicy) indexWriter.getConfig()
+                                                                                   .getIndexDeletionPolicy();
+        Map<String, String> commitData = new HashMap<>(indexWriter.getCommitData());
+        try
+        {
+            Map<String, String> snapshotCommitData = new HashMap<>(commitData);
+            snapshotCommitData.putAll(snapshotData);
+            commitData.keySet().removeAll(snapshotData.keySet());
+            indexWriter.setCommitData(snapshotCommitData);
+            indexWriter.commit();
+
+            IndexCommit indexCommit = deletionPolicy.snapshot();
+            try
+            {
+                FileUtils.createDirectory(directory);
+                for (String fileName : indexCommit.getFileNames())
+                {
+                    FileUtils.createHardLink(new File(file, fileName), new File(directory, fileName));
+                }
+            }
+            finally
+            {
+                deletionPolicy.release(indexCommit);
+                indexWriter.deleteUnusedFiles();
+            }
+        }
+        catch (IOException e)
+        {
+            Log.error(e, "Error while snapshotting index into %s", directory);
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            indexWriter.setCommitData(commitData);
+        }
+    }
+
+    /**
+     * Returns the value associated to the specified key in the commit user data, maybe {@code null}. The commit user
+     * data of an index restored from a snapshot contains the data of the snapshot.
+     *
+     * @param key A commit user data key.
+     * @return The value associated to {@code key} in the commit user data.
+     */
+    public String getCommitData(String key)
+    {
+        return indexWriter.getCommitData().get(key);
+    }
+
     /**
      * Commits all changes to the index, waits for pending merges to complete, and closes all associated resources.
      */
@@ -265,15 +681,43 @@ public class LuceneIndex
         FileUtils.deleteRecursive(file);
     }
 
+    /**
+     * Waits until the index changes are visible to searches if the oldest change not visible yet was done more than the
+     * specified number of seconds ago. Otherwise returns immediately, without forcing any refresh. While a search is
+     * waiting, the index readers are refreshed every {@code minRefreshSeconds} instead of every {@code refreshSeconds}.
+     *
+     * @param maxStalenessSeconds The max number of seconds that the index changes can remain invisible to searches.
+     */
+    public void waitForRefresh(double maxStalenessSeconds)
+    {
+        long oldest = oldestUnrefreshedChange.get();
+        if (oldest != 0 && System.currentTimeMillis() - oldest >= maxStalenessSeconds * 1000)
+        {
+            Log.debug("Waiting for index refresh");
+            try
+            {
+                searcherReopener.waitForGeneration(trackingIndexWriter.getGeneration());
+            }
+            catch (InterruptedException e)
+            {
+                Log.error(e, "Interrupted while waiting for index refresh");
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     /**
      * Finds the top {@code count} hits for {@code query}, applying {@code clusteringKeyFilter} if non-null, and sorting
-     * the hits by the criteria in {@code sortFields}.
+     * the hits by the criteria in {@code sortFields}. The hits are taken from the {@link SearchCache} if the same page
+     * has already been searched with the current index reader.
      *
-     * @param query        The {@link Query} to search for.
-     * @param sort         The {@link Sort} to be applied.
-     * @param after        The starting {@link SearchResult}.
-     * @param count        Return only the top {@code count} results.
-     * @param fieldsToLoad The name of the fields to be loaded.
+     * @param query           The {@link Query} to search for.
+     * @param sort            The {@link Sort} to be applied.
+     * @param after           The starting {@link SearchResult}.
+     * @param count           Return only the top {@code count} results.
+     * @param fieldsToLoad    The name of the stored fields to be loaded.
+     * @param docValuesToLoad The name of the binary doc values to be loaded as stored fields.
+     * @param usesRelevance   If the search uses relevance.
      * @return The found documents, sorted according to the supplied {@link Sort} instance.
      */
     public List<SearchResult> search(Query query,
@@ -281,6 +725,7 @@ public class LuceneIndex
                                      SearchResult after,
                                      Integer count,
                                      Set<String> fieldsToLoad,
+                                     Set<String> docValuesToLoad,
                                      boolean usesRelevance)
     {
         Log.debug("Searching by query %s", query);
@@ -289,20 +734,67 @@ public class LuceneIndex
             IndexSearcher searcher = searcherManager.acquire();
             try
             {
+                // Try to get the page from the cache
+                long readerVersion = ((DirectoryReader) searcher.getIndexReader()).getVersion();
+                SearchCache.Key key = new SearchCache.Key(path,
+                                                          readerVersion,
+                                                          query,
+                                                          sort,
+                                                          after == null ? null : after.getScoreDoc(),
+                                                          count,
+                                                          fieldsToLoad,
+                                                          docValuesToLoad,
+                                                          usesRelevance);
+                List<SearchResult> cachedResults = searchCache.getPage(key);
+                if (cachedResults != null)
+                {
+                    return cachedResults;
+                }
+
+                // Setup a searcher running the segments searches in the search threads, if any
+                IndexSearcher segmentsSearcher = searcher;
+                SearchExecutor executor = null;
+                if (searchExecutor != null)
+                {
+                    executor = new SearchExecutor(searchExecutor);
+                    segmentsSearcher = new IndexSearcher(searcher.getIndexReader(), executor);
+                    segmentsSearcher.setSimilarity(searcher.getSimilarity());
+                }
+
                 // Search
+                long startWallTime = System.nanoTime();
+                long startCpuTime = cpuTime();
                 ScoreDoc start = after == null ? null : after.getScoreDoc();
-                TopDocs topDocs = topDocs(searcher, query, sort, start, count, usesRelevance);
+                TopDocs topDocs = topDocs(segmentsSearcher, query, sort, start, count, usesRelevance);
                 ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+                long cpuTime = cpuTime() - startCpuTime + (executor == null ? 0 : executor.getCpuTime());
+                long wallTime = System.nanoTime() - startWallTime;
+                metrics.searchWallTime.update(TimeUnit.NANOSECONDS.toMicros(wallTime));
+                metrics.searchCpuTime.update(TimeUnit.NANOSECONDS.toMicros(cpuTime));
 
                 // Collect the documents from query result
+                IndexReader reader = searcher.getIndexReader();
+                DocValuesLoader docValuesLoader = new DocValuesLoader(reader, docValuesToLoad);
+                AdjacencyDetector adjacencyDetector = naturalIndexSort && sort == null && !usesRelevance
+                                                      ? AdjacencyDetector.create(reader, indexSort)
+                                                      : null;
                 List<SearchResult> searchResults = new ArrayList<>(scoreDocs.length);
                 for (ScoreDoc scoreDoc : scoreDocs)
                 {
-                    Document document = searcher.doc(scoreDoc.doc, fieldsToLoad);
+                    Document document = fieldsToLoad.isEmpty()
+                                        ? new Document()
+                                        : searcher.doc(scoreDoc.doc, fieldsToLoad);
+                    docValuesLoader.addFields(document, scoreDoc.doc);
                     SearchResult searchResult = rowMapper.searchResult(document, scoreDoc);
+                    if (adjacencyDetector != null)
+                    {
+                        searchResult.setAdjacent(adjacencyDetector.isAdjacent(scoreDoc.doc));
+                    }
                     searchResults.add(searchResult);
                 }
 
+                searchResults = Collections.unmodifiableList(searchResults);
+                searchCache.putPage(key, searchResults);
                 return searchResults;
             }
             finally
@@ -317,6 +809,78 @@ public class LuceneIndex
         }
     }
 
+    /**
+     * Collects all the documents matching the specified {@link Query} with the specified {@link AggregationCollector},
+     * and returns the first collected document read with the same searcher, so it can carry the aggregation results
+     * even if the index is refreshed right after.
+     *
+     * @param query           The {@link Query} to search for.
+     * @param collector       The {@link AggregationCollector} receiving the matching documents.
+     * @param fieldsToLoad    The name of the stored fields to be loaded.
+     * @param docValuesToLoad The name of the binary doc values to be loaded as stored fields.
+     * @return The first collected document, or {@code null} if there are no matching documents.
+     */
+    public SearchResult aggregate(Query query,
+                                  AggregationCollector collector,
+                                  Set<String> fieldsToLoad,
+                                  Set<String> docValuesToLoad)
+    {
+        Log.debug("Aggregating by query %s", query);
+        try
+        {
+            IndexSearcher searcher = searcherManager.acquire();
+            try
+            {
+                collector.setNextSearcher();
+                searcher.search(query, collector);
+                int doc = collector.getFirstDoc();
+                if (doc < 0)
+                {
+                    return null;
+                }
+                Document document = fieldsToLoad.isEmpty() ? new Document() : searcher.doc(doc, fieldsToLoad);
+                new DocValuesLoader(searcher.getIndexReader(), docValuesToLoad).addFields(document, doc);
+                return rowMapper.searchResult(document, new ScoreDoc(doc, Float.NaN));
+            }
+            finally
+            {
+                searcherManager.release(searcher);
+            }
+        }
+        catch (IOException e)
+        {
+            Log.error(e, "Error while aggregating by query %s", query);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the CPU time in nanoseconds used by the current thread, or {@code 0} if it is not supported by the JVM.
+     *
+     * @return The CPU time in nanoseconds used by the current thread.
+     */
+    private static long cpuTime()
+    {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * Returns the {@link Sort} of the hits found by {@link #search(Query, Sort, SearchResult, Integer, Set, Set,
+     * boolean)} with the specified arguments, which is the natural order if there is no {@link Sort} nor relevance.
+     *
+     * @param sort          The {@link Sort} to be applied, maybe {@code null}.
+     * @param usesRelevance If the search uses relevance.
+     * @return The {@link Sort} of the found hits, {@code null} meaning descending relevance.
+     */
+    public Sort hitsSort(Sort sort, boolean usesRelevance)
+    {
+        if (sort == null)
+        {
+            return usesRelevance ? null : naturalSort;
+        }
+        return sort;
+    }
+
     private TopDocs topDocs(IndexSearcher searcher,
                             Query query,
                             Sort sort,
@@ -324,20 +888,31 @@ public class LuceneIndex
                             int count,
                             boolean usesRelevance) throws IOException
     {
-        if (sort == null)
+        Sort hitsSort = hitsSort(sort, usesRelevance);
+        if (hitsSort == null)
         {
-            if (!usesRelevance)
-            {
-                FieldDoc start = after == null ? null : (FieldDoc) after;
-                TopFieldCollector tfc = TopFieldCollector.create(this.sort, count, start, true, false, false, false);
-                Collector collector = new EarlyTerminatingSortingCollector(tfc, this.sort, count);
-                searcher.search(query, collector);
-                return tfc.topDocs();
-            }
-            else
-            {
-                return searcher.searchAfter(after, query, count);
-            }
+            return searcher.searchAfter(after, query, count);
+        }
+        else
+        {
+            return sortedTopDocs(searcher, query, hitsSort, after, count);
+        }
+    }
+
+    /**
+     * Returns the top {@code count} hits for {@code query} sorted by {@code sort}, early terminating the collection of
+     * the sorted segments if {@code sort} is a prefix of the index sort.
+     */
+    private TopDocs sortedTopDocs(IndexSearcher searcher, Query query, Sort sort, ScoreDoc after, int count)
+    throws IOException
+    {
+        if (EarlyTerminatingCollector.canEarlyTerminate(sort, indexSort))
+        {
+            FieldDoc start = after == null ? null : (FieldDoc) after;
+            TopFieldCollector tfc = TopFieldCollector.create(sort, count, start, true, false, false, false);
+            Collector collector = new EarlyTerminatingCollector(tfc, sort, indexSort, count, start);
+            searcher.search(query, collector);
+            return tfc.topDocs();
         }
         else
         {
@@ -391,4 +966,228 @@ public class LuceneIndex
         }
 
     }
+
+    /**
+     * Returns the number of segments of the index visible to searches.
+     *
+     * @return The number of segments of the index visible to searches.
+     */
+    public int getNumSegments()
+    {
+        try
+        {
+            IndexSearcher searcher = searcherManager.acquire();
+            try
+            {
+                return searcher.getIndexReader().leaves().size();
+            }
+            finally
+            {
+                searcherManager.release(searcher);
+            }
+        }
+        catch (IOException e)
+        {
+            Log.error(e, "Error while getting num segments");
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the memory in bytes used by the documents buffered in the index writer.
+     *
+     * @return The memory in bytes used by the documents buffered in the index writer.
+     */
+    public long getRamBufferBytes()
+    {
+        return indexWriter.ramSizeInBytes();
+    }
+
+    /**
+     * Returns the number of segments being merged.
+     *
+     * @return The number of segments being merged.
+     */
+    public int getMergingSegments()
+    {
+        return indexWriter.getMergingSegments().size();
+    }
+
+    /**
+     * Returns the time in milliseconds since the oldest change not visible to searches yet was done, or {@code 0} if
+     * all the changes are visible.
+     *
+     * @return The time in milliseconds since the oldest change not visible to searches yet was done.
+     */
+    public long getRefreshLag()
+    {
+        long oldest = oldestUnrefreshedChange.get();
+        return oldest == 0 ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    /**
+     * Class for detecting if a hit immediately follows the previous one in the natural order of the rows. This happens
+     * if both hits are consecutive documents of an index reader made of a single segment sorted by the index {@link
+     * Sort}, which must start with the natural order. With more segments, any of the other segments could contain
+     * documents between the two hits in the natural order, so no hits are considered adjacent. The hits must also be
+     * sorted in the natural order, since the document order says nothing about the key order of hits sorted by other
+     * criteria.
+     */
+    static class AdjacencyDetector
+    {
+        private int previousDoc = -1;
+
+        private AdjacencyDetector()
+        {
+        }
+
+        /**
+         * Returns an {@link AdjacencyDetector} for the hits in natural order found in the specified {@link
+         * IndexReader}, or {@code null} if it hasn't a single segment sorted by the specified index {@link Sort}.
+         *
+         * @param reader    The {@link IndexReader} where the hits are found.
+         * @param indexSort The {@link Sort} of the index segments.
+         * @return An {@link AdjacencyDetector}, or {@code null} if no hits can be adjacent.
+         */
+        static AdjacencyDetector create(IndexReader reader, Sort indexSort)
+        {
+            List<AtomicReaderContext> leaves = reader.leaves();
+            if (leaves.size() != 1 || !SortingMergePolicy.isSorted(leaves.get(0).reader(), indexSort))
+            {
+                return null;
+            }
+            return new AdjacencyDetector();
+        }
+
+        boolean isAdjacent(int doc)
+        {
+            boolean adjacent = doc == previousDoc + 1;
+            previousDoc = doc;
+            return adjacent;
+        }
+    }
+
+    /**
+     * Class for loading binary doc values into {@link Document}s as binary stored fields, avoiding the decompression of
+     * stored fields. The per-segment doc values are opened lazily and reused across hits.
+     */
+    private static class DocValuesLoader
+    {
+        private final List<AtomicReaderContext> leaves;
+        private final String[] fields;
+        private final BinaryDocValues[][] docValues;
+
+        DocValuesLoader(IndexReader reader, Set<String> fields)
+        {
+            this.leaves = reader.leaves();
+            this.fields = fields.toArray(new String[fields.size()]);
+            this.docValues = new BinaryDocValues[leaves.size()][];
+        }
+
+        void addFields(Document document, int doc) throws IOException
+        {
+            if (fields.length == 0)
+            {
+                return;
+            }
+            int leaf = ReaderUtil.subIndex(doc, leaves);
+            AtomicReaderContext context = leaves.get(leaf);
+            BinaryDocValues[] leafDocValues = docValues[leaf];
+            if (leafDocValues == null)
+            {
+                leafDocValues = new BinaryDocValues[fields.length];
+                for (int i = 0; i < fields.length; i++)
+                {
+                    leafDocValues[i] = context.reader().getBinaryDocValues(fields[i]);
+                }
+                docValues[leaf] = leafDocValues;
+            }
+            for (int i = 0; i < fields.length; i++)
+            {
+                if (leafDocValues[i] != null)
+                {
+                    BytesRef bytesRef = new BytesRef();
+                    leafDocValues[i].get(doc - context.docBase, bytesRef);
+                    document.add(new StoredField(fields[i], BytesRef.deepCopyOf(bytesRef)));
+                }
+            }
+        }
+    }
+
+    /**
+     * {@link ExecutorService} running the segments searches of a single query in a shared thread pool, and accounting
+     * the CPU time used by them. The time is accounted before completing each task, so it is complete as soon as the
+     * searcher has collected all the results. It doesn't own the shared pool, so shutting it down does nothing.
+     */
+    static class SearchExecutor extends AbstractExecutorService
+    {
+        private final ExecutorService executor;
+        private final AtomicLong cpuTime = new AtomicLong();
+
+        SearchExecutor(ExecutorService executor)
+        {
+            this.executor = executor;
+        }
+
+        long getCpuTime()
+        {
+            return cpuTime.get();
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(final Callable<T> callable)
+        {
+            return new FutureTask<>(new Callable<T>()
+            {
+                @Override
+                public T call() throws Exception
+                {
+                    long start = cpuTime();
+                    try
+                    {
+                        return callable.call();
+                    }
+                    finally
+                    {
+                        cpuTime.addAndGet(cpuTime() - start);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void execute(Runnable command)
+        {
+            executor.execute(command);
+        }
+
+        @Override
+        public void shutdown()
+        {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow()
+        {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown()
+        {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated()
+        {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+        {
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
 }
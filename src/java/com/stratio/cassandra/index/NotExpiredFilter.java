@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.FieldCacheDocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+
+/**
+ * Lucene {@link Filter} discarding the {@link org.apache.lucene.document.Document}s of the rows expired by TTL, reading
+ * their expiration time from the doc values written by {@link ExpirationMapper}. The documents without expiration
+ * doc values, including the ones written by previous versions, are always accepted.
+ * <p/>
+ * Two filters are equal regardless of their time, so the cached pages of search results can be reused across
+ * searches. The rows expired after a page has been cached are discarded anyway when they are read from Cassandra.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class NotExpiredFilter extends Filter
+{
+    /** The local time in seconds. */
+    private final int nowInSeconds;
+
+    /**
+     * Builds a new {@link NotExpiredFilter} accepting the rows not expired at the specified time.
+     *
+     * @param nowInSeconds The local time in seconds.
+     */
+    public NotExpiredFilter(int nowInSeconds)
+    {
+        this.nowInSeconds = nowInSeconds;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException
+    {
+        AtomicReader reader = context.reader();
+        final NumericDocValues values = reader.getNumericDocValues(ExpirationMapper.DOC_VALUES_FIELD_NAME);
+        final Bits docsWithField = reader.getDocsWithField(ExpirationMapper.DOC_VALUES_FIELD_NAME);
+        if (values == null || docsWithField == null) // No expiring rows in this segment
+        {
+            return new FieldCacheDocIdSet(reader.maxDoc(), acceptDocs)
+            {
+                @Override
+                protected boolean matchDoc(int doc)
+                {
+                    return true;
+                }
+            };
+        }
+        return new FieldCacheDocIdSet(reader.maxDoc(), acceptDocs)
+        {
+            @Override
+            protected boolean matchDoc(int doc)
+            {
+                return !docsWithField.get(doc) || values.get(doc) > nowInSeconds;
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj)
+    {
+        return obj instanceof NotExpiredFilter;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode()
+    {
+        return NotExpiredFilter.class.hashCode();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this).append("nowInSeconds", nowInSeconds).toString();
+    }
+}
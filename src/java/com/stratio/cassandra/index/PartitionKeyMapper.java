@@ -25,6 +25,7 @@ import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Row;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.dht.IPartitioner;
+import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
@@ -32,6 +33,7 @@ import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
 
 import java.nio.ByteBuffer;
 import java.util.List;
@@ -49,6 +51,11 @@ public class PartitionKeyMapper
      */
     public static final String FIELD_NAME = "_partition_key";
 
+    /**
+     * The Lucene doc values field name.
+     */
+    public static final String DOC_VALUES_FIELD_NAME = "_partition_key_dv";
+
     /**
      * The active active partition key.
      */
@@ -58,6 +65,26 @@ public class PartitionKeyMapper
 
     private final AbstractType<?> type;
 
+    /** The per thread reusable key field. */
+    private final ThreadLocal<Field> keyField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new StringField(FIELD_NAME, "", Store.YES);
+        }
+    };
+
+    /** The per thread reusable key doc values field. */
+    private final ThreadLocal<Field> docValuesField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new BinaryDocValuesField(DOC_VALUES_FIELD_NAME, new BytesRef());
+        }
+    };
+
     /**
      * Returns a new {@code PartitionKeyMapper} according to the specified column family meta data.
      *
@@ -87,16 +114,20 @@ public class PartitionKeyMapper
     }
 
     /**
-     * Adds to the specified {@link Document} the {@link Field}s associated to the specified raw partition key.
+     * Adds to the specified {@link Document} the {@link Field}s associated to the specified raw partition key. The
+     * added {@link Field}s are reused by the next call from the same thread.
      *
      * @param document     The document in which the fields are going to be added.
      * @param partitionKey The raw partition key to be converted.
      */
     public void addFields(Document document, DecoratedKey partitionKey)
     {
-        String serializedKey = ByteBufferUtils.toString(partitionKey.getKey());
-        Field field = new StringField(FIELD_NAME, serializedKey, Store.YES);
+        Field field = keyField.get();
+        field.setStringValue(ByteBufferUtils.toString(partitionKey.getKey()));
         document.add(field);
+        Field docValues = docValuesField.get();
+        docValues.setBytesValue(ByteBufferUtils.bytesRef(partitionKey.getKey()));
+        document.add(docValues);
     }
 
     /**
@@ -123,15 +154,18 @@ public class PartitionKeyMapper
     }
 
     /**
-     * Returns the {@link DecoratedKey} contained in the specified Lucene {@link Document}.
+     * Returns the {@link DecoratedKey} contained in the specified Lucene {@link Document}. The partition key is taken
+     * from the doc values field if it has been loaded, or from the stored field otherwise.
      *
      * @param document the {@link Document} containing the partition key to be get.
      * @return The {@link DecoratedKey} contained in the specified Lucene {@link Document}.
      */
     public DecoratedKey partitionKey(Document document)
     {
-        String string = document.get(FIELD_NAME);
-        ByteBuffer partitionKey = ByteBufferUtils.fromString(string);
+        BytesRef bytesRef = document.getBinaryValue(DOC_VALUES_FIELD_NAME);
+        ByteBuffer partitionKey = bytesRef == null
+                                  ? ByteBufferUtils.fromString(document.get(FIELD_NAME))
+                                  : ByteBufferUtils.byteBuffer(bytesRef);
         return partitionKey(partitionKey);
     }
 
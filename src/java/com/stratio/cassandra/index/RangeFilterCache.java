@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.cassandra.db.DataRange;
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
+
+/**
+ * Cache of the Lucene {@link Filter}s used to restrict searches to a {@link DataRange}. Each filter caches its matching
+ * documents per index segment, so the repeated scans of the same token ranges over the same segments, as those done by
+ * range partitioned jobs, are answered without evaluating the range query again. The cached segments are released by
+ * Lucene as soon as they are merged away.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RangeFilterCache
+{
+    /** The cached filters by range query, {@code null} if caching is disabled. */
+    private final Cache<Query, Filter> cache;
+
+    /**
+     * Builds a new {@link RangeFilterCache} retaining up to the specified number of ranges.
+     *
+     * @param size The max number of cached ranges, {@code 0} means no caching.
+     */
+    public RangeFilterCache(int size)
+    {
+        cache = size > 0 ? CacheBuilder.newBuilder().maximumSize(size).<Query, Filter>build() : null;
+    }
+
+    /**
+     * Returns the non scoring {@link Filter} equivalent to the specified range {@link Query}.
+     *
+     * @param query A range {@link Query}, maybe {@code null} meaning no range restrictions.
+     * @return The non scoring {@link Filter} equivalent to {@code query}, or {@code null} if {@code query} is {@code
+     * null}.
+     */
+    public Filter filter(Query query)
+    {
+        if (query == null)
+        {
+            return null;
+        }
+        if (cache == null)
+        {
+            return new QueryWrapperFilter(query);
+        }
+        Filter filter = cache.getIfPresent(query);
+        if (filter == null)
+        {
+            filter = new CachingWrapperFilter(new QueryWrapperFilter(query));
+            cache.put(query, filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Removes all the cached filters.
+     */
+    public void invalidate()
+    {
+        if (cache != null)
+        {
+            cache.invalidateAll();
+        }
+    }
+}
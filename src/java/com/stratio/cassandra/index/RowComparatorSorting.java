@@ -65,4 +65,29 @@ public class RowComparatorSorting implements RowComparator
         Columns columns2 = rowMapper.columns(row2);
         return comparatorChain.compare(columns1, columns2);
     }
+
+    /**
+     * Returns the sort key of the specified {@link Row}, that is, its decoded {@link Columns}. Sort keys can be compared
+     * with {@link #compare(Columns, Columns)} as many times as needed without decoding the {@link Row} cells again.
+     *
+     * @param row A {@link Row}.
+     * @return The sort key of {@code row}.
+     */
+    public Columns sortKey(Row row)
+    {
+        return rowMapper.columns(row);
+    }
+
+    /**
+     * Compares the specified sort keys, as returned by {@link #sortKey(Row)}.
+     *
+     * @param sortKey1 The sort key of a {@link Row}.
+     * @param sortKey2 The sort key of a {@link Row}.
+     * @return A negative integer, zero, or a positive integer as the first argument is less than, equal to, or greater
+     * than the second according to a {@link com.stratio.cassandra.index.query.Sort}.
+     */
+    public int compare(Columns sortKey1, Columns sortKey2)
+    {
+        return comparatorChain.compare(sortKey1, sortKey2);
+    }
 }
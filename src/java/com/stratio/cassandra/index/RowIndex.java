@@ -23,12 +23,17 @@ import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.index.PerRowSecondaryIndex;
+import org.apache.cassandra.db.index.SecondaryIndexBuilder;
 import org.apache.cassandra.db.index.SecondaryIndexManager;
 import org.apache.cassandra.db.index.SecondaryIndexSearcher;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.exceptions.ConfigurationException;
+import org.apache.cassandra.io.sstable.SSTableReader;
 import org.apache.cassandra.utils.concurrent.OpOrder;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -164,11 +169,13 @@ public class RowIndex extends PerRowSecondaryIndex
     public void delete(DecoratedKey key, OpOrder.Group opGroup)
     {
         Log.debug("Removing row %s from index %s", key, logName);
-        lock.writeLock().lock();
+        lock.readLock().lock();
         try
         {
-            rowService.delete(key);
-            rowService = null;
+            if (rowService != null)
+            {
+                rowService.delete(key);
+            }
         }
         catch (RuntimeException e)
         {
@@ -177,7 +184,39 @@ public class RowIndex extends PerRowSecondaryIndex
         }
         finally
         {
-            lock.writeLock().unlock();
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes from the index all the rows out of the specified token ranges, so the cleanup compaction doesn't need
+     * to delete them one by one.
+     *
+     * @param ranges The token ranges owned by the node.
+     * @return {@code true} if the index has been cleaned up.
+     */
+    @Override
+    public boolean cleanup(Collection<Range<Token>> ranges)
+    {
+        Log.info("Cleaning up index %s", logName);
+        lock.readLock().lock();
+        try
+        {
+            if (rowService != null)
+            {
+                rowService.cleanup(ranges);
+                Log.info("Cleaned up index %s", logName);
+            }
+            return true;
+        }
+        catch (RuntimeException e)
+        {
+            Log.error(e, "Cleaning up index %s", logName);
+            throw e;
+        }
+        finally
+        {
+            lock.readLock().unlock();
         }
     }
 
@@ -333,6 +372,50 @@ public class RowIndex extends PerRowSecondaryIndex
         }
     }
 
+    @Override
+    public void snapshot(String snapshotName, Collection<SSTableReader> sstables)
+    {
+        Log.info("Snapshotting index %s", logName);
+        lock.writeLock().lock();
+        try
+        {
+            if (rowService != null)
+            {
+                rowService.snapshot(snapshotName, sstables);
+                Log.info("Snapshotted index %s", logName);
+            }
+        }
+        catch (RuntimeException e)
+        {
+            Log.error(e, "Snapshotting index %s", logName);
+            throw e;
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<SSTableReader> unindexedSSTables(Collection<SSTableReader> sstables)
+    {
+        lock.readLock().lock();
+        try
+        {
+            return rowService == null ? sstables : rowService.unindexedSSTables(sstables);
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public SecondaryIndexBuilder getIndexBuilder(Collection<SSTableReader> sstables)
+    {
+        return rowService == null ? null : rowService.indexBuilder(indexName, sstables);
+    }
+
     @Override
     protected SecondaryIndexSearcher createSecondaryIndexSearcher(Set<ByteBuffer> columns)
     {
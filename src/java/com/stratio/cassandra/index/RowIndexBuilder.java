@@ -0,0 +1,302 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.RateLimiter;
+import com.stratio.cassandra.index.util.Log;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.columniterator.OnDiskAtomIterator;
+import org.apache.cassandra.db.compaction.CompactionInfo;
+import org.apache.cassandra.db.compaction.CompactionInterruptedException;
+import org.apache.cassandra.db.compaction.CompactionManager;
+import org.apache.cassandra.db.compaction.ICompactionScanner;
+import org.apache.cassandra.db.compaction.OperationType;
+import org.apache.cassandra.db.index.SecondaryIndexBuilder;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.SSTableReader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.utils.IMergeIterator;
+import org.apache.cassandra.utils.MergeIterator;
+import org.apache.cassandra.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link SecondaryIndexBuilder} that builds a {@link RowIndex} from the data in a set of SSTables using several
+ * threads. The token ring is split into ranges containing a similar number of partitions according to the SSTables key
+ * samples, and each thread indexes the partitions of a different range at a time. Each thread writes into its own
+ * Lucene in-memory segment, so they don't contend while indexing.
+ * <p/>
+ * The build is throttled by the compaction throughput, and its progress is reported as a {@link CompactionInfo} in
+ * terms of the SSTable bytes covered by the already indexed partitions.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowIndexBuilder extends SecondaryIndexBuilder
+{
+    /** The number of token ranges per build thread, balancing the load of the threads. */
+    static final int RANGES_PER_THREAD = 4;
+
+    private static final Function<OnDiskAtomIterator, DecoratedKey> KEY_FUNCTION = new Function<OnDiskAtomIterator, DecoratedKey>()
+    {
+        @Override
+        public DecoratedKey apply(OnDiskAtomIterator iterator)
+        {
+            return iterator.getKey();
+        }
+    };
+
+    private final ColumnFamilyStore baseCfs;
+    private final String indexName;
+    private final Collection<SSTableReader> sstables;
+    private final int numThreads;
+    private final List<Range<Token>> ranges;
+    private final long totalBytes;
+    private final AtomicLong bytesRead = new AtomicLong();
+
+    /**
+     * Builds a new {@link RowIndexBuilder} for building the specified index from the data in the specified SSTables.
+     * The caller must acquire and release references to the SSTables.
+     *
+     * @param baseCfs    The indexed {@link ColumnFamilyStore}.
+     * @param indexName  The name of the index to be built.
+     * @param sstables   The SSTables containing the data to be indexed.
+     * @param numThreads The number of build threads.
+     */
+    public RowIndexBuilder(ColumnFamilyStore baseCfs,
+                           String indexName,
+                           Collection<SSTableReader> sstables,
+                           int numThreads)
+    {
+        super(baseCfs, Collections.singleton(indexName));
+        this.baseCfs = baseCfs;
+        this.indexName = indexName;
+        this.sstables = sstables;
+        this.numThreads = numThreads;
+
+        IPartitioner partitioner = baseCfs.partitioner;
+        Token minimum = partitioner.getMinimumToken();
+        Range<Token> fullRange = new Range<>(minimum, minimum, partitioner);
+        List<Token> samples = new ArrayList<>();
+        for (SSTableReader sstable : sstables)
+        {
+            for (DecoratedKey key : sstable.getKeySamples(fullRange))
+            {
+                samples.add(key.getToken());
+            }
+        }
+        ranges = splitRing(partitioner, samples, numThreads * RANGES_PER_THREAD);
+
+        long bytes = 0;
+        for (SSTableReader sstable : sstables)
+        {
+            for (Pair<Long, Long> positions : sstable.getPositionsForRanges(ranges))
+            {
+                bytes += positions.right - positions.left;
+            }
+        }
+        totalBytes = bytes;
+    }
+
+    /**
+     * Returns the ranges covering the whole token ring that contain a similar number of the specified token samples.
+     *
+     * @param partitioner The used partitioner.
+     * @param samples     The token samples, in any order.
+     * @param numRanges   The max number of ranges to be returned.
+     * @return Up to {@code numRanges} contiguous ranges covering the whole token ring.
+     */
+    @SuppressWarnings("unchecked")
+    static List<Range<Token>> splitRing(IPartitioner partitioner, List<Token> samples, int numRanges)
+    {
+        List<Token> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        Token minimum = partitioner.getMinimumToken();
+        List<Range<Token>> ranges = new ArrayList<>(numRanges);
+        Token left = minimum;
+        for (int i = 1; i < numRanges && !sorted.isEmpty(); i++)
+        {
+            Token right = sorted.get(i * sorted.size() / numRanges);
+            if (right.compareTo(left) > 0)
+            {
+                ranges.add(new Range<>(left, right, partitioner));
+                left = right;
+            }
+        }
+        ranges.add(new Range<>(left, minimum, partitioner));
+        return ranges;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public CompactionInfo getCompactionInfo()
+    {
+        return new CompactionInfo(baseCfs.metadata, OperationType.INDEX_BUILD, bytesRead.get(), totalBytes);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void build()
+    {
+        Log.info("Building index %s with %d threads over %d token ranges", indexName, numThreads, ranges.size());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads,
+                                                                new NamedThreadFactory("RowIndexBuilder-" + indexName));
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>(ranges.size());
+            for (final Range<Token> range : ranges)
+            {
+                futures.add(executor.submit(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        build(range);
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+        catch (InterruptedException e)
+        {
+            throw new CompactionInterruptedException(getCompactionInfo());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Indexes the partitions contained in the specified token range of the SSTables.
+     *
+     * @param range A token range.
+     */
+    private void build(Range<Token> range)
+    {
+        RateLimiter rateLimiter = CompactionManager.instance.getRateLimiter();
+        Collection<Range<Token>> ranges = Collections.singleton(range);
+        List<ICompactionScanner> scanners = new ArrayList<>(sstables.size());
+        List<Long> starts = new ArrayList<>(sstables.size());
+        List<Iterator<DecoratedKey>> keyIterators = new ArrayList<>(sstables.size());
+        try
+        {
+            for (SSTableReader sstable : sstables)
+            {
+                List<Pair<Long, Long>> positions = sstable.getPositionsForRanges(ranges);
+                if (!positions.isEmpty())
+                {
+                    ICompactionScanner scanner = sstable.getScanner(range, null);
+                    scanners.add(scanner);
+                    starts.add(positions.get(0).left);
+                    keyIterators.add(Iterators.transform(scanner, KEY_FUNCTION));
+                }
+            }
+            IMergeIterator<DecoratedKey, DecoratedKey> keys = MergeIterator.get(keyIterators,
+                                                                                DecoratedKey.comparator,
+                                                                                new KeyReducer());
+            long progress = 0;
+            while (keys.hasNext())
+            {
+                if (isStopRequested())
+                {
+                    throw new CompactionInterruptedException(getCompactionInfo());
+                }
+                DecoratedKey key = keys.next();
+                Keyspace.indexRow(key, baseCfs, Collections.singleton(indexName));
+
+                long newProgress = progress(scanners, starts);
+                long delta = newProgress - progress;
+                if (delta > 0)
+                {
+                    rateLimiter.acquire((int) Math.min(delta, Integer.MAX_VALUE));
+                    bytesRead.addAndGet(delta);
+                    progress = newProgress;
+                }
+            }
+        }
+        finally
+        {
+            for (ICompactionScanner scanner : scanners)
+            {
+                FileUtils.closeQuietly(scanner);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes already read by the specified scanners since their specified start positions.
+     */
+    private static long progress(List<ICompactionScanner> scanners, List<Long> starts)
+    {
+        long progress = 0;
+        for (int i = 0; i < scanners.size(); i++)
+        {
+            progress += Math.max(0, scanners.get(i).getCurrentPosition() - starts.get(i));
+        }
+        return progress;
+    }
+
+    /**
+     * {@link MergeIterator.Reducer} returning one of the equal merged keys.
+     */
+    private static class KeyReducer extends MergeIterator.Reducer<DecoratedKey, DecoratedKey>
+    {
+        private DecoratedKey reduced;
+
+        @Override
+        public boolean trivialReduceIsTrivial()
+        {
+            return true;
+        }
+
+        @Override
+        public void reduce(DecoratedKey current)
+        {
+            reduced = current;
+        }
+
+        @Override
+        protected DecoratedKey getReduced()
+        {
+            return reduced;
+        }
+    }
+}
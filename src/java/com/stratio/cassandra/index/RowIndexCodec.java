@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.ColumnMapper;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.bloom.BloomFilteringPostingsFormat;
+import org.apache.lucene.codecs.lucene46.Lucene46Codec;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The Lucene codec used by {@link LuceneIndex}. It's the default Lucene codec with configurable per field postings
+ * formats: the primary key fields used to delete documents get the index key postings format, and each mapped column
+ * gets the postings format of its {@link ColumnMapper}, if any.
+ * <p/>
+ * The postings format of each field is recorded in the index segments, so the indexes remain readable by the default
+ * codec even if the formats are changed.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowIndexCodec extends Lucene46Codec
+{
+    /** The name of the default postings format. */
+    public static final String DEFAULT_POSTINGS_FORMAT = "Lucene41";
+
+    /** The name of the default postings format wrapped with a per segment bloom filter of the terms. */
+    public static final String BLOOM_FILTER_POSTINGS_FORMAT = "BloomFilter";
+
+    private final Schema schema;
+    private final PostingsFormat keyPostingsFormat;
+
+    /** The already resolved postings formats by name, so the fields sharing a format are written together. */
+    private final ConcurrentMap<String, PostingsFormat> postingsFormats = new ConcurrentHashMap<>();
+
+    /**
+     * Builds a new {@link RowIndexCodec}.
+     *
+     * @param schema                The {@link Schema} with the postings formats of the mapped columns.
+     * @param keyPostingsFormatName The name of the postings format of the primary key fields.
+     */
+    public RowIndexCodec(Schema schema, String keyPostingsFormatName)
+    {
+        this.schema = schema;
+        this.keyPostingsFormat = postingsFormat(keyPostingsFormatName);
+    }
+
+    /**
+     * Returns the postings format identified by the specified name. The name can be the name of any Lucene postings
+     * format, or {@link #BLOOM_FILTER_POSTINGS_FORMAT} for the default format with per segment bloom filters, which
+     * save the terms dictionary lookups in the segments not containing the searched terms.
+     *
+     * @param name The name of a postings format.
+     * @return The postings format identified by {@code name}.
+     * @throws IllegalArgumentException If there is no postings format with the specified name.
+     */
+    public static PostingsFormat postingsFormatForName(String name)
+    {
+        if (name.equals(BLOOM_FILTER_POSTINGS_FORMAT))
+        {
+            return new BloomFilteringPostingsFormat(PostingsFormat.forName(DEFAULT_POSTINGS_FORMAT));
+        }
+        return PostingsFormat.forName(name);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public PostingsFormat getPostingsFormatForField(String field)
+    {
+        if (field.equals(PartitionKeyMapper.FIELD_NAME) || field.equals(FullKeyMapper.FIELD_NAME))
+        {
+            return keyPostingsFormat;
+        }
+        ColumnMapper<?> columnMapper = schema.getMapper(field);
+        if (columnMapper != null && columnMapper.getPostingsFormat() != null)
+        {
+            return postingsFormat(columnMapper.getPostingsFormat());
+        }
+        return super.getPostingsFormatForField(field);
+    }
+
+    private PostingsFormat postingsFormat(String name)
+    {
+        PostingsFormat postingsFormat = postingsFormats.get(name);
+        if (postingsFormat == null)
+        {
+            postingsFormat = postingsFormatForName(name);
+            PostingsFormat previous = postingsFormats.putIfAbsent(name, postingsFormat);
+            if (previous != null)
+            {
+                postingsFormat = previous;
+            }
+        }
+        return postingsFormat;
+    }
+}
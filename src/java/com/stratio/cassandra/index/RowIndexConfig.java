@@ -18,6 +18,7 @@ package com.stratio.cassandra.index;
 import com.stratio.cassandra.index.schema.Schema;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.Directories;
 import org.apache.cassandra.utils.ByteBufferUtil;
 
 import java.io.File;
@@ -35,6 +36,9 @@ public class RowIndexConfig
     private static final String REFRESH_SECONDS_OPTION = "refresh_seconds";
     private static final double DEFAULT_REFRESH_SECONDS = 60;
 
+    private static final String MIN_REFRESH_SECONDS_OPTION = "min_refresh_seconds";
+    private static final double DEFAULT_MIN_REFRESH_SECONDS = 0.1;
+
     private static final String INDEXES_DIR_NAME = "lucene";
 
     private static final String RAM_BUFFER_MB_OPTION = "ram_buffer_mb";
@@ -52,14 +56,71 @@ public class RowIndexConfig
     private static final String INDEXING_QUEUES_SIZE_OPTION = "indexing_queues_size";
     private static final int DEFAULT_INDEXING_QUEUES_SIZE = 50;
 
+    private static final String INDEXING_BATCH_SIZE_OPTION = "indexing_batch_size";
+    private static final int DEFAULT_INDEXING_BATCH_SIZE = 100;
+
+    private static final String INDEXING_BATCH_MILLIS_OPTION = "indexing_batch_millis";
+    private static final int DEFAULT_INDEXING_BATCH_MILLIS = 10;
+
+    private static final String SEARCH_THREADS_OPTION = "search_threads";
+    private static final int DEFAULT_SEARCH_THREADS = 0;
+
+    private static final String READ_THREADS_OPTION = "read_threads";
+    private static final int DEFAULT_READ_THREADS = 0;
+
+    private static final String SHARDS_OPTION = "shards";
+    private static final int DEFAULT_SHARDS = 1;
+
+    private static final String EXPIRED_PURGE_SECONDS_OPTION = "expired_purge_seconds";
+    private static final int DEFAULT_EXPIRED_PURGE_SECONDS = 300;
+
+    private static final String RANGE_FILTER_CACHE_SIZE_OPTION = "range_filter_cache_size";
+    private static final int DEFAULT_RANGE_FILTER_CACHE_SIZE = 64;
+
+    private static final String SEARCH_CACHE_SIZE_OPTION = "search_cache_size";
+    private static final int DEFAULT_SEARCH_CACHE_SIZE = 1000;
+
+    private static final String SEARCH_CACHE_HITS_OPTION = "search_cache_hits";
+    private static final int DEFAULT_SEARCH_CACHE_HITS = 10000;
+
+    private static final String MAX_SEARCH_PAGE_SIZE_OPTION = "max_search_page_size";
+    private static final int DEFAULT_MAX_SEARCH_PAGE_SIZE = 100000;
+
+    private static final String BUILD_THREADS_OPTION = "build_threads";
+    private static final int DEFAULT_BUILD_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final String FAST_INSERT_INDEXING_OPTION = "fast_insert_indexing";
+    private static final boolean DEFAULT_FAST_INSERT_INDEXING = false;
+
+    private static final String USE_COMPOUND_FILE_OPTION = "use_compound_file";
+    private static final boolean DEFAULT_USE_COMPOUND_FILE = true;
+
+    private static final String KEY_POSTINGS_FORMAT_OPTION = "key_postings_format";
+    private static final String DEFAULT_KEY_POSTINGS_FORMAT = RowIndexCodec.DEFAULT_POSTINGS_FORMAT;
+
     private final Schema schema;
     private final double refreshSeconds;
+    private final double minRefreshSeconds;
     private final String path;
     private final int ramBufferMB;
     private final int maxMergeMB;
     private final int maxCachedMB;
     private final int indexingThreads;
     private final int indexingQueuesSize;
+    private final int indexingBatchSize;
+    private final int indexingBatchMillis;
+    private final int searchThreads;
+    private final int readThreads;
+    private final int shards;
+    private final int expiredPurgeSeconds;
+    private final int rangeFilterCacheSize;
+    private final int searchCacheSize;
+    private final int searchCacheHits;
+    private final int maxSearchPageSize;
+    private final int buildThreads;
+    private final boolean fastInsertIndexing;
+    private final boolean useCompoundFile;
+    private final String keyPostingsFormat;
 
     /**
      * Builds a new {@link RowIndexConfig} for the column family defined by the specified metadata using the specified
@@ -94,6 +155,37 @@ public class RowIndexConfig
             refreshSeconds = DEFAULT_REFRESH_SECONDS;
         }
 
+        // Setup min refresh seconds
+        String minRefreshOption = options.get(MIN_REFRESH_SECONDS_OPTION);
+        if (minRefreshOption != null)
+        {
+            try
+            {
+                minRefreshSeconds = Double.parseDouble(minRefreshOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a strictly positive double", MIN_REFRESH_SECONDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (minRefreshSeconds <= 0)
+            {
+                String msg = String.format("'%s' must be strictly positive", MIN_REFRESH_SECONDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (minRefreshSeconds > refreshSeconds)
+            {
+                String msg = String.format("'%s' must not be greater than '%s'",
+                                           MIN_REFRESH_SECONDS_OPTION,
+                                           REFRESH_SECONDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            minRefreshSeconds = Math.min(DEFAULT_MIN_REFRESH_SECONDS, refreshSeconds);
+        }
+
         // Setup write buffer size
         String ramBufferSizeOption = options.get(RAM_BUFFER_MB_OPTION);
         if (ramBufferSizeOption != null)
@@ -209,6 +301,341 @@ public class RowIndexConfig
             indexingQueuesSize = DEFAULT_INDEXING_QUEUES_SIZE;
         }
 
+        // Setup batch size in index pool
+        String indexingBatchSizeOption = options.get(INDEXING_BATCH_SIZE_OPTION);
+        if (indexingBatchSizeOption != null)
+        {
+            try
+            {
+                indexingBatchSize = Integer.parseInt(indexingBatchSizeOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s'  must be a strictly positive integer", INDEXING_BATCH_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (indexingBatchSize <= 0)
+            {
+                String msg = String.format("'%s'  must be strictly positive", INDEXING_BATCH_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            indexingBatchSize = DEFAULT_INDEXING_BATCH_SIZE;
+        }
+
+        // Setup indexing batch time
+        String indexingBatchMillisOption = options.get(INDEXING_BATCH_MILLIS_OPTION);
+        if (indexingBatchMillisOption != null)
+        {
+            try
+            {
+                indexingBatchMillis = Integer.parseInt(indexingBatchMillisOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a positive integer", INDEXING_BATCH_MILLIS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (indexingBatchMillis < 0)
+            {
+                String msg = String.format("'%s' must be positive", INDEXING_BATCH_MILLIS_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            indexingBatchMillis = DEFAULT_INDEXING_BATCH_MILLIS;
+        }
+
+        // Setup search threads
+        String searchThreadsOption = options.get(SEARCH_THREADS_OPTION);
+        if (searchThreadsOption != null)
+        {
+            try
+            {
+                searchThreads = Integer.parseInt(searchThreadsOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a positive integer", SEARCH_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (searchThreads < 0)
+            {
+                String msg = String.format("'%s' must be positive", SEARCH_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            searchThreads = DEFAULT_SEARCH_THREADS;
+        }
+
+        // Setup read threads
+        String readThreadsOption = options.get(READ_THREADS_OPTION);
+        if (readThreadsOption != null)
+        {
+            try
+            {
+                readThreads = Integer.parseInt(readThreadsOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a positive integer", READ_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (readThreads < 0)
+            {
+                String msg = String.format("'%s' must be positive", READ_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            readThreads = DEFAULT_READ_THREADS;
+        }
+
+        // Setup number of shards
+        String shardsOption = options.get(SHARDS_OPTION);
+        if (shardsOption != null)
+        {
+            try
+            {
+                shards = Integer.parseInt(shardsOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a strictly positive integer", SHARDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (shards <= 0)
+            {
+                String msg = String.format("'%s' must be strictly positive", SHARDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            shards = DEFAULT_SHARDS;
+        }
+        if (ramBufferMB < shards)
+        {
+            String msg = String.format("'%s' must be at least '%s'", RAM_BUFFER_MB_OPTION, SHARDS_OPTION);
+            throw new RuntimeException(msg);
+        }
+
+        // Setup expired documents purge period
+        String expiredPurgeSecondsOption = options.get(EXPIRED_PURGE_SECONDS_OPTION);
+        if (expiredPurgeSecondsOption != null)
+        {
+            try
+            {
+                expiredPurgeSeconds = Integer.parseInt(expiredPurgeSecondsOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a positive integer", EXPIRED_PURGE_SECONDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (expiredPurgeSeconds < 0)
+            {
+                String msg = String.format("'%s' must be positive", EXPIRED_PURGE_SECONDS_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            expiredPurgeSeconds = DEFAULT_EXPIRED_PURGE_SECONDS;
+        }
+
+        // Setup range filter cache size
+        String rangeFilterCacheSizeOption = options.get(RANGE_FILTER_CACHE_SIZE_OPTION);
+        if (rangeFilterCacheSizeOption != null)
+        {
+            try
+            {
+                rangeFilterCacheSize = Integer.parseInt(rangeFilterCacheSizeOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a positive integer", RANGE_FILTER_CACHE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (rangeFilterCacheSize < 0)
+            {
+                String msg = String.format("'%s' must be positive", RANGE_FILTER_CACHE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            rangeFilterCacheSize = DEFAULT_RANGE_FILTER_CACHE_SIZE;
+        }
+
+        // Setup search cache size
+        String searchCacheSizeOption = options.get(SEARCH_CACHE_SIZE_OPTION);
+        if (searchCacheSizeOption != null)
+        {
+            try
+            {
+                searchCacheSize = Integer.parseInt(searchCacheSizeOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a positive integer", SEARCH_CACHE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (searchCacheSize < 0)
+            {
+                String msg = String.format("'%s' must be positive", SEARCH_CACHE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            searchCacheSize = DEFAULT_SEARCH_CACHE_SIZE;
+        }
+
+        // Setup search cache hits
+        String searchCacheHitsOption = options.get(SEARCH_CACHE_HITS_OPTION);
+        if (searchCacheHitsOption != null)
+        {
+            try
+            {
+                searchCacheHits = Integer.parseInt(searchCacheHitsOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a positive integer", SEARCH_CACHE_HITS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (searchCacheHits < 0)
+            {
+                String msg = String.format("'%s' must be positive", SEARCH_CACHE_HITS_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            searchCacheHits = DEFAULT_SEARCH_CACHE_HITS;
+        }
+
+        // Setup max search page size
+        String maxSearchPageSizeOption = options.get(MAX_SEARCH_PAGE_SIZE_OPTION);
+        if (maxSearchPageSizeOption != null)
+        {
+            try
+            {
+                maxSearchPageSize = Integer.parseInt(maxSearchPageSizeOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a strictly positive integer", MAX_SEARCH_PAGE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (maxSearchPageSize <= 0)
+            {
+                String msg = String.format("'%s' must be strictly positive", MAX_SEARCH_PAGE_SIZE_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            maxSearchPageSize = DEFAULT_MAX_SEARCH_PAGE_SIZE;
+        }
+
+        // Setup build threads
+        String buildThreadsOption = options.get(BUILD_THREADS_OPTION);
+        if (buildThreadsOption != null)
+        {
+            try
+            {
+                buildThreads = Integer.parseInt(buildThreadsOption);
+            }
+            catch (NumberFormatException e)
+            {
+                String msg = String.format("'%s' must be a strictly positive integer", BUILD_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+            if (buildThreads <= 0)
+            {
+                String msg = String.format("'%s' must be strictly positive", BUILD_THREADS_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            buildThreads = DEFAULT_BUILD_THREADS;
+        }
+
+        // Setup fast insert indexing
+        String fastInsertIndexingOption = options.get(FAST_INSERT_INDEXING_OPTION);
+        if (fastInsertIndexingOption != null)
+        {
+            if (fastInsertIndexingOption.equalsIgnoreCase("true"))
+            {
+                fastInsertIndexing = true;
+            }
+            else if (fastInsertIndexingOption.equalsIgnoreCase("false"))
+            {
+                fastInsertIndexing = false;
+            }
+            else
+            {
+                String msg = String.format("'%s' must be a boolean", FAST_INSERT_INDEXING_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            fastInsertIndexing = DEFAULT_FAST_INSERT_INDEXING;
+        }
+
+        // Setup compound file usage
+        String useCompoundFileOption = options.get(USE_COMPOUND_FILE_OPTION);
+        if (useCompoundFileOption != null)
+        {
+            if (useCompoundFileOption.equalsIgnoreCase("true"))
+            {
+                useCompoundFile = true;
+            }
+            else if (useCompoundFileOption.equalsIgnoreCase("false"))
+            {
+                useCompoundFile = false;
+            }
+            else
+            {
+                String msg = String.format("'%s' must be a boolean", USE_COMPOUND_FILE_OPTION);
+                throw new RuntimeException(msg);
+            }
+        }
+        else
+        {
+            useCompoundFile = DEFAULT_USE_COMPOUND_FILE;
+        }
+
+        // Setup key postings format
+        String keyPostingsFormatOption = options.get(KEY_POSTINGS_FORMAT_OPTION);
+        if (keyPostingsFormatOption != null)
+        {
+            try
+            {
+                RowIndexCodec.postingsFormatForName(keyPostingsFormatOption);
+            }
+            catch (IllegalArgumentException e)
+            {
+                String msg = String.format("'%s' must be a Lucene postings format name", KEY_POSTINGS_FORMAT_OPTION);
+                throw new RuntimeException(msg);
+            }
+            keyPostingsFormat = keyPostingsFormatOption;
+        }
+        else
+        {
+            keyPostingsFormat = DEFAULT_KEY_POSTINGS_FORMAT;
+        }
+
         // Get columns mapping schema
         String schemaOption = options.get(SCHEMA_OPTION);
         if (schemaOption != null && !schemaOption.trim().isEmpty())
@@ -255,11 +682,31 @@ public class RowIndexConfig
         return refreshSeconds;
     }
 
+    public double getMinRefreshSeconds()
+    {
+        return minRefreshSeconds;
+    }
+
     public String getPath()
     {
         return path;
     }
 
+    /**
+     * Returns the path of the directory where the Lucene files of the specified base table snapshot are stored. It's
+     * inside the base table snapshot directory, so restoring the snapshot files into the table directory also restores
+     * the index.
+     *
+     * @param snapshotName The name of the snapshot.
+     * @return The path of the directory where the Lucene files of the snapshot are stored.
+     */
+    public String getSnapshotPath(String snapshotName)
+    {
+        File directory = new File(path);
+        File snapshotDirectory = new File(directory.getParentFile(), Directories.SNAPSHOT_SUBDIR);
+        return new File(new File(snapshotDirectory, snapshotName), directory.getName()).getPath();
+    }
+
     public int getRamBufferMB()
     {
         return ramBufferMB;
@@ -285,4 +732,74 @@ public class RowIndexConfig
         return indexingQueuesSize;
     }
 
+    public int getIndexingBatchSize()
+    {
+        return indexingBatchSize;
+    }
+
+    public int getIndexingBatchMillis()
+    {
+        return indexingBatchMillis;
+    }
+
+    public int getSearchThreads()
+    {
+        return searchThreads;
+    }
+
+    public int getReadThreads()
+    {
+        return readThreads;
+    }
+
+    public int getShards()
+    {
+        return shards;
+    }
+
+    public int getExpiredPurgeSeconds()
+    {
+        return expiredPurgeSeconds;
+    }
+
+    public int getRangeFilterCacheSize()
+    {
+        return rangeFilterCacheSize;
+    }
+
+    public int getSearchCacheSize()
+    {
+        return searchCacheSize;
+    }
+
+    public int getSearchCacheHits()
+    {
+        return searchCacheHits;
+    }
+
+    public int getMaxSearchPageSize()
+    {
+        return maxSearchPageSize;
+    }
+
+    public int getBuildThreads()
+    {
+        return buildThreads;
+    }
+
+    public boolean isFastInsertIndexing()
+    {
+        return fastInsertIndexing;
+    }
+
+    public boolean isUseCompoundFile()
+    {
+        return useCompoundFile;
+    }
+
+    public String getKeyPostingsFormat()
+    {
+        return keyPostingsFormat;
+    }
+
 }
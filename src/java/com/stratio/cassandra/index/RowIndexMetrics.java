@@ -0,0 +1,265 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.util.TaskQueue;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricName;
+import org.apache.cassandra.metrics.MetricNameFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Metrics for a {@link RowIndex}. They are registered in the default metrics registry, so they are exposed through
+ * JMX as {@code com.stratio.cassandra.index:type=RowIndex,keyspace=<keyspace>,scope=<table>.<index>,name=<metric>}.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowIndexMetrics
+{
+    /** The JMX group name. */
+    private static final String GROUP_NAME = "com.stratio.cassandra.index";
+
+    /** The JMX type name. */
+    private static final String TYPE_NAME = "RowIndex";
+
+    /** The factory of the names of the metrics. */
+    private final MetricNameFactory factory;
+
+    /** The names of the registered metrics, used for releasing them. */
+    private final List<MetricName> names = new ArrayList<>();
+
+    /** Number of written CQL3 rows indexed directly from the written data, without reading them from Cassandra. */
+    public final Counter fullRowWrites;
+
+    /** Number of written CQL3 rows that have been read from Cassandra before being indexed. */
+    public final Counter readBeforeWrites;
+
+    /** Number of writes discarded because they couldn't be mapped into documents or written to Lucene. */
+    public final Counter indexingErrors;
+
+    /** Number of tasks executed together by the asynchronous indexing threads. */
+    public final Histogram indexingBatchSize;
+
+    /** Time in microseconds that the asynchronous indexing tasks wait in queue. */
+    public final Histogram indexingQueueWait;
+
+    /** Wall clock time in microseconds spent by Lucene searching each page of a query. */
+    public final Histogram searchWallTime;
+
+    /** CPU time in microseconds spent by all the threads involved in searching each page of a query in Lucene. */
+    public final Histogram searchCpuTime;
+
+    /** Number of Lucene pages requested by each search. */
+    public final Histogram searchPages;
+
+    /** Number of Lucene documents collected by each search. */
+    public final Histogram searchHits;
+
+    /** Time in microseconds spent by each search collecting the rows of the found documents from Cassandra. */
+    public final Histogram searchCollectTime;
+
+    /** Time in microseconds spent by each search sorting the collected rows. */
+    public final Histogram searchSortTime;
+
+    /**
+     * Time in microseconds spent indexing each batch of writes, from the reading and mapping of its writes to the end of
+     * their Lucene writes, without queue waits.
+     */
+    public final Histogram indexingLatency;
+
+    /**
+     * Builds and registers new {@link RowIndexMetrics} for the specified index.
+     *
+     * @param keyspaceName The name of the keyspace of the indexed table.
+     * @param tableName    The name of the indexed table.
+     * @param indexName    The name of the index.
+     */
+    public RowIndexMetrics(String keyspaceName, String tableName, String indexName)
+    {
+        factory = new RowIndexMetricNameFactory(keyspaceName, tableName, indexName);
+        fullRowWrites = Metrics.newCounter(name("FullRowWrites"));
+        readBeforeWrites = Metrics.newCounter(name("ReadBeforeWrites"));
+        indexingErrors = Metrics.newCounter(name("IndexingErrors"));
+        indexingBatchSize = Metrics.newHistogram(name("IndexingBatchSize"), true);
+        indexingQueueWait = Metrics.newHistogram(name("IndexingQueueWait"), true);
+        searchWallTime = Metrics.newHistogram(name("SearchWallTime"), true);
+        searchCpuTime = Metrics.newHistogram(name("SearchCpuTime"), true);
+        searchPages = Metrics.newHistogram(name("SearchPages"), true);
+        searchHits = Metrics.newHistogram(name("SearchHits"), true);
+        searchCollectTime = Metrics.newHistogram(name("SearchCollectTime"), true);
+        searchSortTime = Metrics.newHistogram(name("SearchSortTime"), true);
+        indexingLatency = Metrics.newHistogram(name("IndexingLatency"), true);
+    }
+
+    /**
+     * Returns the {@link MetricName} for the metric with the specified name, remembering it for release.
+     *
+     * @param metricName The name of the metric.
+     * @return The {@link MetricName} for the metric with the specified name.
+     */
+    private MetricName name(String metricName)
+    {
+        MetricName name = factory.createMetricName(metricName);
+        names.add(name);
+        return name;
+    }
+
+    /**
+     * Registers the ratio of found documents becoming rows tracked by the specified {@link SearchPageSizer}.
+     *
+     * @param pageSizer A {@link SearchPageSizer}.
+     */
+    public void registerSurvivalRatio(final SearchPageSizer pageSizer)
+    {
+        Metrics.newGauge(name("SearchSurvivalRatio"), new Gauge<Double>()
+        {
+            @Override
+            public Double value()
+            {
+                return pageSizer.getSurvivalRatio();
+            }
+        });
+    }
+
+    /**
+     * Registers the hit rates of the parsed searches and of the pages of search results cached by the specified {@link
+     * SearchCache}.
+     *
+     * @param searchCache A {@link SearchCache}.
+     */
+    public void registerSearchCache(final SearchCache searchCache)
+    {
+        Metrics.newGauge(name("SearchCacheHitRate"), new Gauge<Double>()
+        {
+            @Override
+            public Double value()
+            {
+                return searchCache.getSearchesHitRate();
+            }
+        });
+        Metrics.newGauge(name("SearchResultsCacheHitRate"), new Gauge<Double>()
+        {
+            @Override
+            public Double value()
+            {
+                return searchCache.getPagesHitRate();
+            }
+        });
+    }
+
+    /**
+     * Registers the state of the specified {@link ShardedLuceneIndex}: its number of segments, the memory used by its
+     * write buffers, its number of segments being merged and the age of its oldest change not visible to searches yet.
+     *
+     * @param luceneIndex A {@link ShardedLuceneIndex}.
+     */
+    public void registerLuceneIndex(final ShardedLuceneIndex luceneIndex)
+    {
+        Metrics.newGauge(name("Segments"), new Gauge<Integer>()
+        {
+            @Override
+            public Integer value()
+            {
+                return luceneIndex.getNumSegments();
+            }
+        });
+        Metrics.newGauge(name("RamBufferBytes"), new Gauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return luceneIndex.getRamBufferBytes();
+            }
+        });
+        Metrics.newGauge(name("MergingSegments"), new Gauge<Integer>()
+        {
+            @Override
+            public Integer value()
+            {
+                return luceneIndex.getMergingSegments();
+            }
+        });
+        Metrics.newGauge(name("RefreshLag"), new Gauge<Long>()
+        {
+            @Override
+            public Long value()
+            {
+                return luceneIndex.getRefreshLag();
+            }
+        });
+    }
+
+    /**
+     * Registers the number of tasks waiting in the specified asynchronous indexing {@link TaskQueue}.
+     *
+     * @param indexQueue A {@link TaskQueue}.
+     */
+    public void registerIndexingQueue(final TaskQueue<?> indexQueue)
+    {
+        Metrics.newGauge(name("IndexingQueueSize"), new Gauge<Integer>()
+        {
+            @Override
+            public Integer value()
+            {
+                return indexQueue.size();
+            }
+        });
+    }
+
+    /**
+     * Removes all the metrics from the metrics registry.
+     */
+    public void release()
+    {
+        for (MetricName name : names)
+        {
+            Metrics.defaultRegistry().removeMetric(name);
+        }
+    }
+
+    /**
+     * {@link MetricNameFactory} for {@link RowIndex} metrics.
+     */
+    private static class RowIndexMetricNameFactory implements MetricNameFactory
+    {
+        private final String keyspaceName;
+        private final String scope;
+
+        RowIndexMetricNameFactory(String keyspaceName, String tableName, String indexName)
+        {
+            this.keyspaceName = keyspaceName;
+            this.scope = tableName + "." + indexName;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public MetricName createMetricName(String metricName)
+        {
+            StringBuilder mbeanName = new StringBuilder();
+            mbeanName.append(GROUP_NAME).append(":");
+            mbeanName.append("type=").append(TYPE_NAME);
+            mbeanName.append(",keyspace=").append(keyspaceName);
+            mbeanName.append(",scope=").append(scope);
+            mbeanName.append(",name=").append(metricName);
+            return new MetricName(GROUP_NAME, TYPE_NAME, metricName, keyspaceName + "." + scope, mbeanName.toString());
+        }
+    }
+}
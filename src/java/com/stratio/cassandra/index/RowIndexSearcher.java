@@ -18,6 +18,7 @@ package com.stratio.cassandra.index;
 import com.stratio.cassandra.index.query.Search;
 import com.stratio.cassandra.index.schema.Schema;
 import com.stratio.cassandra.index.util.Log;
+import org.apache.cassandra.db.ConsistencyLevel;
 import org.apache.cassandra.db.DataRange;
 import org.apache.cassandra.db.IndexExpression;
 import org.apache.cassandra.db.Row;
@@ -129,7 +130,7 @@ public class RowIndexSearcher extends SecondaryIndexSearcher
         try
         {
             String json = UTF8Type.instance.compose(indexExpression.value);
-            Search.fromJson(json).validate(schema);
+            rowService.search(json).validate(schema);
         }
         catch (Exception e)
         {
@@ -137,6 +138,54 @@ public class RowIndexSearcher extends SecondaryIndexSearcher
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Aggregations are computed over the matching documents without reading their rows, so they are rejected if any of
+     * the other filtering expressions can't be exactly checked in the index. They are also rejected at consistency
+     * levels involving more than one replica, because the partial results of each replica of a token range can't be
+     * reconciled by the coordinator, which would add them more than once or repair them into the table. Finally, the
+     * aggregated columns must have doc values.
+     */
+    @Override
+    public void validate(List<IndexExpression> clause, ConsistencyLevel consistency) throws InvalidRequestException
+    {
+        Search search = search(clause);
+        if (search.usesAggregations())
+        {
+            if (!supportsAggregations(consistency))
+            {
+                throw new InvalidRequestException(String.format("Aggregations require consistency level ONE or " +
+                                                                "LOCAL_ONE, found %s", consistency));
+            }
+            if (!rowService.isExact(filteredExpressions(clause)))
+            {
+                throw new InvalidRequestException("Aggregations can't be combined with filtering expressions that " +
+                                                  "are not exactly mapped by the index schema");
+            }
+            try
+            {
+                rowService.validateAggregations(search);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new InvalidRequestException(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if aggregations can be computed at the specified consistency level, that is, if each token
+     * range is read from a single replica.
+     *
+     * @param consistency A read consistency level.
+     * @return {@code true} if aggregations can be computed at {@code consistency}, {@code false} otherwise.
+     */
+    static boolean supportsAggregations(ConsistencyLevel consistency)
+    {
+        return consistency == ConsistencyLevel.ONE || consistency == ConsistencyLevel.LOCAL_ONE;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -144,7 +193,7 @@ public class RowIndexSearcher extends SecondaryIndexSearcher
     public boolean requiresFullScan(List<IndexExpression> clause)
     {
         Search search = search(clause);
-        return search.usesRelevanceOrSorting();
+        return search.usesRelevanceOrSorting() || search.usesAggregations();
     }
 
     /**
@@ -157,7 +206,7 @@ public class RowIndexSearcher extends SecondaryIndexSearcher
     {
         IndexExpression indexedExpression = indexedExpression(clause);
         String json = UTF8Type.instance.compose(indexedExpression.value);
-        return Search.fromJson(json);
+        return rowService.search(json);
     }
 
     /**
@@ -199,28 +248,39 @@ public class RowIndexSearcher extends SecondaryIndexSearcher
         return filteredExpressions;
     }
 
+    /**
+     * {@inheritDoc}
+     */
     @Override
     public List<Row> sort(List<IndexExpression> clause, List<Row> rows)
+    {
+        return sort(clause, rows, Integer.MAX_VALUE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Row> sort(List<IndexExpression> clause, List<Row> rows, int limit)
     {
         int startSize = rows.size();
         long startTime = System.currentTimeMillis();
 
-        // Remove duplicates
-        TreeSet<Row> set = new TreeSet<>(rowService.comparator());
-        set.addAll(rows);
-        List<Row> result = new ArrayList<>(set);
-
-        // Sort
+        // Merge the partial aggregation results, if any
         Search search = search(clause);
-        Comparator<Row> comparator = rowService.comparator(search);
-        Collections.sort(result, comparator);
+        if (search.usesAggregations())
+        {
+            return rowService.mergeAggregations(rows);
+        }
 
-        String comparatorName = comparator.getClass().getSimpleName();
+        // Merge the sorted partial results retaining only the first rows
+        RowMerger merger = new RowMerger(rowService, search);
+        List<Row> result = merger.merge(rows, limit);
+
+        String comparatorName = merger.getComparatorName();
         int endSize = result.size();
         long endTime = System.currentTimeMillis() - startTime;
 
-//        result = rowService.group(result);
-
         Log.debug("Sorted %d rows to %d with comparator %s in %d ms\n", startSize, endSize, comparatorName, endTime);
 
         return result;
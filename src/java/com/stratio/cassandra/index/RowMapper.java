@@ -24,12 +24,22 @@ import org.apache.cassandra.db.DataRange;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Row;
 import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 
 /**
  * Class for several {@link Row} mappings between Cassandra and Lucene.
@@ -46,6 +56,19 @@ public abstract class RowMapper
     protected final TokenMapper tokenMapper;
     protected final PartitionKeyMapper partitionKeyMapper;
     protected final RegularCellsMapper regularCellsMapper;
+    protected final StoredCellsMapper storedCellsMapper;
+    protected final DocValuesMapper docValuesMapper;
+    protected final ExpirationMapper expirationMapper;
+
+    /** The per thread reusable {@link Document}. */
+    private final ThreadLocal<Document> documents = new ThreadLocal<Document>()
+    {
+        @Override
+        protected Document initialValue()
+        {
+            return new Document();
+        }
+    };
 
     /**
      * Builds a new {@link RowMapper} for the specified column family metadata, indexed column definition and {@link
@@ -63,6 +86,9 @@ public abstract class RowMapper
         this.tokenMapper = TokenMapper.instance(metadata);
         this.partitionKeyMapper = PartitionKeyMapper.instance(metadata);
         this.regularCellsMapper = RegularCellsMapper.instance(metadata);
+        this.storedCellsMapper = StoredCellsMapper.instance(metadata, columnDefinition, schema);
+        this.docValuesMapper = DocValuesMapper.instance(metadata, schema);
+        this.expirationMapper = ExpirationMapper.instance();
     }
 
     /**
@@ -96,13 +122,26 @@ public abstract class RowMapper
     public abstract Columns columns(Row row);
 
     /**
-     * Returns the {@link Document} representing the specified {@link Row}.
+     * Returns the {@link Document} representing the specified {@link Row}. The returned {@link Document} and its key
+     * fields are reused by the next call from the same thread, so they must be indexed before that.
      *
      * @param row A {@link Row}.
      * @return The {@link Document} representing the specified {@link Row}.
      */
     public abstract Document document(Row row);
 
+    /**
+     * Returns the per thread reusable {@link Document}, after removing all its fields.
+     *
+     * @return An empty {@link Document}.
+     */
+    protected final Document emptyDocument()
+    {
+        Document document = documents.get();
+        document.getFields().clear();
+        return document;
+    }
+
     /**
      * Returns the decorated partition key representing the specified raw partition key.
      *
@@ -144,6 +183,55 @@ public abstract class RowMapper
      */
     public abstract Query query(DataRange dataRange);
 
+    /**
+     * Returns the Lucene {@link Query} to get the {@link Document}s whose token is not contained in any of the specified
+     * token {@link Range}s.
+     *
+     * @param ranges Some token {@link Range}s.
+     * @return The Lucene {@link Query} to get the {@link Document}s out of {@code ranges}, or {@code null} if the ranges
+     * cover the whole token ring.
+     */
+    public final Query outOfRangesQuery(Collection<Range<Token>> ranges)
+    {
+        BooleanQuery query = new BooleanQuery();
+        query.add(new MatchAllDocsQuery(), BooleanClause.Occur.MUST);
+        for (Range<Token> range : ranges)
+        {
+            for (Range<Token> unwrappedRange : range.unwrap())
+            {
+                Query rangeQuery = tokenMapper.query(unwrappedRange.left, unwrappedRange.right, false, true);
+                if (rangeQuery == null)
+                {
+                    return null;
+                }
+                query.add(rangeQuery, BooleanClause.Occur.MUST_NOT);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Returns the Lucene {@link Query} to get the {@link Document}s of the rows expired at the specified time.
+     *
+     * @param nowInSeconds The local time in seconds.
+     * @return The Lucene {@link Query} to get the {@link Document}s of the rows expired at {@code nowInSeconds}.
+     */
+    public final Query expiredQuery(int nowInSeconds)
+    {
+        return expirationMapper.expiredQuery(nowInSeconds);
+    }
+
+    /**
+     * Returns the Lucene {@link Filter} to discard the {@link Document}s of the rows expired at the specified time.
+     *
+     * @param nowInSeconds The local time in seconds.
+     * @return The Lucene {@link Filter} to discard the {@link Document}s of the rows expired at {@code nowInSeconds}.
+     */
+    public final Filter notExpiredFilter(int nowInSeconds)
+    {
+        return expirationMapper.notExpiredFilter(nowInSeconds);
+    }
+
     /**
      * Returns a {@link CellName} for the indexed column in the specified column family.
      *
@@ -152,6 +240,38 @@ public abstract class RowMapper
      */
     public abstract CellName makeCellName(ColumnFamily columnFamily);
 
+    /**
+     * Returns a {@link Row} identified by the keys of the specified {@link SearchResult}, containing no cells but its
+     * CQL3 row marker, if any.
+     *
+     * @param searchResult A {@link SearchResult}.
+     * @param timestamp    The row marker timestamp.
+     * @return An empty {@link Row} identified by the keys of {@code searchResult}.
+     */
+    public abstract Row emptyRow(SearchResult searchResult, long timestamp);
+
+    /**
+     * Returns the Lucene {@link Sort} to get {@link Document}s in the same order that is used in Cassandra.
+     *
+     * @param sortedKeyDocValues If all the {@link Document}s have their keys in order preserving sorted doc values.
+     * @return The Lucene {@link Sort} to get {@link Document}s in the same order that is used in Cassandra.
+     */
+    public abstract Sort sort(boolean sortedKeyDocValues);
+
+    /**
+     * Returns the Lucene {@link Sort} in which the {@link Document}s are kept in the index. It is the user defined
+     * index sort of the {@link Schema}, if any, followed by the same order that is used in Cassandra.
+     *
+     * @param sortedKeyDocValues If all the {@link Document}s have their keys in order preserving sorted doc values.
+     * @return The Lucene {@link Sort} in which the {@link Document}s are kept in the index.
+     */
+    public final Sort indexSort(boolean sortedKeyDocValues)
+    {
+        SortField[] userSort = schema.indexSortFields();
+        Sort naturalSort = sort(sortedKeyDocValues);
+        return userSort.length == 0 ? naturalSort : new Sort(ArrayUtils.addAll(userSort, naturalSort.getSort()));
+    }
+
     /**
      * Returns a {@link RowComparator} using the same order that is used in Cassandra.
      *
@@ -161,4 +281,26 @@ public abstract class RowMapper
 
     public abstract SearchResult searchResult(Document document, ScoreDoc scoreDoc);
 
+    /**
+     * Returns {@code true} if all the regular columns are stored in the index, so the {@link Row}s can be read from the
+     * index instead of from Cassandra, {@code false} otherwise.
+     *
+     * @return {@code true} if all the regular columns are stored in the index, {@code false} otherwise.
+     */
+    public boolean isCovering()
+    {
+        return storedCellsMapper.isCovering();
+    }
+
+    /**
+     * Returns {@code true} if the specified field has doc values in the index, {@code false} otherwise.
+     *
+     * @param field A field name.
+     * @return {@code true} if the specified field has doc values in the index, {@code false} otherwise.
+     */
+    public boolean hasDocValues(String field)
+    {
+        return docValuesMapper.hasDocValues(field);
+    }
+
 }
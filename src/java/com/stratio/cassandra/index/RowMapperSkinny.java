@@ -19,6 +19,7 @@ import com.stratio.cassandra.index.schema.Columns;
 import com.stratio.cassandra.index.schema.Schema;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.db.ArrayBackedSortedColumns;
 import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.DataRange;
 import org.apache.cassandra.db.DecoratedKey;
@@ -69,21 +70,24 @@ public class RowMapperSkinny extends RowMapper
     public Document document(Row row)
     {
         DecoratedKey partitionKey = row.key;
-        Document document = new Document();
+        Document document = emptyDocument();
         tokenMapper.addFields(document, partitionKey);
         partitionKeyMapper.addFields(document, partitionKey);
-        schema.addFields(document, columns(row));
+        Columns columns = columns(row);
+        schema.addFields(document, columns);
+        docValuesMapper.addFields(document, columns);
+        storedCellsMapper.addFields(document, row);
+        expirationMapper.addFields(document, row);
         return document;
     }
 
     /**
-     * Returns the Lucene {@link Sort} to get {@link Document}s in the same order that is used in Cassandra.
-     *
-     * @return The Lucene {@link Sort} to get {@link Document}s in the same order that is used in Cassandra.
+     * {@inheritDoc}
      */
-    public Sort sort()
+    @Override
+    public Sort sort(boolean sortedKeyDocValues)
     {
-        return new Sort(tokenMapper.sortFields());
+        return new Sort(tokenMapper.sortFields(sortedKeyDocValues));
     }
 
     /**
@@ -104,6 +108,15 @@ public class RowMapperSkinny extends RowMapper
         return metadata.comparator.makeCellName(columnDefinition.name.bytes);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Row emptyRow(SearchResult searchResult, long timestamp)
+    {
+        return new Row(searchResult.getPartitionKey(), ArrayBackedSortedColumns.factory.create(metadata));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -117,6 +130,7 @@ public class RowMapperSkinny extends RowMapper
     public SearchResult searchResult(Document document, ScoreDoc scoreDoc)
     {
         DecoratedKey partitionKey = partitionKeyMapper.partitionKey(document);
-        return new SearchResult(partitionKey, null, scoreDoc);
+        ColumnFamily storedColumnFamily = storedCellsMapper.columnFamily(document);
+        return new SearchResult(partitionKey, null, scoreDoc, storedColumnFamily);
     }
 }
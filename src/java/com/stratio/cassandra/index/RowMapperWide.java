@@ -31,8 +31,11 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.apache.lucene.search.BooleanClause.Occur.MUST;
 import static org.apache.lucene.search.BooleanClause.Occur.SHOULD;
@@ -44,12 +47,26 @@ import static org.apache.lucene.search.BooleanClause.Occur.SHOULD;
  */
 public class RowMapperWide extends RowMapper
 {
+    /**
+     * The max difference in microseconds between the write time of the cells of a complete row and the operation time
+     * to consider it a fresh write, which can be indexed without reading it when fast insert indexing is enabled. This
+     * discards replays and backdated writes, but not the reordering of concurrent writes within the window.
+     */
+    static final long FRESH_WRITE_WINDOW_MICROS = TimeUnit.SECONDS.toMicros(1);
+
     /** The clustering key mapper. */
     private final ClusteringKeyMapper clusteringKeyMapper;
 
     /** The full key mapper. */
     private final FullKeyMapper fullKeyMapper;
 
+    /**
+     * The regular columns, except the indexed one, or {@code null} if any of them is a collection. A written row must
+     * contain all of them, and not only the mapped ones, to be indexed without reading it, because the stored cells and
+     * the expiration time of its document depend on all of its columns.
+     */
+    private final Set<ColumnDefinition> regularColumns;
+
     /**
      * Builds a new {@link RowMapperWide} for the specified column family metadata, indexed column definition and {@link
      * Schema}.
@@ -63,6 +80,34 @@ public class RowMapperWide extends RowMapper
         super(metadata, columnDefinition, schema);
         this.clusteringKeyMapper = ClusteringKeyMapper.instance(metadata, schema);
         this.fullKeyMapper = FullKeyMapper.instance(partitionKeyMapper, clusteringKeyMapper);
+        this.regularColumns = regularColumns(metadata, columnDefinition);
+    }
+
+    /**
+     * Returns the regular columns of the specified column family, except the indexed one, or {@code null} if any of
+     * them is a collection. Collections are excluded because an update can modify them without containing all their
+     * elements.
+     *
+     * @param metadata         The indexed column family metadata.
+     * @param columnDefinition The indexed column definition.
+     * @return The regular columns of {@code metadata} except {@code columnDefinition}, or {@code null} if any of them
+     * is a collection.
+     */
+    private static Set<ColumnDefinition> regularColumns(CFMetaData metadata, ColumnDefinition columnDefinition)
+    {
+        Set<ColumnDefinition> columnDefinitions = new HashSet<>();
+        for (ColumnDefinition regularColumn : metadata.regularColumns())
+        {
+            if (!regularColumn.equals(columnDefinition))
+            {
+                if (regularColumn.type.isCollection())
+                {
+                    return null;
+                }
+                columnDefinitions.add(regularColumn);
+            }
+        }
+        return columnDefinitions;
     }
 
     /**
@@ -87,24 +132,27 @@ public class RowMapperWide extends RowMapper
         DecoratedKey partitionKey = row.key;
         CellName clusteringKey = clusteringKeyMapper.clusteringKey(row);
 
-        Document document = new Document();
+        Document document = emptyDocument();
         tokenMapper.addFields(document, partitionKey);
         partitionKeyMapper.addFields(document, partitionKey);
         clusteringKeyMapper.addFields(document, clusteringKey);
         fullKeyMapper.addFields(document, partitionKey, clusteringKey);
-        schema.addFields(document, columns(row));
+        Columns columns = columns(row);
+        schema.addFields(document, columns);
+        docValuesMapper.addFields(document, columns);
+        storedCellsMapper.addFields(document, row);
+        expirationMapper.addFields(document, row);
         return document;
     }
 
     /**
-     * Returns the Lucene {@link Sort} to get {@link Document}s in the same order that is used in Cassandra.
-     *
-     * @return The Lucene {@link Sort} to get {@link Document}s in the same order that is used in Cassandra.
+     * {@inheritDoc}
      */
-    public Sort sort()
+    @Override
+    public Sort sort(boolean sortedKeyDocValues)
     {
-        SortField[] partitionKeySort = tokenMapper.sortFields();
-        SortField[] clusteringKeySort = clusteringKeyMapper.sortFields();
+        SortField[] partitionKeySort = tokenMapper.sortFields(sortedKeyDocValues);
+        SortField[] clusteringKeySort = clusteringKeyMapper.sortFields(sortedKeyDocValues);
         return new Sort(ArrayUtils.addAll(partitionKeySort, clusteringKeySort));
     }
 
@@ -118,6 +166,17 @@ public class RowMapperWide extends RowMapper
         return clusteringKeyMapper.makeCellName(clusteringKey, columnDefinition);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Row emptyRow(SearchResult searchResult, long timestamp)
+    {
+        ColumnFamily columnFamily = ArrayBackedSortedColumns.factory.create(metadata);
+        columnFamily.addColumn(searchResult.getClusteringKey(), ByteBufferUtil.EMPTY_BYTE_BUFFER, timestamp);
+        return new Row(searchResult.getPartitionKey(), columnFamily);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -255,6 +314,18 @@ public class RowMapperWide extends RowMapper
         return clusteringKeyMapper.columnSlices(clusteringKeys);
     }
 
+    /**
+     * Returns the sorted and non overlapping {@link ColumnSlice}s for selecting the logic CQL3 rows in the specified
+     * clustering key ranges.
+     *
+     * @param ranges The last clustering key of each range, mapped by the first clustering key of the range.
+     * @return The {@link ColumnSlice}s for selecting the logic CQL3 rows in {@code ranges}.
+     */
+    public ColumnSlice[] columnSlices(Map<CellName, CellName> ranges)
+    {
+        return clusteringKeyMapper.columnSlices(ranges);
+    }
+
     /**
      * Returns the logical CQL3 column families contained in the specified physical {@link ColumnFamily}.
      *
@@ -266,6 +337,77 @@ public class RowMapperWide extends RowMapper
         return clusteringKeyMapper.splitRows(columnFamily);
     }
 
+    /**
+     * Returns the logical CQL3 rows contained in the specified physical {@link ColumnFamily} if all of them are
+     * complete, so they can be indexed without reading them from the storage engine, or {@code null} otherwise. A row
+     * is complete if it contains its row marker and a cell, maybe deleted, for each of the regular columns. Requiring
+     * all the columns, and not only the mapped ones, ensures that the stored cells and the expiration time of the
+     * indexed rows are the same as those of the stored rows.
+     * <p/>
+     * The rows are also required to be fresh writes, that is, all their cells must have been written within {@link
+     * #FRESH_WRITE_WINDOW_MICROS} of the operation time. Otherwise, as in hinted handoff and commit log replays or in
+     * client backdated writes, the written rows could be shadowed by stored ones having a greater write time stamp.
+     * This doesn't make the returned rows the ones kept by Cassandra: two concurrent writes of the same row within the
+     * window can be applied out of order, and then Cassandra keeps the newer cells while the index gets the older ones
+     * until the row is written again or the index is rebuilt. That's why this is only used with the lossy fast insert
+     * indexing mode.
+     *
+     * @param columnFamily A physical {@link ColumnFamily}.
+     * @param timestamp    The operation time stamp in milliseconds.
+     * @return The logical CQL3 rows contained in {@code columnFamily} if all of them are complete, {@code null}
+     * otherwise.
+     */
+    public Map<CellName, ColumnFamily> completeRows(ColumnFamily columnFamily, long timestamp)
+    {
+        if (regularColumns == null || !columnFamily.deletionInfo().isLive())
+        {
+            return null;
+        }
+
+        for (Cell cell : columnFamily)
+        {
+            if (!clusteringKeyMapper.isClusteringKey(cell.name()))
+            {
+                return null; // Static cell, or row without marker
+            }
+            break;
+        }
+
+        long now = TimeUnit.MILLISECONDS.toMicros(timestamp);
+        Map<CellName, ColumnFamily> rows = clusteringKeyMapper.splitRows(columnFamily);
+        if (rows.size() != clusteringKeys(columnFamily).size())
+        {
+            return null; // Some rows have no marker
+        }
+
+        for (Map.Entry<CellName, ColumnFamily> entry : rows.entrySet())
+        {
+            ColumnFamily row = entry.getValue();
+            if (!row.getColumn(entry.getKey()).isLive(timestamp))
+            {
+                return null; // Deleted row marker
+            }
+            Set<ColumnDefinition> found = new HashSet<>(regularColumns.size());
+            for (Cell cell : row)
+            {
+                if (Math.abs(cell.timestamp() - now) > FRESH_WRITE_WINDOW_MICROS)
+                {
+                    return null; // Out of order write
+                }
+                ColumnDefinition columnDefinition = metadata.getColumnDefinition(cell.name());
+                if (columnDefinition != null && regularColumns.contains(columnDefinition))
+                {
+                    found.add(columnDefinition);
+                }
+            }
+            if (found.size() < regularColumns.size())
+            {
+                return null;
+            }
+        }
+        return rows;
+    }
+
     public String toString(CellName cellName)
     {
         return clusteringKeyMapper.toString(cellName);
@@ -276,6 +418,7 @@ public class RowMapperWide extends RowMapper
     {
         DecoratedKey partitionKey = partitionKeyMapper.partitionKey(document);
         CellName clusteringKey = clusteringKeyMapper.clusteringKey(document);
-        return new SearchResult(partitionKey, clusteringKey, scoreDoc);
+        ColumnFamily storedColumnFamily = storedCellsMapper.columnFamily(document);
+        return new SearchResult(partitionKey, clusteringKey, scoreDoc, storedColumnFamily);
     }
 }
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.query.Search;
+import com.stratio.cassandra.index.schema.Columns;
+import org.apache.cassandra.db.Row;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Class for combining the partial results of several local index queries into the top-k {@link Row}s of a {@link
+ * Search}.
+ * <p/>
+ * The partial results are made of runs of {@link Row}s sorted by Cassandra's natural order, one per queried token
+ * range. These runs are merged in a streaming fashion, dropping duplicates, and the merged stream is fed into a bounded
+ * priority queue retaining only the best {@link Row}s according to the {@link Search}'s order. This way the required
+ * memory is proportional to the query limit, not to the number of collected {@link Row}s. The sort values of each
+ * {@link Row}, that is, its score when sorting by relevance or its decoded columns when sorting by fields, are
+ * extracted only once, and then the candidates are compared by those values.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RowMerger
+{
+    /** The {@link RowMapper} of the indexed column family. */
+    private final RowMapper rowMapper;
+
+    /** The comparator based on Cassandra's natural order. */
+    private final RowComparator naturalComparator;
+
+    /** The comparator based on the {@link Search} order. */
+    private final RowComparator searchComparator;
+
+    /** The comparator based on the {@link Search} sort fields, or {@code null} if it doesn't sort by fields. */
+    private final RowComparatorSorting sortingComparator;
+
+    /** If the {@link Search} sorts the {@link Row}s by relevance. */
+    private final boolean usesRelevance;
+
+    /** If the {@link Search} sorts the {@link Row}s by relevance or by any field. */
+    private final boolean usesRelevanceOrSorting;
+
+    /**
+     * Builds a new {@link RowMerger} for the specified {@link Search}.
+     *
+     * @param rowService The used {@link RowService}.
+     * @param search     The {@link Search} whose results are going to be merged.
+     */
+    public RowMerger(RowService rowService, Search search)
+    {
+        this(rowService.rowMapper, rowService.comparator(search), search);
+    }
+
+    /**
+     * Builds a new {@link RowMerger} for the specified {@link Search}, using the specified {@link RowMapper} and {@link
+     * RowComparator}.
+     *
+     * @param rowMapper        The {@link RowMapper} of the indexed column family.
+     * @param searchComparator The comparator based on the {@link Search} order.
+     * @param search           The {@link Search} whose results are going to be merged.
+     */
+    RowMerger(RowMapper rowMapper, RowComparator searchComparator, Search search)
+    {
+        this.rowMapper = rowMapper;
+        this.searchComparator = searchComparator;
+        sortingComparator = searchComparator instanceof RowComparatorSorting
+                            ? (RowComparatorSorting) searchComparator
+                            : null;
+        naturalComparator = rowMapper.naturalComparator();
+        usesRelevance = !search.usesSorting() && search.usesRelevance();
+        usesRelevanceOrSorting = search.usesRelevanceOrSorting();
+    }
+
+    /**
+     * Returns the name of the {@link RowComparator} used for sorting the merged {@link Row}s.
+     *
+     * @return The name of the {@link RowComparator} used for sorting the merged {@link Row}s.
+     */
+    public String getComparatorName()
+    {
+        return searchComparator.getClass().getSimpleName();
+    }
+
+    /**
+     * Returns the first {@code limit} distinct {@link Row}s of the specified partial results, sorted according to the
+     * {@link Search}.
+     *
+     * @param rows  The partial results to be merged.
+     * @param limit The max number of {@link Row}s to be returned.
+     * @return The first {@code limit} distinct {@link Row}s of the specified partial results.
+     */
+    public List<Row> merge(List<Row> rows, int limit)
+    {
+        if (limit <= 0 || rows.isEmpty())
+        {
+            return new ArrayList<>(0);
+        }
+
+        Run merged = new MergedRun(runs(rows), naturalComparator);
+
+        // Without relevance nor sorting the natural order is the search order
+        if (!usesRelevanceOrSorting)
+        {
+            List<Row> result = new ArrayList<>(Math.min(limit, rows.size()));
+            Row row;
+            while (result.size() < limit && (row = merged.next()) != null)
+            {
+                result.add(row);
+            }
+            return result;
+        }
+
+        // Retain the best rows, with the worst of them in the head of the queue
+        Comparator<Candidate> comparator = new CandidateComparator();
+        int capacity = Math.min(limit, rows.size()) + 1;
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(capacity, Collections.reverseOrder(comparator));
+        Row row;
+        while ((row = merged.next()) != null)
+        {
+            Candidate candidate = new Candidate(row,
+                                                usesRelevance ? RowService.score(rowMapper, row) : null,
+                                                sortingComparator == null ? null : sortingComparator.sortKey(row));
+            if (queue.size() < limit)
+            {
+                queue.add(candidate);
+            }
+            else if (comparator.compare(candidate, queue.peek()) < 0)
+            {
+                queue.poll();
+                queue.add(candidate);
+            }
+        }
+
+        Row[] result = new Row[queue.size()];
+        for (int i = result.length - 1; i >= 0; i--)
+        {
+            result[i] = queue.poll().row;
+        }
+        List<Row> list = new ArrayList<>(result.length);
+        Collections.addAll(list, result);
+        return list;
+    }
+
+    /**
+     * Splits the specified {@link Row}s into its maximal runs sorted by Cassandra's natural order.
+     *
+     * @param rows A list of {@link Row}s.
+     * @return The sorted runs contained in {@code rows}.
+     */
+    private List<Run> runs(List<Row> rows)
+    {
+        List<Run> runs = new ArrayList<>();
+        int start = 0;
+        Row previous = null;
+        int i = 0;
+        for (Row row : rows)
+        {
+            if (previous != null && naturalComparator.compare(previous, row) > 0)
+            {
+                runs.add(new ListRun(rows.subList(start, i)));
+                start = i;
+            }
+            previous = row;
+            i++;
+        }
+        runs.add(new ListRun(rows.subList(start, i)));
+        return runs;
+    }
+
+    /**
+     * A sorted stream of {@link Row}s.
+     */
+    private static interface Run
+    {
+        /**
+         * Returns the next {@link Row}, or {@code null} if there are no more {@link Row}s.
+         *
+         * @return The next {@link Row}, or {@code null} if there are no more {@link Row}s.
+         */
+        Row next();
+    }
+
+    /**
+     * A {@link Run} backed by a list of sorted {@link Row}s.
+     */
+    private static class ListRun implements Run
+    {
+        private final Iterator<Row> iterator;
+
+        ListRun(List<Row> rows)
+        {
+            iterator = rows.iterator();
+        }
+
+        @Override
+        public Row next()
+        {
+            return iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+
+    /**
+     * A {@link Run} merging several {@link Run}s and dropping the duplicated {@link Row}s.
+     */
+    private static class MergedRun implements Run
+    {
+        private final Comparator<Row> comparator;
+        private final PriorityQueue<Head> heads;
+        private final Run single;
+        private Row last;
+
+        MergedRun(List<Run> runs, final Comparator<Row> comparator)
+        {
+            this.comparator = comparator;
+            if (runs.size() == 1)
+            {
+                single = runs.get(0);
+                heads = null;
+            }
+            else
+            {
+                single = null;
+                heads = new PriorityQueue<>(runs.size(), new Comparator<Head>()
+                {
+                    @Override
+                    public int compare(Head head1, Head head2)
+                    {
+                        return comparator.compare(head1.row, head2.row);
+                    }
+                });
+                for (Run run : runs)
+                {
+                    Row row = run.next();
+                    if (row != null)
+                    {
+                        heads.add(new Head(row, run));
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Row next()
+        {
+            Row row;
+            do
+            {
+                row = single == null ? nextMerged() : single.next();
+            } while (row != null && last != null && comparator.compare(last, row) == 0);
+            last = row;
+            return row;
+        }
+
+        private Row nextMerged()
+        {
+            Head head = heads.poll();
+            if (head == null)
+            {
+                return null;
+            }
+            Row row = head.row;
+            Row next = head.run.next();
+            if (next != null)
+            {
+                head.row = next;
+                heads.add(head);
+            }
+            return row;
+        }
+    }
+
+    /**
+     * The current head of a {@link Run}.
+     */
+    private static class Head
+    {
+        private Row row;
+        private final Run run;
+
+        Head(Row row, Run run)
+        {
+            this.row = row;
+            this.run = run;
+        }
+    }
+
+    /**
+     * A {@link Row} candidate to be returned, with its score if it's going to be sorted by relevance, or its sort key if
+     * it's going to be sorted by fields.
+     */
+    private static class Candidate
+    {
+        private final Row row;
+        private final Float score;
+        private final Columns sortKey;
+
+        Candidate(Row row, Float score, Columns sortKey)
+        {
+            this.row = row;
+            this.score = score;
+            this.sortKey = sortKey;
+        }
+    }
+
+    /**
+     * {@link Comparator} for {@link Candidate}s, putting the best ones first. Ties are resolved using Cassandra's
+     * natural order.
+     */
+    private class CandidateComparator implements Comparator<Candidate>
+    {
+        @Override
+        public int compare(Candidate candidate1, Candidate candidate2)
+        {
+            int comp;
+            if (usesRelevance)
+            {
+                comp = candidate2.score.compareTo(candidate1.score);
+            }
+            else if (sortingComparator != null)
+            {
+                comp = sortingComparator.compare(candidate1.sortKey, candidate2.sortKey);
+            }
+            else
+            {
+                comp = searchComparator.compare(candidate1.row, candidate2.row);
+            }
+            return comp != 0 ? comp : naturalComparator.compare(candidate1.row, candidate2.row);
+        }
+    }
+}
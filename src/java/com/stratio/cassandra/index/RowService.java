@@ -15,6 +15,9 @@
  */
 package com.stratio.cassandra.index;
 
+import com.google.common.hash.Hashing;
+import com.stratio.cassandra.index.query.Aggregation;
+import com.stratio.cassandra.index.query.AggregationResults;
 import com.stratio.cassandra.index.query.Search;
 import com.stratio.cassandra.index.schema.Column;
 import com.stratio.cassandra.index.schema.Columns;
@@ -22,6 +25,7 @@ import com.stratio.cassandra.index.schema.Schema;
 import com.stratio.cassandra.index.util.Log;
 import com.stratio.cassandra.index.util.TaskQueue;
 import com.stratio.cassandra.index.util.TimeCounter;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
 import org.apache.cassandra.cql3.ColumnIdentifier;
@@ -29,12 +33,28 @@ import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.sstable.SSTableReader;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryWrapperFilter;
 import org.apache.lucene.search.Sort;
 
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class for mapping rows between Cassandra and Lucene.
@@ -43,21 +63,34 @@ import java.util.*;
  */
 public abstract class RowService
 {
+    /** The commit user data key of the fingerprints of the base table SSTables contained in an index snapshot. */
+    private static final String SNAPSHOT_SSTABLES_KEY = "snapshot_sstables";
 
     protected final ColumnFamilyStore baseCfs;
     protected final RowMapper rowMapper;
     protected final CFMetaData metadata;
     protected final ColumnIdentifier indexedColumnName;
     protected final Schema schema;
-    protected final LuceneIndex luceneIndex;
+    protected final ShardedLuceneIndex luceneIndex;
+    protected final RowIndexMetrics metrics;
+    protected final boolean fastInsertIndexing;
+    protected final RowIndexConfig config;
 
-    /**
-     * The max number of rows to be read per iteration
-     */
-    private static final int MAX_PAGE_SIZE = 100000;
-    private static final int FILTERING_PAGE_SIZE = 1000;
 
-    private TaskQueue indexQueue;
+    private TaskQueue<PendingWrite> indexQueue;
+
+    private final ExecutorService readExecutor;
+
+    /** The executor periodically purging the documents of the expired rows, {@code null} if purging is disabled. */
+    private final ScheduledExecutorService purgeExecutor;
+
+    private final RangeFilterCache rangeFilterCache;
+
+    private final SearchCache searchCache;
+
+    private final IndexExpressionMapper indexExpressionMapper;
+
+    private final SearchPageSizer pageSizer;
 
     /**
      * Returns a new {@code RowService}.
@@ -72,28 +105,95 @@ public abstract class RowService
         this.metadata = baseCfs.metadata;
         this.indexedColumnName = columnDefinition.name;
 
-        RowIndexConfig config = new RowIndexConfig(metadata, columnDefinition.getIndexOptions());
+        this.config = new RowIndexConfig(metadata, columnDefinition.getIndexOptions());
 
         this.schema = config.getSchema();
+        this.fastInsertIndexing = config.isFastInsertIndexing();
+        this.metrics = new RowIndexMetrics(metadata.ksName, metadata.cfName, columnDefinition.getIndexName());
         this.rowMapper = RowMapper.build(metadata, columnDefinition, schema);
 
-        this.luceneIndex = new LuceneIndex(rowMapper,
-                                           config.getPath(),
-                                           config.getRefreshSeconds(),
-                                           config.getRamBufferMB(),
-                                           config.getMaxMergeMB(),
-                                           config.getMaxCachedMB(),
-                                           schema.analyzer());
+        this.searchCache = new SearchCache(config.getSearchCacheSize(), config.getSearchCacheHits());
+        this.luceneIndex = new ShardedLuceneIndex(rowMapper,
+                                                  baseCfs.partitioner,
+                                                  config.getShards(),
+                                                  config.getPath(),
+                                                  config.getRefreshSeconds(),
+                                                  config.getMinRefreshSeconds(),
+                                                  config.getRamBufferMB(),
+                                                  config.getMaxMergeMB(),
+                                                  config.getMaxCachedMB(),
+                                                  config.getSearchThreads(),
+                                                  config.isUseCompoundFile(),
+                                                  schema.analyzer(),
+                                                  new RowIndexCodec(schema, config.getKeyPostingsFormat()),
+                                                  metrics,
+                                                  searchCache);
+
+        this.rangeFilterCache = new RangeFilterCache(config.getRangeFilterCacheSize());
+        this.indexExpressionMapper = new IndexExpressionMapper(metadata, schema);
+        this.pageSizer = new SearchPageSizer(config.getMaxSearchPageSize());
+        metrics.registerSurvivalRatio(pageSizer);
+        metrics.registerLuceneIndex(luceneIndex);
+        metrics.registerSearchCache(searchCache);
 
         int indexingThreads = config.getIndexingThreads();
         if (indexingThreads > 0)
         {
-            this.indexQueue = new TaskQueue(indexingThreads, config.getIndexingQueuesSize());
+            this.indexQueue = new TaskQueue<>(indexingThreads,
+                                              config.getIndexingQueuesSize(),
+                                              config.getIndexingBatchSize(),
+                                              config.getIndexingBatchMillis(),
+                                              new TaskQueue.BatchProcessor<PendingWrite>()
+                                              {
+                                                  @Override
+                                                  public void process(List<PendingWrite> writes)
+                                                  {
+                                                      write(writes);
+                                                  }
+                                              },
+                                              metrics.indexingBatchSize,
+                                              metrics.indexingQueueWait);
+            metrics.registerIndexingQueue(indexQueue);
         }
         else
         {
             this.indexQueue = null;
         }
+
+        int readThreads = config.getReadThreads();
+        if (readThreads > 0)
+        {
+            this.readExecutor = Executors.newFixedThreadPool(readThreads, new NamedThreadFactory("LuceneRead"));
+        }
+        else
+        {
+            this.readExecutor = null;
+        }
+
+        int expiredPurgeSeconds = config.getExpiredPurgeSeconds();
+        if (expiredPurgeSeconds > 0)
+        {
+            this.purgeExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("LucenePurge"));
+            purgeExecutor.scheduleWithFixedDelay(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        purgeExpired();
+                    }
+                    catch (Exception e)
+                    {
+                        Log.error(e, "Error while purging expired rows");
+                    }
+                }
+            }, expiredPurgeSeconds, expiredPurgeSeconds, TimeUnit.SECONDS);
+        }
+        else
+        {
+            this.purgeExecutor = null;
+        }
     }
 
     /**
@@ -126,6 +226,55 @@ public abstract class RowService
         return schema;
     }
 
+    /**
+     * Returns the {@link Search} represented by the specified JSON {@code String}, reusing the already parsed ones.
+     *
+     * @param json A JSON {@code String} representing a {@link Search}.
+     * @return The {@link Search} represented by {@code json}.
+     */
+    public final Search search(String json)
+    {
+        return searchCache.search(json);
+    }
+
+    /**
+     * Returns {@code true} if all the specified {@link IndexExpression}s can be exactly checked in the index, without
+     * reading the rows, {@code false} otherwise.
+     *
+     * @param expressions A list of {@link IndexExpression}s.
+     * @return {@code true} if all the {@code expressions} can be exactly checked in the index, {@code false} otherwise.
+     */
+    public final boolean isExact(List<IndexExpression> expressions)
+    {
+        return indexExpressionMapper.isExact(expressions);
+    }
+
+    /**
+     * Validates the {@link com.stratio.cassandra.index.query.Aggregation}s of the specified {@link Search}, if any,
+     * which are computed over the doc values of single valued columns, so they are rejected for collection and text
+     * columns, and for indexes created before the introduction of column doc values until they are rebuilt.
+     *
+     * @param search A {@link Search}.
+     */
+    public final void validateAggregations(Search search)
+    {
+        if (search.usesAggregations())
+        {
+            for (Aggregation aggregation : search.getAggregations())
+            {
+                if (!rowMapper.hasDocValues(aggregation.getField()))
+                {
+                    throw new IllegalArgumentException(String.format("Aggregations require single valued non text " +
+                                                                     "columns, but found %s", aggregation.getField()));
+                }
+            }
+            if (!luceneIndex.hasColumnDocValues())
+            {
+                throw new IllegalArgumentException("Aggregations require rebuilding the index to add column doc values");
+            }
+        }
+    }
+
     /**
      * Returns the names of the document fields to be loaded when reading a Lucene index.
      *
@@ -133,6 +282,14 @@ public abstract class RowService
      */
     protected abstract Set<String> fieldsToLoad();
 
+    /**
+     * Returns the names of the binary doc values to be loaded instead of the stored fields returned by {@link
+     * #fieldsToLoad()} when the index format supports them.
+     *
+     * @return The names of the binary doc values to be loaded.
+     */
+    protected abstract Set<String> docValuesToLoad();
+
     /**
      * Indexes the logical {@link Row} identified by the specified key and column family using the specified time stamp.
      * The must be read from the {@link ColumnFamilyStore} because it could exist previously having more columns than
@@ -143,65 +300,95 @@ public abstract class RowService
      * @param columnFamily A {@link ColumnFamily} with a single common cluster key.
      * @param timestamp    The insertion time.
      */
-    protected void index(final ByteBuffer key, final ColumnFamily columnFamily, final long timestamp)
+    protected void index(ByteBuffer key, ColumnFamily columnFamily, long timestamp)
     {
+        PendingWrite write = new PendingWrite(key, columnFamily, timestamp);
         if (indexQueue == null)
         {
-            indexInner(key, columnFamily, timestamp);
+            write(Collections.singletonList(write));
         }
         else
         {
-            indexQueue.submitAsynchronous(key, new Runnable()
+            indexQueue.submitAsynchronous(key, write);
+        }
+    }
+
+    /**
+     * Maps the specified writes into a single {@link IndexWriteBatch} and applies it, so the writes of each shard are
+     * written to Lucene at once. A write that can't be mapped is logged, counted in the indexing errors metric and
+     * discarded without discarding the others. The time spent mapping and applying the whole batch is recorded in the
+     * indexing latency metric.
+     *
+     * @param writes The writes to be indexed, in order.
+     */
+    private void write(List<PendingWrite> writes)
+    {
+        long startTime = System.nanoTime();
+        IndexWriteBatch batch = new IndexWriteBatch(luceneIndex);
+        for (PendingWrite write : writes)
+        {
+            try
             {
-                @Override
-                public void run()
+                if (write.columnFamily == null)
                 {
-                    indexInner(key, columnFamily, timestamp);
+                    deleteInner(write.partitionKey, batch);
                 }
-            });
+                else
+                {
+                    indexInner(write.key, write.columnFamily, write.timestamp, batch);
+                }
+            }
+            catch (RuntimeException e)
+            {
+                Log.error(e, "Error while mapping write %s", write);
+                metrics.indexingErrors.inc();
+            }
         }
+        batch.apply();
+        metrics.indexingLatency.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
     }
 
     /**
-     * Puts in the Lucene index the Cassandra's the row identified by the specified partition key and the clustering
-     * keys contained in the specified {@link ColumnFamily}.
+     * Adds to the specified {@link IndexWriteBatch} the writes putting in the Lucene index the Cassandra's the row
+     * identified by the specified partition key and the clustering keys contained in the specified {@link
+     * ColumnFamily}.
      *
      * @param key          The partition key.
      * @param columnFamily The column family containing the clustering keys.
      * @param timestamp    The operation time stamp.
+     * @param batch        The {@link IndexWriteBatch} where the writes are added.
      */
-    protected abstract void indexInner(ByteBuffer key, ColumnFamily columnFamily, long timestamp);
+    protected abstract void indexInner(ByteBuffer key,
+                                       ColumnFamily columnFamily,
+                                       long timestamp,
+                                       IndexWriteBatch batch);
 
     /**
      * Deletes the partition identified by the specified partition key. This operation is performed asynchronously.
      *
      * @param partitionKey The partition key identifying the partition to be deleted.
      */
-    public void delete(final DecoratedKey partitionKey)
+    public void delete(DecoratedKey partitionKey)
     {
+        PendingWrite write = new PendingWrite(partitionKey);
         if (indexQueue == null)
         {
-            deleteInner(partitionKey);
+            write(Collections.singletonList(write));
         }
         else
         {
-            indexQueue.submitAsynchronous(partitionKey, new Runnable()
-            {
-                @Override
-                public void run()
-                {
-                    deleteInner(partitionKey);
-                }
-            });
+            indexQueue.submitAsynchronous(partitionKey, write);
         }
     }
 
     /**
-     * Deletes the partition identified by the specified partition key.
+     * Adds to the specified {@link IndexWriteBatch} the deletion of the partition identified by the specified partition
+     * key.
      *
      * @param partitionKey The partition key identifying the partition to be deleted.
+     * @param batch        The {@link IndexWriteBatch} where the deletion is added.
      */
-    protected abstract void deleteInner(DecoratedKey partitionKey);
+    protected abstract void deleteInner(DecoratedKey partitionKey, IndexWriteBatch batch);
 
     /**
      * Deletes all the {@link Document}s.
@@ -209,14 +396,96 @@ public abstract class RowService
     public final void truncate()
     {
         luceneIndex.truncate();
+        rangeFilterCache.invalidate();
     }
 
     /**
-     * Closes and removes all the index files.
+     * Stops the indexing threads, closes and removes all the index files and releases the index metrics. The running
+     * index writes, including the purge of expired rows, are waited for before closing the index.
      */
     public final void delete()
     {
+        if (purgeExecutor != null)
+        {
+            purgeExecutor.shutdown();
+            try
+            {
+                purgeExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                Log.error(e, "Interrupted while waiting for the expired rows purge");
+                throw new RuntimeException(e);
+            }
+        }
+        if (indexQueue != null)
+        {
+            indexQueue.shutdown();
+        }
+        if (readExecutor != null)
+        {
+            readExecutor.shutdownNow();
+        }
         luceneIndex.drop();
+        metrics.release();
+    }
+
+    /**
+     * Deletes all the {@link Document}s whose partition token is not contained in the specified token ranges, as it is
+     * needed when the node no longer owns some of the indexed data. The deletion is done once the pending writes have
+     * been indexed, with a single query for all the ranges. The shards not intersecting any of the ranges are emptied
+     * without evaluating the query.
+     *
+     * @param ranges The token ranges whose {@link Document}s are retained.
+     */
+    public final void cleanup(final Collection<Range<Token>> ranges)
+    {
+        final Query query = rowMapper.outOfRangesQuery(ranges);
+        if (query != null)
+        {
+            runAfterPendingWrites(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    luceneIndex.retain(ranges, query);
+                }
+            });
+        }
+    }
+
+    /**
+     * Deletes the {@link Document}s of all the rows expired by TTL, so the searches don't have to discard them after
+     * reading them. The deletion is done once the pending writes have been indexed.
+     */
+    public final void purgeExpired()
+    {
+        final Query query = rowMapper.expiredQuery((int) (System.currentTimeMillis() / 1000));
+        runAfterPendingWrites(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                luceneIndex.delete(query);
+            }
+        });
+    }
+
+    /**
+     * Runs the specified index modification after all the pending writes have been indexed.
+     *
+     * @param task An index modification.
+     */
+    private void runAfterPendingWrites(Runnable task)
+    {
+        if (indexQueue == null)
+        {
+            task.run();
+        }
+        else
+        {
+            indexQueue.submitSynchronous(task);
+        }
     }
 
     /**
@@ -242,7 +511,129 @@ public abstract class RowService
     }
 
     /**
-     * Returns the stored and indexed {@link Row}s satisfying the specified restrictions.
+     * Takes a snapshot of the index along with the specified snapshot of the base table. The pending changes are
+     * committed and the files of the resulting commit are hard linked into the base table snapshot directory. The
+     * fingerprints of the snapshotted base table SSTables are recorded in the snapshot, so an index restored from it
+     * doesn't need to index them again.
+     *
+     * @param snapshotName The name of the snapshot.
+     * @param sstables     The base table SSTables included in the snapshot.
+     */
+    public final void snapshot(String snapshotName, Collection<SSTableReader> sstables)
+    {
+        final File directory = new File(config.getSnapshotPath(snapshotName));
+        final Map<String, String> snapshotData = new HashMap<>();
+        snapshotData.put(SNAPSHOT_SSTABLES_KEY, fingerprints(sstables));
+        if (indexQueue == null)
+        {
+            luceneIndex.snapshot(directory, snapshotData);
+        }
+        else
+        {
+            indexQueue.submitSynchronous(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    luceneIndex.snapshot(directory, snapshotData);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the specified SSTables loaded by a refresh whose data is not contained in the index. If the index has
+     * been restored from a snapshot, these are the SSTables not included in the snapshot, such as those of the later
+     * incremental backups. Otherwise, these are all the specified SSTables.
+     *
+     * @param sstables The SSTables loaded by a refresh.
+     * @return The SSTables in {@code sstables} whose data is not contained in the index.
+     */
+    public Collection<SSTableReader> unindexedSSTables(Collection<SSTableReader> sstables)
+    {
+        return unindexedSSTables(luceneIndex.getCommitData(SNAPSHOT_SSTABLES_KEY), sstables);
+    }
+
+    /**
+     * Returns the specified SSTables whose fingerprints are not contained in the specified fingerprints, as they are
+     * recorded in an index snapshot.
+     *
+     * @param snapshotFingerprints The comma separated fingerprints of the SSTables of a snapshot, maybe {@code null}.
+     * @param sstables             The SSTables loaded by a refresh.
+     * @return The SSTables in {@code sstables} not contained in {@code snapshotFingerprints}.
+     */
+    static Collection<SSTableReader> unindexedSSTables(String snapshotFingerprints,
+                                                       Collection<SSTableReader> sstables)
+    {
+        if (snapshotFingerprints == null || snapshotFingerprints.isEmpty())
+        {
+            return sstables;
+        }
+        Set<String> fingerprints = new HashSet<>(Arrays.asList(snapshotFingerprints.split(",")));
+        List<SSTableReader> unindexed = new ArrayList<>();
+        for (SSTableReader sstable : sstables)
+        {
+            if (!fingerprints.contains(fingerprint(sstable)))
+            {
+                unindexed.add(sstable);
+            }
+        }
+        return unindexed;
+    }
+
+    /**
+     * Returns the comma separated fingerprints of the specified SSTables, to be recorded in an index snapshot.
+     *
+     * @param sstables The SSTables included in a snapshot.
+     * @return The comma separated fingerprints of {@code sstables}.
+     */
+    static String fingerprints(Collection<SSTableReader> sstables)
+    {
+        List<String> fingerprints = new ArrayList<>(sstables.size());
+        for (SSTableReader sstable : sstables)
+        {
+            fingerprints.add(fingerprint(sstable));
+        }
+        return StringUtils.join(fingerprints, ',');
+    }
+
+    /**
+     * Returns a fingerprint identifying the contents of the specified SSTable. It doesn't depend on the SSTable file
+     * names, because they are changed when the SSTables are loaded by a refresh.
+     *
+     * @param sstable A SSTable.
+     * @return A fingerprint identifying the contents of {@code sstable}.
+     */
+    static String fingerprint(SSTableReader sstable)
+    {
+        return Hashing.md5()
+                      .newHasher()
+                      .putLong(sstable.onDiskLength())
+                      .putLong(sstable.getMinTimestamp())
+                      .putLong(sstable.getMaxTimestamp())
+                      .putBytes(ByteBufferUtil.getArray(sstable.first.getKey()))
+                      .putBytes(ByteBufferUtil.getArray(sstable.last.getKey()))
+                      .hash()
+                      .toString();
+    }
+
+    /**
+     * Returns a {@link RowIndexBuilder} for building the index from the data in the specified SSTables using the
+     * configured number of build threads.
+     *
+     * @param indexName The name of the index.
+     * @param sstables  The SSTables containing the data to be indexed.
+     * @return A {@link RowIndexBuilder} for building the index from {@code sstables}.
+     */
+    public RowIndexBuilder indexBuilder(String indexName, Collection<SSTableReader> sstables)
+    {
+        return new RowIndexBuilder(baseCfs, indexName, sstables, config.getBuildThreads());
+    }
+
+    /**
+     * Returns the stored and indexed {@link Row}s satisfying the specified restrictions. If the {@link Search} has
+     * {@link com.stratio.cassandra.index.query.Aggregation}s, they are computed over all the matching documents, and
+     * their results are returned as the value of the indexed column of the first matching {@link Row}.
      *
      * @param search      The {@link Search} to be performed.
      * @param expressions A list of filtering {@link IndexExpression}s to be satisfied.
@@ -254,7 +645,7 @@ public abstract class RowService
     public final List<Row> search(Search search,
                                   List<IndexExpression> expressions,
                                   DataRange dataRange,
-                                  final int limit,
+                                  int limit,
                                   long timestamp)
     {
         Log.debug("Searching with search %s ", search);
@@ -270,59 +661,211 @@ public abstract class RowService
         searchTime.start();
 
         // Setup search arguments
-        Query rangeQuery = rowMapper.query(dataRange);
-        Query query = search.query(schema, rangeQuery);
+        Filter rangeFilter = rangeFilterCache.filter(rowMapper.query(dataRange));
+        Query query = search.query(schema, rangeFilter);
+        Query expressionsQuery = indexExpressionMapper.query(expressions);
+        if (expressionsQuery != null) // Discard documents not satisfying the mappable filtered expressions
+        {
+            query = new FilteredQuery(query, new QueryWrapperFilter(expressionsQuery));
+        }
+        query = new FilteredQuery(query, rowMapper.notExpiredFilter((int) (timestamp / 1000))); // Skip expired rows
         Sort sort = search.sort(schema);
         boolean usesRelevance = search.usesRelevance();
 
+        // Setup fields to be loaded, reading the keys from doc values if the index format supports them, and
+        // including stored cells if rows are going to be read from the index
+        Set<String> searchFieldsToLoad = new HashSet<>();
+        Set<String> searchDocValuesToLoad = new HashSet<>();
+        if (luceneIndex.hasKeyDocValues())
+        {
+            searchDocValuesToLoad.addAll(docValuesToLoad());
+        }
+        else
+        {
+            searchFieldsToLoad.addAll(fieldsToLoad());
+        }
+        if (rowMapper.isCovering())
+        {
+            searchFieldsToLoad.add(StoredCellsMapper.FIELD_NAME);
+        }
+
+        // Wait for the index changes to be visible if the search requires it
+        Double maxStalenessSeconds = search.getMaxStalenessSeconds();
+        if (maxStalenessSeconds != null)
+        {
+            luceneIndex.waitForRefresh(dataRange.keyRange(), maxStalenessSeconds);
+        }
+
+        // Compute the aggregations, if any, collecting just the first row to carry their results
+        AggregationResults aggregationResults = null;
+        SearchResult aggregatedDoc = null; // The first aggregated document, read with the aggregating searcher
+        if (search.usesAggregations())
+        {
+            if (!isExact(expressions))
+            {
+                throw new IllegalArgumentException("Aggregations require exactly mapped filtering expressions");
+            }
+            validateAggregations(search);
+            luceneTime.start();
+            AggregationCollector collector = new AggregationCollector(search.getAggregations(), schema);
+            aggregatedDoc = luceneIndex.aggregate(dataRange.keyRange(),
+                                                  query,
+                                                  collector,
+                                                  searchFieldsToLoad,
+                                                  searchDocValuesToLoad);
+            aggregationResults = collector.getResults();
+            luceneTime.stop();
+            sort = null;
+            usesRelevance = false;
+            limit = 1;
+        }
+
         // Setup search pagination
-        List<Row> rows = new LinkedList<>(); // The row list to be returned
+        ScoredRows rows = new ScoredRows(Math.min(limit, pageSizer.firstPageSize(limit))); // The rows to be returned
         SearchResult lastDoc = null; // The last search result
 
         // Paginate search collecting documents
         List<SearchResult> searchResults;
-        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        int pageSize = pageSizer.firstPageSize(limit);
         boolean maybeMore;
         do
         {
             // Search rows identifiers in Lucene
             luceneTime.start();
-            searchResults = luceneIndex.search(query, sort, lastDoc, pageSize, fieldsToLoad(), usesRelevance);
+            searchResults = luceneIndex.search(dataRange.keyRange(),
+                                               query,
+                                               sort,
+                                               lastDoc,
+                                               pageSize,
+                                               searchFieldsToLoad,
+                                               searchDocValuesToLoad,
+                                               usesRelevance);
             numDocs += searchResults.size();
             lastDoc = searchResults.isEmpty() ? null : searchResults.get(searchResults.size() - 1);
             luceneTime.stop();
 
             // Collect rows from Cassandra
             collectTime.start();
-            for (Row row : rows(searchResults, timestamp, usesRelevance))
+            ScoredRows pageRows = rowMapper.isCovering()
+                                  ? storedRows(searchResults, timestamp)
+                                  : rows(searchResults, timestamp);
+            for (int i = 0; i < pageRows.size(); i++)
             {
-                if (row != null && accepted(row, expressions))
+                Row row = pageRows.getRow(i);
+                if (accepted(row, expressions))
                 {
-                    rows.add(row);
+                    rows.add(row, pageRows.getScore(i));
                 }
             }
             collectTime.stop();
 
             // Setup next iteration
             maybeMore = searchResults.size() == pageSize;
-            pageSize = Math.min(Math.max(FILTERING_PAGE_SIZE, rows.size() - limit), MAX_PAGE_SIZE);
+            pageSize = pageSizer.nextPageSize(limit, numDocs, rows.size());
             numPages++;
 
             // Iterate while there are still documents to read and we don't have enough rows
         } while (maybeMore && rows.size() < limit);
 
-        sortTime.start();
-        Collections.sort(rows, comparator());
-        sortTime.stop();
+        pageSizer.update(numDocs, rows.size());
+        metrics.searchPages.update(numPages);
+        metrics.searchHits.update(numDocs);
+
+        // Add the scores to the returned rows as cells
+        List<Row> result = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++)
+        {
+            Row row = rows.getRow(i);
+            result.add(usesRelevance ? addIndexedColumn(row, timestamp, Float.toString(rows.getScore(i))) : row);
+        }
+
+        // The rows are already in the order of the hits, which is Cassandra's natural order unless the search sorts
+        // them by relevance or by fields. In that case they are sorted back into natural order, because the coordinator
+        // merges the responses of the replicas by key. Its time is recorded in the search sort time metric.
+        if (sort != null || usesRelevance)
+        {
+            sortTime.start();
+            Collections.sort(result, comparator());
+            sortTime.stop();
+        }
+
+        // Add the aggregation results to the first returned row, or to a row with just the primary key of the first
+        // aggregated document if the page has no rows because they have been deleted, or because their documents have
+        // been deleted by a refresh after the aggregation. No row is returned if there are no aggregated documents,
+        // even if the page has found documents added by a refresh after the aggregation.
+        if (aggregationResults != null)
+        {
+            if (aggregatedDoc == null)
+            {
+                result = Collections.emptyList();
+            }
+            else
+            {
+                String json = aggregationResults.toJson();
+                Row row = result.isEmpty() ? rowMapper.emptyRow(aggregatedDoc, timestamp) : result.get(0);
+                result = Collections.singletonList(addIndexedColumn(row, timestamp, json));
+            }
+        }
 
         searchTime.stop();
 
+        metrics.searchCollectTime.update(TimeUnit.NANOSECONDS.toMicros(collectTime.getNanoTime()));
+        metrics.searchSortTime.update(TimeUnit.NANOSECONDS.toMicros(sortTime.getNanoTime()));
+
         Log.debug("Lucene time: %s", luceneTime);
         Log.debug("Cassandra time: %s", collectTime);
         Log.debug("Sort time: %s", sortTime);
         Log.debug("Collected %d docs and %d rows in %d pages in %s", numDocs, rows.size(), numPages, searchTime);
 
-        return rows;
+        return result;
+    }
+
+    /**
+     * Executes the specified reads from Cassandra, concurrently if there are read threads, and returns their
+     * results in the same order.
+     *
+     * @param reads The reads to be executed.
+     * @param <T>   The type of the results of the reads.
+     * @return The results of {@code reads}.
+     */
+    protected <T> List<T> execute(List<Callable<T>> reads)
+    {
+        List<T> results = new ArrayList<>(reads.size());
+        try
+        {
+            if (readExecutor == null || reads.size() < 2)
+            {
+                for (Callable<T> read : reads)
+                {
+                    results.add(read.call());
+                }
+            }
+            else
+            {
+                // The first read is done by the calling thread while the others are done by the read threads
+                List<Future<T>> futures = new ArrayList<>(reads.size() - 1);
+                for (Callable<T> read : reads.subList(1, reads.size()))
+                {
+                    futures.add(readExecutor.submit(read));
+                }
+                results.add(reads.get(0).call());
+                for (Future<T> future : futures)
+                {
+                    results.add(future.get());
+                }
+            }
+        }
+        catch (ExecutionException e)
+        {
+            Log.error(e.getCause(), "Error while reading rows");
+            throw new RuntimeException(e.getCause());
+        }
+        catch (Exception e)
+        {
+            Log.error(e, "Error while reading rows");
+            throw new RuntimeException(e);
+        }
+        return results;
     }
 
     /**
@@ -404,12 +947,40 @@ public abstract class RowService
      *
      * @param searchResults The {@link SearchResult}s
      * @param timestamp     The time stamp to ignore deleted columns.
-     * @param usesRelevance If the search uses relevance.
-     * @return The {@link Row} identified by the specified {@link Document}s
+     * @return The {@link Row} identified by the specified {@link Document}s, with their scores, in the same order as
+     * the {@link SearchResult}s.
      */
-    protected abstract List<Row> rows(List<SearchResult> searchResults,
-                                      long timestamp,
-                                      boolean usesRelevance);
+    protected abstract ScoredRows rows(List<SearchResult> searchResults, long timestamp);
+
+    /**
+     * Returns the {@link Row}s stored in the index for the specified {@link SearchResult}s, using the specified time
+     * stamp to ignore expired columns. The {@link Row}s are not read from the storage engine, so they could be
+     * slightly out of date until the next index refresh.
+     *
+     * @param searchResults The {@link SearchResult}s
+     * @param timestamp     The time stamp to ignore expired columns.
+     * @return The {@link Row}s stored in the index for the specified {@link SearchResult}s, with their scores.
+     */
+    private ScoredRows storedRows(List<SearchResult> searchResults, long timestamp)
+    {
+        ScoredRows rows = new ScoredRows(searchResults.size());
+        for (SearchResult searchResult : searchResults)
+        {
+            ColumnFamily columnFamily = searchResult.getStoredColumnFamily();
+            if (columnFamily != null)
+            {
+                ColumnFamily cleanColumnFamily = cleanExpired(columnFamily, timestamp);
+                if (!cleanColumnFamily.hasColumns())
+                {
+                    continue; // Expired row
+                }
+                DecoratedKey partitionKey = searchResult.getPartitionKey();
+                Row row = new Row(partitionKey, cleanColumnFamily);
+                rows.add(row, searchResult.getScoreDoc().score);
+            }
+        }
+        return rows;
+    }
 
     /**
      * Returns a {@link ColumnFamily} composed by the non expired {@link Cell}s of the specified  {@link ColumnFamily}.
@@ -432,26 +1003,112 @@ public abstract class RowService
     }
 
     /**
-     * Adds to the specified {@link Row} the specified Lucene score column.
+     * Adds to the specified {@link Row} the specified value of the indexed column, such as the Lucene score or the
+     * aggregation results, replacing the previous value, if any.
      *
      * @param row       A {@link Row}.
-     * @param timestamp The score column timestamp.
-     * @param score     The score column value.
-     * @return The {@link Row} with the score.
+     * @param timestamp The indexed column timestamp.
+     * @param value     The indexed column value.
+     * @return The {@link Row} with the indexed column value.
      */
-    protected Row addScoreColumn(Row row, long timestamp, Float score)
+    private Row addIndexedColumn(Row row, long timestamp, String value)
+    {
+        return addIndexedColumn(rowMapper, row, timestamp, value);
+    }
+
+    /**
+     * Adds to the specified {@link Row} the specified value of the indexed column mapped by the specified {@link
+     * RowMapper}, replacing the previous value, if any.
+     *
+     * @param rowMapper The {@link RowMapper} of the indexed column family.
+     * @param row       A {@link Row}.
+     * @param timestamp The indexed column timestamp.
+     * @param value     The indexed column value.
+     * @return The {@link Row} with the indexed column value.
+     */
+    static Row addIndexedColumn(RowMapper rowMapper, Row row, long timestamp, String value)
     {
         ColumnFamily cf = row.cf;
         CellName cellName = rowMapper.makeCellName(cf);
-        ByteBuffer cellValue = UTF8Type.instance.decompose(score.toString());
+        ByteBuffer cellValue = UTF8Type.instance.decompose(value);
 
-        ColumnFamily dcf = ArrayBackedSortedColumns.factory.create(baseCfs.metadata);
+        ColumnFamily dcf = ArrayBackedSortedColumns.factory.create(rowMapper.metadata);
         dcf.addColumn(cellName, cellValue, timestamp);
-        dcf.addAll(row.cf);
+        dcf.delete(cf);
+        for (Cell cell : cf)
+        {
+            if (!cell.name().equals(cellName))
+            {
+                dcf.addColumn(cell);
+            }
+        }
 
         return new Row(row.key, dcf);
     }
 
+    /**
+     * Returns the value of the indexed column of the specified {@link Row}.
+     *
+     * @param row A {@link Row}.
+     * @return The value of the indexed column of the specified {@link Row}.
+     */
+    private String indexedValue(Row row)
+    {
+        return indexedValue(rowMapper, row);
+    }
+
+    /**
+     * Returns the value of the indexed column mapped by the specified {@link RowMapper} of the specified {@link Row}.
+     *
+     * @param rowMapper The {@link RowMapper} of the indexed column family.
+     * @param row       A {@link Row}.
+     * @return The value of the indexed column of the specified {@link Row}.
+     */
+    static String indexedValue(RowMapper rowMapper, Row row)
+    {
+        ColumnFamily cf = row.cf;
+        CellName cellName = rowMapper.makeCellName(cf);
+        Cell cell = cf.getColumn(cellName);
+        return UTF8Type.instance.compose(cell.value());
+    }
+
+    /**
+     * Merges the partial {@link AggregationResults} carried by the specified {@link Row}s, which are the results of the
+     * same aggregating {@link Search} in several nodes. The merged results are carried by the first {@link Row}.
+     *
+     * @param rows The {@link Row}s returned by an aggregating {@link Search}.
+     * @return A single {@link Row} carrying the merged {@link AggregationResults}, or no rows if there are none.
+     */
+    public List<Row> mergeAggregations(List<Row> rows)
+    {
+        return mergeAggregations(rowMapper, rows);
+    }
+
+    /**
+     * Merges the partial {@link AggregationResults} carried by the specified {@link Row}s in the indexed column mapped
+     * by the specified {@link RowMapper}. The merged results are carried by the first {@link Row}.
+     *
+     * @param rowMapper The {@link RowMapper} of the indexed column family.
+     * @param rows      The {@link Row}s returned by an aggregating {@link Search}.
+     * @return A single {@link Row} carrying the merged {@link AggregationResults}, or no rows if there are none.
+     */
+    static List<Row> mergeAggregations(RowMapper rowMapper, List<Row> rows)
+    {
+        if (rows.isEmpty())
+        {
+            return rows;
+        }
+        AggregationResults results = null;
+        for (Row row : rows)
+        {
+            AggregationResults rowResults = AggregationResults.fromJson(indexedValue(rowMapper, row));
+            results = results == null ? rowResults : results.merge(rowResults);
+        }
+        Row row = rows.get(0);
+        long timestamp = row.cf.getColumn(rowMapper.makeCellName(row.cf)).timestamp();
+        return Collections.singletonList(addIndexedColumn(rowMapper, row, timestamp, results.toJson()));
+    }
+
     /**
      * Returns the {@link RowComparator} to be used for ordering the {@link Row}s obtained from the specified {@link
      * Search}. This {@link Comparator} is useful for merging the partial results obtained from running the specified
@@ -495,11 +1152,20 @@ public abstract class RowService
      */
     protected Float score(Row row)
     {
-        ColumnFamily cf = row.cf;
-        CellName cellName = rowMapper.makeCellName(cf);
-        Cell cell = cf.getColumn(cellName);
-        String value = UTF8Type.instance.compose(cell.value());
-        return Float.parseFloat(value);
+        return score(rowMapper, row);
+    }
+
+    /**
+     * Returns the score of the specified {@link Row}, carried by the indexed column mapped by the specified {@link
+     * RowMapper}.
+     *
+     * @param rowMapper The {@link RowMapper} of the indexed column family.
+     * @param row       A {@link Row}.
+     * @return The score of the specified {@link Row}.
+     */
+    static Float score(RowMapper rowMapper, Row row)
+    {
+        return Float.parseFloat(indexedValue(rowMapper, row));
     }
 
     /**
@@ -546,4 +1212,46 @@ public abstract class RowService
         return result;
     }
 
+    /**
+     * A write waiting to be indexed, which is either the write of the CQL3 rows contained in a {@link ColumnFamily} or
+     * the deletion of a whole partition.
+     */
+    private static class PendingWrite
+    {
+        /** The partition key of the written rows, {@code null} for partition deletions. */
+        private final ByteBuffer key;
+
+        /** The written rows, {@code null} for partition deletions. */
+        private final ColumnFamily columnFamily;
+
+        /** The write time stamp. */
+        private final long timestamp;
+
+        /** The partition key of the deleted partition, {@code null} for row writes. */
+        private final DecoratedKey partitionKey;
+
+        PendingWrite(ByteBuffer key, ColumnFamily columnFamily, long timestamp)
+        {
+            this.key = key;
+            this.columnFamily = columnFamily;
+            this.timestamp = timestamp;
+            this.partitionKey = null;
+        }
+
+        PendingWrite(DecoratedKey partitionKey)
+        {
+            this.key = null;
+            this.columnFamily = null;
+            this.timestamp = 0;
+            this.partitionKey = partitionKey;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString()
+        {
+            return columnFamily == null ? "delete " + partitionKey : "write " + columnFamily;
+        }
+    }
+
 }
@@ -21,7 +21,6 @@ import org.apache.cassandra.db.ColumnFamilyStore;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.Row;
 import org.apache.cassandra.db.filter.QueryFilter;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
 
 import java.nio.ByteBuffer;
@@ -29,6 +28,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * {@link RowService} that manages simple rows.
@@ -46,6 +46,15 @@ public class RowServiceSkinny extends RowService
         FIELDS_TO_LOAD.add(PartitionKeyMapper.FIELD_NAME);
     }
 
+    /** The names of the Lucene doc values to be loaded. */
+    private static final Set<String> DOC_VALUES_TO_LOAD;
+
+    static
+    {
+        DOC_VALUES_TO_LOAD = new HashSet<>();
+        DOC_VALUES_TO_LOAD.add(PartitionKeyMapper.DOC_VALUES_FIELD_NAME);
+    }
+
     /** The used row mapper. */
     private final RowMapperSkinny rowMapper;
 
@@ -59,7 +68,7 @@ public class RowServiceSkinny extends RowService
     {
         super(baseCfs, columnDefinition);
         this.rowMapper = (RowMapperSkinny) super.rowMapper;
-        luceneIndex.init(rowMapper.sort());
+        luceneIndex.init();
     }
 
     /**
@@ -75,63 +84,70 @@ public class RowServiceSkinny extends RowService
 
     /**
      * {@inheritDoc}
+     * <p/>
+     * These doc values are just the partition key.
      */
     @Override
-    public void indexInner(ByteBuffer key, ColumnFamily columnFamily, long timestamp)
+    public Set<String> docValuesToLoad()
+    {
+        return DOC_VALUES_TO_LOAD;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void indexInner(ByteBuffer key, ColumnFamily columnFamily, long timestamp, IndexWriteBatch batch)
     {
         DecoratedKey partitionKey = rowMapper.partitionKey(key);
 
         if (columnFamily.iterator().hasNext()) // Create or update row
         {
             Row row = row(partitionKey, timestamp); // Read row
-            Document document = rowMapper.document(row);
             Term term = rowMapper.term(partitionKey);
-            luceneIndex.upsert(term, document); // Store document
+            batch.upsert(partitionKey, term, row); // Store document
         }
         else if (columnFamily.deletionInfo() != null) // Delete full row
         {
             Term term = rowMapper.term(partitionKey);
-            luceneIndex.delete(term);
+            batch.delete(partitionKey, term);
         }
     }
 
     /** {@inheritDoc} */
     @Override
-    public void deleteInner(DecoratedKey partitionKey)
+    public void deleteInner(DecoratedKey partitionKey, IndexWriteBatch batch)
     {
         Term term = rowMapper.term(partitionKey);
-        luceneIndex.delete(term);
+        batch.delete(partitionKey, term);
     }
 
     /** {@inheritDoc} */
-    protected List<Row> rows(List<SearchResult> searchResults, long timestamp, boolean usesRelevance)
+    protected ScoredRows rows(List<SearchResult> searchResults, final long timestamp)
     {
-        List<Row> rows = new ArrayList<>(searchResults.size());
-        for (SearchResult searchResult : searchResults)
+        List<Callable<Row>> reads = new ArrayList<>(searchResults.size());
+        for (final SearchResult searchResult : searchResults)
         {
-
-            // Extract row from document
-            DecoratedKey partitionKey = searchResult.getPartitionKey();
-            Row row = row(partitionKey, timestamp);
-
-            if (row == null)
-            {
-                return null;
-            }
-
-            // Return decorated row
-            if (usesRelevance)
+            reads.add(new Callable<Row>()
             {
-                Float score = searchResult.getScore();
-                Row decoratedRow = addScoreColumn(row, timestamp, score);
-                rows.add(decoratedRow);
-            }
-            else
+                @Override
+                public Row call()
+                {
+                    return row(searchResult.getPartitionKey(), timestamp);
+                }
+            });
+        }
+        List<Row> rows = execute(reads);
+        ScoredRows scoredRows = new ScoredRows(rows.size());
+        for (int i = 0; i < rows.size(); i++)
+        {
+            Row row = rows.get(i);
+            if (row != null) // Skip the rows deleted since the last index refresh
             {
-                rows.add(row);
+                scoredRows.add(row, searchResults.get(i).getScoreDoc().score);
             }
         }
-        return rows;
+        return scoredRows;
     }
 
     /**
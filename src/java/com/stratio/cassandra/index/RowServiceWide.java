@@ -19,15 +19,19 @@ import com.google.common.collect.Lists;
 import org.apache.cassandra.config.ColumnDefinition;
 import org.apache.cassandra.db.*;
 import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.CellNameType;
 import org.apache.cassandra.db.filter.ColumnSlice;
 import org.apache.cassandra.db.filter.QueryFilter;
 import org.apache.cassandra.db.filter.SliceQueryFilter;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.InPlaceMergeSorter;
+import org.apache.lucene.util.RamUsageEstimator;
 
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * {@link RowService} that manages wide rows.
@@ -46,6 +50,19 @@ public class RowServiceWide extends RowService
         FIELDS_TO_LOAD.add(ClusteringKeyMapper.FIELD_NAME);
     }
 
+    /** The names of the Lucene doc values to be loaded. */
+    private static final Set<String> DOC_VALUES_TO_LOAD;
+
+    static
+    {
+        DOC_VALUES_TO_LOAD = new HashSet<>();
+        DOC_VALUES_TO_LOAD.add(PartitionKeyMapper.DOC_VALUES_FIELD_NAME);
+        DOC_VALUES_TO_LOAD.add(ClusteringKeyMapper.DOC_VALUES_FIELD_NAME);
+    }
+
+    /** The max number of {@link ColumnSlice}s to be read at once. */
+    private static final int MAX_SLICES_PER_READ = 1000;
+
     /** The used row mapper. */
     private final RowMapperWide rowMapper;
 
@@ -59,7 +76,7 @@ public class RowServiceWide extends RowService
     {
         super(baseCfs, columnDefinition);
         this.rowMapper = (RowMapperWide) super.rowMapper;
-        luceneIndex.init(rowMapper.sort());
+        luceneIndex.init();
     }
 
     /**
@@ -73,24 +90,43 @@ public class RowServiceWide extends RowService
         return FIELDS_TO_LOAD;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * These doc values are the partition and clustering keys.
+     */
+    @Override
+    public Set<String> docValuesToLoad()
+    {
+        return DOC_VALUES_TO_LOAD;
+    }
+
     /** {@inheritDoc} */
     @Override
-    public void indexInner(ByteBuffer key, ColumnFamily columnFamily, long timestamp)
+    public void indexInner(ByteBuffer key, ColumnFamily columnFamily, long timestamp, IndexWriteBatch batch)
     {
         DeletionInfo deletionInfo = columnFamily.deletionInfo();
         DecoratedKey partitionKey = rowMapper.partitionKey(key);
 
         if (columnFamily.iterator().hasNext())
         {
-            List<CellName> clusteringKeys = rowMapper.clusteringKeys(columnFamily);
-            Map<CellName, Row> rows = rows(partitionKey, clusteringKeys, timestamp);
+            Map<CellName, Row> rows = fastInsertIndexing ? rows(partitionKey, columnFamily, timestamp) : null;
+            if (rows == null)
+            {
+                List<CellName> clusteringKeys = rowMapper.clusteringKeys(columnFamily);
+                rows = rows(partitionKey, clusteringKeys, timestamp);
+                metrics.readBeforeWrites.inc(clusteringKeys.size());
+            }
+            else
+            {
+                metrics.fullRowWrites.inc(rows.size());
+            }
             for (Map.Entry<CellName, Row> entry : rows.entrySet())
             {
                 CellName clusteringKey = entry.getKey();
                 Row row = entry.getValue();
-                Document document = rowMapper.document(row);
                 Term term = rowMapper.term(partitionKey, clusteringKey);
-                luceneIndex.upsert(term, document); // Store document
+                batch.upsert(partitionKey, term, row); // Store document
             }
         }
         else if (deletionInfo != null)
@@ -102,77 +138,215 @@ public class RowServiceWide extends RowService
                 {
                     RangeTombstone rangeTombstone = iterator.next();
                     Query query = rowMapper.query(partitionKey, rangeTombstone);
-                    luceneIndex.delete(query);
+                    batch.delete(partitionKey, query);
                 }
             }
             else
             {
                 Term term = rowMapper.term(partitionKey);
-                luceneIndex.delete(term);
+                batch.delete(partitionKey, term);
             }
         }
     }
 
     /** {@inheritDoc} */
     @Override
-    public void deleteInner(DecoratedKey partitionKey)
+    public void deleteInner(DecoratedKey partitionKey, IndexWriteBatch batch)
     {
         Term term = rowMapper.term(partitionKey);
-        luceneIndex.delete(term);
+        batch.delete(partitionKey, term);
     }
 
     /**
      * {@inheritDoc}
      * <p/>
-     * The {@link Row} is a logical one.
+     * The {@link Row} is a logical one. The search results are grouped by partition, and the adjacent ones are read
+     * with a single slice. The partitions are read concurrently by the search threads, if any. Each read row is put
+     * back at the position of its search result, so the rows are returned in the same order as the search results.
      */
     @Override
-    protected List<Row> rows(List<SearchResult> searchResults, long timestamp, boolean usesRelevance)
+    protected ScoredRows rows(List<SearchResult> searchResults, final long timestamp)
     {
-        // Initialize result
-        List<Row> rows = new ArrayList<>(searchResults.size());
+        // Read the partitions, putting each row at the position of its hit
+        final Row[] hitRows = new Row[searchResults.size()];
+        List<Callable<Void>> reads = new ArrayList<>();
+        for (final PartitionHits hits : partitionHits(searchResults, rowMapper, metadata.comparator))
+        {
+            for (List<ColumnSlice> chunk : Lists.partition(Arrays.asList(hits.columnSlices()), MAX_SLICES_PER_READ))
+            {
+                final ColumnSlice[] slices = chunk.toArray(new ColumnSlice[chunk.size()]);
+                reads.add(new Callable<Void>()
+                {
+                    @Override
+                    public Void call()
+                    {
+                        hits.rows(rows(hits.getPartitionKey(), slices, timestamp), hitRows);
+                        return null;
+                    }
+                });
+            }
+        }
+        execute(reads);
+
+        // Collect the rows in hits order, skipping the rows deleted since the last index refresh
+        ScoredRows rows = new ScoredRows(searchResults.size());
+        for (int i = 0; i < hitRows.length; i++)
+        {
+            if (hitRows[i] != null)
+            {
+                rows.add(hitRows[i], searchResults.get(i).getScoreDoc().score);
+            }
+        }
+        return rows;
+    }
 
-        // Group key queries by partition keys
-        Map<CellName, Float> scoresByClusteringKey = new HashMap<>(searchResults.size());
-        Map<DecoratedKey, List<CellName>> keys = new HashMap<>();
-        for (SearchResult searchResult : searchResults)
+    /**
+     * Groups the specified search results by partition, coalescing the adjacent ones into clustering key ranges. Two
+     * hits are only coalesced if they are consecutive in the search results and belong to the same partition.
+     *
+     * @param searchResults The search results.
+     * @param rowMapper     The used {@link RowMapperWide}.
+     * @param comparator    The clustering keys comparator.
+     * @return The hits of each partition, in the order of their first search result, knowing the position of each hit
+     * in the search results.
+     */
+    static Collection<PartitionHits> partitionHits(List<SearchResult> searchResults,
+                                                   RowMapperWide rowMapper,
+                                                   CellNameType comparator)
+    {
+        Map<DecoratedKey, PartitionHits> hitsByPartition = new LinkedHashMap<>();
+        PartitionHits previousHits = null;
+        for (int ordinal = 0; ordinal < searchResults.size(); ordinal++)
         {
+            SearchResult searchResult = searchResults.get(ordinal);
             DecoratedKey partitionKey = searchResult.getPartitionKey();
+            PartitionHits hits = hitsByPartition.get(partitionKey);
+            if (hits == null)
+            {
+                hits = new PartitionHits(partitionKey, rowMapper, comparator);
+                hitsByPartition.put(partitionKey, hits);
+            }
+            hits.add(searchResult, ordinal, hits == previousHits && searchResult.isAdjacent());
+            previousHits = hits;
+        }
+        return hitsByPartition.values();
+    }
+
+    /**
+     * The search hits of a partition, with their clustering keys coalesced into ranges of adjacent rows. The clustering
+     * keys and the positions of the hits in the search results are kept in parallel arrays.
+     */
+    static class PartitionHits
+    {
+        private final DecoratedKey partitionKey;
+        private final RowMapperWide rowMapper;
+        private final CellNameType comparator;
+        private final Map<CellName, CellName> ranges = new HashMap<>();
+        private CellName rangeStart;
+        private CellName[] clusteringKeys = new CellName[1];
+        private int[] ordinals = new int[1];
+        private int size;
+
+        PartitionHits(DecoratedKey partitionKey, RowMapperWide rowMapper, CellNameType comparator)
+        {
+            this.partitionKey = partitionKey;
+            this.rowMapper = rowMapper;
+            this.comparator = comparator;
+        }
+
+        DecoratedKey getPartitionKey()
+        {
+            return partitionKey;
+        }
+
+        void add(SearchResult searchResult, int ordinal, boolean adjacent)
+        {
             CellName clusteringKey = searchResult.getClusteringKey();
-            Float score = searchResult.getScore();
-            scoresByClusteringKey.put(clusteringKey, score);
-            List<CellName> clusteringKeys = keys.get(partitionKey);
-            if (clusteringKeys == null)
+            if (size == clusteringKeys.length)
+            {
+                int capacity = ArrayUtil.oversize(size + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+                clusteringKeys = Arrays.copyOf(clusteringKeys, capacity);
+                ordinals = Arrays.copyOf(ordinals, capacity);
+            }
+            clusteringKeys[size] = clusteringKey;
+            ordinals[size] = ordinal;
+            size++;
+
+            if (!adjacent || rangeStart == null)
             {
-                clusteringKeys = new ArrayList<>();
-                keys.put(partitionKey, clusteringKeys);
+                rangeStart = clusteringKey;
             }
-            clusteringKeys.add(clusteringKey);
+            ranges.put(rangeStart, clusteringKey);
         }
 
-        for (Map.Entry<DecoratedKey, List<CellName>> entry : keys.entrySet())
+        /**
+         * Returns the {@link ColumnSlice}s selecting the hits, sorting the hits by clustering key.
+         */
+        ColumnSlice[] columnSlices()
         {
-            DecoratedKey partitionKey = entry.getKey();
-            for (List<CellName> clusteringKeys : Lists.partition(entry.getValue(), 1000))
+            new InPlaceMergeSorter()
             {
-                Map<CellName, Row> partitionRows = rows(partitionKey, clusteringKeys, timestamp);
-                for (Map.Entry<CellName, Row> entry1 : partitionRows.entrySet())
+                @Override
+                protected int compare(int i, int j)
                 {
-                    Row row = entry1.getValue();
-                    if (usesRelevance)
-                    {
-                        CellName clusteringKey = entry1.getKey();
-                        Float score = scoresByClusteringKey.get(clusteringKey);
-                        Row scoredRow = addScoreColumn(row, timestamp, score);
-                        rows.add(scoredRow);
-                    }
-                    else
-                    {
-                        rows.add(row);
-                    }
+                    return comparator.compare(clusteringKeys[i], clusteringKeys[j]);
+                }
+
+                @Override
+                protected void swap(int i, int j)
+                {
+                    ArrayUtil.swap(clusteringKeys, i, j);
+                    int ordinal = ordinals[i];
+                    ordinals[i] = ordinals[j];
+                    ordinals[j] = ordinal;
+                }
+            }.sort(0, size);
+            return rowMapper.columnSlices(ranges);
+        }
+
+        /**
+         * Puts the hit rows among the specified rows read with the {@link ColumnSlice}s returned by {@link
+         * #columnSlices()} into the specified array, at the positions of their hits in the search results.
+         */
+        void rows(Map<CellName, Row> partitionRows, Row[] hitRows)
+        {
+            for (Map.Entry<CellName, Row> entry : partitionRows.entrySet())
+            {
+                int index = Arrays.binarySearch(clusteringKeys, 0, size, entry.getKey(), comparator);
+                if (index >= 0) // Discard the rows read because of being between hits
+                {
+                    hitRows[ordinals[index]] = entry.getValue();
                 }
             }
         }
+    }
+
+    /**
+     * Returns the CQL3 {@link Row}s contained in the specified written {@link ColumnFamily} if all of them contain all
+     * the regular columns, so they can be indexed without reading from the storage engine. Otherwise, it returns {@code
+     * null} and the rows must be read before indexing. The rows must also be fresh writes, because an out of order
+     * write could be shadowed by a stored row having a greater write time stamp. Even so, concurrent writes of the same
+     * row applied out of order can leave the index with the older values, so this is only used with the opt-in, lossy,
+     * fast insert indexing.
+     *
+     * @param partitionKey The partition key.
+     * @param columnFamily The written column family.
+     * @param timestamp    The time stamp to ignore deleted columns.
+     * @return The CQL3 {@link Row}s contained in {@code columnFamily}, or {@code null} if any of them is partial.
+     */
+    private Map<CellName, Row> rows(DecoratedKey partitionKey, ColumnFamily columnFamily, long timestamp)
+    {
+        Map<CellName, ColumnFamily> columnFamilies = rowMapper.completeRows(columnFamily, timestamp);
+        if (columnFamilies == null)
+        {
+            return null;
+        }
+        Map<CellName, Row> rows = new HashMap<>(columnFamilies.size());
+        for (Map.Entry<CellName, ColumnFamily> entry : columnFamilies.entrySet())
+        {
+            ColumnFamily cleanColumnFamily = cleanExpired(entry.getValue(), timestamp);
+            rows.put(entry.getKey(), new Row(partitionKey, cleanColumnFamily));
+        }
         return rows;
     }
 
@@ -187,14 +361,27 @@ public class RowServiceWide extends RowService
      */
     private Map<CellName, Row> rows(DecoratedKey partitionKey, List<CellName> clusteringKeys, long timestamp)
     {
-        ColumnSlice[] slices = rowMapper.columnSlices(clusteringKeys);
+        return rows(partitionKey, rowMapper.columnSlices(clusteringKeys), timestamp);
+    }
 
+    /**
+     * Returns the CQL3 {@link Row}s of the specified partition selected by the specified sorted {@link ColumnSlice}s,
+     * using the specified time stamp to ignore deleted columns. The {@link Row}s are retrieved from the storage engine,
+     * so it involves IO operations.
+     *
+     * @param partitionKey The partition key.
+     * @param slices       The sorted and non overlapping {@link ColumnSlice}s selecting the rows.
+     * @param timestamp    The time stamp to ignore deleted columns.
+     * @return The CQL3 {@link Row}s selected by {@code slices}, mapped by their clustering keys.
+     */
+    private Map<CellName, Row> rows(DecoratedKey partitionKey, ColumnSlice[] slices, long timestamp)
+    {
         if (baseCfs.metadata.hasStaticColumns())
         {
-            LinkedList<ColumnSlice> l = new LinkedList<>(Arrays.asList(slices));
-            l.addFirst(baseCfs.metadata.comparator.staticPrefix().slice());
-            slices = new ColumnSlice[l.size()];
-            slices = l.toArray(slices);
+            ColumnSlice[] staticSlices = new ColumnSlice[slices.length + 1];
+            staticSlices[0] = baseCfs.metadata.comparator.staticPrefix().slice();
+            System.arraycopy(slices, 0, staticSlices, 1, slices.length);
+            slices = staticSlices;
         }
 
         SliceQueryFilter dataFilter = new SliceQueryFilter(slices,
@@ -208,7 +395,7 @@ public class RowServiceWide extends RowService
         // Avoid null
         if (queryColumnFamily == null)
         {
-            return null;
+            return Collections.emptyMap();
         }
 
         // Remove deleted/expired columns
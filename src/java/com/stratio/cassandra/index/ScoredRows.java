@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.db.Row;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable list of {@link Row}s found by a search, along with their Lucene scores. The scores are kept in a primitive
+ * array parallel to the {@link Row}s, so they don't need to be boxed nor added to the {@link Row}s as cells until the
+ * search results are returned.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class ScoredRows
+{
+    private Row[] rows;
+    private float[] scores;
+    private int size;
+
+    /**
+     * Builds a new empty {@link ScoredRows} with the specified initial capacity.
+     *
+     * @param capacity The initial capacity.
+     */
+    public ScoredRows(int capacity)
+    {
+        rows = new Row[Math.max(1, capacity)];
+        scores = new float[rows.length];
+    }
+
+    /**
+     * Adds the specified {@link Row} with the specified score.
+     *
+     * @param row   A {@link Row}.
+     * @param score The score of {@code row}.
+     */
+    public void add(Row row, float score)
+    {
+        if (size == rows.length)
+        {
+            int capacity = ArrayUtil.oversize(size + 1, RamUsageEstimator.NUM_BYTES_OBJECT_REF);
+            rows = Arrays.copyOf(rows, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+        rows[size] = row;
+        scores[size] = score;
+        size++;
+    }
+
+    /**
+     * Adds all the {@link Row}s and scores contained in the specified {@link ScoredRows}.
+     *
+     * @param scoredRows A {@link ScoredRows}.
+     */
+    public void addAll(ScoredRows scoredRows)
+    {
+        for (int i = 0; i < scoredRows.size; i++)
+        {
+            add(scoredRows.rows[i], scoredRows.scores[i]);
+        }
+    }
+
+    /**
+     * Returns the number of contained {@link Row}s.
+     *
+     * @return The number of contained {@link Row}s.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the {@link Row} at the specified position.
+     *
+     * @param index A position.
+     * @return The {@link Row} at {@code index}.
+     */
+    public Row getRow(int index)
+    {
+        return rows[index];
+    }
+
+    /**
+     * Returns the score of the {@link Row} at the specified position.
+     *
+     * @param index A position.
+     * @return The score of the {@link Row} at {@code index}.
+     */
+    public float getScore(int index)
+    {
+        return scores[index];
+    }
+
+    /**
+     * Returns the contained {@link Row}s, without their scores.
+     *
+     * @return The contained {@link Row}s.
+     */
+    public List<Row> getRows()
+    {
+        return Arrays.asList(rows).subList(0, size);
+    }
+}
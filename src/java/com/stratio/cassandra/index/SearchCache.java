@@ -0,0 +1,260 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.stratio.cassandra.index.query.Search;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cache of the {@link Search}es parsed from their JSON representation and of the pages of {@link SearchResult}s found
+ * by Lucene. The pages are keyed by all the search arguments and by the path and version of the index reader used to
+ * find them, so a cached page is exactly the same page that Lucene would return while that reader is the current one.
+ * The cached pages are invalidated each time any of the index readers sharing the cache is refreshed.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class SearchCache
+{
+    /** The cached searches by JSON, {@code null} if caching is disabled. */
+    private final Cache<String, Search> searches;
+
+    /** The cached pages of search results, {@code null} if caching is disabled. */
+    private final Cache<Key, List<SearchResult>> pages;
+
+    /**
+     * Builds a new {@link SearchCache} retaining up to the specified number of searches and search results.
+     *
+     * @param maxSearches The max number of cached parsed searches, {@code 0} means no caching.
+     * @param maxHits     The max number of search results contained in the cached pages, {@code 0} means no caching.
+     */
+    public SearchCache(int maxSearches, int maxHits)
+    {
+        searches = maxSearches > 0
+                   ? CacheBuilder.newBuilder().maximumSize(maxSearches).recordStats().<String, Search>build()
+                   : null;
+        pages = maxHits > 0
+                ? CacheBuilder.newBuilder()
+                              .maximumWeight(maxHits)
+                              .weigher(new Weigher<Key, List<SearchResult>>()
+                              {
+                                  @Override
+                                  public int weigh(Key key, List<SearchResult> value)
+                                  {
+                                      return Math.max(1, value.size());
+                                  }
+                              })
+                              .recordStats()
+                              .<Key, List<SearchResult>>build()
+                : null;
+    }
+
+    /**
+     * Returns the {@link Search} represented by the specified JSON {@code String}, parsing it only if it is not cached.
+     *
+     * @param json A JSON {@code String} representing a {@link Search}.
+     * @return The {@link Search} represented by {@code json}.
+     */
+    public Search search(String json)
+    {
+        if (searches == null)
+        {
+            return Search.fromJson(json);
+        }
+        Search search = searches.getIfPresent(json);
+        if (search == null)
+        {
+            search = Search.fromJson(json);
+            searches.put(json, search);
+        }
+        return search;
+    }
+
+    /**
+     * Returns the cached page of {@link SearchResult}s identified by the specified key, if any.
+     *
+     * @param key The key of a page of {@link SearchResult}s.
+     * @return The cached page identified by {@code key}, or {@code null} if it is not cached.
+     */
+    public List<SearchResult> getPage(Key key)
+    {
+        return pages == null ? null : pages.getIfPresent(key);
+    }
+
+    /**
+     * Caches the specified page of {@link SearchResult}s with the specified key.
+     *
+     * @param key  The key of {@code page}.
+     * @param page A page of {@link SearchResult}s.
+     */
+    public void putPage(Key key, List<SearchResult> page)
+    {
+        if (pages != null)
+        {
+            pages.put(key, page);
+        }
+    }
+
+    /**
+     * Removes all the cached pages of {@link SearchResult}s, retaining the parsed searches.
+     */
+    public void invalidatePages()
+    {
+        if (pages != null)
+        {
+            pages.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the ratio of the requested searches that have been found in the cache.
+     *
+     * @return The ratio of the requested searches that have been found in the cache.
+     */
+    public double getSearchesHitRate()
+    {
+        return searches == null ? 0 : searches.stats().hitRate();
+    }
+
+    /**
+     * Returns the ratio of the requested pages of search results that have been found in the cache.
+     *
+     * @return The ratio of the requested pages of search results that have been found in the cache.
+     */
+    public double getPagesHitRate()
+    {
+        return pages == null ? 0 : pages.stats().hitRate();
+    }
+
+    /**
+     * The key of a cached page of {@link SearchResult}s, composed by all the arguments of the Lucene search and by the
+     * path and version of the used index reader.
+     */
+    public static class Key
+    {
+        private final String path;
+        private final long readerVersion;
+        private final Query query;
+        private final Sort sort;
+        private final ScoreDoc after;
+        private final int count;
+        private final Set<String> fieldsToLoad;
+        private final Set<String> docValuesToLoad;
+        private final boolean usesRelevance;
+
+        /**
+         * Builds a new {@link Key}.
+         *
+         * @param path            The path of the searched index.
+         * @param readerVersion   The version of the used index reader.
+         * @param query           The searched {@link Query}.
+         * @param sort            The {@link Sort} to be applied, maybe {@code null}.
+         * @param after           The last hit of the previous page, {@code null} meaning the first page.
+         * @param count           The max number of search results.
+         * @param fieldsToLoad    The name of the stored fields to be loaded.
+         * @param docValuesToLoad The name of the binary doc values to be loaded.
+         * @param usesRelevance   If the search uses relevance.
+         */
+        public Key(String path,
+                   long readerVersion,
+                   Query query,
+                   Sort sort,
+                   ScoreDoc after,
+                   int count,
+                   Set<String> fieldsToLoad,
+                   Set<String> docValuesToLoad,
+                   boolean usesRelevance)
+        {
+            this.path = path;
+            this.readerVersion = readerVersion;
+            this.query = query;
+            this.sort = sort;
+            this.after = after;
+            this.count = count;
+            this.fieldsToLoad = fieldsToLoad;
+            this.docValuesToLoad = docValuesToLoad;
+            this.usesRelevance = usesRelevance;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+            {
+                return true;
+            }
+            if (!(obj instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) obj;
+            return readerVersion == other.readerVersion &&
+                   count == other.count &&
+                   usesRelevance == other.usesRelevance &&
+                   path.equals(other.path) &&
+                   query.equals(other.query) &&
+                   equal(after, other.after) &&
+                   Objects.equal(sort, other.sort) &&
+                   fieldsToLoad.equals(other.fieldsToLoad) &&
+                   docValuesToLoad.equals(other.docValuesToLoad);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode()
+        {
+            return Objects.hashCode(path,
+                                    readerVersion,
+                                    query,
+                                    sort,
+                                    after == null ? null : after.doc,
+                                    count,
+                                    fieldsToLoad,
+                                    docValuesToLoad,
+                                    usesRelevance);
+        }
+
+        /**
+         * Returns if the specified hits are the same search position: the same document with the same score and sort
+         * values, as required by the pages of sharded indexes starting after a hit of another shard.
+         */
+        private static boolean equal(ScoreDoc after1, ScoreDoc after2)
+        {
+            if (after1 == null || after2 == null)
+            {
+                return after1 == after2;
+            }
+            if (after1.doc != after2.doc || Float.compare(after1.score, after2.score) != 0)
+            {
+                return false;
+            }
+            Object[] fields1 = after1 instanceof FieldDoc ? ((FieldDoc) after1).fields : null;
+            Object[] fields2 = after2 instanceof FieldDoc ? ((FieldDoc) after2).fields : null;
+            return Arrays.equals(fields1, fields2);
+        }
+    }
+}
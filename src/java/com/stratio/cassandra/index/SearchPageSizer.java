@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+/**
+ * Class for sizing the pages of Lucene documents requested while collecting the {@link org.apache.cassandra.db.Row}s
+ * of a search. Not all the found documents become returned rows, because the rows could have been deleted or expired
+ * since the last index refresh, or they could not satisfy the filtering expressions.
+ * <p/>
+ * The sizer tracks the ratio of documents surviving as rows, both per index, as an exponentially weighted moving
+ * average of the completed searches, and per search. Each page is sized to collect all the remaining rows at once
+ * according to that ratio, with some over fetching when rows are being discarded, and up to a max page size limiting
+ * the used memory.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class SearchPageSizer
+{
+    /** The min survival ratio to be considered, avoiding huge pages when no documents survive. */
+    static final double MIN_SURVIVAL_RATIO = 0.01;
+
+    /** The weight of each completed search in the index survival ratio. */
+    static final double SURVIVAL_RATIO_WEIGHT = 0.2;
+
+    /** The over fetching factor to be applied when documents are being discarded. */
+    static final double OVER_FETCHING = 1.2;
+
+    /** The min size of the pages after the first one, avoiding too many small pages. */
+    static final int MIN_NEXT_PAGE_SIZE = 16;
+
+    /** The max number of documents to be requested per page. */
+    private final int maxPageSize;
+
+    /** The index survival ratio. */
+    private volatile double survivalRatio = 1.0;
+
+    /**
+     * Builds a new {@link SearchPageSizer} limiting the pages to the specified number of documents.
+     *
+     * @param maxPageSize The max number of documents to be requested per page.
+     */
+    public SearchPageSizer(int maxPageSize)
+    {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Returns the ratio of the found documents that have become rows in the recent searches.
+     *
+     * @return The ratio of the found documents that have become rows in the recent searches.
+     */
+    public double getSurvivalRatio()
+    {
+        return survivalRatio;
+    }
+
+    /**
+     * Returns the size of the first page of a search requesting the specified number of rows.
+     *
+     * @param limit The max number of rows to be collected.
+     * @return The size of the first page of a search.
+     */
+    public int firstPageSize(int limit)
+    {
+        return pageSize(limit, survivalRatio);
+    }
+
+    /**
+     * Returns the size of the next page of a search, according to the documents and rows collected by the previous
+     * pages.
+     *
+     * @param limit   The max number of rows to be collected.
+     * @param numDocs The number of documents already collected.
+     * @param numRows The number of rows already collected.
+     * @return The size of the next page of a search.
+     */
+    public int nextPageSize(int limit, int numDocs, int numRows)
+    {
+        double ratio = numDocs == 0 ? survivalRatio : (double) numRows / numDocs;
+        return Math.max(MIN_NEXT_PAGE_SIZE, pageSize(limit - numRows, ratio));
+    }
+
+    /**
+     * Accounts the specified number of collected documents and rows of a completed search in the survival ratio.
+     *
+     * @param numDocs The number of collected documents.
+     * @param numRows The number of collected rows.
+     */
+    public void update(int numDocs, int numRows)
+    {
+        if (numDocs > 0)
+        {
+            double ratio = Math.min(1.0, (double) numRows / numDocs);
+            survivalRatio = survivalRatio * (1 - SURVIVAL_RATIO_WEIGHT) + ratio * SURVIVAL_RATIO_WEIGHT;
+        }
+    }
+
+    private int pageSize(int numRows, double ratio)
+    {
+        double size = numRows;
+        if (ratio < 1)
+        {
+            size = size / Math.max(ratio, MIN_SURVIVAL_RATIO) * OVER_FETCHING;
+        }
+        return (int) Math.max(1, Math.min(maxPageSize, Math.ceil(size)));
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.stratio.cassandra.index;
 
+import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.lucene.search.ScoreDoc;
@@ -35,6 +36,12 @@ public class SearchResult
     /** The search hit info. */
     private final ScoreDoc scoreDoc;
 
+    /** The cells stored in the index, maybe {@code null}. */
+    private final ColumnFamily storedColumnFamily;
+
+    /** If this immediately follows the previous result of the search in the index order, which is the rows order. */
+    private boolean adjacent;
+
     /**
      * Builds a new {@link SearchResult} for the specified CQL3 row key and search hit info.
      *
@@ -43,10 +50,27 @@ public class SearchResult
      * @param scoreDoc      The search hit info.
      */
     public SearchResult(DecoratedKey partitionKey, CellName clusteringKey, ScoreDoc scoreDoc)
+    {
+        this(partitionKey, clusteringKey, scoreDoc, null);
+    }
+
+    /**
+     * Builds a new {@link SearchResult} for the specified CQL3 row key, search hit info and stored cells.
+     *
+     * @param partitionKey       The partition key.
+     * @param clusteringKey      The clustering key.
+     * @param scoreDoc           The search hit info.
+     * @param storedColumnFamily The cells stored in the index, maybe {@code null}.
+     */
+    public SearchResult(DecoratedKey partitionKey,
+                        CellName clusteringKey,
+                        ScoreDoc scoreDoc,
+                        ColumnFamily storedColumnFamily)
     {
         this.partitionKey = partitionKey;
         this.clusteringKey = clusteringKey;
         this.scoreDoc = scoreDoc;
+        this.storedColumnFamily = storedColumnFamily;
     }
 
     /**
@@ -79,6 +103,38 @@ public class SearchResult
         return scoreDoc;
     }
 
+    /**
+     * Returns the cells stored in the index, maybe {@code null} if there are no stored cells.
+     *
+     * @return The cells stored in the index.
+     */
+    public ColumnFamily getStoredColumnFamily()
+    {
+        return storedColumnFamily;
+    }
+
+    /**
+     * Returns {@code true} if this is known to immediately follow the previous result of the same search in the rows
+     * order, so both rows can be read with a single slice, {@code false} otherwise. There could be other rows between
+     * them, indexed after the search results, which should be discarded.
+     *
+     * @return {@code true} if this is known to immediately follow the previous result of the search.
+     */
+    public boolean isAdjacent()
+    {
+        return adjacent;
+    }
+
+    /**
+     * Sets if this immediately follows the previous result of the same search in the rows order.
+     *
+     * @param adjacent If this immediately follows the previous result of the search.
+     */
+    void setAdjacent(boolean adjacent)
+    {
+        this.adjacent = adjacent;
+    }
+
     /**
      * Returns the search numeric score.
      *
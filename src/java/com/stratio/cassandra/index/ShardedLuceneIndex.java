@@ -0,0 +1,771 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.util.Log;
+import org.apache.cassandra.concurrent.NamedThreadFactory;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.RowPosition;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldDocs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A Lucene index split into shards by token range, each of them being a {@link LuceneIndex} with its own writer and
+ * searcher. The token ring is recursively bisected with the partitioner, so the shards cover ranges of the same size
+ * when their number is a power of two. The {@link Document}s are written into the shard containing their partition
+ * token, and the searches are run in parallel in the shards intersecting the searched token range, merging their
+ * sorted hits.
+ * <p/>
+ * An index with a single shard keeps its files directly in the index directory, and it's used without any overhead.
+ * Otherwise each shard keeps its files in its own subdirectory. Changing the number of shards requires rebuilding the
+ * index.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class ShardedLuceneIndex
+{
+    /** The prefix of the names of the shard directories. */
+    private static final String SHARD_DIRECTORY_PREFIX = "shard_";
+
+    private final String path;
+    private final IPartitioner partitioner;
+    private final Token[] boundaries;
+    private final LuceneIndex[] shards;
+
+    /**
+     * The executor shared by all the searches, running the searches in several shards, or the segments searches if
+     * there is a single shard, {@code null} if the searches are run by the querying thread.
+     */
+    private final ExecutorService searchExecutor;
+
+    /**
+     * Builds a new {@link ShardedLuceneIndex}.
+     *
+     * @param rowMapper         A {@link RowMapper}.
+     * @param partitioner       The partitioner of the indexed table.
+     * @param numShards         The number of shards.
+     * @param path              The path of the directory in where the Lucene files will be stored.
+     * @param refreshSeconds    The index readers refresh time in seconds. No guarantees that the writings are visible
+     *                          until this time.
+     * @param minRefreshSeconds The index readers refresh time in seconds while there are searches waiting for the
+     *                          writings to be visible.
+     * @param ramBufferMB       The index writer buffer size in MB, evenly split across the shards. It must be at least
+     *                          the number of shards.
+     * @param maxMergeMB        NRTCachingDirectory max merge size in MB of each shard.
+     * @param maxCachedMB       NRTCachingDirectory max cached MB of each shard.
+     * @param searchThreads     The number of threads of the pool shared by all the searches, which search the shards
+     *                          in parallel, or the segments if there is a single shard. With several shards, the pool
+     *                          has at least one thread per shard. {@code 0} means that a single shard is searched by
+     *                          the querying thread.
+     * @param useCompoundFile   If the index segments must be packed into compound files.
+     * @param analyzer          The default {@link Analyzer}.
+     * @param codec             The Lucene {@link Codec} of the index segments.
+     * @param metrics           The {@link RowIndexMetrics} where the search times are recorded.
+     * @param searchCache       The {@link SearchCache} where the pages of search results are cached.
+     */
+    public ShardedLuceneIndex(RowMapper rowMapper,
+                              IPartitioner partitioner,
+                              int numShards,
+                              String path,
+                              Double refreshSeconds,
+                              Double minRefreshSeconds,
+                              Integer ramBufferMB,
+                              Integer maxMergeMB,
+                              Integer maxCachedMB,
+                              Integer searchThreads,
+                              boolean useCompoundFile,
+                              Analyzer analyzer,
+                              Codec codec,
+                              RowIndexMetrics metrics,
+                              SearchCache searchCache)
+    {
+        this.path = path;
+        this.partitioner = partitioner;
+        this.boundaries = boundaries(partitioner, numShards);
+        this.shards = new LuceneIndex[numShards];
+        if (ramBufferMB < numShards)
+        {
+            String msg = String.format("The RAM buffer of %d MB can't be split into %d shards", ramBufferMB, numShards);
+            throw new IllegalArgumentException(msg);
+        }
+        int shardRamBufferMB = ramBufferMB / numShards;
+        int poolSize = numShards == 1 ? searchThreads : Math.max(searchThreads, numShards);
+        this.searchExecutor = poolSize > 0
+                              ? Executors.newFixedThreadPool(poolSize, new NamedThreadFactory("LuceneSearch"))
+                              : null;
+        for (int i = 0; i < numShards; i++)
+        {
+            String shardPath = numShards == 1 ? path : new File(path, SHARD_DIRECTORY_PREFIX + i).getPath();
+            shards[i] = new LuceneIndex(rowMapper,
+                                        shardPath,
+                                        refreshSeconds,
+                                        minRefreshSeconds,
+                                        shardRamBufferMB,
+                                        maxMergeMB,
+                                        maxCachedMB,
+                                        numShards == 1 ? searchExecutor : null, // Avoid nested waits in the pool
+                                        useCompoundFile,
+                                        analyzer,
+                                        codec,
+                                        metrics,
+                                        searchCache);
+        }
+    }
+
+    /**
+     * Returns the tokens splitting the token ring into the specified number of ranges, by recursive bisection.
+     *
+     * @param partitioner A partitioner.
+     * @param numShards   The number of token ranges.
+     * @return The {@code numShards - 1} sorted tokens splitting the token ring into {@code numShards} ranges.
+     */
+    static Token[] boundaries(IPartitioner partitioner, int numShards)
+    {
+        List<Token> boundaries = new ArrayList<>(numShards - 1);
+        Token minimum = partitioner.getMinimumToken();
+        bisect(partitioner, minimum, minimum, numShards, boundaries);
+        for (int i = 1; i < boundaries.size(); i++)
+        {
+            if (boundaries.get(i - 1).compareTo(boundaries.get(i)) >= 0)
+            {
+                String msg = String.format("The token ring can't be split into %d shards", numShards);
+                throw new IllegalArgumentException(msg);
+            }
+        }
+        return boundaries.toArray(new Token[boundaries.size()]);
+    }
+
+    private static void bisect(IPartitioner partitioner, Token left, Token right, int numRanges, List<Token> boundaries)
+    {
+        if (numRanges > 1)
+        {
+            Token midpoint = partitioner.midpoint(left, right);
+            int numLeftRanges = numRanges / 2;
+            bisect(partitioner, left, midpoint, numLeftRanges, boundaries);
+            boundaries.add(midpoint);
+            bisect(partitioner, midpoint, right, numRanges - numLeftRanges, boundaries);
+        }
+    }
+
+    /**
+     * Returns the number of the shard containing the specified {@link Token}. Each shard contains the tokens greater
+     * than its lower boundary and lesser or equal than its upper boundary.
+     *
+     * @param token A {@link Token}.
+     * @return The number of the shard containing {@code token}.
+     */
+    int shard(Token token)
+    {
+        int index = Arrays.binarySearch(boundaries, token);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Returns the shard containing the specified partition key.
+     *
+     * @param partitionKey A partition key.
+     * @return The shard containing {@code partitionKey}.
+     */
+    private LuceneIndex shard(DecoratedKey partitionKey)
+    {
+        return shards[shard(partitionKey.getToken())];
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return The number of shards.
+     */
+    public int getNumShards()
+    {
+        return shards.length;
+    }
+
+    /**
+     * Returns the numbers of the shards intersecting the specified token range.
+     *
+     * @param range A token range.
+     * @return The numbers of the shards intersecting {@code range}.
+     */
+    List<Integer> shards(AbstractBounds<RowPosition> range)
+    {
+        int first = shard(range.left.getToken());
+        Token right = range.right.getToken();
+        int last = right.isMinimum(partitioner) ? shards.length - 1 : shard(right);
+        List<Integer> result = new ArrayList<>(shards.length);
+        if (first <= last)
+        {
+            for (int i = first; i <= last; i++)
+            {
+                result.add(i);
+            }
+        }
+        else // Wrapping range
+        {
+            for (int i = 0; i < shards.length; i++)
+            {
+                result.add(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Initializes all the shards.
+     */
+    public void init()
+    {
+        for (LuceneIndex shard : shards)
+        {
+            shard.init();
+        }
+    }
+
+    /**
+     * Returns {@code true} if all the {@link Document}s in all the shards have their keys in binary doc values.
+     *
+     * @return {@code true} if all the {@link Document}s in the index have their keys in binary doc values.
+     */
+    public boolean hasKeyDocValues()
+    {
+        for (LuceneIndex shard : shards)
+        {
+            if (!shard.hasKeyDocValues())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if all the {@link Document}s in all the shards have their column values in doc values.
+     *
+     * @return {@code true} if all the {@link Document}s in the index have their column values in doc values.
+     */
+    public boolean hasColumnDocValues()
+    {
+        for (LuceneIndex shard : shards)
+        {
+            if (!shard.hasColumnDocValues())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Updates the specified {@link Document} in the shard containing the specified partition key.
+     *
+     * @param partitionKey The partition key of the {@link Document}.
+     * @param term         The {@link Term} to identify the document(s) to be deleted.
+     * @param document     The {@link Document} to be added.
+     * @see LuceneIndex#upsert(Term, Document)
+     */
+    public void upsert(DecoratedKey partitionKey, Term term, Document document)
+    {
+        shard(partitionKey).upsert(term, document);
+    }
+
+    /**
+     * Applies the specified writes, in order, to the specified shard.
+     *
+     * @param shard  The number of a shard.
+     * @param writes The writes to be applied, all of them to documents contained in the shard.
+     * @see LuceneIndex#write(List)
+     */
+    void write(int shard, List<IndexWriteBatch.Write> writes)
+    {
+        shards[shard].write(writes);
+    }
+
+    /**
+     * Deletes all the {@link Document}s containing the specified {@link Term} in the shard containing the specified
+     * partition key.
+     *
+     * @param partitionKey The partition key of the documents to be deleted.
+     * @param term         The {@link Term} to identify the documents to be deleted.
+     */
+    public void delete(DecoratedKey partitionKey, Term term)
+    {
+        shard(partitionKey).delete(term);
+    }
+
+    /**
+     * Deletes all the {@link Document}s satisfying the specified {@link Query} in the shard containing the specified
+     * partition key.
+     *
+     * @param partitionKey The partition key of the documents to be deleted.
+     * @param query        The {@link Query} to identify the documents to be deleted.
+     */
+    public void delete(DecoratedKey partitionKey, Query query)
+    {
+        shard(partitionKey).delete(query);
+    }
+
+    /**
+     * Deletes all the {@link Document}s satisfying the specified {@link Query} in all the shards.
+     *
+     * @param query The {@link Query} to identify the documents to be deleted.
+     */
+    public void delete(Query query)
+    {
+        for (LuceneIndex shard : shards)
+        {
+            shard.delete(query);
+        }
+    }
+
+    /**
+     * Deletes all the {@link Document}s whose token is not contained in the specified token ranges. All the documents
+     * of the shards not intersecting any of the ranges are deleted at once, keeping their commit data, and the
+     * documents satisfying the specified {@link Query} are deleted from the other shards.
+     *
+     * @param ranges           The token ranges whose {@link Document}s are retained.
+     * @param outOfRangesQuery The {@link Query} to identify the documents out of {@code ranges}.
+     */
+    public void retain(Collection<Range<Token>> ranges, Query outOfRangesQuery)
+    {
+        for (int i = 0; i < shards.length; i++)
+        {
+            Token left = i == 0 ? partitioner.getMinimumToken() : boundaries[i - 1];
+            Token right = i == boundaries.length ? partitioner.getMinimumToken() : boundaries[i];
+            Range<Token> shardRange = new Range<>(left, right, partitioner);
+            if (shardRange.intersects(ranges))
+            {
+                shards[i].delete(outOfRangesQuery);
+            }
+            else
+            {
+                shards[i].deleteAll();
+            }
+        }
+    }
+
+    /**
+     * Deletes all the {@link Document}s.
+     */
+    public void truncate()
+    {
+        for (LuceneIndex shard : shards)
+        {
+            shard.truncate();
+        }
+    }
+
+    /**
+     * Commits the pending changes of all the shards.
+     */
+    public void commit()
+    {
+        for (LuceneIndex shard : shards)
+        {
+            shard.commit();
+        }
+    }
+
+    /**
+     * Snapshots all the shards into the specified directory, each shard into its own subdirectory.
+     *
+     * @param directory    The directory where the snapshot files are going to be linked.
+     * @param snapshotData The data to be added to the commit user data of the snapshot.
+     * @see LuceneIndex#snapshot(File, Map)
+     */
+    public void snapshot(File directory, Map<String, String> snapshotData)
+    {
+        for (int i = 0; i < shards.length; i++)
+        {
+            File shardDirectory = shards.length == 1 ? directory : new File(directory, SHARD_DIRECTORY_PREFIX + i);
+            shards[i].snapshot(shardDirectory, snapshotData);
+        }
+    }
+
+    /**
+     * Returns the value associated to the specified key in the commit user data of all the shards, or {@code null} if
+     * the shards have different values, as it happens if they have been restored from different snapshots.
+     *
+     * @param key A commit user data key.
+     * @return The value associated to {@code key} in the commit user data of all the shards.
+     */
+    public String getCommitData(String key)
+    {
+        String value = shards[0].getCommitData(key);
+        for (LuceneIndex shard : shards)
+        {
+            String shardValue = shard.getCommitData(key);
+            if (value == null ? shardValue != null : !value.equals(shardValue))
+            {
+                return null;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Closes all the shards.
+     */
+    public void close()
+    {
+        if (searchExecutor != null)
+        {
+            searchExecutor.shutdownNow();
+        }
+        for (LuceneIndex shard : shards)
+        {
+            shard.close();
+        }
+    }
+
+    /**
+     * Closes all the shards and removes all their files.
+     */
+    public void drop()
+    {
+        if (searchExecutor != null)
+        {
+            searchExecutor.shutdownNow();
+        }
+        for (LuceneIndex shard : shards)
+        {
+            shard.drop();
+        }
+        if (shards.length > 1)
+        {
+            FileUtils.deleteRecursive(new File(path));
+        }
+    }
+
+    /**
+     * Waits until the changes of the shards intersecting the specified token range are visible to searches if needed.
+     * The changes of the other shards are not waited for, because they can't be seen by a search in the range.
+     *
+     * @param range               The searched token range.
+     * @param maxStalenessSeconds The max number of seconds that the index changes can remain invisible to searches.
+     * @see LuceneIndex#waitForRefresh(double)
+     */
+    public void waitForRefresh(AbstractBounds<RowPosition> range, double maxStalenessSeconds)
+    {
+        for (int shard : shards(range))
+        {
+            shards[shard].waitForRefresh(maxStalenessSeconds);
+        }
+    }
+
+    /**
+     * Finds the top {@code count} hits for {@code query} in the shards intersecting the specified token range. The
+     * shards are searched in parallel, each of them starting after the last hit of the previous page, and their sorted
+     * hits are merged. The merged hits are ordered by the search sort and then by shard, so each shard can start the
+     * next page just after the same hit.
+     *
+     * @param range           The searched token range.
+     * @param query           The {@link Query} to search for.
+     * @param sort            The {@link Sort} to be applied.
+     * @param after           The starting {@link SearchResult}.
+     * @param count           Return only the top {@code count} results.
+     * @param fieldsToLoad    The name of the stored fields to be loaded.
+     * @param docValuesToLoad The name of the binary doc values to be loaded as stored fields.
+     * @param usesRelevance   If the search uses relevance.
+     * @return The found documents, sorted according to the supplied {@link Sort} instance.
+     * @see LuceneIndex#search(Query, Sort, SearchResult, Integer, Set, Set, boolean)
+     */
+    public List<SearchResult> search(AbstractBounds<RowPosition> range,
+                                     final Query query,
+                                     final Sort sort,
+                                     final SearchResult after,
+                                     final Integer count,
+                                     final Set<String> fieldsToLoad,
+                                     final Set<String> docValuesToLoad,
+                                     final boolean usesRelevance)
+    {
+        if (shards.length == 1)
+        {
+            return shards[0].search(query, sort, after, count, fieldsToLoad, docValuesToLoad, usesRelevance);
+        }
+
+        // Search the shards in parallel
+        List<Integer> searchedShards = shards(range);
+        List<Future<List<SearchResult>>> futures = new ArrayList<>(searchedShards.size());
+        for (final int shard : searchedShards)
+        {
+            futures.add(searchExecutor.submit(new Callable<List<SearchResult>>()
+            {
+                @Override
+                public List<SearchResult> call() throws Exception
+                {
+                    SearchResult shardAfter = after == null ? null : after(after, shard);
+                    return shards[shard].search(query,
+                                                sort,
+                                                shardAfter,
+                                                count,
+                                                fieldsToLoad,
+                                                docValuesToLoad,
+                                                usesRelevance);
+                }
+            }));
+        }
+        List<SearchResult>[] shardResults = shardResults(futures, searchedShards);
+
+        // Merge the hits of the shards
+        Sort hitsSort = shards[0].hitsSort(sort, usesRelevance);
+        try
+        {
+            return merge(hitsSort, count, shardResults);
+        }
+        catch (IOException e)
+        {
+            Log.error(e, "Error while merging the hits of query %s", query);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<SearchResult>[] shardResults(List<Future<List<SearchResult>>> futures, List<Integer> searchedShards)
+    {
+        List<SearchResult>[] shardResults = new List[shards.length];
+        for (int i = 0; i < shards.length; i++)
+        {
+            shardResults[i] = Collections.emptyList();
+        }
+        try
+        {
+            for (int i = 0; i < futures.size(); i++)
+            {
+                shardResults[searchedShards.get(i)] = futures.get(i).get();
+            }
+        }
+        catch (InterruptedException | ExecutionException e)
+        {
+            for (Future<List<SearchResult>> future : futures)
+            {
+                future.cancel(true);
+            }
+            Log.error(e, "Error while searching shards");
+            throw new RuntimeException(e);
+        }
+        return shardResults;
+    }
+
+    /**
+     * Returns the position of the specified shard where the next page of a search starting after the specified hit
+     * of the merged hits starts. The merged hits are sorted by shard after the search sort, so the shards before the
+     * one of the hit start after the hits with the same sort values, and the shards after it start before them.
+     *
+     * @param after The last hit of the previous page of the merged hits.
+     * @param shard The number of a shard.
+     * @return The last hit of the previous page of {@code shard}.
+     */
+    static SearchResult after(SearchResult after, int shard)
+    {
+        ScoreDoc scoreDoc = after.getScoreDoc();
+        if (scoreDoc.shardIndex == shard)
+        {
+            return after;
+        }
+        int doc = shard < scoreDoc.shardIndex ? Integer.MAX_VALUE : -1;
+        ScoreDoc shardScoreDoc = scoreDoc instanceof FieldDoc
+                                 ? new FieldDoc(doc, scoreDoc.score, ((FieldDoc) scoreDoc).fields, shard)
+                                 : new ScoreDoc(doc, scoreDoc.score, shard);
+        return new SearchResult(null, null, shardScoreDoc);
+    }
+
+    /**
+     * Merges the specified sorted hits of each shard retaining the first {@code count} of them. A merged hit is
+     * adjacent to the previous one only if both come from the same shard and they are adjacent in it.
+     */
+    static List<SearchResult> merge(Sort sort, int count, List<SearchResult>[] shardResults)
+    throws IOException
+    {
+        TopDocs[] shardHits = new TopDocs[shardResults.length];
+        for (int i = 0; i < shardResults.length; i++)
+        {
+            List<SearchResult> results = shardResults[i];
+            ScoreDoc[] scoreDocs = new ScoreDoc[results.size()];
+            for (int j = 0; j < scoreDocs.length; j++)
+            {
+                scoreDocs[j] = results.get(j).getScoreDoc();
+            }
+            shardHits[i] = sort == null
+                           ? new TopDocs(scoreDocs.length, scoreDocs, Float.NaN)
+                           : new TopFieldDocs(scoreDocs.length, scoreDocs, sort.getSort(), Float.NaN);
+        }
+        ScoreDoc[] merged = TopDocs.merge(sort, count, shardHits).scoreDocs;
+
+        // The merged hits keep the order of the hits of each shard
+        int[] nextHits = new int[shardResults.length];
+        int previousShard = -1;
+        List<SearchResult> results = new ArrayList<>(merged.length);
+        for (ScoreDoc scoreDoc : merged)
+        {
+            int shard = scoreDoc.shardIndex;
+            SearchResult result = shardResults[shard].get(nextHits[shard]++);
+            if (result.isAdjacent() && shard != previousShard)
+            {
+                result = new SearchResult(result.getPartitionKey(),
+                                          result.getClusteringKey(),
+                                          result.getScoreDoc(),
+                                          result.getStoredColumnFamily());
+            }
+            results.add(result);
+            previousShard = shard;
+        }
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Collects all the documents matching the specified {@link Query} in the shards intersecting the specified token
+     * range with the specified {@link AggregationCollector}, and returns the first collected document. The shards are
+     * collected one after another, because the {@link Collector}s are not thread safe.
+     *
+     * @param range           The searched token range.
+     * @param query           The {@link Query} to search for.
+     * @param collector       The {@link AggregationCollector} receiving the matching documents.
+     * @param fieldsToLoad    The name of the stored fields to be loaded.
+     * @param docValuesToLoad The name of the binary doc values to be loaded as stored fields.
+     * @return The first collected document, or {@code null} if there are no matching documents.
+     * @see LuceneIndex#aggregate(Query, AggregationCollector, Set, Set)
+     */
+    public SearchResult aggregate(AbstractBounds<RowPosition> range,
+                                  Query query,
+                                  AggregationCollector collector,
+                                  Set<String> fieldsToLoad,
+                                  Set<String> docValuesToLoad)
+    {
+        SearchResult first = null;
+        for (int shard : shards(range))
+        {
+            SearchResult shardFirst = shards[shard].aggregate(query, collector, fieldsToLoad, docValuesToLoad);
+            first = first == null ? shardFirst : first;
+        }
+        return first;
+    }
+
+    /**
+     * Optimizes all the shards, merging each of them into a single segment.
+     */
+    public void optimize()
+    {
+        for (LuceneIndex shard : shards)
+        {
+            shard.optimize();
+        }
+    }
+
+    /**
+     * Returns the total number of {@link Document}s in all the shards.
+     *
+     * @return The total number of {@link Document}s in all the shards.
+     */
+    public long getNumDocs()
+    {
+        long numDocs = 0;
+        for (LuceneIndex shard : shards)
+        {
+            numDocs += shard.getNumDocs();
+        }
+        return numDocs;
+    }
+
+    /**
+     * Returns the number of segments of all the shards visible to searches.
+     *
+     * @return The number of segments of all the shards visible to searches.
+     */
+    public int getNumSegments()
+    {
+        int numSegments = 0;
+        for (LuceneIndex shard : shards)
+        {
+            numSegments += shard.getNumSegments();
+        }
+        return numSegments;
+    }
+
+    /**
+     * Returns the memory in bytes used by the documents buffered in the index writers of all the shards.
+     *
+     * @return The memory in bytes used by the documents buffered in the index writers of all the shards.
+     */
+    public long getRamBufferBytes()
+    {
+        long ramBufferBytes = 0;
+        for (LuceneIndex shard : shards)
+        {
+            ramBufferBytes += shard.getRamBufferBytes();
+        }
+        return ramBufferBytes;
+    }
+
+    /**
+     * Returns the number of segments being merged in all the shards.
+     *
+     * @return The number of segments being merged in all the shards.
+     */
+    public int getMergingSegments()
+    {
+        int mergingSegments = 0;
+        for (LuceneIndex shard : shards)
+        {
+            mergingSegments += shard.getMergingSegments();
+        }
+        return mergingSegments;
+    }
+
+    /**
+     * Returns the time in milliseconds since the oldest change not visible to searches yet was done in any shard, or
+     * {@code 0} if all the changes are visible.
+     *
+     * @return The time in milliseconds since the oldest change not visible to searches yet was done.
+     */
+    public long getRefreshLag()
+    {
+        long refreshLag = 0;
+        for (LuceneIndex shard : shards)
+        {
+            refreshLag = Math.max(refreshLag, shard.getRefreshLag());
+        }
+        return refreshLag;
+    }
+}
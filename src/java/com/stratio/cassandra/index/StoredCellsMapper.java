@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.db.ArrayBackedSortedColumns;
+import org.apache.cassandra.db.BufferCell;
+import org.apache.cassandra.db.BufferExpiringCell;
+import org.apache.cassandra.db.Cell;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.ExpiringCell;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Class for storing the raw cells of the stored columns in Lucene {@link Document}s. If all the regular columns of the
+ * indexed table are stored, then the {@link Row}s can be read from the index instead of from Cassandra.
+ * <p/>
+ * Each cell is stored as a binary value of a multivalued stored field containing its name preceded by its length as an
+ * unsigned short, write time stamp, time to live, local expiration time and value. The time to live and the local
+ * expiration time are zero for non expiring cells.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class StoredCellsMapper
+{
+    /** The Lucene field name. */
+    public static final String FIELD_NAME = "_cells";
+
+    /** The column family metadata. */
+    private final CFMetaData metadata;
+
+    /** The stored columns. */
+    private final Set<ColumnDefinition> storedColumns;
+
+    /** If all the regular columns are stored. */
+    private final boolean covering;
+
+    /**
+     * Builds a new {@link StoredCellsMapper} for the specified column family metadata, indexed column and {@link
+     * Schema}.
+     *
+     * @param metadata         The column family metadata.
+     * @param columnDefinition The indexed column definition.
+     * @param schema           The mapping {@link Schema}.
+     */
+    private StoredCellsMapper(CFMetaData metadata, ColumnDefinition columnDefinition, Schema schema)
+    {
+        this.metadata = metadata;
+        storedColumns = new HashSet<>();
+        for (String name : schema.getStoredColumns())
+        {
+            storedColumns.add(metadata.getColumnDefinition(UTF8Type.instance.decompose(name)));
+        }
+        boolean coversAll = !storedColumns.isEmpty() && !metadata.hasStaticColumns();
+        for (ColumnDefinition regularColumn : metadata.regularColumns())
+        {
+            if (!regularColumn.equals(columnDefinition) && !storedColumns.contains(regularColumn))
+            {
+                coversAll = false;
+            }
+        }
+        covering = coversAll;
+    }
+
+    /**
+     * Returns a new {@link StoredCellsMapper} for the specified column family metadata, indexed column and {@link
+     * Schema}.
+     *
+     * @param metadata         The column family metadata.
+     * @param columnDefinition The indexed column definition.
+     * @param schema           The mapping {@link Schema}.
+     * @return A new {@link StoredCellsMapper} for the specified column family metadata, indexed column and {@link
+     * Schema}.
+     */
+    public static StoredCellsMapper instance(CFMetaData metadata, ColumnDefinition columnDefinition, Schema schema)
+    {
+        return new StoredCellsMapper(metadata, columnDefinition, schema);
+    }
+
+    /**
+     * Returns {@code true} if all the regular columns are stored, so {@link Row}s can be read from the index, {@code
+     * false} otherwise.
+     *
+     * @return {@code true} if all the regular columns are stored, {@code false} otherwise.
+     */
+    public boolean isCovering()
+    {
+        return covering;
+    }
+
+    /**
+     * Adds to the specified {@link Document} the row marker and the stored cells contained in the specified {@link
+     * Row}. The row marker is only stored if all the regular columns are stored.
+     *
+     * @param document The document in which the fields are going to be added.
+     * @param row      A {@link Row} with a single CQL3 logic row.
+     */
+    public void addFields(Document document, Row row)
+    {
+        if (storedColumns.isEmpty())
+        {
+            return;
+        }
+        for (Cell cell : row.cf)
+        {
+            CellName cellName = cell.name();
+            if ((covering && isRowMarker(cellName)) || storedColumns.contains(metadata.getColumnDefinition(cellName)))
+            {
+                document.add(new StoredField(FIELD_NAME, serialize(cell)));
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if the specified {@link CellName} is a CQL3 row marker, {@code false} otherwise.
+     *
+     * @param cellName A {@link CellName}.
+     * @return {@code true} if the specified {@link CellName} is a CQL3 row marker, {@code false} otherwise.
+     */
+    private boolean isRowMarker(CellName cellName)
+    {
+        return !cellName.isStatic() && !cellName.cql3ColumnName(metadata).bytes.hasRemaining();
+    }
+
+    /**
+     * Returns the {@link ColumnFamily} formed by the cells stored in the specified {@link Document}, or {@code null}
+     * if it has no stored cells.
+     *
+     * @param document A {@link Document} containing stored cells.
+     * @return The {@link ColumnFamily} formed by the cells stored in {@code document}.
+     */
+    public ColumnFamily columnFamily(Document document)
+    {
+        IndexableField[] fields = document.getFields(FIELD_NAME);
+        if (fields.length == 0)
+        {
+            return null;
+        }
+        ColumnFamily columnFamily = ArrayBackedSortedColumns.factory.create(metadata);
+        for (IndexableField field : fields)
+        {
+            columnFamily.addColumn(deserialize(field.binaryValue()));
+        }
+        return columnFamily;
+    }
+
+    private byte[] serialize(Cell cell)
+    {
+        ByteBuffer name = cell.name().toByteBuffer();
+        ByteBuffer value = cell.value();
+        int ttl = 0;
+        int localExpirationTime = 0;
+        if (cell instanceof ExpiringCell)
+        {
+            ttl = ((ExpiringCell) cell).getTimeToLive();
+            localExpirationTime = cell.getLocalDeletionTime();
+        }
+        ByteBuffer bb = ByteBuffer.allocate(2 + name.remaining() + 8 + 4 + 4 + value.remaining());
+        bb.putShort((short) name.remaining());
+        bb.put(name.duplicate());
+        bb.putLong(cell.timestamp());
+        bb.putInt(ttl);
+        bb.putInt(localExpirationTime);
+        bb.put(value.duplicate());
+        return bb.array();
+    }
+
+    private Cell deserialize(BytesRef bytesRef)
+    {
+        ByteBuffer bb = ByteBuffer.wrap(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+        int nameLength = bb.getShort() & 0xFFFF;
+        ByteBuffer nameBytes = bb.slice();
+        nameBytes.limit(nameLength);
+        bb.position(bb.position() + nameLength);
+        long timestamp = bb.getLong();
+        int ttl = bb.getInt();
+        int localExpirationTime = bb.getInt();
+        ByteBuffer value = bb.slice();
+        CellName name = metadata.comparator.cellFromByteBuffer(nameBytes);
+        if (ttl > 0)
+        {
+            return new BufferExpiringCell(name, value, timestamp, ttl, localExpirationTime);
+        }
+        return new BufferCell(name, value, timestamp);
+    }
+}
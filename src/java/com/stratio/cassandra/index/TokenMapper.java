@@ -154,9 +154,10 @@ public abstract class TokenMapper
     /**
      * Returns a Lucene {@link SortField} array for sorting documents/rows according to the current partitioner.
      *
+     * @param sortedDocValues If all the documents have their tokens in order preserving sorted doc values.
      * @return A Lucene {@link SortField} array for sorting documents/rows according to the current partitioner.
      */
-    public abstract SortField[] sortFields();
+    public abstract SortField[] sortFields(boolean sortedDocValues);
 
     /**
      * Returns {@code true} if the specified lower row position kind must be included in the filtered range, {@code
@@ -16,6 +16,7 @@
 package com.stratio.cassandra.index;
 
 import com.stratio.cassandra.index.util.ByteBufferUtils;
+import com.stratio.cassandra.index.util.ByteComparableSerializer;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.DatabaseDescriptor;
 import org.apache.cassandra.db.DecoratedKey;
@@ -25,6 +26,7 @@ import org.apache.cassandra.dht.Token.TokenFactory;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.*;
@@ -36,6 +38,9 @@ import java.nio.ByteBuffer;
 /**
  * {@link TokenMapper} to be used when any {@link IPartitioner} when there is not a more specific implementation. It
  * indexes the token raw binary value as a Lucene string field.
+ * <p/>
+ * If the tokens of the partitioner can be serialized preserving their order, they are also indexed as sorted doc
+ * values, so they can be sorted comparing raw bytes instead of deserializing them into {@link Token}s.
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
@@ -44,14 +49,42 @@ public class TokenMapperGeneric extends TokenMapper
     /** The Lucene field name. */
     public static final String FIELD_NAME = "_token_generic";
 
+    /** The Lucene sorted doc values field name. */
+    public static final String SORTED_FIELD_NAME = "_token_generic_sorted";
+
     /** The partitioner token factory. */
     private final TokenFactory factory;
 
+    /** If the tokens can be serialized preserving their order. */
+    private final boolean sortable;
+
+    /** The per thread reusable token field. */
+    private final ThreadLocal<Field> tokenField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new StringField(FIELD_NAME, "", Store.YES);
+        }
+    };
+
+    /** The per thread reusable sorted token field. */
+    private final ThreadLocal<Field> sortedField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new SortedDocValuesField(SORTED_FIELD_NAME, new BytesRef());
+        }
+    };
+
     /** Returns a new {@link TokenMapperGeneric}. */
     public TokenMapperGeneric(CFMetaData metadata)
     {
         super(metadata);
-        factory = DatabaseDescriptor.getPartitioner().getTokenFactory();
+        IPartitioner partitioner = DatabaseDescriptor.getPartitioner();
+        factory = partitioner.getTokenFactory();
+        sortable = ByteComparableSerializer.supports(partitioner);
     }
 
     /** {@inheritDoc} */
@@ -60,15 +93,29 @@ public class TokenMapperGeneric extends TokenMapper
     public void addFields(Document document, DecoratedKey partitionKey)
     {
         ByteBuffer bb = factory.toByteArray(partitionKey.getToken());
-        String serialized = ByteBufferUtils.toString(bb);
-        Field field = new StringField(FIELD_NAME, serialized, Store.YES);
+        Field field = tokenField.get();
+        field.setStringValue(ByteBufferUtils.toString(bb));
         document.add(field);
+        if (sortable)
+        {
+            Field sorted = sortedField.get();
+            sorted.setBytesValue(ByteComparableSerializer.serialize(partitionKey.getToken()));
+            document.add(sorted);
+        }
     }
 
     /** {@inheritDoc} */
     @Override
     protected Query makeQuery(Token lower, Token upper, boolean includeLower, boolean includeUpper)
     {
+        if (lower != null && isMinimum(lower))
+        {
+            lower = null;
+        }
+        if (upper != null && isMinimum(upper))
+        {
+            upper = null;
+        }
         return new TokenRangeQuery(lower, upper, includeLower, includeUpper, this);
     }
 
@@ -83,8 +130,12 @@ public class TokenMapperGeneric extends TokenMapper
 
     /** {@inheritDoc} */
     @Override
-    public SortField[] sortFields()
+    public SortField[] sortFields(boolean sortedDocValues)
     {
+        if (sortable && sortedDocValues)
+        {
+            return new SortField[]{new SortField(SORTED_FIELD_NAME, SortField.Type.STRING)};
+        }
         return new SortField[]{
                 new SortField(FIELD_NAME, new FieldComparatorSource()
                 {
@@ -38,6 +38,16 @@ public class TokenMapperMurmur extends TokenMapper
     /** The Lucene field name. */
     private static final String FIELD_NAME = "_token_murmur";
 
+    /** The per thread reusable token field. */
+    private final ThreadLocal<Field> tokenField = new ThreadLocal<Field>()
+    {
+        @Override
+        protected Field initialValue()
+        {
+            return new LongField(FIELD_NAME, 0L, Store.NO);
+        }
+    };
+
     /**
      * Builds a new {@link TokenMapperMurmur} using the specified {@link CFMetaData}.
      *
@@ -53,8 +63,9 @@ public class TokenMapperMurmur extends TokenMapper
     public void addFields(Document document, DecoratedKey partitionKey)
     {
         Long value = (Long) partitionKey.getToken().getTokenValue();
-        Field tokenField = new LongField(FIELD_NAME, value, Store.NO);
-        document.add(tokenField);
+        Field field = tokenField.get();
+        field.setLongValue(value);
+        document.add(field);
     }
 
     /** {@inheritDoc} */
@@ -88,7 +99,7 @@ public class TokenMapperMurmur extends TokenMapper
 
     /** {@inheritDoc} */
     @Override
-    public SortField[] sortFields()
+    public SortField[] sortFields(boolean sortedDocValues)
     {
         return new SortField[]{new SortField(FIELD_NAME, SortField.Type.LONG)};
     }
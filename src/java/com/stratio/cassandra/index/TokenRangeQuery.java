@@ -79,6 +79,37 @@ public class TokenRangeQuery extends MultiTermQuery
         return new TokenDataRangeFilteredTermsEnum(termsEnum);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!super.equals(obj))
+        {
+            return false;
+        }
+        TokenRangeQuery other = (TokenRangeQuery) obj;
+        return includeLower == other.includeLower &&
+               includeUpper == other.includeUpper &&
+               (lower == null ? other.lower == null : lower.equals(other.lower)) &&
+               (upper == null ? other.upper == null : upper.equals(other.upper));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode()
+    {
+        int result = super.hashCode();
+        result = 31 * result + (lower == null ? 0 : lower.hashCode());
+        result = 31 * result + (upper == null ? 0 : upper.hashCode());
+        result = 31 * result + (includeLower ? 1 : 0);
+        result = 31 * result + (includeUpper ? 1 : 0);
+        return result;
+    }
+
     /** {@inheritDoc} */
     @Override
     public String toString(String field)
@@ -114,11 +145,11 @@ public class TokenRangeQuery extends MultiTermQuery
         protected AcceptStatus accept(BytesRef term)
         {
             Token token = tokenMapper.token(term);
-            if (includeLower ? token.compareTo(lower) < 0 : token.compareTo(lower) <= 0)
+            if (lower != null && (includeLower ? token.compareTo(lower) < 0 : token.compareTo(lower) <= 0))
             {
                 return AcceptStatus.NO;
             }
-            else if (includeUpper ? token.compareTo(upper) > 0 : token.compareTo(upper) >= 0)
+            else if (upper != null && (includeUpper ? token.compareTo(upper) > 0 : token.compareTo(upper) >= 0))
             {
                 return AcceptStatus.NO;
             }
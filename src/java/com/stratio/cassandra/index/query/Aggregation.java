@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import com.stratio.cassandra.index.schema.ColumnMapper;
+import com.stratio.cassandra.index.schema.Schema;
+import org.codehaus.jackson.annotate.JsonProperty;
+import org.codehaus.jackson.annotate.JsonSubTypes;
+import org.codehaus.jackson.annotate.JsonTypeInfo;
+
+/**
+ * The abstract base class for the aggregations computed over the documents matching a {@link Search}. Aggregations are
+ * computed by each node over its local documents, using the values of the indexed fields cached by Lucene, and the
+ * partial {@link AggregationResult}s are merged by the coordinator.
+ * <p/>
+ * Known subclasses are: <ul> <li> {@link TermsAggregation} <li> {@link RangeAggregation} <li> {@link
+ * StatsAggregation} </ul>
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = TermsAggregation.class, name = "terms"),
+        @JsonSubTypes.Type(value = RangeAggregation.class, name = "range"),
+        @JsonSubTypes.Type(value = StatsAggregation.class, name = "stats"),})
+public abstract class Aggregation
+{
+    /** The name of the aggregation in the results, maybe {@code null} meaning the name of the field. */
+    @JsonProperty("name")
+    protected final String name;
+
+    /** The name of the aggregated field. */
+    @JsonProperty("field")
+    protected final String field;
+
+    /**
+     * Builds a new {@link Aggregation} over the specified field.
+     *
+     * @param name  The name of the aggregation in the results, maybe {@code null} meaning the name of the field.
+     * @param field The name of the aggregated field.
+     */
+    public Aggregation(String name, String field)
+    {
+        this.name = name;
+        this.field = field;
+    }
+
+    /**
+     * Returns the name of this aggregation in the results.
+     *
+     * @return The name of this aggregation in the results.
+     */
+    public String getName()
+    {
+        return name == null ? field : name;
+    }
+
+    /**
+     * Returns the name of the aggregated field.
+     *
+     * @return The name of the aggregated field.
+     */
+    public String getField()
+    {
+        return field;
+    }
+
+    /**
+     * Returns a new {@link Aggregator} computing this aggregation using the specified {@link Schema}.
+     *
+     * @param schema A {@link Schema}.
+     * @return A new {@link Aggregator} computing this aggregation.
+     */
+    public abstract Aggregator aggregator(Schema schema);
+
+    /**
+     * Returns the {@link ColumnMapper} of the aggregated field.
+     *
+     * @param schema A {@link Schema}.
+     * @return The {@link ColumnMapper} of the aggregated field.
+     */
+    protected ColumnMapper<?> mapper(Schema schema)
+    {
+        if (field == null || field.trim().isEmpty())
+        {
+            throw new IllegalArgumentException("Field name required");
+        }
+        ColumnMapper<?> columnMapper = schema.getMapper(field);
+        if (columnMapper == null)
+        {
+            throw new IllegalArgumentException("Not found mapper for field " + field);
+        }
+        return columnMapper;
+    }
+
+    /**
+     * Returns the numeric base class of the {@link ColumnMapper} of the aggregated field.
+     *
+     * @param schema A {@link Schema}.
+     * @return The numeric base class of the {@link ColumnMapper} of the aggregated field.
+     */
+    protected Class<?> numericClass(Schema schema)
+    {
+        Class<?> clazz = mapper(schema).baseClass();
+        if (!NumericValues.supports(clazz))
+        {
+            String message = String.format("%s aggregations are not supported by %s mapper",
+                                           getClass().getSimpleName(),
+                                           clazz.getSimpleName());
+            throw new UnsupportedOperationException(message);
+        }
+        return clazz;
+    }
+}
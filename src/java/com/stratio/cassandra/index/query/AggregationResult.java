@@ -0,0 +1,41 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import org.codehaus.jackson.annotate.JsonSubTypes;
+import org.codehaus.jackson.annotate.JsonTypeInfo;
+
+/**
+ * The result of an {@link Aggregation} over some documents, which can be merged with the result of the same {@link
+ * Aggregation} over other documents.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = TermsAggregation.Result.class, name = "terms"),
+        @JsonSubTypes.Type(value = RangeAggregation.Result.class, name = "range"),
+        @JsonSubTypes.Type(value = StatsAggregation.Result.class, name = "stats"),})
+public interface AggregationResult
+{
+    /**
+     * Returns the merge of this result with the specified result of the same {@link Aggregation}.
+     *
+     * @param other A result of the same {@link Aggregation}.
+     * @return The merge of this and {@code other}.
+     */
+    AggregationResult merge(AggregationResult other);
+}
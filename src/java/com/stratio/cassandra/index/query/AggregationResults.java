@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import com.stratio.cassandra.index.util.JsonSerializer;
+import com.stratio.cassandra.index.util.Log;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link AggregationResult}s of the {@link Aggregation}s of a {@link Search}, by aggregation name. They are sent
+ * to the coordinator as JSON, where the partial results computed by each node are merged.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class AggregationResults
+{
+    /** The results by aggregation name. */
+    @JsonProperty("aggregations")
+    private final Map<String, AggregationResult> results;
+
+    /**
+     * Builds new {@link AggregationResults}.
+     *
+     * @param results The results by aggregation name.
+     */
+    @JsonCreator
+    public AggregationResults(@JsonProperty("aggregations") Map<String, AggregationResult> results)
+    {
+        this.results = results;
+    }
+
+    /**
+     * Returns the result of the aggregation with the specified name.
+     *
+     * @param name The name of an aggregation.
+     * @return The result of the aggregation named {@code name}, or {@code null} if there is no such aggregation.
+     */
+    public AggregationResult get(String name)
+    {
+        return results.get(name);
+    }
+
+    /**
+     * Returns the merge of these results with the specified results of the same {@link Search}.
+     *
+     * @param other The results of the same {@link Search} over other documents.
+     * @return The merge of this and {@code other}.
+     */
+    public AggregationResults merge(AggregationResults other)
+    {
+        Map<String, AggregationResult> merged = new LinkedHashMap<>(results.size());
+        for (Map.Entry<String, AggregationResult> entry : results.entrySet())
+        {
+            AggregationResult otherResult = other.results.get(entry.getKey());
+            AggregationResult result = entry.getValue();
+            merged.put(entry.getKey(), otherResult == null ? result : result.merge(otherResult));
+        }
+        return new AggregationResults(merged);
+    }
+
+    /**
+     * Returns new {@link AggregationResults} from the specified JSON {@code String}.
+     *
+     * @param json A JSON {@code String} representing {@link AggregationResults}.
+     * @return The {@link AggregationResults} represented by the specified JSON {@code String}.
+     */
+    public static AggregationResults fromJson(String json)
+    {
+        try
+        {
+            return JsonSerializer.fromString(json, AggregationResults.class);
+        }
+        catch (Exception e)
+        {
+            String message = String.format("Unparseable JSON aggregation results: %s", e.getMessage());
+            Log.error(e, message);
+            throw new IllegalArgumentException(message, e);
+        }
+    }
+
+    /**
+     * Returns the JSON representation of this object.
+     *
+     * @return the JSON representation of this object.
+     */
+    public String toJson()
+    {
+        try
+        {
+            return JsonSerializer.toString(this);
+        }
+        catch (Exception e)
+        {
+            String message = String.format("Unformateable JSON aggregation results: %s", e.getMessage());
+            Log.error(e, message);
+            throw new IllegalArgumentException(message, e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this).append("results", results).toString();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import org.apache.lucene.index.AtomicReader;
+
+import java.io.IOException;
+
+/**
+ * Computes an {@link Aggregation} over the documents of the index segments, one segment after the other.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public interface Aggregator
+{
+    /**
+     * Sets the index segment containing the next documents to be collected.
+     *
+     * @param reader An index segment reader.
+     * @throws IOException If there are I/O errors.
+     */
+    void setNextReader(AtomicReader reader) throws IOException;
+
+    /**
+     * Aggregates the specified document of the current index segment.
+     *
+     * @param doc A document id relative to the current index segment.
+     */
+    void collect(int doc);
+
+    /**
+     * Returns the {@link AggregationResult} of the collected documents.
+     *
+     * @return The {@link AggregationResult} of the collected documents.
+     */
+    AggregationResult getResult();
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.util.Bits;
+
+import java.io.IOException;
+
+/**
+ * The values of a numeric field in an index segment, as they are written in numeric doc values by the column mappers.
+ * All the numeric types are read as doubles. The field must have at most one value per document.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+abstract class NumericValues
+{
+    /** The documents having a value. */
+    private final Bits docsWithField;
+
+    /** The raw doc values. */
+    private final NumericDocValues values;
+
+    private NumericValues(Bits docsWithField, NumericDocValues values)
+    {
+        this.docsWithField = docsWithField;
+        this.values = values;
+    }
+
+    /**
+     * Returns {@code true} if the fields with the specified base class can be read, {@code false} otherwise.
+     *
+     * @param clazz The base class of a {@link com.stratio.cassandra.index.schema.ColumnMapper}.
+     * @return {@code true} if the fields with the specified base class can be read, {@code false} otherwise.
+     */
+    static boolean supports(Class<?> clazz)
+    {
+        return clazz == Integer.class || clazz == Long.class || clazz == Float.class || clazz == Double.class;
+    }
+
+    /**
+     * Returns the values of the specified field in the specified index segment, or {@code null} if there are no
+     * values in the segment.
+     *
+     * @param reader An index segment reader.
+     * @param field  The name of the field.
+     * @param clazz  The supported base class of the field mapper.
+     * @return The values of {@code field} in {@code reader}, maybe {@code null}.
+     * @throws IOException If there are I/O errors.
+     */
+    static NumericValues build(AtomicReader reader, String field, Class<?> clazz) throws IOException
+    {
+        NumericDocValues values = reader.getNumericDocValues(field);
+        if (values == null)
+        {
+            return null;
+        }
+        Bits docsWithField = reader.getDocsWithField(field);
+        if (clazz == Integer.class || clazz == Long.class)
+        {
+            return new NumericValues(docsWithField, values)
+            {
+                @Override
+                double decode(long value)
+                {
+                    return value;
+                }
+            };
+        }
+        else if (clazz == Float.class)
+        {
+            return new NumericValues(docsWithField, values)
+            {
+                @Override
+                double decode(long value)
+                {
+                    return Float.intBitsToFloat((int) value);
+                }
+            };
+        }
+        else if (clazz == Double.class)
+        {
+            return new NumericValues(docsWithField, values)
+            {
+                @Override
+                double decode(long value)
+                {
+                    return Double.longBitsToDouble(value);
+                }
+            };
+        }
+        throw new IllegalArgumentException("Not supported numeric class " + clazz);
+    }
+
+    /**
+     * Returns {@code true} if the specified document has a value, {@code false} otherwise.
+     *
+     * @param doc A document id relative to the index segment.
+     * @return {@code true} if {@code doc} has a value, {@code false} otherwise.
+     */
+    boolean exists(int doc)
+    {
+        return docsWithField.get(doc);
+    }
+
+    /**
+     * Returns the value of the specified document, which must exist.
+     *
+     * @param doc A document id relative to the index segment.
+     * @return The value of {@code doc}.
+     */
+    double get(int doc)
+    {
+        return decode(values.get(doc));
+    }
+
+    /**
+     * Returns the numeric value represented by the specified raw doc value.
+     *
+     * @param value A raw doc value.
+     * @return The numeric value represented by {@code value}.
+     */
+    abstract double decode(long value);
+}
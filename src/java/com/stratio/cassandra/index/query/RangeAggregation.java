@@ -0,0 +1,235 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.lucene.index.AtomicReader;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link Aggregation} counting the values of a numeric field falling in each of a list of ranges. Each range
+ * includes its lower bound and excludes its upper bound, and the ranges may overlap.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class RangeAggregation extends Aggregation
+{
+    /** The ranges whose values are to be counted. */
+    @JsonProperty("ranges")
+    private final List<Range> ranges;
+
+    /**
+     * Builds a new {@link RangeAggregation} over the specified numeric field.
+     *
+     * @param name   The name of the aggregation in the results, maybe {@code null} meaning the name of the field.
+     * @param field  The name of the aggregated numeric field.
+     * @param ranges The ranges whose values are to be counted.
+     */
+    @JsonCreator
+    public RangeAggregation(@JsonProperty("name") String name,
+                            @JsonProperty("field") String field,
+                            @JsonProperty("ranges") List<Range> ranges)
+    {
+        super(name, field);
+        this.ranges = ranges;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Aggregator aggregator(Schema schema)
+    {
+        final Class<?> clazz = numericClass(schema);
+        if (ranges == null || ranges.isEmpty())
+        {
+            throw new IllegalArgumentException("Ranges required");
+        }
+        final double[] lowers = new double[ranges.size()];
+        final double[] uppers = new double[ranges.size()];
+        for (int i = 0; i < ranges.size(); i++)
+        {
+            Range range = ranges.get(i);
+            lowers[i] = range.from == null ? Double.NEGATIVE_INFINITY : range.from;
+            uppers[i] = range.to == null ? Double.POSITIVE_INFINITY : range.to;
+        }
+        return new Aggregator()
+        {
+            private final long[] counts = new long[lowers.length];
+            private NumericValues values;
+
+            @Override
+            public void setNextReader(AtomicReader reader) throws IOException
+            {
+                values = NumericValues.build(reader, field, clazz);
+            }
+
+            @Override
+            public void collect(int doc)
+            {
+                if (values != null && values.exists(doc))
+                {
+                    double value = values.get(doc);
+                    for (int i = 0; i < counts.length; i++)
+                    {
+                        if (value >= lowers[i] && value < uppers[i])
+                        {
+                            counts[i]++;
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public AggregationResult getResult()
+            {
+                List<Bucket> buckets = new ArrayList<>(ranges.size());
+                for (int i = 0; i < counts.length; i++)
+                {
+                    Range range = ranges.get(i);
+                    buckets.add(new Bucket(range.from, range.to, counts[i]));
+                }
+                return new Result(buckets);
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this).append("name", name)
+                                        .append("field", field)
+                                        .append("ranges", ranges)
+                                        .toString();
+    }
+
+    /**
+     * A range of numeric values, including its lower bound and excluding its upper bound.
+     */
+    public static class Range
+    {
+        /** The lower bound, maybe {@code null} meaning no lower bound. */
+        @JsonProperty("from")
+        protected final Double from;
+
+        /** The upper bound, maybe {@code null} meaning no upper bound. */
+        @JsonProperty("to")
+        protected final Double to;
+
+        /**
+         * Builds a new {@link Range}.
+         *
+         * @param from The lower bound, maybe {@code null} meaning no lower bound.
+         * @param to   The upper bound, maybe {@code null} meaning no upper bound.
+         */
+        @JsonCreator
+        public Range(@JsonProperty("from") Double from, @JsonProperty("to") Double to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString()
+        {
+            return new ToStringBuilder(this).append("from", from).append("to", to).toString();
+        }
+    }
+
+    /**
+     * A {@link Range} along with the number of values falling in it.
+     */
+    public static class Bucket extends Range
+    {
+        /** The number of values falling in the range. */
+        @JsonProperty("count")
+        private final long count;
+
+        /**
+         * Builds a new {@link Bucket}.
+         *
+         * @param from  The lower bound, maybe {@code null} meaning no lower bound.
+         * @param to    The upper bound, maybe {@code null} meaning no upper bound.
+         * @param count The number of values falling in the range.
+         */
+        @JsonCreator
+        public Bucket(@JsonProperty("from") Double from,
+                      @JsonProperty("to") Double to,
+                      @JsonProperty("count") long count)
+        {
+            super(from, to);
+            this.count = count;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+    }
+
+    /**
+     * The {@link AggregationResult} of a {@link RangeAggregation}.
+     */
+    public static class Result implements AggregationResult
+    {
+        /** The counted ranges, in the same order as in the aggregation. */
+        @JsonProperty("buckets")
+        private final List<Bucket> buckets;
+
+        /**
+         * Builds a new {@link Result}.
+         *
+         * @param buckets The counted ranges, in the same order as in the aggregation.
+         */
+        @JsonCreator
+        public Result(@JsonProperty("buckets") List<Bucket> buckets)
+        {
+            this.buckets = buckets;
+        }
+
+        public List<Bucket> getBuckets()
+        {
+            return buckets;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public AggregationResult merge(AggregationResult other)
+        {
+            List<Bucket> otherBuckets = ((Result) other).buckets;
+            List<Bucket> merged = new ArrayList<>(buckets.size());
+            for (int i = 0; i < buckets.size(); i++)
+            {
+                Bucket bucket = buckets.get(i);
+                merged.add(new Bucket(bucket.from, bucket.to, bucket.count + otherBuckets.get(i).count));
+            }
+            return new Result(merged);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString()
+        {
+            return new ToStringBuilder(this).append("buckets", buckets).toString();
+        }
+    }
+}
@@ -23,6 +23,10 @@ import org.apache.lucene.search.*;
 import org.codehaus.jackson.annotate.JsonCreator;
 import org.codehaus.jackson.annotate.JsonProperty;
 
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Class representing an Lucene index search. It is formed by an optional querying {@link Condition} and an optional
  * filtering {@link Condition}. It can be translated to a Lucene {@link Query} using a {@link Schema}.
@@ -46,6 +50,17 @@ public class Search
     @JsonProperty("sort")
     private Sort sort;
 
+    /**
+     * The max number of seconds that the index changes can remain invisible to this search, maybe {@code null} meaning
+     * that the index refresh doesn't need to be awaited.
+     */
+    @JsonProperty("max_staleness_seconds")
+    private Double maxStalenessSeconds;
+
+    /** The {@link Aggregation}s to be computed instead of returning the matching rows, maybe {@code null}. */
+    @JsonProperty("aggregations")
+    private List<Aggregation> aggregations;
+
     /**
      * Returns a new {@link Search} composed by the specified querying and filtering conditions.
      *
@@ -54,14 +69,35 @@ public class Search
      * @param sort            The {@link Sort} for the query. Note that is the order in which the data will be read
      *                        before querying, not the order of the results after querying.
      */
+    public Search(Condition queryCondition, Condition filterCondition, Sort sort)
+    {
+        this(queryCondition, filterCondition, sort, null, null);
+    }
+
+    /**
+     * Returns a new {@link Search} composed by the specified querying and filtering conditions.
+     *
+     * @param queryCondition      The {@link Condition} for querying, maybe {@code null} meaning no querying.
+     * @param filterCondition     The {@link Condition} for filtering, maybe {@code null} meaning no filtering.
+     * @param sort                The {@link Sort} for the query. Note that is the order in which the data will be
+     *                            read before querying, not the order of the results after querying.
+     * @param maxStalenessSeconds The max number of seconds that the index changes can remain invisible to the search,
+     *                            maybe {@code null} meaning that the index refresh doesn't need to be awaited.
+     * @param aggregations        The {@link Aggregation}s to be computed instead of returning the matching rows,
+     *                            maybe {@code null} meaning no aggregations.
+     */
     @JsonCreator
     public Search(@JsonProperty("query") Condition queryCondition,
                   @JsonProperty("filter") Condition filterCondition,
-                  @JsonProperty("sort") Sort sort)
+                  @JsonProperty("sort") Sort sort,
+                  @JsonProperty("max_staleness_seconds") Double maxStalenessSeconds,
+                  @JsonProperty("aggregations") List<Aggregation> aggregations)
     {
         this.queryCondition = queryCondition;
         this.filterCondition = filterCondition;
         this.sort = sort;
+        this.maxStalenessSeconds = maxStalenessSeconds;
+        this.aggregations = aggregations;
     }
 
     /**
@@ -149,6 +185,38 @@ public class Search
         return this.sort;
     }
 
+    /**
+     * Returns the max number of seconds that the index changes can remain invisible to this search, maybe {@code null}
+     * meaning that the index refresh doesn't need to be awaited.
+     *
+     * @return The max number of seconds that the index changes can remain invisible to this search.
+     */
+    public Double getMaxStalenessSeconds()
+    {
+        return maxStalenessSeconds;
+    }
+
+    /**
+     * Returns {@code true} if this search computes {@link Aggregation}s instead of returning the matching rows, {@code
+     * false} otherwise.
+     *
+     * @return {@code true} if this search computes {@link Aggregation}s, {@code false} otherwise.
+     */
+    public boolean usesAggregations()
+    {
+        return aggregations != null && !aggregations.isEmpty();
+    }
+
+    /**
+     * Returns the {@link Aggregation}s to be computed instead of returning the matching rows, maybe {@code null}.
+     *
+     * @return The {@link Aggregation}s to be computed, maybe {@code null}.
+     */
+    public List<Aggregation> getAggregations()
+    {
+        return aggregations;
+    }
+
     /**
      * Returns the Lucene {@link org.apache.lucene.search.Sort} represented by this {@link Sort} using the specified
      * {@link Schema}. Maybe {@code null} meaning no sorting.
@@ -166,13 +234,25 @@ public class Search
      * filtering {@link Condition}s. If none of them is set, then a {@link MatchAllDocsQuery} is returned, so it never
      * returns {@code null}.
      *
-     * @param schema     The {@link Schema} to be used.
-     * @param rangeQuery An additional range {@link Query} to be used.
+     * @param schema      The {@link Schema} to be used.
+     * @param rangeFilter An additional non scoring range {@link Filter} to be used, maybe {@code null}.
      * @return The Lucene {@link Query} representation of this search.
      */
-    public Query query(Schema schema, Query rangeQuery)
+    public Query query(Schema schema, Filter rangeFilter)
     {
-        if (queryCondition == null && filterCondition == null && rangeQuery == null)
+        Query query = query(schema);
+        return rangeFilter == null ? query : new FilteredQuery(query, rangeFilter);
+    }
+
+    /**
+     * Returns the Lucene {@link Query} representation of the querying and filtering {@link Condition}s of this search.
+     *
+     * @param schema The {@link Schema} to be used.
+     * @return The Lucene {@link Query} representation of the {@link Condition}s of this search.
+     */
+    private Query query(Schema schema)
+    {
+        if (queryCondition == null && filterCondition == null)
         {
             return new MatchAllDocsQuery();
         }
@@ -187,10 +267,6 @@ public class Search
             Query query = new ConstantScoreQuery(filterCondition.query(schema));
             booleanQuery.add(query, BooleanClause.Occur.MUST);
         }
-        if (rangeQuery != null)
-        {
-            booleanQuery.add(rangeQuery, BooleanClause.Occur.MUST);
-        }
         return booleanQuery;
     }
 
@@ -203,12 +279,28 @@ public class Search
     {
         if (queryCondition != null || filterCondition != null)
         {
-            query(schema, null);
+            query(schema);
         }
         if (sort != null)
         {
             sort.sort(schema);
         }
+        if (maxStalenessSeconds != null && maxStalenessSeconds < 0)
+        {
+            throw new IllegalArgumentException("Max staleness seconds must be positive");
+        }
+        if (aggregations != null)
+        {
+            Set<String> names = new HashSet<>();
+            for (Aggregation aggregation : aggregations)
+            {
+                aggregation.aggregator(schema);
+                if (!names.add(aggregation.getName()))
+                {
+                    throw new IllegalArgumentException("Duplicated aggregation name " + aggregation.getName());
+                }
+            }
+        }
     }
 
     /** {@inheritDoc} */
@@ -218,6 +310,8 @@ public class Search
         return new ToStringBuilder(this).append("queryCondition", queryCondition)
                                         .append("filterCondition", filterCondition)
                                         .append("sorting", sort)
+                                        .append("maxStalenessSeconds", maxStalenessSeconds)
+                                        .append("aggregations", aggregations)
                                         .toString();
     }
 
@@ -58,6 +58,26 @@ public class SortField
         this.reverse = reverse == null ? DEFAULT_REVERSE : reverse;
     }
 
+    /**
+     * Returns the name of the field to sort by.
+     *
+     * @return The name of the field to sort by.
+     */
+    public String getField()
+    {
+        return field;
+    }
+
+    /**
+     * Returns {@code true} if natural order should be reversed, {@code false} otherwise.
+     *
+     * @return {@code true} if natural order should be reversed, {@code false} otherwise.
+     */
+    public boolean isReverse()
+    {
+        return reverse;
+    }
+
     /**
      * Returns the Lucene {@link org.apache.lucene.search.SortField} representing this {@link SortField}.
      *
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.lucene.index.AtomicReader;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.io.IOException;
+
+/**
+ * An {@link Aggregation} computing the number of values, and their min, max, sum and average, of a numeric field.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class StatsAggregation extends Aggregation
+{
+    /**
+     * Builds a new {@link StatsAggregation} over the specified numeric field.
+     *
+     * @param name  The name of the aggregation in the results, maybe {@code null} meaning the name of the field.
+     * @param field The name of the aggregated numeric field.
+     */
+    @JsonCreator
+    public StatsAggregation(@JsonProperty("name") String name, @JsonProperty("field") String field)
+    {
+        super(name, field);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Aggregator aggregator(Schema schema)
+    {
+        final Class<?> clazz = numericClass(schema);
+        return new Aggregator()
+        {
+            private NumericValues values;
+            private long count;
+            private double min = Double.POSITIVE_INFINITY;
+            private double max = Double.NEGATIVE_INFINITY;
+            private double sum;
+
+            @Override
+            public void setNextReader(AtomicReader reader) throws IOException
+            {
+                values = NumericValues.build(reader, field, clazz);
+            }
+
+            @Override
+            public void collect(int doc)
+            {
+                if (values != null && values.exists(doc))
+                {
+                    double value = values.get(doc);
+                    count++;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    sum += value;
+                }
+            }
+
+            @Override
+            public AggregationResult getResult()
+            {
+                return count == 0 ? new Result(0, null, null, 0) : new Result(count, min, max, sum);
+            }
+        };
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this).append("name", name).append("field", field).toString();
+    }
+
+    /**
+     * The {@link AggregationResult} of a {@link StatsAggregation}.
+     */
+    public static class Result implements AggregationResult
+    {
+        /** The number of aggregated values. */
+        @JsonProperty("count")
+        private final long count;
+
+        /** The min aggregated value, {@code null} if there are no values. */
+        @JsonProperty("min")
+        private final Double min;
+
+        /** The max aggregated value, {@code null} if there are no values. */
+        @JsonProperty("max")
+        private final Double max;
+
+        /** The sum of the aggregated values. */
+        @JsonProperty("sum")
+        private final double sum;
+
+        /**
+         * Builds a new {@link Result}.
+         *
+         * @param count The number of aggregated values.
+         * @param min   The min aggregated value, {@code null} if there are no values.
+         * @param max   The max aggregated value, {@code null} if there are no values.
+         * @param sum   The sum of the aggregated values.
+         */
+        @JsonCreator
+        public Result(@JsonProperty("count") long count,
+                      @JsonProperty("min") Double min,
+                      @JsonProperty("max") Double max,
+                      @JsonProperty("sum") double sum)
+        {
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.sum = sum;
+        }
+
+        public long getCount()
+        {
+            return count;
+        }
+
+        public Double getMin()
+        {
+            return min;
+        }
+
+        public Double getMax()
+        {
+            return max;
+        }
+
+        public double getSum()
+        {
+            return sum;
+        }
+
+        /**
+         * Returns the average of the aggregated values, {@code null} if there are no values.
+         *
+         * @return The average of the aggregated values.
+         */
+        @JsonProperty("avg")
+        public Double getAvg()
+        {
+            return count == 0 ? null : sum / count;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public AggregationResult merge(AggregationResult other)
+        {
+            Result result = (Result) other;
+            if (result.count == 0)
+            {
+                return this;
+            }
+            if (count == 0)
+            {
+                return result;
+            }
+            return new Result(count + result.count,
+                              Math.min(min, result.min),
+                              Math.max(max, result.max),
+                              sum + result.sum);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString()
+        {
+            return new ToStringBuilder(this).append("count", count)
+                                            .append("min", min)
+                                            .append("max", max)
+                                            .append("sum", sum)
+                                            .toString();
+        }
+    }
+}
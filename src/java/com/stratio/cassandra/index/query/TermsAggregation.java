@@ -0,0 +1,229 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.util.BytesRef;
+import org.codehaus.jackson.annotate.JsonCreator;
+import org.codehaus.jackson.annotate.JsonProperty;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link Aggregation} counting the documents containing each of the values of a single valued string field, which
+ * are read from its sorted doc values. Only the {@code size} most frequent values are returned. Each node returns its
+ * own most frequent values, so the merged counts of the values which are not among the most frequent ones in all the
+ * nodes can be lower than the real ones.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class TermsAggregation extends Aggregation
+{
+    /** The default max number of returned terms. */
+    public static final int DEFAULT_SIZE = 10;
+
+    /** The max number of returned terms. */
+    @JsonProperty("size")
+    private final int size;
+
+    /**
+     * Builds a new {@link TermsAggregation} over the specified string field.
+     *
+     * @param name  The name of the aggregation in the results, maybe {@code null} meaning the name of the field.
+     * @param field The name of the aggregated string field.
+     * @param size  The max number of returned terms, maybe {@code null} meaning {@link #DEFAULT_SIZE}.
+     */
+    @JsonCreator
+    public TermsAggregation(@JsonProperty("name") String name,
+                            @JsonProperty("field") String field,
+                            @JsonProperty("size") Integer size)
+    {
+        super(name, field);
+        this.size = size == null ? DEFAULT_SIZE : size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Aggregator aggregator(Schema schema)
+    {
+        Class<?> clazz = mapper(schema).baseClass();
+        if (clazz != String.class)
+        {
+            String message = String.format("Terms aggregations are not supported by %s mapper", clazz.getSimpleName());
+            throw new UnsupportedOperationException(message);
+        }
+        if (size <= 0)
+        {
+            throw new IllegalArgumentException("Terms aggregation size must be strictly positive");
+        }
+        return new Aggregator()
+        {
+            private final Map<String, Long> counts = new HashMap<>();
+            private SortedDocValues values;
+            private long[] ordCounts;
+
+            @Override
+            public void setNextReader(AtomicReader reader) throws IOException
+            {
+                flush();
+                values = reader.getSortedDocValues(field);
+                ordCounts = values == null ? null : new long[values.getValueCount()];
+            }
+
+            @Override
+            public void collect(int doc)
+            {
+                if (values != null)
+                {
+                    int ord = values.getOrd(doc);
+                    if (ord >= 0)
+                    {
+                        ordCounts[ord]++;
+                    }
+                }
+            }
+
+            @Override
+            public AggregationResult getResult()
+            {
+                flush();
+                return new Result(top(counts, size), size);
+            }
+
+            /**
+             * Adds the per ordinal counts of the current segment to the per term counts.
+             */
+            private void flush()
+            {
+                if (ordCounts != null)
+                {
+                    BytesRef term = new BytesRef();
+                    for (int ord = 0; ord < ordCounts.length; ord++)
+                    {
+                        if (ordCounts[ord] > 0)
+                        {
+                            values.lookupOrd(ord, term);
+                            String key = term.utf8ToString();
+                            Long count = counts.get(key);
+                            counts.put(key, count == null ? ordCounts[ord] : count + ordCounts[ord]);
+                        }
+                    }
+                    ordCounts = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the specified number of most frequent terms of the specified per term counts, sorted by decreasing count
+     * and then by term.
+     *
+     * @param counts The number of documents containing each term.
+     * @param size   The max number of returned terms.
+     * @return The {@code size} most frequent terms in {@code counts}, with their counts.
+     */
+    static Map<String, Long> top(Map<String, Long> counts, int size)
+    {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(counts.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>()
+        {
+            @Override
+            public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2)
+            {
+                int comparison = o2.getValue().compareTo(o1.getValue());
+                return comparison == 0 ? o1.getKey().compareTo(o2.getKey()) : comparison;
+            }
+        });
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries.subList(0, Math.min(size, entries.size())))
+        {
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this).append("name", name)
+                                        .append("field", field)
+                                        .append("size", size)
+                                        .toString();
+    }
+
+    /**
+     * The {@link AggregationResult} of a {@link TermsAggregation}.
+     */
+    public static class Result implements AggregationResult
+    {
+        /** The number of documents containing each of the most frequent terms, sorted by decreasing count. */
+        @JsonProperty("counts")
+        private final Map<String, Long> counts;
+
+        /** The max number of terms. */
+        @JsonProperty("size")
+        private final int size;
+
+        /**
+         * Builds a new {@link Result}.
+         *
+         * @param counts The number of documents containing each of the most frequent terms.
+         * @param size   The max number of terms.
+         */
+        @JsonCreator
+        public Result(@JsonProperty("counts") Map<String, Long> counts, @JsonProperty("size") int size)
+        {
+            this.counts = counts;
+            this.size = size;
+        }
+
+        public Map<String, Long> getCounts()
+        {
+            return counts;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public AggregationResult merge(AggregationResult other)
+        {
+            Map<String, Long> merged = new HashMap<>(counts);
+            for (Map.Entry<String, Long> entry : ((Result) other).counts.entrySet())
+            {
+                Long count = merged.get(entry.getKey());
+                merged.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+            }
+            return new Result(top(merged, size), size);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString()
+        {
+            return new ToStringBuilder(this).append("counts", counts).append("size", size).toString();
+        }
+    }
+}
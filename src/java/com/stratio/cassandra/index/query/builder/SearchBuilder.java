@@ -15,10 +15,14 @@
  */
 package com.stratio.cassandra.index.query.builder;
 
+import com.stratio.cassandra.index.query.Aggregation;
 import com.stratio.cassandra.index.query.Condition;
 import com.stratio.cassandra.index.query.Search;
 import com.stratio.cassandra.index.query.Sort;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * {@link Builder} for building a new {@link Search}.
  *
@@ -38,6 +42,12 @@ public class SearchBuilder implements Builder<Search>
      */
     private Sort sort;
 
+    /** The max number of seconds that the index changes can remain invisible to the search, maybe {@code null}. */
+    private Double maxStalenessSeconds;
+
+    /** The {@link Aggregation}s to be computed instead of returning the matching rows, maybe {@code null}. */
+    private List<Aggregation> aggregations;
+
     /**
      * Returns this builder with the specified querying condition.
      *
@@ -74,6 +84,32 @@ public class SearchBuilder implements Builder<Search>
         return this;
     }
 
+    /**
+     * Returns this builder with the specified max number of seconds that the index changes can remain invisible to the
+     * search. If the oldest change not visible to searches yet is older, the search waits for the index refresh.
+     *
+     * @param maxStalenessSeconds The max number of seconds that the index changes can remain invisible.
+     * @return This builder with the specified max staleness.
+     */
+    public SearchBuilder maxStaleness(double maxStalenessSeconds)
+    {
+        this.maxStalenessSeconds = maxStalenessSeconds;
+        return this;
+    }
+
+    /**
+     * Returns this builder with the specified {@link Aggregation}s to be computed instead of returning the matching
+     * rows.
+     *
+     * @param aggregations The {@link Aggregation}s to be computed.
+     * @return This builder with the specified {@link Aggregation}s.
+     */
+    public SearchBuilder aggregations(Aggregation... aggregations)
+    {
+        this.aggregations = Arrays.asList(aggregations);
+        return this;
+    }
+
     /**
      * Returns the {@link Search} represented by this builder.
      *
@@ -82,7 +118,7 @@ public class SearchBuilder implements Builder<Search>
     @Override
     public Search build()
     {
-        return new Search(queryCondition, filterCondition, sort);
+        return new Search(queryCondition, filterCondition, sort, maxStalenessSeconds, aggregations);
     }
 
     /**
@@ -24,6 +24,7 @@ import org.apache.lucene.analysis.core.KeywordAnalyzer;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.search.SortField;
+import org.codehaus.jackson.annotate.JsonProperty;
 import org.codehaus.jackson.annotate.JsonSubTypes;
 import org.codehaus.jackson.annotate.JsonTypeInfo;
 
@@ -61,6 +62,10 @@ public abstract class ColumnMapper<BASE>
     /** The supported Cassandra types as clustering key. */
     private final AbstractType<?>[] supportedClusteringTypes;
 
+    /** The name of the Lucene postings format of the mapped fields, {@code null} means the default one. */
+    @JsonProperty("postings_format")
+    private String postingsFormat;
+
     /**
      * Builds a new {@link ColumnMapper} supporting the specified types for indexing and clustering.
      *
@@ -73,6 +78,18 @@ public abstract class ColumnMapper<BASE>
         this.supportedClusteringTypes = supportedClusteringTypes;
     }
 
+    /**
+     * Returns the name of the Lucene postings format of the mapped fields, maybe {@code null} meaning the default
+     * one. For example, high cardinality fields whose terms match a few documents could benefit from the {@code
+     * Pulsing41} format, which inlines the short postings lists in the terms dictionary.
+     *
+     * @return The name of the Lucene postings format of the mapped fields.
+     */
+    public String getPostingsFormat()
+    {
+        return postingsFormat;
+    }
+
     /**
      * Returns the used {@link Analyzer}.
      *
@@ -90,6 +107,18 @@ public abstract class ColumnMapper<BASE>
      */
     public abstract Field field(String name, Object value);
 
+    /**
+     * Returns the Lucene doc values {@link Field} resulting from the mapping of {@code value}, using {@code name} as
+     * field's name. Numeric values are mapped to numeric doc values and the rest to sorted doc values, so they can be
+     * read per document without uninverting the indexed terms. Only single valued columns can have doc values.
+     *
+     * @param name  The name of the Lucene {@link Field}.
+     * @param value The value of the Lucene {@link Field}.
+     * @return The Lucene doc values {@link Field} resulting from the mapping of {@code value}, or {@code null} if this
+     * mapper has no doc values.
+     */
+    public abstract Field docValuesField(String name, Object value);
+
     /**
      * Returns the Lucene type for this mapper.
      *
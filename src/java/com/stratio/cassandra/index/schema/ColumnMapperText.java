@@ -104,6 +104,13 @@ public class ColumnMapperText extends ColumnMapper<String>
         return new TextField(name, text, STORE);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public Field docValuesField(String name, Object value)
+    {
+        return null; // Tokenized text has no single value per document
+    }
+
     /** {@inheritDoc} */
     @Override
     public SortField sortField(String field, boolean reverse)
@@ -17,25 +17,32 @@ package com.stratio.cassandra.index.schema;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
- * A sorted list of CQL3 logic {@link Column}s.
+ * A sorted list of CQL3 logic {@link Column}s. The first {@link Column} with each name is indexed by name on the first
+ * lookup, so the next lookups don't depend on the number of columns, while the columns that are never looked up, as
+ * those being indexed, don't pay for it.
  *
  * @author Andres de la Pena <adelapena@stratio.com>
  */
 public class Columns implements Iterable<Column>
 {
     /** The wrapped columns. */
-    private List<Column> columns;
+    private final List<Column> columns;
+
+    /** The first wrapped {@link Column} with each name, {@code null} until the first lookup. */
+    private Map<String, Column> columnsByName;
 
     /** Constructs an empty {@link Column} list. */
     public Columns()
     {
-        this.columns = new LinkedList<>();
+        this.columns = new ArrayList<>();
     }
 
     /**
@@ -47,6 +54,10 @@ public class Columns implements Iterable<Column>
     public Columns add(Column column)
     {
         columns.add(column);
+        if (columnsByName != null && !columnsByName.containsKey(column.getName()))
+        {
+            columnsByName.put(column.getName(), column);
+        }
         return this;
     }
 
@@ -58,7 +69,10 @@ public class Columns implements Iterable<Column>
      */
     public Columns addAll(Collection<Column> columns)
     {
-        this.columns.addAll(columns);
+        for (Column column : columns)
+        {
+            add(column);
+        }
         return this;
     }
 
@@ -72,7 +86,7 @@ public class Columns implements Iterable<Column>
     {
         for (Column column : columns)
         {
-            this.columns.add(column);
+            add(column);
         }
         return this;
     }
@@ -106,14 +120,18 @@ public class Columns implements Iterable<Column>
      */
     public Column getColumn(String name)
     {
-        for (Column column : columns)
+        if (columnsByName == null)
         {
-            if (column.getName().equals(name))
+            columnsByName = new HashMap<>(columns.size() * 2);
+            for (Column column : columns)
             {
-                return column;
+                if (!columnsByName.containsKey(column.getName()))
+                {
+                    columnsByName.put(column.getName(), column);
+                }
             }
         }
-        return null;
+        return columnsByName.get(name);
     }
 
     /** {@inheritDoc} */
@@ -16,6 +16,9 @@
 package com.stratio.cassandra.index.schema;
 
 import com.stratio.cassandra.index.AnalyzerFactory;
+import com.stratio.cassandra.index.RowIndexCodec;
+import com.stratio.cassandra.index.query.Sort;
+import com.stratio.cassandra.index.query.SortField;
 import com.stratio.cassandra.index.util.JsonSerializer;
 import org.apache.cassandra.config.CFMetaData;
 import org.apache.cassandra.config.ColumnDefinition;
@@ -33,9 +36,13 @@ import org.codehaus.jackson.annotate.JsonProperty;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 /**
  * Class for several columns mappings between Cassandra and Lucene.
@@ -56,19 +63,66 @@ public class Schema
     /** The column mappers. */
     private Map<String, ColumnMapper<?>> columnMappers;
 
+    /** The names of the columns whose raw cells are stored in the index. */
+    private final Set<String> storedColumns;
+
+    /** The order in which the documents are kept in the index, maybe {@code null} meaning Cassandra's natural order. */
+    private final Sort indexSort;
+
     /**
      * Builds a new {@code ColumnsMapper} for the specified analyzer and cell mappers.
      *
      * @param analyzerClassName The name of the class of the analyzer to be used.
      * @param columnMappers     The {@link Column} mappers to be used.
      */
+    public Schema(String analyzerClassName, Map<String, ColumnMapper<?>> columnMappers)
+    {
+        this(analyzerClassName, columnMappers, null, null);
+    }
+
+    /**
+     * Builds a new {@code ColumnsMapper} for the specified analyzer, cell mappers and stored columns.
+     *
+     * @param analyzerClassName The name of the class of the analyzer to be used.
+     * @param columnMappers     The {@link Column} mappers to be used.
+     * @param storedColumns     The names of the columns whose raw cells are going to be stored in the index.
+     */
+    public Schema(String analyzerClassName, Map<String, ColumnMapper<?>> columnMappers, List<String> storedColumns)
+    {
+        this(analyzerClassName, columnMappers, storedColumns, null);
+    }
+
+    /**
+     * Builds a new {@code ColumnsMapper} for the specified analyzer, cell mappers, stored columns and index sort.
+     *
+     * @param analyzerClassName The name of the class of the analyzer to be used.
+     * @param columnMappers     The {@link Column} mappers to be used.
+     * @param storedColumns     The names of the columns whose raw cells are going to be stored in the index.
+     * @param indexSort         The order in which the documents are kept in the index, maybe {@code null} meaning
+     *                          Cassandra's natural order.
+     */
     @JsonCreator
     public Schema(@JsonProperty("default_analyzer") String analyzerClassName,
-                  @JsonProperty("fields") Map<String, ColumnMapper<?>> columnMappers)
+                  @JsonProperty("fields") Map<String, ColumnMapper<?>> columnMappers,
+                  @JsonProperty("stored_columns") List<String> storedColumns,
+                  @JsonProperty("index_sort") Sort indexSort)
     {
         // Copy lower cased mappers
         this.columnMappers = columnMappers;
 
+        // Copy stored columns
+        if (storedColumns == null)
+        {
+            this.storedColumns = Collections.emptySet();
+        }
+        else
+        {
+            this.storedColumns = Collections.unmodifiableSet(new HashSet<>(storedColumns));
+        }
+
+        // Copy index sort
+        this.indexSort = indexSort;
+
         // Setup default analyzer
         if (analyzerClassName == null)
         {
@@ -124,6 +178,59 @@ public class Schema
             {
                 throw new RuntimeException("Not supported type for mapper " + name);
             }
+
+            String postingsFormat = columnMapper.getPostingsFormat();
+            if (postingsFormat != null)
+            {
+                try
+                {
+                    RowIndexCodec.postingsFormatForName(postingsFormat);
+                }
+                catch (IllegalArgumentException e)
+                {
+                    throw new RuntimeException("Not supported postings format for mapper " + name);
+                }
+            }
+        }
+
+        for (String name : storedColumns)
+        {
+            ByteBuffer columnName = UTF8Type.instance.decompose(name);
+            ColumnDefinition columnDefinition = metadata.getColumnDefinition(columnName);
+            if (columnDefinition == null)
+            {
+                throw new RuntimeException("No column definition for stored column " + name);
+            }
+
+            if (columnDefinition.kind != ColumnDefinition.Kind.REGULAR)
+            {
+                throw new RuntimeException("Only regular columns can be stored, but found " + name);
+            }
+
+            if (columnDefinition.type.isCollection())
+            {
+                throw new RuntimeException("Collection columns can't be stored, but found " + name);
+            }
+        }
+
+        if (indexSort != null)
+        {
+            for (SortField sortField : indexSort)
+            {
+                String name = sortField.getField();
+                ColumnMapper<?> columnMapper = name == null ? null : columnMappers.get(name);
+                if (columnMapper == null)
+                {
+                    throw new RuntimeException("No mapper found for index sort field " + name);
+                }
+
+                ByteBuffer columnName = UTF8Type.instance.decompose(name);
+                ColumnDefinition columnDefinition = metadata.getColumnDefinition(columnName);
+                if (columnDefinition.type.isCollection() || columnMapper instanceof ColumnMapperText)
+                {
+                    throw new RuntimeException("Index sort requires single valued fields, but found " + name);
+                }
+            }
         }
     }
 
@@ -159,6 +266,41 @@ public class Schema
         }
     }
 
+    /**
+     * Returns the names of the mapped columns.
+     *
+     * @return The names of the mapped columns.
+     */
+    public Set<String> getMappedColumns()
+    {
+        return Collections.unmodifiableSet(columnMappers.keySet());
+    }
+
+    /**
+     * Returns the names of the columns whose raw cells are stored in the index.
+     *
+     * @return The names of the columns whose raw cells are stored in the index.
+     */
+    public Set<String> getStoredColumns()
+    {
+        return storedColumns;
+    }
+
+    /**
+     * Returns the Lucene {@link org.apache.lucene.search.SortField}s of the user defined order in which the documents
+     * are kept in the index, to be applied before Cassandra's natural order. It is empty if there is no such order.
+     *
+     * @return The Lucene {@link org.apache.lucene.search.SortField}s of the user defined index order.
+     */
+    public org.apache.lucene.search.SortField[] indexSortFields()
+    {
+        if (indexSort == null)
+        {
+            return new org.apache.lucene.search.SortField[0];
+        }
+        return indexSort.sort(this).getSort();
+    }
+
     /**
      * Returns the {@link ColumnMapper} identified by the specified field name.
      *
@@ -210,6 +352,8 @@ public class Schema
         return new ToStringBuilder(this).append("defaultAnalyzer", defaultAnalyzer)
                                         .append("perFieldAnalyzer", perFieldAnalyzer)
                                         .append("columnMappers", columnMappers)
+                                        .append("storedColumns", storedColumns)
+                                        .append("indexSort", indexSort)
                                         .toString();
     }
 }
@@ -19,6 +19,7 @@ import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.CompositeType;
 import org.apache.cassandra.utils.ByteBufferUtil;
 import org.apache.cassandra.utils.Hex;
+import org.apache.lucene.util.BytesRef;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -147,6 +148,28 @@ public class ByteBufferUtils
         return Base256Serializer.byteBuffer(string);
     }
 
+    /**
+     * Returns the {@link BytesRef} representation of the specified {@link ByteBuffer}.
+     *
+     * @param byteBuffer the {@link ByteBuffer} to be converted.
+     * @return the {@link BytesRef} representation of the specified {@link ByteBuffer}.
+     */
+    public static BytesRef bytesRef(ByteBuffer byteBuffer)
+    {
+        return new BytesRef(asArray(byteBuffer));
+    }
+
+    /**
+     * Returns the {@link ByteBuffer} representation of the specified {@link BytesRef}.
+     *
+     * @param bytesRef the {@link BytesRef} to be converted.
+     * @return the {@link ByteBuffer} representation of the specified {@link BytesRef}.
+     */
+    public static ByteBuffer byteBuffer(BytesRef bytesRef)
+    {
+        return ByteBuffer.wrap(bytesRef.bytes, bytesRef.offset, bytesRef.length).slice();
+    }
+
     public static String toHex(ByteBuffer byteBuffer)
     {
         return ByteBufferUtil.bytesToHex(byteBuffer);
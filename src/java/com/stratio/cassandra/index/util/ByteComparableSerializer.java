@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.util;
+
+import org.apache.cassandra.db.composites.CType;
+import org.apache.cassandra.db.composites.Composite;
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.AsciiType;
+import org.apache.cassandra.db.marshal.BooleanType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.marshal.DateType;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.FloatType;
+import org.apache.cassandra.db.marshal.InetAddressType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.db.marshal.ReversedType;
+import org.apache.cassandra.db.marshal.TimestampType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.ByteOrderedPartitioner;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.OrderPreservingPartitioner;
+import org.apache.cassandra.dht.RandomPartitioner;
+import org.apache.cassandra.dht.Token;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Utility class for serializing Cassandra values into byte arrays whose unsigned lexicographic order is the same as
+ * the order of the values in Cassandra. These byte arrays can be sorted by Lucene without deserializing them.
+ * <p/>
+ * Each component of a {@link Composite} is serialized as a marker byte distinguishing empty values, which Cassandra
+ * sorts first, followed by a self delimited serialization of the value, so the serializations of the components can
+ * be concatenated. Fixed length types are serialized with their sign bit flipped, and variable length types are
+ * escaped and terminated by two zero bytes. The serializations of {@link ReversedType} values are bitwise inverted.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public final class ByteComparableSerializer
+{
+    private static final int EMPTY = 0x00;
+    private static final int NOT_EMPTY = 0x01;
+
+    /** The length of the serialized {@link RandomPartitioner} tokens, which are in the range [-1, 2^127]. */
+    private static final int BIG_INTEGER_TOKEN_LENGTH = 17;
+
+    private ByteComparableSerializer()
+    {
+    }
+
+    /**
+     * Returns {@code true} if the values of the specified type can be serialized preserving their order, {@code
+     * false} otherwise.
+     *
+     * @param type A Cassandra type.
+     * @return {@code true} if the values of {@code type} can be serialized, {@code false} otherwise.
+     */
+    public static boolean supports(AbstractType<?> type)
+    {
+        AbstractType<?> baseType = type instanceof ReversedType ? ((ReversedType<?>) type).baseType : type;
+        return baseType instanceof Int32Type ||
+               baseType instanceof LongType ||
+               baseType instanceof TimestampType ||
+               baseType instanceof DateType ||
+               baseType instanceof BooleanType ||
+               baseType instanceof FloatType ||
+               baseType instanceof DoubleType ||
+               baseType instanceof UTF8Type ||
+               baseType instanceof AsciiType ||
+               baseType instanceof BytesType ||
+               baseType instanceof InetAddressType;
+    }
+
+    /**
+     * Returns {@code true} if the first components of the specified composite type can be serialized preserving their
+     * order, {@code false} otherwise.
+     *
+     * @param type          A Cassandra composite type.
+     * @param numComponents The number of components to be serialized.
+     * @return {@code true} if the first {@code numComponents} of {@code type} can be serialized, {@code false}
+     * otherwise.
+     */
+    public static boolean supports(CType type, int numComponents)
+    {
+        for (int i = 0; i < numComponents; i++)
+        {
+            if (!supports(type.subtype(i)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the tokens of the specified partitioner can be serialized preserving their order, {@code
+     * false} otherwise.
+     *
+     * @param partitioner A Cassandra partitioner.
+     * @return {@code true} if the tokens of {@code partitioner} can be serialized, {@code false} otherwise.
+     */
+    public static boolean supports(IPartitioner partitioner)
+    {
+        return partitioner instanceof RandomPartitioner ||
+               partitioner instanceof ByteOrderedPartitioner ||
+               partitioner instanceof OrderPreservingPartitioner;
+    }
+
+    /**
+     * Returns the order preserving serialization of the first components of the specified {@link Composite}.
+     *
+     * @param composite     A {@link Composite}.
+     * @param type          The composite type of {@code composite}, which must be supported.
+     * @param numComponents The number of components to be serialized.
+     * @return The order preserving serialization of the first {@code numComponents} of {@code composite}.
+     */
+    public static BytesRef serialize(Composite composite, CType type, int numComponents)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < numComponents; i++)
+        {
+            serialize(composite.get(i), type.subtype(i), out);
+        }
+        return new BytesRef(out.toByteArray());
+    }
+
+    /**
+     * Returns the order preserving serialization of the specified {@link Token}.
+     *
+     * @param token A {@link Token} of a supported partitioner.
+     * @return The order preserving serialization of {@code token}.
+     */
+    public static BytesRef serialize(Token token)
+    {
+        Object value = token.getTokenValue();
+        if (value instanceof BigInteger)
+        {
+            byte[] bytes = ((BigInteger) value).toByteArray();
+            byte[] result = new byte[BIG_INTEGER_TOKEN_LENGTH];
+            int padding = result.length - bytes.length;
+            for (int i = 0; i < result.length; i++)
+            {
+                result[i] = i < padding ? (byte) (bytes[0] < 0 ? 0xFF : 0x00) : bytes[i - padding];
+            }
+            result[0] ^= 0x80;
+            return new BytesRef(result);
+        }
+        else if (value instanceof byte[])
+        {
+            return new BytesRef((byte[]) value);
+        }
+        else if (value instanceof String)
+        {
+            String string = (String) value;
+            byte[] result = new byte[string.length() * 2];
+            for (int i = 0; i < string.length(); i++)
+            {
+                char c = string.charAt(i);
+                result[2 * i] = (byte) (c >>> 8);
+                result[2 * i + 1] = (byte) c;
+            }
+            return new BytesRef(result);
+        }
+        throw new IllegalArgumentException("Not supported token " + token);
+    }
+
+    private static void serialize(ByteBuffer value, AbstractType<?> type, ByteArrayOutputStream out)
+    {
+        if (!value.hasRemaining())
+        {
+            out.write(EMPTY);
+            return;
+        }
+        out.write(NOT_EMPTY);
+        if (type instanceof ReversedType)
+        {
+            byte[] bytes = serialize(value, ((ReversedType<?>) type).baseType);
+            for (byte b : bytes)
+            {
+                out.write(~b);
+            }
+        }
+        else
+        {
+            byte[] bytes = serialize(value, type);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static byte[] serialize(ByteBuffer value, AbstractType<?> type)
+    {
+        if (type instanceof Int32Type || type instanceof LongType || type instanceof TimestampType)
+        {
+            byte[] bytes = ByteBufferUtils.asArray(value);
+            bytes[0] ^= 0x80;
+            return bytes;
+        }
+        else if (type instanceof DateType)
+        {
+            return ByteBufferUtils.asArray(value);
+        }
+        else if (type instanceof BooleanType)
+        {
+            return new byte[]{(byte) (value.get(value.position()) == 0 ? 0 : 1)};
+        }
+        else if (type instanceof FloatType)
+        {
+            int bits = Float.floatToIntBits(value.getFloat(value.position()));
+            bits ^= (bits >> 31) & 0x7FFFFFFF;
+            return ByteBuffer.allocate(4).putInt(bits ^ 0x80000000).array();
+        }
+        else if (type instanceof DoubleType)
+        {
+            long bits = Double.doubleToLongBits(value.getDouble(value.position()));
+            bits ^= (bits >> 63) & 0x7FFFFFFFFFFFFFFFL;
+            return ByteBuffer.allocate(8).putLong(bits ^ 0x8000000000000000L).array();
+        }
+        else if (supports(type))
+        {
+            return escape(value);
+        }
+        throw new IllegalArgumentException("Not supported type " + type);
+    }
+
+    /**
+     * Returns the specified variable length value with its zero bytes escaped and terminated by two zero bytes, so it
+     * can be followed by other values without altering its unsigned lexicographic order.
+     */
+    private static byte[] escape(ByteBuffer value)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(value.remaining() + 2);
+        for (int i = value.position(); i < value.limit(); i++)
+        {
+            byte b = value.get(i);
+            out.write(b);
+            if (b == 0)
+            {
+                out.write(0xFF);
+            }
+        }
+        out.write(0);
+        out.write(0);
+        return out.toByteArray();
+    }
+}
@@ -15,73 +15,112 @@
  */
 package com.stratio.cassandra.index.util;
 
+import com.yammer.metrics.core.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * A queue that executes each submitted task using one of possibly several pooled threads. Tasks can be submitted with
- * an identifier, ensuring that all tasks with same identifier will be executed orderly in the same thread. Each thread
- * has its own task queue.
+ * A queue that processes each submitted item using one of possibly several sharded threads. Items can be submitted
+ * with an identifier, ensuring that all items with same identifier will be processed orderly in the same thread. Each
+ * thread has its own item queue.
+ * <p/>
+ * Each thread drains its queue in batches, which are processed at once by a {@link BatchProcessor}. A batch is closed
+ * when it reaches a maximum number of items, or when its first item has waited a maximum time for more items to come.
+ * With a maximum time of zero, a batch is closed as soon as the queue is empty, so batching never delays an item.
+ * <p/>
+ * Once the queue has been shut down, any submission is rejected with a {@link RejectedExecutionException}, and the
+ * shutdown doesn't return until the batches already being processed have finished.
  *
+ * @param <T> The type of the queued items.
  * @author Andres de la Pena <adelapena@stratio.com>
  */
-public class TaskQueue
+public class TaskQueue<T>
 {
 
-    private NotifyingBlockingThreadPoolExecutor[] pools;
+    /**
+     * The max time in milliseconds that a submission waits for space in a full queue, or that a thread waits for an
+     * item in an empty queue, before checking shutdown.
+     */
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+    private final Shard[] shards;
+
+    private final int batchSize;
+
+    private final long batchNanos;
+
+    private final BatchProcessor<T> processor;
+
+    private final Histogram batchSizes;
+
+    private final Histogram queueWaits;
 
     private ReadWriteLock lock = new ReentrantReadWriteLock();
 
+    private volatile boolean shutdown = false;
+
     /**
      * Returns a new {@link TaskQueue}
      *
-     * @param numThreads The number of executor threads.
-     * @param queuesSize The max number of tasks in each thread queue before blocking.
+     * @param numThreads  The number of executor threads.
+     * @param queuesSize  The max number of items in each thread queue before blocking.
+     * @param batchSize   The max number of items to be processed at once.
+     * @param batchMillis The max time in milliseconds that the first item of a batch waits for more items.
+     * @param processor   The {@link BatchProcessor} of the batches of items.
+     * @param batchSizes  The histogram where the number of items of each processed batch is recorded.
+     * @param queueWaits  The histogram where the time in microseconds that each item waits in queue is recorded.
      */
-    public TaskQueue(int numThreads, int queuesSize)
+    @SuppressWarnings("unchecked")
+    public TaskQueue(int numThreads,
+                     int queuesSize,
+                     int batchSize,
+                     long batchMillis,
+                     BatchProcessor<T> processor,
+                     Histogram batchSizes,
+                     Histogram queueWaits)
     {
-
-        pools = new NotifyingBlockingThreadPoolExecutor[numThreads];
+        this.batchSize = batchSize;
+        this.batchNanos = TimeUnit.MILLISECONDS.toNanos(batchMillis);
+        this.processor = processor;
+        this.batchSizes = batchSizes;
+        this.queueWaits = queueWaits;
+        shards = new TaskQueue.Shard[numThreads];
         for (int i = 0; i < numThreads; i++)
         {
-            pools[i] = new NotifyingBlockingThreadPoolExecutor(1,
-                                                               queuesSize,
-                                                               Long.MAX_VALUE,
-                                                               TimeUnit.DAYS,
-                                                               0,
-                                                               TimeUnit.NANOSECONDS,
-                                                               null);
-            pools[i].submit(new Runnable()
-            {
-                @Override
-                public void run()
-                {
-                    Log.debug("Task queue starts");
-                }
-            });
+            shards[i] = new Shard(queuesSize, i);
+            shards[i].start();
         }
+        Log.debug("Task queue starts");
     }
 
     /**
-     * Submits a non value-returning task for asynchronous execution.
+     * Submits an item for asynchronous processing.
      * <p/>
-     * The specified identifier is used to choose the thread executor where the task will be queued. The selection and
+     * The specified identifier is used to choose the thread executor where the item will be queued. The selection and
      * load balancing is based in the {@link #hashCode()} of this identifier.
      *
-     * @param id   The identifier of the task used to choose the thread executor where the task will be queued for
-     *             asynchronous execution.
-     * @param task A task to be queued for asynchronous execution.
+     * @param id   The identifier of the item used to choose the thread executor where the item will be queued for
+     *             asynchronous processing.
+     * @param item An item to be queued for asynchronous processing.
+     * @return A {@link Future} completed when the batch containing the item has been processed.
      */
-    public Future<?> submitAsynchronous(Object id, Runnable task)
+    public Future<?> submitAsynchronous(Object id, T item)
     {
         lock.readLock().lock();
         try
         {
-            int i = Math.abs((int) (id.hashCode() % pools.length));
-            return pools[i].submit(task);
+            int i = Math.abs(id.hashCode() % shards.length);
+            return shards[i].submit(item);
         }
         catch (Exception e)
         {
@@ -94,26 +133,29 @@ public class TaskQueue
         }
     }
 
-    private void awaitInner() throws ExecutionException, InterruptedException
+    private void awaitInner() throws InterruptedException
     {
-        Future<?>[] futures = new Future<?>[pools.length];
-        for (int i = 0; i < pools.length; i++)
+        Future<?>[] futures = new Future<?>[shards.length];
+        for (int i = 0; i < shards.length; i++)
         {
-            Future<?> future = pools[i].submit(new Runnable()
-            {
-                @Override
-                public void run()
-                {
-                }
-            });
-            futures[i] = future;
+            futures[i] = shards[i].submit(null); // Closes the current batch
         }
         for (Future<?> future : futures)
         {
-            future.get();
+            try
+            {
+                future.get();
+            }
+            catch (ExecutionException e)
+            {
+                // The failure has already been logged, and the batch is over anyway
+            }
         }
     }
 
+    /**
+     * Waits for all the queued items to be processed.
+     */
     public void await()
     {
         lock.writeLock().lock();
@@ -126,11 +168,6 @@ public class TaskQueue
             Log.error(e, "Await interrupted");
             throw new RuntimeException(e);
         }
-        catch (ExecutionException e)
-        {
-            Log.error(e, "Await failed");
-            throw new RuntimeException(e);
-        }
         finally
         {
             lock.writeLock().unlock();
@@ -138,8 +175,8 @@ public class TaskQueue
     }
 
     /**
-     * Submits a non value-returning task for synchronous execution. It waits for all synchronous tasks to be
-     * completed.
+     * Submits a non value-returning task for synchronous execution. It waits for all the queued items to be processed
+     * and then runs the task in the calling thread.
      *
      * @param task A task to be executed synchronously.
      */
@@ -167,4 +204,241 @@ public class TaskQueue
         }
     }
 
+    /**
+     * Returns the total number of items waiting in the thread queues.
+     *
+     * @return The total number of items waiting in the thread queues.
+     */
+    public int size()
+    {
+        int size = 0;
+        for (Shard shard : shards)
+        {
+            size += shard.queue.size();
+        }
+        return size;
+    }
+
+    /**
+     * Stops all the executor threads, cancelling the queued items, and waits for the batches being processed to
+     * finish. The threads are not interrupted, so a batch is never stopped halfway. Any further submission will be
+     * rejected.
+     */
+    public void shutdown()
+    {
+        shutdown = true;
+        for (Shard shard : shards)
+        {
+            shard.cancel();
+        }
+        try
+        {
+            for (Shard shard : shards)
+            {
+                shard.join();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Log.error(e, "Task queue shutdown interrupted");
+            throw new RuntimeException(e);
+        }
+        Log.debug("Task queue stops");
+    }
+
+    /**
+     * The processor of the batches of queued items.
+     *
+     * @param <T> The type of the queued items.
+     */
+    public interface BatchProcessor<T>
+    {
+        /**
+         * Processes the specified batch of items, in the order they were queued.
+         *
+         * @param items The items to be processed.
+         */
+        void process(List<T> items);
+    }
+
+    /**
+     * An item waiting in a thread queue, which is completed when its batch has been processed. An item-less task closes
+     * the batch containing it.
+     */
+    private static class Task<T> extends FutureTask<Object>
+    {
+        private static final Runnable NO_OP = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+
+        /** The queued item, {@code null} for the tasks closing a batch. */
+        private final T item;
+
+        /** The submission time in nanoseconds. */
+        private final long submitTime;
+
+        Task(T item)
+        {
+            super(NO_OP, null);
+            this.item = item;
+            submitTime = System.nanoTime();
+        }
+
+        /**
+         * Completes this task with the outcome of the processing of its batch.
+         *
+         * @param error The error thrown by the processing of the batch, {@code null} if it has succeeded.
+         */
+        void complete(Throwable error)
+        {
+            if (error == null)
+            {
+                set(null);
+            }
+            else
+            {
+                setException(error);
+            }
+        }
+    }
+
+    /**
+     * A thread processing the items in its own queue.
+     */
+    private class Shard extends Thread
+    {
+        private final BlockingQueue<Task<T>> queue;
+
+        Shard(int queueSize, int number)
+        {
+            super("TaskQueue:" + number);
+            setDaemon(true);
+            queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        Future<?> submit(T item) throws InterruptedException
+        {
+            Task<T> task = new Task<>(item);
+            do
+            {
+                if (shutdown)
+                {
+                    throw new RejectedExecutionException("Task queue has been shut down");
+                }
+            } while (!queue.offer(task, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            if (shutdown) // Queued after the queue has been cancelled
+            {
+                task.cancel(false);
+            }
+            return task;
+        }
+
+        void cancel()
+        {
+            List<Task<T>> tasks = new ArrayList<>(queue.size());
+            queue.drainTo(tasks);
+            for (Task<T> task : tasks)
+            {
+                task.cancel(false);
+            }
+        }
+
+        /**
+         * Fills the specified batch, which contains its first task, until it is full, until it contains a task closing
+         * it or until its first task has waited the max batch time. The tasks are taken one at a time, so the tasks
+         * queued after a task closing the batch are left in the queue for the next batch.
+         *
+         * @param batch A batch containing its first task.
+         * @throws InterruptedException If the thread is interrupted while waiting for more tasks.
+         */
+        private void fill(List<Task<T>> batch) throws InterruptedException
+        {
+            long deadline = batch.get(0).submitTime + batchNanos;
+            while (batch.size() < batchSize && batch.get(batch.size() - 1).item != null)
+            {
+                Task<T> next = queue.poll();
+                if (next == null)
+                {
+                    long wait = deadline - System.nanoTime();
+                    if (wait <= 0)
+                    {
+                        return;
+                    }
+                    next = queue.poll(wait, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                    {
+                        return;
+                    }
+                }
+                batch.add(next);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            List<Task<T>> batch = new ArrayList<>(batchSize);
+            List<T> items = new ArrayList<>(batchSize);
+            try
+            {
+                while (!shutdown)
+                {
+                    Task<T> first = queue.poll(OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null)
+                    {
+                        continue;
+                    }
+                    batch.add(first);
+                    fill(batch);
+                    batchSizes.update(batch.size());
+                    if (shutdown) // Drained before the queue has been cancelled
+                    {
+                        for (Task<T> task : batch)
+                        {
+                            task.cancel(false);
+                        }
+                        batch.clear();
+                        continue;
+                    }
+                    long now = System.nanoTime();
+                    for (Task<T> task : batch)
+                    {
+                        queueWaits.update(TimeUnit.NANOSECONDS.toMicros(now - task.submitTime));
+                        if (task.item != null && !task.isCancelled())
+                        {
+                            items.add(task.item);
+                        }
+                    }
+                    Throwable error = null;
+                    try
+                    {
+                        if (!items.isEmpty())
+                        {
+                            processor.process(items);
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        Log.error(e, "Task queue batch processing failed");
+                        error = e;
+                    }
+                    for (Task<T> task : batch)
+                    {
+                        task.complete(error);
+                    }
+                    batch.clear();
+                    items.clear();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Log.error(e, "Task queue thread interrupted");
+            }
+        }
+    }
+
 }
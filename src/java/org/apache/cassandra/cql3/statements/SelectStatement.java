@@ -1093,7 +1093,7 @@ public class SelectStatement implements CQLStatement, MeasurableForPreparedCache
         {
             ColumnFamilyStore cfs = Keyspace.open(keyspace()).getColumnFamilyStore(columnFamily());
             SecondaryIndexManager secondaryIndexManager = cfs.indexManager;
-            secondaryIndexManager.validateIndexSearchersForQuery(expressions);
+            secondaryIndexManager.validateIndexSearchersForQuery(expressions, options.getConsistency());
         }
         
         return expressions;
@@ -726,7 +726,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         data.addSSTables(newSSTables);
         try
         {
-            indexManager.maybeBuildSecondaryIndexes(newSSTables, indexManager.allIndexesNames());
+            indexManager.maybeBuildSecondaryIndexesForLoadedSSTables(newSSTables);
         }
         finally
         {
@@ -2131,6 +2131,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
         {
             DataTracker.View currentView = cfs.markCurrentViewReferenced();
             final JSONArray filesJSONArr = new JSONArray();
+            final List<SSTableReader> snapshotted = new ArrayList<>();
             try
             {
                 for (SSTableReader ssTable : currentView.sstables)
@@ -2139,6 +2140,7 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                     {
                         continue;
                     }
+                    snapshotted.add(ssTable);
 
                     File snapshotDirectory = Directories.getSnapshotDirectory(ssTable.descriptor, snapshotName);
                     ssTable.createLinks(snapshotDirectory.getPath()); // hard links
@@ -2148,6 +2150,13 @@ public class ColumnFamilyStore implements ColumnFamilyStoreMBean
                 }
 
                 writeSnapshotManifest(filesJSONArr, snapshotName);
+
+                // Snapshots of a subset of sstables, such as those of repair sessions, don't include the indexes
+                if (cfs == this && predicate == null)
+                {
+                    for (SecondaryIndex index : indexManager.getIndexesNotBackedByCfs())
+                        index.snapshot(snapshotName, snapshotted);
+                }
             }
             finally
             {
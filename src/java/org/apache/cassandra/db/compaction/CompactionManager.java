@@ -352,8 +352,9 @@ public class CompactionManager implements CompactionManagerMBean
             logger.info("Cleanup cannot run before a node has joined the ring");
             return AllSSTableOpStatus.ABORTED;
         }
-        final boolean hasIndexes = cfStore.indexManager.hasIndexes();
-        final CleanupStrategy cleanupStrategy = CleanupStrategy.get(cfStore, ranges);
+        // the indexes able to drop the unowned ranges at once don't need to see the cleaned up rows
+        final boolean hasIndexes = cfStore.indexManager.hasIndexes() && !cfStore.indexManager.cleanup(ranges);
+        final CleanupStrategy cleanupStrategy = CleanupStrategy.get(cfStore, ranges, hasIndexes);
         return parallelAllSSTableOperation(cfStore, new OneSSTableOperation()
         {
             @Override
@@ -742,9 +743,9 @@ public class CompactionManager implements CompactionManagerMBean
 
     private static abstract class CleanupStrategy
     {
-        public static CleanupStrategy get(ColumnFamilyStore cfs, Collection<Range<Token>> ranges)
+        public static CleanupStrategy get(ColumnFamilyStore cfs, Collection<Range<Token>> ranges, boolean hasIndexes)
         {
-            return cfs.indexManager.hasIndexes()
+            return hasIndexes
                  ? new Full(cfs, ranges)
                  : new Bounded(cfs, ranges);
         }
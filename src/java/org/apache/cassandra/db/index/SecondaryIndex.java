@@ -47,6 +47,8 @@ import org.apache.cassandra.db.marshal.AbstractType;
 import org.apache.cassandra.db.marshal.BytesType;
 import org.apache.cassandra.db.marshal.LocalByPartionerType;
 import org.apache.cassandra.dht.LocalToken;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.io.sstable.ReducingKeyIterator;
 import org.apache.cassandra.io.sstable.SSTableReader;
@@ -206,9 +208,11 @@ public abstract class SecondaryIndex
         Collection<SSTableReader> sstables = baseCfs.markCurrentSSTablesReferenced();
         try
         {
-            SecondaryIndexBuilder builder = new SecondaryIndexBuilder(baseCfs,
-                                                                      Collections.singleton(getIndexName()),
-                                                                      new ReducingKeyIterator(sstables));
+            SecondaryIndexBuilder builder = getIndexBuilder(sstables);
+            if (builder == null)
+                builder = new SecondaryIndexBuilder(baseCfs,
+                                                    Collections.singleton(getIndexName()),
+                                                    new ReducingKeyIterator(sstables));
             Future<?> future = CompactionManager.instance.submitIndexBuild(builder);
             FBUtilities.waitOnFuture(future);
             forceBlockingFlush();
@@ -222,6 +226,21 @@ public abstract class SecondaryIndex
     }
 
 
+    /**
+     * Returns a builder of this index from the data in the given sstables, or null if
+     * the index should be built by the default {@link SecondaryIndexBuilder}, which
+     * builds several indexes at once.
+     *
+     * Caller must acquire and release references to the sstables used here.
+     *
+     * @param sstables the data to build from
+     * @return a builder of this index, or null to use the default builder
+     */
+    public SecondaryIndexBuilder getIndexBuilder(Collection<SSTableReader> sstables)
+    {
+        return null;
+    }
+
     /**
      * Builds the index using the data in the underlying CF, non blocking
      *
@@ -387,6 +406,41 @@ public abstract class SecondaryIndex
     {
     }
 
+    /**
+     * Takes a snapshot of an index not backed by a CFS, along with the snapshot of the base table.
+     *
+     * @param snapshotName the name of the snapshot
+     * @param sstables the base table sstables included in the snapshot
+     */
+    public void snapshot(String snapshotName, Collection<SSTableReader> sstables)
+    {
+    }
+
+    /**
+     * Returns the sstables loaded by a refresh whose data is not already indexed,
+     * e.g. because the index has been restored from a snapshot containing them.
+     *
+     * @param sstables the newly loaded sstables
+     * @return the subset of sstables to be indexed
+     */
+    public Collection<SSTableReader> unindexedSSTables(Collection<SSTableReader> sstables)
+    {
+        return sstables;
+    }
+
+    /**
+     * Removes from an index not backed by a CFS all the data out of the token
+     * ranges owned by the node, as a whole instead of row by row.
+     *
+     * @param ranges the token ranges owned by the node
+     * @return true if the index has been cleaned up, so its rows don't need to
+     * be deleted one by one during the cleanup of the base table sstables
+     */
+    public boolean cleanup(Collection<Range<Token>> ranges)
+    {
+        return false;
+    }
+
     public void validate(CFMetaData metadata, Map<String,String> indexOptions)
     {
     }
@@ -44,6 +44,15 @@ public class SecondaryIndexBuilder extends CompactionInfo.Holder
         this.iter = iter;
     }
 
+    /**
+     * Constructor for subclasses providing their own progress tracking and build,
+     * overriding both {@link #getCompactionInfo()} and {@link #build()}.
+     */
+    protected SecondaryIndexBuilder(ColumnFamilyStore cfs, Set<String> idxNames)
+    {
+        this(cfs, idxNames, null);
+    }
+
     public CompactionInfo getCompactionInfo()
     {
         return new CompactionInfo(cfs.metadata,
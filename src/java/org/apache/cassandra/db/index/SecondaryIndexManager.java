@@ -42,6 +42,7 @@ import org.apache.cassandra.config.IndexType;
 import org.apache.cassandra.db.Cell;
 import org.apache.cassandra.db.ColumnFamily;
 import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.ConsistencyLevel;
 import org.apache.cassandra.db.DecoratedKey;
 import org.apache.cassandra.db.IndexExpression;
 import org.apache.cassandra.db.Row;
@@ -49,6 +50,8 @@ import org.apache.cassandra.db.SystemKeyspace;
 import org.apache.cassandra.db.compaction.CompactionManager;
 import org.apache.cassandra.db.composites.CellName;
 import org.apache.cassandra.db.filter.ExtendedFilter;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
 import org.apache.cassandra.exceptions.ConfigurationException;
 import org.apache.cassandra.exceptions.InvalidRequestException;
 import org.apache.cassandra.io.sstable.ReducingKeyIterator;
@@ -160,15 +163,79 @@ public class SecondaryIndexManager
         logger.info(String.format("Submitting index build of %s for data in %s",
                                   idxNames, StringUtils.join(sstables, ", ")));
 
-        SecondaryIndexBuilder builder = new SecondaryIndexBuilder(baseCfs, idxNames, new ReducingKeyIterator(sstables));
-        Future<?> future = CompactionManager.instance.submitIndexBuild(builder);
-        FBUtilities.waitOnFuture(future);
+        Set<String> defaultIdxNames = new HashSet<>(idxNames);
+        for (SecondaryIndex index : getIndexesByNames(idxNames))
+        {
+            SecondaryIndexBuilder builder = index.getIndexBuilder(sstables);
+            if (builder != null)
+            {
+                defaultIdxNames.remove(index.getIndexName());
+                FBUtilities.waitOnFuture(CompactionManager.instance.submitIndexBuild(builder));
+            }
+        }
+
+        if (!defaultIdxNames.isEmpty())
+        {
+            SecondaryIndexBuilder builder = new SecondaryIndexBuilder(baseCfs, defaultIdxNames, new ReducingKeyIterator(sstables));
+            Future<?> future = CompactionManager.instance.submitIndexBuild(builder);
+            FBUtilities.waitOnFuture(future);
+        }
 
         flushIndexesBlocking();
 
         logger.info("Index build of {} complete", idxNames);
     }
 
+    /**
+     * Builds the indexes for the data in the sstables loaded by a refresh, skipping
+     * for each index the sstables that it reports as already indexed.
+     *
+     * @param sstables the newly loaded sstables
+     */
+    public void maybeBuildSecondaryIndexesForLoadedSSTables(Collection<SSTableReader> sstables)
+    {
+        Map<Set<SSTableReader>, Set<String>> buildsBySSTables = new HashMap<>();
+        for (SecondaryIndex index : allIndexes)
+        {
+            Set<SSTableReader> unindexed = new HashSet<>(index.unindexedSSTables(sstables));
+            if (unindexed.size() < sstables.size())
+                logger.info("Index {} already contains the data of {} loaded sstables",
+                            index.getIndexName(), sstables.size() - unindexed.size());
+            if (unindexed.isEmpty())
+                continue;
+            Set<String> idxNames = buildsBySSTables.get(unindexed);
+            if (idxNames == null)
+            {
+                idxNames = new HashSet<>();
+                buildsBySSTables.put(unindexed, idxNames);
+            }
+            idxNames.add(index.getIndexName());
+        }
+        for (Map.Entry<Set<SSTableReader>, Set<String>> entry : buildsBySSTables.entrySet())
+            maybeBuildSecondaryIndexes(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * Removes from the indexes able to do it as a whole all the data out of
+     * the token ranges owned by the node.
+     *
+     * @param ranges the token ranges owned by the node
+     * @return true if all the indexes have been cleaned up, so the rows out of
+     * the ranges don't need to be deleted from them one by one
+     */
+    public boolean cleanup(Collection<Range<Token>> ranges)
+    {
+        boolean cleaned = true;
+        for (SecondaryIndex index : allIndexes)
+        {
+            if (index.cleanup(ranges))
+                logger.info("Index {} cleaned up", index.getIndexName());
+            else
+                cleaned = false;
+        }
+        return cleaned;
+    }
+
     public boolean indexes(CellName name, Set<SecondaryIndex> indexes)
     {
         boolean matching = false;
@@ -555,9 +622,11 @@ public class SecondaryIndexManager
      * Validates an union of expression index types. It will throw a {@link RuntimeException} if
      * any of the expressions in the provided clause is not valid for its index implementation.
      * @param clause the query clause
+     * @param consistency the consistency level of the query
      * @throws org.apache.cassandra.exceptions.InvalidRequestException in case of validation errors
      */
-    public void validateIndexSearchersForQuery(List<IndexExpression> clause) throws InvalidRequestException
+    public void validateIndexSearchersForQuery(List<IndexExpression> clause, ConsistencyLevel consistency)
+    throws InvalidRequestException
     {
         // Group by index type
         Map<String, Set<IndexExpression>> expressionsByIndexType = new HashMap<>();
@@ -594,6 +663,7 @@ public class SecondaryIndexManager
             {
                 searcher.validate(expression);
             }
+            searcher.validate(clause, consistency);
         }
     }
 
@@ -75,6 +75,19 @@ public abstract class SecondaryIndexSearcher
     {
     }
 
+    /**
+     * Validates the specified query clause as a whole, once each of its {@link IndexExpression}s relative to this
+     * searcher has been validated. It will throw an {@link InvalidRequestException} if the combination of expressions
+     * is not valid for the index implementation.
+     *
+     * @param clause the query clause
+     * @param consistency the consistency level of the query
+     * @throws InvalidRequestException in case of validation errors
+     */
+    public void validate(List<IndexExpression> clause, ConsistencyLevel consistency) throws InvalidRequestException
+    {
+    }
+
     protected IndexExpression highestSelectivityPredicate(List<IndexExpression> clause)
     {
         IndexExpression best = null;
@@ -135,4 +148,20 @@ public abstract class SecondaryIndexSearcher
     {
         return rows;
     }
+
+    /**
+     * Combines the partial results of several local index queries, retaining only the first {@code limit} rows.
+     *
+     * @param clause
+     *            An {@link IndexExpression}.
+     * @param rows
+     *            The partial results to be combined.
+     * @param limit
+     *            The max number of rows to be retained.
+     * @return The combination of the partial results.
+     */
+    public List<Row> sort(List<IndexExpression> clause, List<Row> rows, int limit)
+    {
+        return sort(clause, rows);
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.microbench;
+
+import com.stratio.cassandra.index.RowMapper;
+import com.stratio.cassandra.index.TestTable;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.marshal.UTF8Type;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * The synthetic {@link TestTable} shared by the microbenchmarks, with a partition key, an optional clustering key,
+ * four mapped regular columns and the indexed column. Its {@link Row}s are generated from a seeded {@link Random}, so
+ * every run of a benchmark works on the same data.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class BenchTable
+{
+    /** The name of the keyspace of the table. */
+    public static final String KEYSPACE_NAME = "microbench";
+
+    /** The name of the table. */
+    public static final String TABLE_NAME = "rows";
+
+    /** The name of the indexed column. */
+    public static final String INDEXED_COLUMN_NAME = TestTable.INDEXED_COLUMN_NAME;
+
+    /** The JSON representation of the index {@link Schema}. */
+    public static final String SCHEMA = "{fields : {id : {type : \"uuid\"}, name : {type : \"string\"}, " +
+                                        "age : {type : \"integer\"}, bio : {type : \"text\"}}}";
+
+    private final TestTable table;
+    private final Schema schema;
+    private final Random random = new Random(0);
+
+    /**
+     * Builds a new {@link BenchTable}.
+     *
+     * @param wide If the table must have a clustering key.
+     */
+    public BenchTable(boolean wide)
+    {
+        String primaryKey = wide ? "PRIMARY KEY (pk, ck)" : "PRIMARY KEY (pk)";
+        table = new TestTable(KEYSPACE_NAME,
+                              TABLE_NAME,
+                              "pk int, ck bigint, id uuid, name text, age int, bio text, lucene text, " + primaryKey);
+        try
+        {
+            schema = Schema.fromJson(SCHEMA);
+        }
+        catch (Exception e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the {@link CFMetaData} of the table.
+     *
+     * @return The {@link CFMetaData} of the table.
+     */
+    public CFMetaData getMetadata()
+    {
+        return table.getMetadata();
+    }
+
+    /**
+     * Returns the index {@link Schema}.
+     *
+     * @return The index {@link Schema}.
+     */
+    public Schema getSchema()
+    {
+        return schema;
+    }
+
+    /**
+     * Returns the {@link ColumnDefinition} of the specified column.
+     *
+     * @param name The name of a column.
+     * @return The {@link ColumnDefinition} of the column named {@code name}.
+     */
+    public ColumnDefinition column(String name)
+    {
+        return table.column(name);
+    }
+
+    /**
+     * Returns a new {@link RowMapper} for the table.
+     *
+     * @return A new {@link RowMapper} for the table.
+     */
+    public RowMapper rowMapper()
+    {
+        return table.rowMapper(schema);
+    }
+
+    /**
+     * Returns the specified number of random {@link Row}s.
+     *
+     * @param numRows The number of {@link Row}s to be generated.
+     * @return {@code numRows} random {@link Row}s.
+     */
+    public Row[] rows(int numRows)
+    {
+        Row[] rows = new Row[numRows];
+        for (int i = 0; i < numRows; i++)
+        {
+            rows[i] = row(random.nextInt(), random.nextLong(), null);
+        }
+        return rows;
+    }
+
+    /**
+     * Returns a random {@link Row} with the specified primary key.
+     *
+     * @param pk           The partition key.
+     * @param ck           The clustering key, ignored if the table has no clustering key.
+     * @param indexedValue The value of the indexed column, maybe {@code null}.
+     * @return A random {@link Row} with the specified primary key.
+     */
+    public Row row(int pk, long ck, String indexedValue)
+    {
+        Row row = table.row(pk,
+                            ck,
+                            "id",
+                            new UUID(random.nextLong(), random.nextLong()),
+                            "name",
+                            "name" + random.nextInt(1000),
+                            "age",
+                            random.nextInt(100),
+                            "bio",
+                            "the quick brown fox jumps over the lazy dog " + random.nextInt());
+        if (indexedValue != null)
+        {
+            row.cf.addColumn(table.name(ck, INDEXED_COLUMN_NAME), UTF8Type.instance.decompose(indexedValue), 1);
+        }
+        return row;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.microbench;
+
+import com.stratio.cassandra.index.ClusteringKeyMapper;
+import com.stratio.cassandra.index.PartitionKeyMapper;
+import com.stratio.cassandra.index.RowIndexCodec;
+import com.stratio.cassandra.index.RowIndexMetrics;
+import com.stratio.cassandra.index.RowMapperWide;
+import com.stratio.cassandra.index.SearchCache;
+import com.stratio.cassandra.index.SearchResult;
+import com.stratio.cassandra.index.ShardedLuceneIndex;
+import com.stratio.cassandra.index.query.Search;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.RowPosition;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.service.StorageService;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the retrieval of a page of search results from a {@link ShardedLuceneIndex} of a wide table, which is
+ * split into the specified number of shards, each of them made of the specified number of segments of synthetic rows.
+ * The search cache is disabled, so each invocation runs the Lucene search in all the shards and loads the keys of the
+ * found documents.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class LuceneIndexBench
+{
+    private static final int NUM_ROWS = 50000;
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final Set<String> FIELDS_TO_LOAD = Collections.emptySet();
+
+    private static final Set<String> DOC_VALUES_TO_LOAD = new HashSet<>();
+
+    static
+    {
+        DOC_VALUES_TO_LOAD.add(PartitionKeyMapper.DOC_VALUES_FIELD_NAME);
+        DOC_VALUES_TO_LOAD.add(ClusteringKeyMapper.DOC_VALUES_FIELD_NAME);
+    }
+
+    private static final String RANGE = "{filter : {type : \"range\", field : \"age\", lower : 18, upper : 65}}";
+
+    private static final String PHRASE = "{query : {type : \"phrase\", field : \"bio\", values : [\"lazy\", \"dog\"]}}";
+
+    private static final String SORTED = "{filter : {type : \"range\", field : \"age\", lower : 18}, " +
+                                         "sort : {fields : [{field : \"name\"}]}}";
+
+    @Param({"1", "4"})
+    public String shards;
+
+    @Param({"1", "10"})
+    public String segments;
+
+    @Param({"range", "phrase", "sorted"})
+    public String search;
+
+    private ShardedLuceneIndex luceneIndex;
+    private Range<RowPosition> range;
+    private Query query;
+    private Sort sort;
+    private boolean usesRelevance;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        BenchTable benchTable = new BenchTable(true);
+        Schema schema = benchTable.getSchema();
+        RowMapperWide rowMapper = (RowMapperWide) benchTable.rowMapper();
+
+        IPartitioner partitioner = StorageService.getPartitioner();
+        File directory = Files.createTempDirectory("microbench").toFile();
+        luceneIndex = new ShardedLuceneIndex(rowMapper,
+                                             partitioner,
+                                             Integer.parseInt(shards),
+                                             directory.getPath(),
+                                             60.0,
+                                             0.1,
+                                             64,
+                                             5,
+                                             30,
+                                             0,
+                                             true,
+                                             schema.analyzer(),
+                                             new RowIndexCodec(schema, RowIndexCodec.DEFAULT_POSTINGS_FORMAT),
+                                             new RowIndexMetrics(BenchTable.KEYSPACE_NAME,
+                                                                 BenchTable.TABLE_NAME,
+                                                                 "lucene_index_bench"),
+                                             new SearchCache(0, 0));
+        luceneIndex.init();
+        RowPosition minimum = partitioner.getMinimumToken().minKeyBound(partitioner);
+        range = new Range<>(minimum, minimum, partitioner);
+
+        // Write each segment with its own commit
+        int rowsPerSegment = NUM_ROWS / Integer.parseInt(segments);
+        Row[] rows = benchTable.rows(NUM_ROWS);
+        for (int i = 0; i < NUM_ROWS; i++)
+        {
+            Row row = rows[i];
+            Term term = rowMapper.term(row.key, rowMapper.clusteringKey(row.cf));
+            luceneIndex.upsert(row.key, term, rowMapper.document(row));
+            if ((i + 1) % rowsPerSegment == 0)
+            {
+                luceneIndex.commit();
+            }
+        }
+        luceneIndex.commit();
+        luceneIndex.waitForRefresh(range, 0);
+
+        Search parsedSearch = Search.fromJson(search.equals("range")
+                                              ? RANGE
+                                              : search.equals("phrase") ? PHRASE : SORTED);
+        query = parsedSearch.query(schema, null);
+        sort = parsedSearch.sort(schema);
+        usesRelevance = parsedSearch.usesRelevance();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        luceneIndex.drop();
+    }
+
+    @Benchmark
+    public List<SearchResult> search()
+    {
+        return luceneIndex.search(range,
+                                  query,
+                                  sort,
+                                  null,
+                                  PAGE_SIZE,
+                                  FIELDS_TO_LOAD,
+                                  DOC_VALUES_TO_LOAD,
+                                  usesRelevance);
+    }
+}
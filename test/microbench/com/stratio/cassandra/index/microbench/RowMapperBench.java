@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.microbench;
+
+import com.stratio.cassandra.index.RowMapper;
+import com.stratio.cassandra.index.schema.Columns;
+import org.apache.cassandra.db.Row;
+import org.apache.lucene.document.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the mapping of wide and skinny rows to Lucene documents, which is done for every indexed row. In
+ * skinny tables the clustering key column is just a not mapped regular column.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMapperBench
+{
+    private static final int NUM_ROWS = 1024;
+
+    @Param({"wide", "skinny"})
+    public String table;
+
+    private RowMapper rowMapper;
+    private Row[] rows;
+    private int next;
+
+    @Setup
+    public void setup()
+    {
+        BenchTable benchTable = new BenchTable(table.equals("wide"));
+        rowMapper = benchTable.rowMapper();
+        rows = benchTable.rows(NUM_ROWS);
+    }
+
+    @Benchmark
+    public Document document()
+    {
+        return rowMapper.document(nextRow());
+    }
+
+    @Benchmark
+    public Columns columns()
+    {
+        return rowMapper.columns(nextRow());
+    }
+
+    private Row nextRow()
+    {
+        Row row = rows[next];
+        next = (next + 1) % NUM_ROWS;
+        return row;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.microbench;
+
+import com.stratio.cassandra.index.RowMerger;
+import com.stratio.cassandra.index.RowService;
+import com.stratio.cassandra.index.query.Search;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.IndexType;
+import org.apache.cassandra.config.KSMetaData;
+import org.apache.cassandra.db.ColumnFamilyStore;
+import org.apache.cassandra.db.Keyspace;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.index.stratio.RowIndex;
+import org.apache.cassandra.locator.SimpleStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the merging of the partial search results sent by several nodes into the first rows according to the
+ * search order, which is done by {@code RowIndexSearcher#sort} in the coordinator. The {@link RowService} is built on
+ * an embedded {@link ColumnFamilyStore}, and each partial result is a run of rows sorted by Cassandra's natural
+ * order, as they are returned by the nodes.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMergerBench
+{
+    private static final int NUM_NODES = 8;
+
+    private static final int ROWS_PER_NODE = 1000;
+
+    private static final int LIMIT = 100;
+
+    private static final String NATURAL = "{filter : {type : \"range\", field : \"age\", lower : 18}}";
+
+    private static final String RELEVANCE = "{query : {type : \"match\", field : \"bio\", value : \"fox\"}}";
+
+    private static final String SORTING = "{filter : {type : \"range\", field : \"age\", lower : 18}, " +
+                                          "sort : {fields : [{field : \"name\"}, {field : \"age\", reverse : true}]}}";
+
+    @Param({"natural", "relevance", "sorting"})
+    public String order;
+
+    private RowService rowService;
+    private Search search;
+    private List<Row> rows;
+
+    @Setup
+    public void setup()
+    {
+        BenchTable benchTable = new BenchTable(true);
+        CFMetaData metadata = benchTable.getMetadata();
+
+        // Embed the table without the index, which is managed by the benchmark itself
+        Keyspace.setInitialized();
+        if (org.apache.cassandra.config.Schema.instance.getKSMetaData(BenchTable.KEYSPACE_NAME) == null)
+        {
+            org.apache.cassandra.config.Schema.instance.load(KSMetaData.testMetadata(BenchTable.KEYSPACE_NAME,
+                                                                                    SimpleStrategy.class,
+                                                                                    KSMetaData.optsWithRF(1),
+                                                                                    metadata));
+        }
+        ColumnFamilyStore cfs = Keyspace.open(BenchTable.KEYSPACE_NAME).getColumnFamilyStore(BenchTable.TABLE_NAME);
+        Map<String, String> indexOptions = new HashMap<>();
+        indexOptions.put("class_name", RowIndex.class.getName());
+        indexOptions.put("schema", BenchTable.SCHEMA);
+        ColumnDefinition columnDefinition = benchTable.column(BenchTable.INDEXED_COLUMN_NAME)
+                                                      .copy()
+                                                      .setIndex("lucene_index", IndexType.CUSTOM, indexOptions);
+        rowService = RowService.build(cfs, columnDefinition);
+
+        // Build the partial results of each node, carrying their scores in the indexed column
+        Random random = new Random(0);
+        rows = new ArrayList<>(NUM_NODES * ROWS_PER_NODE);
+        for (int i = 0; i < NUM_NODES; i++)
+        {
+            Row[] nodeRows = new Row[ROWS_PER_NODE];
+            for (int j = 0; j < ROWS_PER_NODE; j++)
+            {
+                String score = Float.toString(random.nextFloat());
+                nodeRows[j] = benchTable.row(random.nextInt(), random.nextLong(), score);
+            }
+            Arrays.sort(nodeRows, rowService.comparator());
+            Collections.addAll(rows, nodeRows);
+        }
+
+        search = Search.fromJson(order.equals("natural")
+                                 ? NATURAL
+                                 : order.equals("relevance") ? RELEVANCE : SORTING);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        rowService.delete();
+    }
+
+    @Benchmark
+    public List<Row> merge()
+    {
+        return new RowMerger(rowService, search).merge(rows, LIMIT);
+    }
+}
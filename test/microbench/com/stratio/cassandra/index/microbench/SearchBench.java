@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.microbench;
+
+import com.stratio.cassandra.index.query.Search;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the parsing of the JSON searches and of their translation to Lucene queries, which are done by every
+ * search not found in the search cache.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBench
+{
+    private static final String MATCH = "{query : {type : \"match\", field : \"name\", value : \"name42\"}}";
+
+    private static final String RANGE = "{filter : {type : \"range\", field : \"age\", lower : 18, upper : 65, " +
+                                        "include_lower : true}}";
+
+    private static final String BOOLEAN = "{query : {type : \"boolean\", " +
+                                          "must : [{type : \"wildcard\", field : \"name\", value : \"name4*\"}, " +
+                                          "{type : \"phrase\", field : \"bio\", values : [\"lazy\", \"dog\"]}], " +
+                                          "should : [{type : \"fuzzy\", field : \"bio\", value : \"quikc\"}]}, " +
+                                          "filter : {type : \"range\", field : \"age\", lower : 18}, " +
+                                          "sort : {fields : [{field : \"age\", reverse : true}, {field : \"name\"}]}}";
+
+    @Param({"match", "range", "boolean"})
+    public String search;
+
+    private Schema schema;
+    private String json;
+    private Search parsedSearch;
+
+    @Setup
+    public void setup()
+    {
+        schema = new BenchTable(true).getSchema();
+        switch (search)
+        {
+            case "match":
+                json = MATCH;
+                break;
+            case "range":
+                json = RANGE;
+                break;
+            default:
+                json = BOOLEAN;
+        }
+        parsedSearch = Search.fromJson(json);
+        parsedSearch.validate(schema);
+    }
+
+    @Benchmark
+    public Search fromJson()
+    {
+        return Search.fromJson(json);
+    }
+
+    @Benchmark
+    public Query query()
+    {
+        return parsedSearch.query(schema, null);
+    }
+
+    @Benchmark
+    public Query fromJsonAndQuery()
+    {
+        return Search.fromJson(json).query(schema, null);
+    }
+}
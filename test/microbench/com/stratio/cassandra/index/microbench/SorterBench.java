@@ -0,0 +1,106 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.microbench;
+
+import com.stratio.cassandra.index.RowMapper;
+import org.apache.cassandra.db.Row;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the sorting of the documents of a wide table by Cassandra's natural order, either with the {@code
+ * TokenMapperGenericSorter} and {@code ClusteringKeySorter} comparators, which decode and compare the key terms, or
+ * with the order preserving sorted doc values of the keys. The test partitioner is not the Murmur3 one, so the tokens
+ * are sorted by the generic sorter.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class SorterBench
+{
+    private static final int NUM_ROWS = 50000;
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"comparators", "sorted_doc_values"})
+    public String sorter;
+
+    private DirectoryReader reader;
+    private IndexSearcher searcher;
+    private Query query;
+    private Sort sort;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        BenchTable benchTable = new BenchTable(true);
+        RowMapper rowMapper = benchTable.rowMapper();
+
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, benchTable.getSchema().analyzer());
+        IndexWriter indexWriter = new IndexWriter(directory, config);
+        for (Row row : benchTable.rows(NUM_ROWS))
+        {
+            indexWriter.addDocument(rowMapper.document(row));
+        }
+        indexWriter.close();
+
+        reader = DirectoryReader.open(directory);
+        searcher = new IndexSearcher(reader);
+        query = new MatchAllDocsQuery();
+        sort = rowMapper.sort(sorter.equals("sorted_doc_values"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        reader.close();
+    }
+
+    @Benchmark
+    public TopDocs sort() throws IOException
+    {
+        return searcher.search(query, PAGE_SIZE, sort);
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.query.Aggregation;
+import com.stratio.cassandra.index.query.AggregationResult;
+import com.stratio.cassandra.index.query.AggregationResults;
+import com.stratio.cassandra.index.query.RangeAggregation;
+import com.stratio.cassandra.index.query.StatsAggregation;
+import com.stratio.cassandra.index.query.TermsAggregation;
+import com.stratio.cassandra.index.schema.ColumnMapper;
+import com.stratio.cassandra.index.schema.ColumnMapperDouble;
+import com.stratio.cassandra.index.schema.ColumnMapperInteger;
+import com.stratio.cassandra.index.schema.ColumnMapperString;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.analysis.en.EnglishAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class AggregationCollectorTest
+{
+
+    private static Schema schema()
+    {
+        Map<String, ColumnMapper<?>> mappers = new HashMap<>();
+        mappers.put("name", new ColumnMapperString());
+        mappers.put("age", new ColumnMapperInteger(null));
+        mappers.put("price", new ColumnMapperDouble(null));
+        return new Schema(EnglishAnalyzer.class.getName(), mappers);
+    }
+
+    private static void add(Document document, Schema schema, String name, Object value)
+    {
+        document.add(schema.getMapper(name).field(name, value));
+        document.add(schema.getMapper(name).docValuesField(name, value));
+    }
+
+    private static AggregationCollector collect(Schema schema, List<Aggregation> aggregations) throws IOException
+    {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        IndexWriter indexWriter = new IndexWriter(directory, config);
+        for (int i = 0; i < 100; i++)
+        {
+            if (i == 50) // Two segments
+            {
+                indexWriter.commit();
+            }
+            Document document = new Document();
+            add(document, schema, "name", "n" + i % 3);
+            if (i % 10 != 0) // Some documents without age
+            {
+                add(document, schema, "age", i);
+            }
+            add(document, schema, "price", i * 0.5);
+            indexWriter.addDocument(document);
+        }
+        indexWriter.close();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        AggregationCollector collector = new AggregationCollector(aggregations, schema);
+        new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+        reader.close();
+        directory.close();
+        return collector;
+    }
+
+    private static AggregationResults aggregate(Schema schema, List<Aggregation> aggregations) throws IOException
+    {
+        return collect(schema, aggregations).getResults();
+    }
+
+    @Test
+    public void testAggregations() throws IOException
+    {
+        List<Aggregation> aggregations = Arrays.<Aggregation>asList(
+                new TermsAggregation(null, "name", null),
+                new RangeAggregation("ages",
+                                     "age",
+                                     Arrays.asList(new RangeAggregation.Range(null, 20d),
+                                                   new RangeAggregation.Range(20d, 50d),
+                                                   new RangeAggregation.Range(90d, null))),
+                new StatsAggregation(null, "age"),
+                new StatsAggregation(null, "price"));
+        AggregationResults results = aggregate(schema(), aggregations);
+
+        TermsAggregation.Result terms = (TermsAggregation.Result) results.get("name");
+        Assert.assertEquals(34L, (long) terms.getCounts().get("n0"));
+        Assert.assertEquals(33L, (long) terms.getCounts().get("n1"));
+        Assert.assertEquals(33L, (long) terms.getCounts().get("n2"));
+
+        RangeAggregation.Result ranges = (RangeAggregation.Result) results.get("ages");
+        Assert.assertEquals(18, ranges.getBuckets().get(0).getCount());
+        Assert.assertEquals(27, ranges.getBuckets().get(1).getCount());
+        Assert.assertEquals(9, ranges.getBuckets().get(2).getCount());
+
+        StatsAggregation.Result ages = (StatsAggregation.Result) results.get("age");
+        Assert.assertEquals(90, ages.getCount());
+        Assert.assertEquals(1, ages.getMin(), 0);
+        Assert.assertEquals(99, ages.getMax(), 0);
+        Assert.assertEquals(4500, ages.getSum(), 0);
+        Assert.assertEquals(50, ages.getAvg(), 0);
+
+        StatsAggregation.Result prices = (StatsAggregation.Result) results.get("price");
+        Assert.assertEquals(100, prices.getCount());
+        Assert.assertEquals(49.5, prices.getMax(), 0);
+    }
+
+    @Test
+    public void testNumDocs() throws IOException
+    {
+        List<Aggregation> aggregations = Arrays.<Aggregation>asList(new StatsAggregation(null, "age"));
+        Assert.assertEquals(100, collect(schema(), aggregations).getNumDocs());
+    }
+
+    @Test
+    public void testMergeJson() throws IOException
+    {
+        List<Aggregation> aggregations = Arrays.<Aggregation>asList(new TermsAggregation(null, "name", null),
+                                                                    new StatsAggregation(null, "age"));
+        AggregationResults results = aggregate(schema(), aggregations);
+        AggregationResults parsed = AggregationResults.fromJson(results.toJson());
+        Assert.assertEquals(results.toJson(), parsed.toJson());
+
+        AggregationResults merged = results.merge(parsed);
+        TermsAggregation.Result terms = (TermsAggregation.Result) merged.get("name");
+        Assert.assertEquals(68L, (long) terms.getCounts().get("n0"));
+        StatsAggregation.Result ages = (StatsAggregation.Result) merged.get("age");
+        Assert.assertEquals(180, ages.getCount());
+        Assert.assertEquals(1, ages.getMin(), 0);
+        Assert.assertEquals(50, ages.getAvg(), 0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testStatsOverString()
+    {
+        new StatsAggregation(null, "name").aggregator(schema());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testTermsOverNumber()
+    {
+        new TermsAggregation(null, "age", null).aggregator(schema());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTermsWithNonPositiveSize()
+    {
+        new TermsAggregation(null, "name", 0).aggregator(schema());
+    }
+
+    @Test
+    public void testTermsSize() throws IOException
+    {
+        List<Aggregation> aggregations = Arrays.<Aggregation>asList(new TermsAggregation(null, "name", 2));
+        TermsAggregation.Result terms = (TermsAggregation.Result) aggregate(schema(), aggregations).get("name");
+        Assert.assertEquals(Arrays.asList("n0", "n1"), new ArrayList<>(terms.getCounts().keySet()));
+        Assert.assertEquals(34L, (long) terms.getCounts().get("n0"));
+        Assert.assertEquals(33L, (long) terms.getCounts().get("n1"));
+    }
+
+    @Test
+    public void testTermsMergeSize()
+    {
+        Map<String, Long> first = new HashMap<>();
+        first.put("a", 5L);
+        first.put("b", 4L);
+        Map<String, Long> second = new HashMap<>();
+        second.put("c", 7L);
+        second.put("b", 2L);
+        TermsAggregation.Result merged = (TermsAggregation.Result) new TermsAggregation.Result(first, 2).merge(
+                new TermsAggregation.Result(second, 2));
+        Assert.assertEquals(Arrays.asList("c", "b"), new ArrayList<>(merged.getCounts().keySet()));
+        Assert.assertEquals(6L, (long) merged.getCounts().get("b"));
+
+        // The order survives the JSON serialization between nodes
+        AggregationResults results = new AggregationResults(Collections.<String, AggregationResult>singletonMap(
+                "name",
+                merged));
+        TermsAggregation.Result parsed = (TermsAggregation.Result) AggregationResults.fromJson(results.toJson())
+                                                                                      .get("name");
+        Assert.assertEquals(Arrays.asList("c", "b"), new ArrayList<>(parsed.getCounts().keySet()));
+    }
+
+    @Test
+    public void testWithoutDocValues() throws IOException
+    {
+        // Documents indexed before the introduction of column doc values
+        Schema schema = schema();
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        IndexWriter indexWriter = new IndexWriter(directory, config);
+        Document document = new Document();
+        document.add(schema.getMapper("name").field("name", "n0"));
+        document.add(schema.getMapper("age").field("age", 1));
+        indexWriter.addDocument(document);
+        indexWriter.close();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        List<Aggregation> aggregations = Arrays.<Aggregation>asList(new TermsAggregation(null, "name", null),
+                                                                    new StatsAggregation(null, "age"));
+        AggregationCollector collector = new AggregationCollector(aggregations, schema);
+        new IndexSearcher(reader).search(new MatchAllDocsQuery(), collector);
+        reader.close();
+        directory.close();
+
+        AggregationResults results = collector.getResults();
+        Assert.assertTrue(((TermsAggregation.Result) results.get("name")).getCounts().isEmpty());
+        Assert.assertEquals(0, ((StatsAggregation.Result) results.get("age")).getCount());
+    }
+}
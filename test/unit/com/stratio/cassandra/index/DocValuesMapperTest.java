@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.Column;
+import com.stratio.cassandra.index.schema.Columns;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DocValuesMapperTest
+{
+
+    private static final TestTable table = new TestTable("pk int, ck int, name text, age int, description text, " +
+                                                         "tags set<text>, unmapped text, lucene text, " +
+                                                         "PRIMARY KEY (pk, ck)");
+
+    private static DocValuesMapper mapper() throws Exception
+    {
+        Schema schema = Schema.fromJson("{fields:{pk:{type:\"integer\"}, " +
+                                        "name:{type:\"string\"}, " +
+                                        "age:{type:\"integer\"}, " +
+                                        "description:{type:\"text\"}, " +
+                                        "tags:{type:\"string\"}}}");
+        return DocValuesMapper.instance(table.getMetadata(), schema);
+    }
+
+    private static Column column(String name, int value)
+    {
+        return new Column(name, Int32Type.instance.decompose(value), Int32Type.instance);
+    }
+
+    private static Column column(String name, String value)
+    {
+        return new Column(name, UTF8Type.instance.decompose(value), UTF8Type.instance);
+    }
+
+    private static IndexableField docValues(Document document, String name)
+    {
+        IndexableField docValues = null;
+        for (IndexableField field : document.getFields(name))
+        {
+            if (field.fieldType().docValueType() != null)
+            {
+                Assert.assertNull("Several doc values for " + name, docValues);
+                docValues = field;
+            }
+        }
+        return docValues;
+    }
+
+    @Test
+    public void testHasDocValues() throws Exception
+    {
+        DocValuesMapper mapper = mapper();
+        Assert.assertTrue(mapper.hasDocValues("pk"));
+        Assert.assertTrue(mapper.hasDocValues("name"));
+        Assert.assertTrue(mapper.hasDocValues("age"));
+        Assert.assertFalse(mapper.hasDocValues("description"));
+        Assert.assertFalse(mapper.hasDocValues("tags"));
+        Assert.assertFalse(mapper.hasDocValues("unmapped"));
+    }
+
+    @Test
+    public void testAddFields() throws Exception
+    {
+        Columns columns = new Columns();
+        columns.add(column("pk", 1));
+        columns.add(column("name", "alice"));
+        columns.add(column("age", 42));
+        columns.add(column("description", "a long text"));
+        columns.add(column("tags", "a"));
+        columns.add(column("tags", "b"));
+        columns.add(column("unmapped", "value"));
+        Document document = new Document();
+        mapper().addFields(document, columns);
+
+        Assert.assertEquals(3, document.getFields().size());
+        Assert.assertEquals(FieldInfo.DocValuesType.NUMERIC, docValues(document, "pk").fieldType().docValueType());
+        Assert.assertEquals(1L, docValues(document, "pk").numericValue());
+        Assert.assertEquals(FieldInfo.DocValuesType.SORTED, docValues(document, "name").fieldType().docValueType());
+        Assert.assertEquals(new BytesRef("alice"), docValues(document, "name").binaryValue());
+        Assert.assertEquals(42L, docValues(document, "age").numericValue());
+    }
+
+    @Test
+    public void testDocument() throws Exception
+    {
+        RowMapper rowMapper = table.rowMapper("{fields:{name:{type:\"string\"}, tags:{type:\"string\"}}}");
+        Row row = table.row(1, 1, "name", "alice");
+        row.cf.addColumn(table.name(1, "tags", "a"), ByteBufferUtil.EMPTY_BYTE_BUFFER, 1);
+
+        Document document = rowMapper.document(row);
+        Assert.assertEquals(new BytesRef("alice"), docValues(document, "name").binaryValue());
+        Assert.assertNull(docValues(document, "tags"));
+        Assert.assertEquals(1, document.getFields("tags").length);
+        Assert.assertTrue(rowMapper.hasDocValues("name"));
+        Assert.assertFalse(rowMapper.hasDocValues("tags"));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.sorter.SortingMergePolicy;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class EarlyTerminatingCollectorTest
+{
+
+    private static final SortField TIME = new SortField("time", SortField.Type.LONG, true);
+    private static final SortField ID = new SortField("id", SortField.Type.STRING);
+    private static final Sort INDEX_SORT = new Sort(TIME, ID);
+
+    @Test
+    public void testCanEarlyTerminate()
+    {
+        Assert.assertTrue(EarlyTerminatingCollector.canEarlyTerminate(new Sort(TIME), INDEX_SORT));
+        Assert.assertTrue(EarlyTerminatingCollector.canEarlyTerminate(INDEX_SORT, INDEX_SORT));
+        Assert.assertFalse(EarlyTerminatingCollector.canEarlyTerminate(new Sort(ID), INDEX_SORT));
+        Assert.assertFalse(EarlyTerminatingCollector.canEarlyTerminate(new Sort(TIME, ID, TIME), INDEX_SORT));
+        SortField ascendingTime = new SortField("time", SortField.Type.LONG, false);
+        Assert.assertFalse(EarlyTerminatingCollector.canEarlyTerminate(new Sort(ascendingTime), INDEX_SORT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNotPrefix()
+    {
+        TopFieldCollector tfc;
+        try
+        {
+            tfc = TopFieldCollector.create(new Sort(ID), 10, null, true, false, false, false);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        new EarlyTerminatingCollector(tfc, new Sort(ID), INDEX_SORT, 10, null);
+    }
+
+    @Test
+    public void testPaging() throws IOException
+    {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        config.setMergePolicy(new SortingMergePolicy(config.getMergePolicy(), INDEX_SORT));
+        IndexWriter indexWriter = new IndexWriter(directory, config);
+
+        // A sorted segment and an unsorted one, with repeated sort values
+        Random random = new Random(0);
+        for (int i = 0; i < 500; i++)
+        {
+            if (i == 400)
+            {
+                indexWriter.forceMerge(1);
+            }
+            Document document = new Document();
+            document.add(new StringField("id", String.format("%05d", i), Field.Store.YES));
+            document.add(new LongField("time", random.nextInt(100), Field.Store.NO));
+            indexWriter.addDocument(document);
+        }
+        indexWriter.commit();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        IndexSearcher searcher = new IndexSearcher(reader);
+        Query query = new MatchAllDocsQuery();
+        for (Sort sort : new Sort[]{new Sort(TIME), INDEX_SORT})
+        {
+            List<String> expected = ids(searcher, searcher.search(query, 500, sort).scoreDocs);
+            List<String> actual = new ArrayList<>();
+            FieldDoc after = null;
+            while (true)
+            {
+                TopFieldCollector tfc = TopFieldCollector.create(sort, 7, after, true, false, false, false);
+                searcher.search(query, new EarlyTerminatingCollector(tfc, sort, INDEX_SORT, 7, after));
+                TopDocs topDocs = tfc.topDocs();
+                if (topDocs.scoreDocs.length == 0)
+                {
+                    break;
+                }
+                actual.addAll(ids(searcher, topDocs.scoreDocs));
+                after = (FieldDoc) topDocs.scoreDocs[topDocs.scoreDocs.length - 1];
+            }
+            Assert.assertEquals(expected.size(), actual.size());
+            Assert.assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+            if (sort == INDEX_SORT)
+            {
+                Assert.assertEquals(expected, actual);
+            }
+        }
+
+        reader.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    private static List<String> ids(IndexSearcher searcher, ScoreDoc[] scoreDocs) throws IOException
+    {
+        List<String> ids = new ArrayList<>(scoreDocs.length);
+        for (ScoreDoc scoreDoc : scoreDocs)
+        {
+            ids.add(searcher.doc(scoreDoc.doc).get("id"));
+        }
+        return ids;
+    }
+}
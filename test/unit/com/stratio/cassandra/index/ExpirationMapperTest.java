@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ArrayBackedSortedColumns;
+import org.apache.cassandra.db.BufferCell;
+import org.apache.cassandra.db.BufferDeletedCell;
+import org.apache.cassandra.db.BufferExpiringCell;
+import org.apache.cassandra.db.Cell;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.Composites;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class ExpirationMapperTest
+{
+
+    private static final CFMetaData metadata = CFMetaData.compile("CREATE TABLE t (pk int PRIMARY KEY, " +
+                                                                  "name text, age int, lucene text)",
+                                                                  "ks");
+
+    private static final ByteBuffer VALUE = UTF8Type.instance.decompose("value");
+
+    private static CellName name(String column)
+    {
+        ColumnDefinition columnDefinition = metadata.getColumnDefinition(UTF8Type.instance.decompose(column));
+        return metadata.comparator.create(Composites.EMPTY, columnDefinition);
+    }
+
+    private static Row row(int pk, Cell... cells)
+    {
+        ColumnFamily cf = ArrayBackedSortedColumns.factory.create(metadata);
+        for (Cell cell : cells)
+        {
+            cf.addColumn(cell);
+        }
+        return new Row(DatabaseDescriptor.getPartitioner().decorateKey(Int32Type.instance.decompose(pk)), cf);
+    }
+
+    private static Cell expiring(String column, int localExpirationTime)
+    {
+        return new BufferExpiringCell(name(column), VALUE, 1, 60, localExpirationTime);
+    }
+
+    @Test
+    public void testExpiration()
+    {
+        Assert.assertEquals(200, (int) ExpirationMapper.expiration(row(1,
+                                                                       expiring("name", 100),
+                                                                       expiring("age", 200))));
+    }
+
+    @Test
+    public void testExpirationWithTombstones()
+    {
+        Cell tombstone = new BufferDeletedCell(name("age"), 300, 1);
+        Assert.assertEquals(100, (int) ExpirationMapper.expiration(row(1, expiring("name", 100), tombstone)));
+    }
+
+    @Test
+    public void testNoExpiration()
+    {
+        Cell cell = new BufferCell(name("age"), VALUE, 1);
+        Assert.assertNull(ExpirationMapper.expiration(row(1, expiring("name", 100), cell)));
+        Assert.assertNull(ExpirationMapper.expiration(row(1)));
+    }
+
+    @Test
+    public void testExpiredQuery() throws Exception
+    {
+        ExpirationMapper mapper = ExpirationMapper.instance();
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory,
+                                             new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer()));
+        Row[] rows = {row(1, expiring("name", 100)),
+                      row(2, expiring("name", 200)),
+                      row(3, new BufferCell(name("name"), VALUE, 1))};
+        for (Row row : rows)
+        {
+            Document document = new Document();
+            mapper.addFields(document, row);
+            writer.addDocument(document);
+        }
+        writer.close();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        IndexSearcher searcher = new IndexSearcher(reader);
+        Assert.assertEquals(0, searcher.search(mapper.expiredQuery(99), 10).totalHits);
+        Assert.assertEquals(1, searcher.search(mapper.expiredQuery(100), 10).totalHits);
+        Assert.assertEquals(2, searcher.search(mapper.expiredQuery(Integer.MAX_VALUE), 10).totalHits);
+        reader.close();
+    }
+
+    @Test
+    public void testNotExpiredFilter() throws Exception
+    {
+        ExpirationMapper mapper = ExpirationMapper.instance();
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory,
+                                             new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer()));
+        Row[] rows = {row(1, expiring("name", 100)),
+                      row(2, expiring("name", 200)),
+                      row(3, new BufferCell(name("name"), VALUE, 1))};
+        for (Row row : rows)
+        {
+            Document document = new Document();
+            mapper.addFields(document, row);
+            writer.addDocument(document);
+        }
+        writer.close();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        IndexSearcher searcher = new IndexSearcher(reader);
+        Query query = new MatchAllDocsQuery();
+        Assert.assertEquals(3, searcher.search(query, mapper.notExpiredFilter(99), 10).totalHits);
+        Assert.assertEquals(2, searcher.search(query, mapper.notExpiredFilter(100), 10).totalHits);
+        Assert.assertEquals(1, searcher.search(query, mapper.notExpiredFilter(Integer.MAX_VALUE), 10).totalHits);
+        Assert.assertEquals(mapper.notExpiredFilter(99), mapper.notExpiredFilter(100));
+        reader.close();
+    }
+
+    @Test
+    public void testNotExpiredFilterWithoutExpiringRows() throws Exception
+    {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory,
+                                             new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer()));
+        writer.addDocument(new Document());
+        writer.close();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        IndexSearcher searcher = new IndexSearcher(reader);
+        Filter filter = ExpirationMapper.instance().notExpiredFilter(Integer.MAX_VALUE);
+        Assert.assertEquals(1, searcher.search(new MatchAllDocsQuery(), filter, 10).totalHits);
+        reader.close();
+    }
+}
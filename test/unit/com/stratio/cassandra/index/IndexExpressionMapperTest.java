@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.ColumnMapperBlob;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.cql3.Operator;
+import org.apache.cassandra.db.IndexExpression;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class IndexExpressionMapperTest
+{
+
+    private static IndexExpressionMapper mapper() throws Exception
+    {
+        CFMetaData metadata = CFMetaData.compile("CREATE TABLE t (id int PRIMARY KEY, name text, age int, " +
+                                                 "bio text, score bigint, data blob, lucene text)", "ks");
+        Schema schema = Schema.fromJson("{fields:{name:{type:\"string\"}, age:{type:\"integer\"}, " +
+                                        "bio:{type:\"text\"}, score:{type:\"string\"}, " +
+                                        "data:{type:\"bytes\"}}}");
+        return new IndexExpressionMapper(metadata, schema);
+    }
+
+    private static IndexExpression expression(String column, Operator operator, ByteBuffer value)
+    {
+        return new IndexExpression(UTF8Type.instance.decompose(column), operator, value);
+    }
+
+    @Test
+    public void testEquals() throws Exception
+    {
+        IndexExpression expression = expression("name", Operator.EQ, UTF8Type.instance.decompose("alice"));
+        Query query = mapper().query(Collections.singletonList(expression));
+        Assert.assertNotNull(query);
+        Query clause = ((BooleanQuery) query).getClauses()[0].getQuery();
+        Assert.assertEquals(TermQuery.class, clause.getClass());
+        Assert.assertEquals("alice", ((TermQuery) clause).getTerm().text());
+    }
+
+    @Test
+    public void testEqualsBlob() throws Exception
+    {
+        ByteBuffer value = ByteBuffer.wrap(new byte[]{(byte) 0xCA, (byte) 0xFE});
+        IndexExpression expression = expression("data", Operator.EQ, value);
+        Query query = mapper().query(Collections.singletonList(expression));
+        Assert.assertNotNull(query);
+        Query clause = ((BooleanQuery) query).getClauses()[0].getQuery();
+        Assert.assertEquals(TermQuery.class, clause.getClass());
+        Assert.assertEquals(new ColumnMapperBlob().indexValue("data", value), ((TermQuery) clause).getTerm().text());
+        Assert.assertEquals("cafe", ((TermQuery) clause).getTerm().text());
+    }
+
+    @Test
+    public void testRange() throws Exception
+    {
+        IndexExpression expression = expression("age", Operator.GT, Int32Type.instance.decompose(18));
+        Query query = mapper().query(Collections.singletonList(expression));
+        Assert.assertNotNull(query);
+        Query clause = ((BooleanQuery) query).getClauses()[0].getQuery();
+        Assert.assertEquals(NumericRangeQuery.class, clause.getClass());
+        NumericRangeQuery<?> rangeQuery = (NumericRangeQuery<?>) clause;
+        Assert.assertEquals(18, rangeQuery.getMin());
+        Assert.assertNull(rangeQuery.getMax());
+        Assert.assertFalse(rangeQuery.includesMin());
+    }
+
+    @Test
+    public void testAnalyzedNotMapped() throws Exception
+    {
+        IndexExpression expression = expression("bio", Operator.EQ, UTF8Type.instance.decompose("Hello"));
+        Assert.assertNull(mapper().query(Collections.singletonList(expression)));
+    }
+
+    @Test
+    public void testNotMonotonicNotMapped() throws Exception
+    {
+        IndexExpression expression = expression("score", Operator.LT, ByteBuffer.wrap(new byte[]{0, 0, 0, 0, 0, 0, 0, 9}));
+        Assert.assertNull(mapper().query(Collections.singletonList(expression)));
+    }
+
+    @Test
+    public void testNotMappedColumn() throws Exception
+    {
+        IndexExpression expression = expression("id", Operator.EQ, Int32Type.instance.decompose(1));
+        Assert.assertNull(mapper().query(Collections.singletonList(expression)));
+    }
+
+    @Test
+    public void testExact() throws Exception
+    {
+        IndexExpressionMapper mapper = mapper();
+        IndexExpression name = expression("name", Operator.EQ, UTF8Type.instance.decompose("alice"));
+        IndexExpression age = expression("age", Operator.LTE, Int32Type.instance.decompose(65));
+        IndexExpression data = expression("data", Operator.EQ, ByteBuffer.wrap(new byte[]{1, 2}));
+        Assert.assertTrue(mapper.isExact(Collections.<IndexExpression>emptyList()));
+        Assert.assertTrue(mapper.isExact(Arrays.asList(name, age, data)));
+    }
+
+    @Test
+    public void testNotExact() throws Exception
+    {
+        IndexExpressionMapper mapper = mapper();
+        IndexExpression name = expression("name", Operator.EQ, UTF8Type.instance.decompose("alice"));
+        IndexExpression bio = expression("bio", Operator.EQ, UTF8Type.instance.decompose("Hello"));
+        IndexExpression score = expression("score", Operator.EQ, LongType.instance.decompose(9L));
+        IndexExpression data = expression("data", Operator.GT, ByteBuffer.wrap(new byte[]{1, 2}));
+        IndexExpression id = expression("id", Operator.EQ, Int32Type.instance.decompose(1));
+        Assert.assertFalse(mapper.isExact(Arrays.asList(name, bio)));
+        Assert.assertFalse(mapper.isExact(Arrays.asList(name, score)));
+        Assert.assertFalse(mapper.isExact(Arrays.asList(name, data)));
+        Assert.assertFalse(mapper.isExact(Arrays.asList(name, id)));
+    }
+
+    @Test
+    public void testSeveral() throws Exception
+    {
+        IndexExpression expression1 = expression("name", Operator.EQ, UTF8Type.instance.decompose("alice"));
+        IndexExpression expression2 = expression("bio", Operator.EQ, UTF8Type.instance.decompose("Hello"));
+        IndexExpression expression3 = expression("age", Operator.LTE, Int32Type.instance.decompose(65));
+        Query query = mapper().query(Arrays.asList(expression1, expression2, expression3));
+        Assert.assertEquals(2, ((BooleanQuery) query).clauses().size());
+    }
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.google.common.io.Files;
+import com.stratio.cassandra.index.query.Aggregation;
+import com.stratio.cassandra.index.query.StatsAggregation;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.db.Row;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.sorter.SortingMergePolicy;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LuceneIndexTest
+{
+
+    private static final TestTable table = new TestTable(TestTable.WIDE_COLUMNS);
+
+    private static final Set<String> FIELDS_TO_LOAD = new HashSet<>();
+
+    static
+    {
+        FIELDS_TO_LOAD.add(PartitionKeyMapper.FIELD_NAME);
+        FIELDS_TO_LOAD.add(ClusteringKeyMapper.FIELD_NAME);
+    }
+
+    private static final Set<String> NO_DOC_VALUES = Collections.emptySet();
+
+    private static Schema schema() throws Exception
+    {
+        return Schema.fromJson(TestTable.WIDE_SCHEMA);
+    }
+
+    private static RowMapper rowMapper() throws Exception
+    {
+        return table.rowMapper(schema());
+    }
+
+    private static Row row(int pk, int ck, String name, int age)
+    {
+        return table.row(pk, ck, "name", name, "age", age);
+    }
+
+    /**
+     * Returns a new {@link LuceneIndex} with the specified segments search executor, containing several segments of
+     * rows with several clustering keys.
+     */
+    private static LuceneIndex index(RowMapper rowMapper, RowIndexMetrics metrics, ExecutorService searchExecutor)
+    throws Exception
+    {
+        File directory = Files.createTempDir();
+        Schema schema = schema();
+        LuceneIndex index = new LuceneIndex(rowMapper,
+                                            directory.getPath(),
+                                            60.0,
+                                            0.1,
+                                            64,
+                                            5,
+                                            30,
+                                            searchExecutor,
+                                            true,
+                                            schema.analyzer(),
+                                            new RowIndexCodec(schema, RowIndexCodec.DEFAULT_POSTINGS_FORMAT),
+                                            metrics,
+                                            new SearchCache(0, 0));
+        index.init();
+        for (int pk = 0; pk < 20; pk++)
+        {
+            for (int ck = 0; ck < 5; ck++)
+            {
+                Row row = ((pk + ck) % 2 == 0) ? row(pk, ck, "alice" + ck, pk + ck) : row(pk, ck, "bob" + ck, pk);
+                RowMapperWide rowMapperWide = (RowMapperWide) rowMapper;
+                index.upsert(rowMapperWide.term(row.key, rowMapperWide.clusteringKey(row.cf)),
+                             rowMapper.document(row));
+            }
+            if (pk % 5 == 4) // Several segments
+            {
+                index.commit();
+            }
+        }
+        index.commit();
+        index.waitForRefresh(0);
+        return index;
+    }
+
+    private static List<String> keys(RowMapper rowMapper, List<SearchResult> searchResults)
+    {
+        List<String> keys = new ArrayList<>(searchResults.size());
+        for (SearchResult searchResult : searchResults)
+        {
+            keys.add(searchResult.getPartitionKey() + ":" +
+                     ((RowMapperWide) rowMapper).toString(searchResult.getClusteringKey()));
+        }
+        return keys;
+    }
+
+    private static List<String> search(RowMapper rowMapper,
+                                       LuceneIndex index,
+                                       Query query,
+                                       Sort sort,
+                                       boolean usesRelevance)
+    {
+        List<SearchResult> all = new ArrayList<>();
+        SearchResult after = null;
+        List<SearchResult> page;
+        do // Paginate to check the search after the last result
+        {
+            page = index.search(query, sort, after, 7, FIELDS_TO_LOAD, NO_DOC_VALUES, usesRelevance);
+            all.addAll(page);
+            after = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == 7);
+        return keys(rowMapper, all);
+    }
+
+    @Test
+    public void testParallelSearch() throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        RowIndexMetrics metrics = new RowIndexMetrics("ks", "t", "lucene_index_test_parallel");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        LuceneIndex sequential = index(rowMapper, metrics, null);
+        LuceneIndex parallel = index(rowMapper, metrics, pool);
+        try
+        {
+            Assert.assertTrue(parallel.getNumSegments() > 1);
+            Query all = new MatchAllDocsQuery();
+            Query range = NumericRangeQuery.newIntRange("age", 5, 15, true, false);
+            Sort sort = new Sort(new SortField("name", SortField.Type.STRING));
+
+            List<String> expected = search(rowMapper, sequential, all, null, false);
+            Assert.assertEquals(100, expected.size());
+            Assert.assertEquals(expected, search(rowMapper, parallel, all, null, false));
+
+            expected = search(rowMapper, sequential, range, null, true);
+            Assert.assertFalse(expected.isEmpty());
+            Assert.assertEquals(expected, search(rowMapper, parallel, range, null, true));
+
+            expected = search(rowMapper, sequential, range, sort, false);
+            Assert.assertEquals(expected, search(rowMapper, parallel, range, sort, false));
+        }
+        finally
+        {
+            sequential.drop();
+            parallel.drop();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSearchTimeHistograms() throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        RowIndexMetrics metrics = new RowIndexMetrics("ks", "t", "lucene_index_test_times");
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        LuceneIndex index = index(rowMapper, metrics, pool);
+        try
+        {
+            long wallCount = metrics.searchWallTime.count();
+            long cpuCount = metrics.searchCpuTime.count();
+            index.search(new MatchAllDocsQuery(), null, null, 10, FIELDS_TO_LOAD, NO_DOC_VALUES, false);
+            index.search(new MatchAllDocsQuery(), null, null, 10, FIELDS_TO_LOAD, NO_DOC_VALUES, true);
+            Assert.assertEquals(wallCount + 2, metrics.searchWallTime.count());
+            Assert.assertEquals(cpuCount + 2, metrics.searchCpuTime.count());
+            Assert.assertTrue(metrics.searchWallTime.min() >= 0);
+            Assert.assertTrue(metrics.searchCpuTime.min() >= 0);
+        }
+        finally
+        {
+            index.drop();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSearchExecutorDoesNotShutdownPool() throws Exception
+    {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try
+        {
+            LuceneIndex.SearchExecutor executor = new LuceneIndex.SearchExecutor(pool);
+            executor.shutdown();
+            Assert.assertTrue(executor.shutdownNow().isEmpty());
+            Assert.assertFalse(pool.isShutdown());
+            Assert.assertEquals("done", executor.submit(new Callable<String>()
+            {
+                @Override
+                public String call()
+                {
+                    return "done";
+                }
+            }).get());
+            Assert.assertTrue(executor.getCpuTime() >= 0);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    private static IndexWriteBatch.Write upsert(RowMapper rowMapper, Row row)
+    {
+        RowMapperWide rowMapperWide = (RowMapperWide) rowMapper;
+        return new IndexWriteBatch.Write(rowMapperWide.term(row.key, rowMapperWide.clusteringKey(row.cf)), row, null);
+    }
+
+    private static IndexWriteBatch.Write delete(RowMapper rowMapper, Row row)
+    {
+        RowMapperWide rowMapperWide = (RowMapperWide) rowMapper;
+        return new IndexWriteBatch.Write(rowMapperWide.term(row.key, rowMapperWide.clusteringKey(row.cf)), null, null);
+    }
+
+    @Test
+    public void testWrite() throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        RowIndexMetrics metrics = new RowIndexMetrics("ks", "t", "lucene_index_test_write");
+        LuceneIndex index = index(rowMapper, metrics, null);
+        try
+        {
+            List<IndexWriteBatch.Write> writes = new ArrayList<>();
+            writes.add(upsert(rowMapper, row(100, 0, "carol", 1)));
+            writes.add(upsert(rowMapper, row(101, 0, "erin", 1)));
+            writes.add(upsert(rowMapper, row(100, 0, "dave", 1))); // Replaces carol
+            writes.add(delete(rowMapper, row(101, 0, "erin", 1))); // Deletes erin
+            writes.add(upsert(rowMapper, row(101, 1, "frank", 1)));
+            writes.add(new IndexWriteBatch.Write(null, null, new TermQuery(new Term("name", "alice0"))));
+            index.write(writes);
+            index.waitForRefresh(0);
+
+            Assert.assertEquals(92, index.getNumDocs());
+            Assert.assertEquals(Collections.singletonList("100:0"), search(rowMapper, index, "dave"));
+            Assert.assertEquals(Collections.singletonList("101:1"), search(rowMapper, index, "frank"));
+            Assert.assertTrue(search(rowMapper, index, "carol").isEmpty());
+            Assert.assertTrue(search(rowMapper, index, "erin").isEmpty());
+            Assert.assertTrue(search(rowMapper, index, "alice0").isEmpty());
+        }
+        finally
+        {
+            index.drop();
+        }
+    }
+
+    private static List<String> search(RowMapper rowMapper, LuceneIndex index, String name)
+    {
+        return search(rowMapper, index, new TermQuery(new Term("name", name)), null, false);
+    }
+
+    @Test
+    public void testDeleteAll() throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        RowIndexMetrics metrics = new RowIndexMetrics("ks", "t", "lucene_index_test_delete_all");
+        LuceneIndex index = index(rowMapper, metrics, null);
+        try
+        {
+            String formatVersion = index.getCommitData("format_version");
+            Assert.assertNotNull(formatVersion);
+            index.deleteAll();
+            index.commit();
+            index.waitForRefresh(0);
+            Assert.assertEquals(0, index.getNumDocs());
+            Assert.assertEquals(0, index.getNumSegments());
+            Assert.assertEquals(formatVersion, index.getCommitData("format_version"));
+        }
+        finally
+        {
+            index.drop();
+        }
+    }
+
+    private static List<Aggregation> ageStats()
+    {
+        return Collections.<Aggregation>singletonList(new StatsAggregation("ages", "age"));
+    }
+
+    private static long ageCount(AggregationCollector collector)
+    {
+        return ((StatsAggregation.Result) collector.getResults().get("ages")).getCount();
+    }
+
+    @Test
+    public void testAggregateWithoutMatches() throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        RowIndexMetrics metrics = new RowIndexMetrics("ks", "t", "lucene_index_test_aggregate_empty");
+        LuceneIndex index = index(rowMapper, metrics, null);
+        try
+        {
+            AggregationCollector collector = new AggregationCollector(ageStats(), schema());
+            Query query = new TermQuery(new Term("name", "nobody"));
+            Assert.assertNull(index.aggregate(query, collector, FIELDS_TO_LOAD, NO_DOC_VALUES));
+            Assert.assertEquals(0, collector.getNumDocs());
+            Assert.assertEquals(0, ageCount(collector));
+        }
+        finally
+        {
+            index.drop();
+        }
+    }
+
+    @Test
+    public void testAggregateWithConcurrentDelete() throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        RowIndexMetrics metrics = new RowIndexMetrics("ks", "t", "lucene_index_test_aggregate_delete");
+        final LuceneIndex index = index(rowMapper, metrics, null);
+        try
+        {
+            AggregationCollector collector = new AggregationCollector(ageStats(), schema())
+            {
+                @Override
+                public void collect(int doc)
+                {
+                    if (getNumDocs() == 0) // Delete all the documents and refresh while aggregating
+                    {
+                        index.delete(new MatchAllDocsQuery());
+                        index.waitForRefresh(0);
+                    }
+                    super.collect(doc);
+                }
+            };
+            SearchResult first = index.aggregate(new MatchAllDocsQuery(), collector, FIELDS_TO_LOAD, NO_DOC_VALUES);
+            Assert.assertEquals(0, index.getNumDocs());
+            Assert.assertEquals(100, collector.getNumDocs());
+            Assert.assertEquals(100, ageCount(collector));
+
+            // The first aggregated document can still carry the results
+            Assert.assertNotNull(first);
+            Row row = rowMapper.emptyRow(first, 0);
+            Assert.assertEquals(first.getPartitionKey(), row.key);
+            Assert.assertEquals(first.getClusteringKey(), ((RowMapperWide) rowMapper).clusteringKey(row.cf));
+        }
+        finally
+        {
+            index.drop();
+        }
+    }
+
+    private static void add(IndexWriter writer, long... values) throws Exception
+    {
+        for (long value : values)
+        {
+            Document document = new Document();
+            document.add(new NumericDocValuesField("n", value));
+            writer.addDocument(document);
+        }
+        writer.commit();
+    }
+
+    @Test
+    public void testAdjacencyDetector() throws Exception
+    {
+        Sort sort = new Sort(new SortField("n", SortField.Type.LONG));
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        config.setMergePolicy(new SortingMergePolicy(config.getMergePolicy(), sort));
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory, config);
+        add(writer, 3, 1);
+        add(writer, 2, 0);
+        DirectoryReader reader = DirectoryReader.open(writer, false);
+        try
+        {
+            Assert.assertEquals(2, reader.leaves().size());
+            Assert.assertNull(LuceneIndex.AdjacencyDetector.create(reader, sort)); // Several segments
+            reader.close();
+
+            writer.forceMerge(1); // A sorted segment with docs 0 to 3
+            reader = DirectoryReader.open(writer, false);
+            LuceneIndex.AdjacencyDetector detector = LuceneIndex.AdjacencyDetector.create(reader, sort);
+            Assert.assertNotNull(detector);
+            Assert.assertFalse(detector.isAdjacent(0));
+            Assert.assertTrue(detector.isAdjacent(1));
+            Assert.assertTrue(detector.isAdjacent(2));
+            Assert.assertFalse(detector.isAdjacent(2));
+            Assert.assertFalse(detector.isAdjacent(0));
+            Assert.assertTrue(detector.isAdjacent(1));
+            Assert.assertFalse(detector.isAdjacent(3));
+
+            detector = LuceneIndex.AdjacencyDetector.create(reader, sort); // Reverse order
+            Assert.assertFalse(detector.isAdjacent(3));
+            Assert.assertFalse(detector.isAdjacent(2));
+            Assert.assertFalse(detector.isAdjacent(1));
+        }
+        finally
+        {
+            reader.close();
+            writer.close();
+            directory.close();
+        }
+    }
+}
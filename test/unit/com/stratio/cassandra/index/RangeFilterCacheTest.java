@@ -0,0 +1,66 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.lucene.search.CachingWrapperFilter;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.NumericRangeQuery;
+import org.apache.lucene.search.Query;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RangeFilterCacheTest
+{
+
+    private static Query query(long lower, long upper)
+    {
+        return NumericRangeQuery.newLongRange("_token_murmur", lower, upper, true, false);
+    }
+
+    @Test
+    public void testNull()
+    {
+        Assert.assertNull(new RangeFilterCache(10).filter(null));
+    }
+
+    @Test
+    public void testCached()
+    {
+        RangeFilterCache cache = new RangeFilterCache(10);
+        Filter filter = cache.filter(query(0, 10));
+        Assert.assertTrue(filter instanceof CachingWrapperFilter);
+        Assert.assertSame(filter, cache.filter(query(0, 10)));
+        Assert.assertNotSame(filter, cache.filter(query(0, 11)));
+    }
+
+    @Test
+    public void testInvalidate()
+    {
+        RangeFilterCache cache = new RangeFilterCache(10);
+        Filter filter = cache.filter(query(0, 10));
+        cache.invalidate();
+        Assert.assertNotSame(filter, cache.filter(query(0, 10)));
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        RangeFilterCache cache = new RangeFilterCache(0);
+        Filter filter = cache.filter(query(0, 10));
+        Assert.assertFalse(filter instanceof CachingWrapperFilter);
+        Assert.assertNotSame(filter, cache.filter(query(0, 10)));
+    }
+}
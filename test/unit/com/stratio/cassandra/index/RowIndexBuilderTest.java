@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.LongToken;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class RowIndexBuilderTest
+{
+
+    private static final IPartitioner partitioner = new Murmur3Partitioner();
+
+    @Test
+    public void testSplitRingWithoutSamples()
+    {
+        List<Range<Token>> ranges = RowIndexBuilder.splitRing(partitioner, new ArrayList<Token>(), 4);
+        Assert.assertEquals(1, ranges.size());
+        Assert.assertEquals(partitioner.getMinimumToken(), ranges.get(0).left);
+        Assert.assertEquals(partitioner.getMinimumToken(), ranges.get(0).right);
+    }
+
+    @Test
+    public void testSplitRing()
+    {
+        List<Token> samples = new ArrayList<>();
+        for (long i = 0; i < 100; i++)
+        {
+            samples.add(new LongToken(i * 10));
+        }
+        Collections.shuffle(samples);
+        List<Range<Token>> ranges = RowIndexBuilder.splitRing(partitioner, samples, 4);
+        Assert.assertEquals(4, ranges.size());
+        Assert.assertEquals(partitioner.getMinimumToken(), ranges.get(0).left);
+        Assert.assertEquals(new LongToken(250), ranges.get(0).right);
+        Assert.assertEquals(new LongToken(500), ranges.get(1).right);
+        Assert.assertEquals(new LongToken(750), ranges.get(2).right);
+        Assert.assertEquals(partitioner.getMinimumToken(), ranges.get(3).right);
+        for (int i = 1; i < ranges.size(); i++)
+        {
+            Assert.assertEquals(ranges.get(i - 1).right, ranges.get(i).left);
+        }
+    }
+
+    @Test
+    public void testSplitRingWithRepeatedSamples()
+    {
+        List<Token> samples = new ArrayList<>();
+        for (long i = 0; i < 100; i++)
+        {
+            samples.add(new LongToken(i < 90 ? 1 : i));
+        }
+        List<Range<Token>> ranges = RowIndexBuilder.splitRing(partitioner, samples, 4);
+        Assert.assertEquals(2, ranges.size());
+        Assert.assertEquals(new LongToken(1), ranges.get(0).right);
+        Assert.assertEquals(new LongToken(1), ranges.get(1).left);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class RowIndexCodecTest
+{
+
+    private static Schema schema() throws IOException
+    {
+        return Schema.fromJson("{fields : {name : {type : \"string\", postings_format : \"Pulsing41\"}, " +
+                               "age : {type : \"integer\"}}}");
+    }
+
+    @Test
+    public void testPostingsFormats() throws IOException
+    {
+        RowIndexCodec codec = new RowIndexCodec(schema(), RowIndexCodec.BLOOM_FILTER_POSTINGS_FORMAT);
+        Assert.assertEquals("BloomFilter", codec.getPostingsFormatForField(PartitionKeyMapper.FIELD_NAME).getName());
+        Assert.assertEquals("BloomFilter", codec.getPostingsFormatForField(FullKeyMapper.FIELD_NAME).getName());
+        Assert.assertEquals("Pulsing41", codec.getPostingsFormatForField("name").getName());
+        Assert.assertEquals("Pulsing41", codec.getPostingsFormatForField("name.suffix").getName());
+        Assert.assertEquals("Lucene41", codec.getPostingsFormatForField("age").getName());
+        Assert.assertEquals("Lucene41", codec.getPostingsFormatForField("_token_murmur").getName());
+    }
+
+    @Test
+    public void testSharedPostingsFormats() throws IOException
+    {
+        RowIndexCodec codec = new RowIndexCodec(schema(), "Pulsing41");
+        Assert.assertSame(codec.getPostingsFormatForField(PartitionKeyMapper.FIELD_NAME),
+                          codec.getPostingsFormatForField("name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownPostingsFormat()
+    {
+        RowIndexCodec.postingsFormatForName("unknown");
+    }
+
+    @Test
+    public void testReadWithDefaultCodec() throws IOException
+    {
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer());
+        config.setCodec(new RowIndexCodec(schema(), RowIndexCodec.BLOOM_FILTER_POSTINGS_FORMAT));
+        config.setUseCompoundFile(false);
+        IndexWriter indexWriter = new IndexWriter(directory, config);
+        for (int i = 0; i < 10; i++)
+        {
+            Document document = new Document();
+            document.add(new StringField(PartitionKeyMapper.FIELD_NAME, "k" + i, Field.Store.NO));
+            document.add(new StringField("name", "n" + i % 2, Field.Store.NO));
+            indexWriter.addDocument(document);
+        }
+        indexWriter.deleteDocuments(new Term(PartitionKeyMapper.FIELD_NAME, "k0"));
+        indexWriter.close();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        IndexSearcher searcher = new IndexSearcher(reader);
+        Assert.assertEquals(0, searcher.search(new TermQuery(new Term(PartitionKeyMapper.FIELD_NAME, "k0")), 1)
+                                       .totalHits);
+        Assert.assertEquals(1, searcher.search(new TermQuery(new Term(PartitionKeyMapper.FIELD_NAME, "k1")), 1)
+                                       .totalHits);
+        Assert.assertEquals(5, searcher.search(new TermQuery(new Term("name", "n1")), 10).totalHits);
+        reader.close();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.google.common.io.Files;
+import com.stratio.cassandra.index.schema.Schema;
+import com.stratio.cassandra.index.util.TaskQueue;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.RowPosition;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.lucene.index.Term;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+public class RowIndexMetricsTest
+{
+
+    private static final TestTable table = new TestTable(TestTable.WIDE_COLUMNS);
+
+    /**
+     * Returns the metrics registered with the specified index name, mapped by metric name.
+     */
+    private static Map<String, Object> metrics(String indexName)
+    {
+        Map<String, Object> metrics = new HashMap<>();
+        String scope = table.getMetadata().ksName + "." + table.getMetadata().cfName + "." + indexName;
+        for (Map.Entry<MetricName, ?> entry : Metrics.defaultRegistry().allMetrics().entrySet())
+        {
+            MetricName name = entry.getKey();
+            if ("com.stratio.cassandra.index".equals(name.getGroup()) && scope.equals(name.getScope()))
+            {
+                metrics.put(name.getName(), entry.getValue());
+            }
+        }
+        return metrics;
+    }
+
+    private static Object gauge(String indexName, String metricName)
+    {
+        return ((Gauge<?>) metrics(indexName).get(metricName)).value();
+    }
+
+    private static ShardedLuceneIndex index(RowMapper rowMapper, Schema schema, RowIndexMetrics metrics)
+    {
+        ShardedLuceneIndex index = new ShardedLuceneIndex(rowMapper,
+                                                          DatabaseDescriptor.getPartitioner(),
+                                                          2,
+                                                          Files.createTempDir().getPath(),
+                                                          60.0,
+                                                          0.1,
+                                                          64,
+                                                          5,
+                                                          30,
+                                                          0,
+                                                          true,
+                                                          schema.analyzer(),
+                                                          new RowIndexCodec(schema,
+                                                                            RowIndexCodec.DEFAULT_POSTINGS_FORMAT),
+                                                          metrics,
+                                                          new SearchCache(0, 0));
+        index.init();
+        return index;
+    }
+
+    private static RowIndexMetrics newMetrics(String indexName)
+    {
+        return new RowIndexMetrics(table.getMetadata().ksName, table.getMetadata().cfName, indexName);
+    }
+
+    @Test
+    public void testLuceneIndexGauges() throws Exception
+    {
+        String indexName = "row_index_metrics_test_gauges";
+        Schema schema = Schema.fromJson(TestTable.WIDE_SCHEMA);
+        RowMapperWide rowMapper = (RowMapperWide) table.rowMapper(schema);
+        RowIndexMetrics metrics = newMetrics(indexName);
+        ShardedLuceneIndex index = index(rowMapper, schema, metrics);
+        try
+        {
+            metrics.registerLuceneIndex(index);
+            Assert.assertEquals(0, gauge(indexName, "Segments"));
+            Assert.assertEquals(0L, gauge(indexName, "RefreshLag"));
+
+            for (int pk = 0; pk < 10; pk++)
+            {
+                Row row = table.row(pk, 0, "name", "alice", "age", pk);
+                Term term = rowMapper.term(row.key, rowMapper.clusteringKey(row.cf));
+                index.upsert(row.key, term, rowMapper.document(row));
+            }
+            Thread.sleep(50);
+            Assert.assertTrue((Long) gauge(indexName, "RefreshLag") >= 50);
+            Assert.assertTrue((Long) gauge(indexName, "RamBufferBytes") > 0);
+
+            IPartitioner partitioner = DatabaseDescriptor.getPartitioner();
+            RowPosition minimum = partitioner.getMinimumToken().minKeyBound(partitioner);
+            AbstractBounds<RowPosition> ring = new Range<>(minimum, minimum, partitioner);
+            index.commit();
+            index.waitForRefresh(ring, 0);
+            Assert.assertEquals(0L, gauge(indexName, "RefreshLag"));
+            Assert.assertTrue((Integer) gauge(indexName, "Segments") > 0);
+            Assert.assertEquals(index.getNumSegments(), gauge(indexName, "Segments"));
+            Assert.assertEquals(index.getMergingSegments(), gauge(indexName, "MergingSegments"));
+        }
+        finally
+        {
+            index.drop();
+            metrics.release();
+        }
+    }
+
+    @Test
+    public void testIndexingQueueGauge() throws Exception
+    {
+        String indexName = "row_index_metrics_test_queue";
+        RowIndexMetrics metrics = newMetrics(indexName);
+        final CountDownLatch processing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        TaskQueue<Integer> queue = new TaskQueue<>(1, 10, 1, 0, new TaskQueue.BatchProcessor<Integer>()
+        {
+            @Override
+            public void process(List<Integer> items)
+            {
+                processing.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, metrics.indexingBatchSize, metrics.indexingQueueWait);
+        try
+        {
+            metrics.registerIndexingQueue(queue);
+            Assert.assertEquals(0, gauge(indexName, "IndexingQueueSize"));
+            queue.submitAsynchronous(1, 1);
+            processing.await(); // The first item has been taken from the queue
+            queue.submitAsynchronous(1, 2);
+            queue.submitAsynchronous(1, 3);
+            Assert.assertEquals(2, gauge(indexName, "IndexingQueueSize"));
+            release.countDown();
+            queue.await();
+            Assert.assertEquals(0, gauge(indexName, "IndexingQueueSize"));
+        }
+        finally
+        {
+            release.countDown();
+            queue.shutdown();
+            metrics.release();
+        }
+    }
+
+    @Test
+    public void testRelease() throws Exception
+    {
+        String indexName = "row_index_metrics_test_release";
+        Schema schema = Schema.fromJson(TestTable.WIDE_SCHEMA);
+        RowIndexMetrics metrics = newMetrics(indexName);
+        ShardedLuceneIndex index = index(table.rowMapper(schema), schema, metrics);
+        TaskQueue<Integer> queue = new TaskQueue<>(1, 10, 1, 0, new TaskQueue.BatchProcessor<Integer>()
+        {
+            @Override
+            public void process(List<Integer> items)
+            {
+            }
+        }, metrics.indexingBatchSize, metrics.indexingQueueWait);
+        try
+        {
+            metrics.registerSurvivalRatio(new SearchPageSizer(100));
+            metrics.registerSearchCache(new SearchCache(10, 1));
+            metrics.registerLuceneIndex(index);
+            metrics.registerIndexingQueue(queue);
+            Map<String, Object> registered = metrics(indexName);
+            for (String name : new String[]{"FullRowWrites",
+                                            "ReadBeforeWrites",
+                                            "IndexingErrors",
+                                            "IndexingBatchSize",
+                                            "IndexingQueueWait",
+                                            "IndexingLatency",
+                                            "SearchWallTime",
+                                            "SearchCpuTime",
+                                            "SearchPages",
+                                            "SearchHits",
+                                            "SearchCollectTime",
+                                            "SearchSortTime",
+                                            "SearchSurvivalRatio",
+                                            "SearchCacheHitRate",
+                                            "SearchResultsCacheHitRate",
+                                            "Segments",
+                                            "RamBufferBytes",
+                                            "MergingSegments",
+                                            "RefreshLag",
+                                            "IndexingQueueSize"})
+            {
+                Assert.assertTrue("Missing metric " + name, registered.containsKey(name));
+            }
+            Assert.assertEquals(20, registered.size());
+
+            metrics.release();
+            Assert.assertTrue(metrics(indexName).isEmpty());
+        }
+        finally
+        {
+            queue.shutdown();
+            index.drop();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.db.ConsistencyLevel;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RowIndexSearcherTest
+{
+
+    @Test
+    public void testSupportsAggregations()
+    {
+        Assert.assertTrue(RowIndexSearcher.supportsAggregations(ConsistencyLevel.ONE));
+        Assert.assertTrue(RowIndexSearcher.supportsAggregations(ConsistencyLevel.LOCAL_ONE));
+        Assert.assertFalse(RowIndexSearcher.supportsAggregations(ConsistencyLevel.TWO));
+        Assert.assertFalse(RowIndexSearcher.supportsAggregations(ConsistencyLevel.QUORUM));
+        Assert.assertFalse(RowIndexSearcher.supportsAggregations(ConsistencyLevel.LOCAL_QUORUM));
+        Assert.assertFalse(RowIndexSearcher.supportsAggregations(ConsistencyLevel.ALL));
+        Assert.assertFalse(RowIndexSearcher.supportsAggregations(ConsistencyLevel.SERIAL));
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.Columns;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RowMapperTest
+{
+
+    private static final TestTable table = new TestTable(TestTable.WIDE_COLUMNS);
+
+    private static RowMapper rowMapper() throws Exception
+    {
+        return table.rowMapper(TestTable.WIDE_SCHEMA);
+    }
+
+    private static Row row(int pk, int ck, String name, int age)
+    {
+        return table.row(pk, ck, "name", name, "age", age);
+    }
+
+    @Test
+    public void testColumns() throws Exception
+    {
+        Columns columns = rowMapper().columns(row(1, 2, "alice", 30));
+        Assert.assertEquals(4, columns.size());
+        Assert.assertEquals(1, columns.getColumn("pk").getValue());
+        Assert.assertEquals(2, columns.getColumn("ck").getValue());
+        Assert.assertEquals("alice", columns.getColumn("name").getValue());
+        Assert.assertEquals(30, columns.getColumn("age").getValue());
+        Assert.assertNull(columns.getColumn("lucene"));
+    }
+
+    @Test
+    public void testReusedDocument() throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        Document first = rowMapper.document(row(1, 2, "alice", 30));
+        int numFields = first.getFields().size();
+        String firstKey = first.get(PartitionKeyMapper.FIELD_NAME);
+
+        Document second = rowMapper.document(row(3, 4, "bob", 40));
+        Assert.assertSame(first, second);
+        Assert.assertEquals(numFields, second.getFields().size());
+        Assert.assertFalse(firstKey.equals(second.get(PartitionKeyMapper.FIELD_NAME)));
+        Assert.assertEquals("bob", second.getField("name").stringValue());
+        Assert.assertEquals(40, second.getField("age").numericValue());
+        Assert.assertEquals(rowMapper.partitionKey(Int32Type.instance.decompose(3)),
+                            rowMapper.partitionKey(second));
+    }
+
+    @Test
+    public void testDocumentPerThread() throws Exception
+    {
+        final RowMapper rowMapper = rowMapper();
+        Document document = rowMapper.document(row(1, 2, "alice", 30));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try
+        {
+            Document other = executor.submit(new Callable<Document>()
+            {
+                @Override
+                public Document call() throws Exception
+                {
+                    return rowMapper.document(row(3, 4, "bob", 40));
+                }
+            }).get();
+            Assert.assertNotSame(document, other);
+            Assert.assertEquals("alice", document.getField("name").stringValue());
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testOutOfRangesQuery() throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        RAMDirectory directory = new RAMDirectory();
+        IndexWriter writer = new IndexWriter(directory,
+                                             new IndexWriterConfig(Version.LUCENE_48, new KeywordAnalyzer()));
+        Token[] tokens = new Token[4];
+        for (int pk = 0; pk < tokens.length; pk++)
+        {
+            Row row = row(pk, 0, "name", 20);
+            tokens[pk] = row.key.getToken();
+            writer.addDocument(rowMapper.document(row));
+        }
+        writer.close();
+
+        DirectoryReader reader = DirectoryReader.open(directory);
+        IndexSearcher searcher = new IndexSearcher(reader);
+        IPartitioner partitioner = DatabaseDescriptor.getPartitioner();
+        List<Range<Token>> ranges = new ArrayList<>();
+        ranges.add(new Range<>(tokens[0], tokens[1], partitioner));
+        Assert.assertEquals(3, searcher.search(rowMapper.outOfRangesQuery(ranges), 10).totalHits);
+        ranges.add(new Range<>(tokens[2], partitioner.getMinimumToken(), partitioner));
+        Assert.assertEquals(2, searcher.search(rowMapper.outOfRangesQuery(ranges), 10).totalHits);
+        ranges.add(new Range<>(tokens[3], tokens[0], partitioner));
+        Assert.assertEquals(1, searcher.search(rowMapper.outOfRangesQuery(ranges), 10).totalHits);
+        reader.close();
+
+        Token minimum = partitioner.getMinimumToken();
+        Assert.assertNull(rowMapper.outOfRangesQuery(Collections.singletonList(new Range<>(minimum, minimum))));
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.db.BufferCell;
+import org.apache.cassandra.db.BufferDeletedCell;
+import org.apache.cassandra.db.BufferExpiringCell;
+import org.apache.cassandra.db.Cell;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.RangeTombstone;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.CellNameType;
+import org.apache.cassandra.db.composites.Composite;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.document.Document;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class RowMapperWideTest
+{
+
+    private static final TestTable table = new TestTable("pk int, ck int, name text, age int, extra text, " +
+                                                         "lucene text, PRIMARY KEY (pk, ck)");
+
+    private static final ByteBuffer VALUE = UTF8Type.instance.decompose("value");
+
+    private static final long TIMESTAMP = System.currentTimeMillis();
+
+    private static final long WRITE_TIME = TimeUnit.MILLISECONDS.toMicros(TIMESTAMP);
+
+    private static final int EXPIRATION = (int) (TIMESTAMP / 1000) + 60;
+
+    private static RowMapperWide rowMapper() throws Exception
+    {
+        return rowMapper(table);
+    }
+
+    private static RowMapperWide rowMapper(TestTable table) throws Exception
+    {
+        return (RowMapperWide) table.rowMapper(TestTable.WIDE_SCHEMA);
+    }
+
+    private static CellName marker(int ck)
+    {
+        return table.marker(ck);
+    }
+
+    private static CellName name(int ck, String column)
+    {
+        return table.name(ck, column);
+    }
+
+    private static Cell cell(CellName name)
+    {
+        return cell(name, WRITE_TIME);
+    }
+
+    private static Cell cell(CellName name, long writeTime)
+    {
+        return new BufferCell(name, VALUE, writeTime);
+    }
+
+    private static Cell expiring(CellName name)
+    {
+        return new BufferExpiringCell(name, VALUE, WRITE_TIME, 60, EXPIRATION);
+    }
+
+    private static ColumnFamily columnFamily(Cell... cells)
+    {
+        return table.columnFamily(cells);
+    }
+
+    private static Row row(ColumnFamily columnFamily)
+    {
+        return table.row(1, columnFamily);
+    }
+
+    @Test
+    public void testCompleteRowsWithTTLRequireUnmappedColumns() throws Exception
+    {
+        // An insert with TTL of the mapped columns doesn't tell if a stored unmapped column keeps the row alive
+        ColumnFamily partial = columnFamily(expiring(marker(1)), expiring(name(1, "name")), expiring(name(1, "age")));
+        Assert.assertNull(rowMapper().completeRows(partial, TIMESTAMP));
+    }
+
+    @Test
+    public void testCompleteRowsWithTTL() throws Exception
+    {
+        RowMapperWide rowMapper = rowMapper();
+        ColumnFamily full = columnFamily(expiring(marker(1)),
+                                         expiring(name(1, "name")),
+                                         expiring(name(1, "age")),
+                                         expiring(name(1, "extra")));
+        Map<CellName, ColumnFamily> rows = rowMapper.completeRows(full, TIMESTAMP);
+        Assert.assertNotNull(rows);
+        Assert.assertEquals(1, rows.size());
+        Document document = rowMapper.document(row(rows.values().iterator().next()));
+        Assert.assertEquals(EXPIRATION, document.getField(ExpirationMapper.FIELD_NAME).numericValue());
+    }
+
+    @Test
+    public void testCompleteRowsWithUnmappedLiveColumn() throws Exception
+    {
+        RowMapperWide rowMapper = rowMapper();
+        ColumnFamily full = columnFamily(expiring(marker(1)),
+                                         expiring(name(1, "name")),
+                                         expiring(name(1, "age")),
+                                         cell(name(1, "extra")));
+        Map<CellName, ColumnFamily> rows = rowMapper.completeRows(full, TIMESTAMP);
+        Assert.assertNotNull(rows);
+        Document document = rowMapper.document(row(rows.values().iterator().next()));
+        Assert.assertNull(document.getField(ExpirationMapper.FIELD_NAME));
+    }
+
+    @Test
+    public void testEmptyRow() throws Exception
+    {
+        RowMapperWide rowMapper = rowMapper();
+        Row row = row(columnFamily(cell(marker(1)), cell(name(1, "name"))));
+        CellName clusteringKey = rowMapper.clusteringKey(row.cf);
+        Row emptyRow = rowMapper.emptyRow(new SearchResult(row.key, clusteringKey, null), 1);
+        Assert.assertEquals(row.key, emptyRow.key);
+        Assert.assertEquals(1, emptyRow.cf.getColumnCount());
+        Assert.assertEquals(clusteringKey, rowMapper.clusteringKey(emptyRow.cf));
+        Assert.assertEquals(rowMapper.makeCellName(row.cf), rowMapper.makeCellName(emptyRow.cf));
+    }
+
+    @Test
+    public void testCompleteRows() throws Exception
+    {
+        RowMapperWide rowMapper = rowMapper();
+        ColumnFamily full = columnFamily(cell(marker(1)),
+                                         cell(name(1, "name")),
+                                         cell(name(1, "age")),
+                                         cell(name(1, "extra")),
+                                         cell(marker(2)),
+                                         new BufferDeletedCell(name(2, "name"), (int) (TIMESTAMP / 1000), WRITE_TIME),
+                                         cell(name(2, "age")),
+                                         cell(name(2, "extra")));
+        Map<CellName, ColumnFamily> rows = rowMapper.completeRows(full, TIMESTAMP);
+        Assert.assertNotNull(rows);
+        Assert.assertEquals(2, rows.size());
+        Assert.assertTrue(rows.containsKey(marker(1)));
+        Assert.assertTrue(rows.containsKey(marker(2)));
+    }
+
+    @Test
+    public void testCompleteRowsWithStaticCell() throws Exception
+    {
+        TestTable staticTable = new TestTable("pk int, ck int, s int static, name text, age int, lucene text, " +
+                                              "PRIMARY KEY (pk, ck)");
+        CellNameType comparator = staticTable.getMetadata().comparator;
+        ColumnFamily cf = staticTable.columnFamily(cell(comparator.create(comparator.staticPrefix(),
+                                                                          staticTable.column("s"))),
+                                                   cell(staticTable.marker(1)),
+                                                   cell(staticTable.name(1, "name")),
+                                                   cell(staticTable.name(1, "age")));
+        Assert.assertNull(rowMapper(staticTable).completeRows(cf, TIMESTAMP));
+    }
+
+    @Test
+    public void testCompleteRowsWithoutMarker() throws Exception
+    {
+        ColumnFamily cf = columnFamily(cell(marker(1)),
+                                       cell(name(1, "name")),
+                                       cell(name(1, "age")),
+                                       cell(name(1, "extra")),
+                                       cell(name(2, "name")),
+                                       cell(name(2, "age")),
+                                       cell(name(2, "extra")));
+        Assert.assertNull(rowMapper().completeRows(cf, TIMESTAMP));
+    }
+
+    @Test
+    public void testCompleteRowsWithDeletedMarker() throws Exception
+    {
+        ColumnFamily cf = columnFamily(new BufferDeletedCell(marker(1), (int) (TIMESTAMP / 1000), WRITE_TIME),
+                                       cell(name(1, "name")),
+                                       cell(name(1, "age")),
+                                       cell(name(1, "extra")));
+        Assert.assertNull(rowMapper().completeRows(cf, TIMESTAMP));
+    }
+
+    @Test
+    public void testCompleteRowsWithMissingMappedColumn() throws Exception
+    {
+        ColumnFamily cf = columnFamily(cell(marker(1)), cell(name(1, "name")), cell(name(1, "extra")));
+        Assert.assertNull(rowMapper().completeRows(cf, TIMESTAMP));
+    }
+
+    @Test
+    public void testCompleteRowsWithRangeTombstone() throws Exception
+    {
+        ColumnFamily cf = columnFamily(cell(marker(1)),
+                                       cell(name(1, "name")),
+                                       cell(name(1, "age")),
+                                       cell(name(1, "extra")));
+        Composite prefix = table.prefix(2);
+        cf.addAtom(new RangeTombstone(prefix.start(), prefix.end(), 1, (int) (TIMESTAMP / 1000)));
+        Assert.assertNull(rowMapper().completeRows(cf, TIMESTAMP));
+    }
+
+    @Test
+    public void testCompleteRowsWithOutOfOrderWrite() throws Exception
+    {
+        // A replayed or backdated write could be shadowed by a stored row with a greater write time
+        long oldWriteTime = WRITE_TIME - RowMapperWide.FRESH_WRITE_WINDOW_MICROS - 1;
+        ColumnFamily cf = columnFamily(cell(marker(1), oldWriteTime),
+                                       cell(name(1, "name"), oldWriteTime),
+                                       cell(name(1, "age"), oldWriteTime),
+                                       cell(name(1, "extra"), oldWriteTime));
+        Assert.assertNull(rowMapper().completeRows(cf, TIMESTAMP));
+    }
+
+    @Test
+    public void testCompleteRowsWithOneOutOfOrderCell() throws Exception
+    {
+        ColumnFamily cf = columnFamily(cell(marker(1)),
+                                       cell(name(1, "name")),
+                                       cell(name(1, "age"), 1),
+                                       cell(name(1, "extra")),
+                                       cell(marker(2)),
+                                       cell(name(2, "name")),
+                                       cell(name(2, "age")),
+                                       cell(name(2, "extra")));
+        Assert.assertNull(rowMapper().completeRows(cf, TIMESTAMP));
+    }
+
+    @Test
+    public void testCompleteRowsWithinFreshWriteWindow() throws Exception
+    {
+        long writeTime = WRITE_TIME - RowMapperWide.FRESH_WRITE_WINDOW_MICROS;
+        ColumnFamily cf = columnFamily(cell(marker(1), writeTime),
+                                       cell(name(1, "name"), writeTime),
+                                       cell(name(1, "age"), writeTime),
+                                       cell(name(1, "extra"), writeTime));
+        Assert.assertNotNull(rowMapper().completeRows(cf, TIMESTAMP));
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.query.Search;
+import com.stratio.cassandra.index.schema.Columns;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RowMergerTest
+{
+
+    private static final TestTable table = new TestTable("pk int, ck int, age int, lucene text, PRIMARY KEY (pk, ck)");
+
+    private static final String NATURAL = "{filter : {type : \"range\", field : \"age\", lower : 0}}";
+
+    private static final String RELEVANCE = "{query : {type : \"range\", field : \"age\", lower : 0}}";
+
+    private static final String SORTING = "{filter : {type : \"range\", field : \"age\", lower : 0}, " +
+                                          "sort : {fields : [{field : \"age\", reverse : true}]}}";
+
+    private static RowMapper rowMapper() throws Exception
+    {
+        return table.rowMapper("{fields:{age:{type:\"integer\"}}}");
+    }
+
+    private static RowMerger merger(String json) throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        Search search = Search.fromJson(json);
+        RowComparator comparator = search.usesSorting()
+                                   ? new RowComparatorSorting(rowMapper, search.getSort())
+                                   : rowMapper.naturalComparator();
+        return new RowMerger(rowMapper, comparator, search);
+    }
+
+    /**
+     * Returns a row as returned by a node, with the specified score in the indexed column.
+     */
+    private static Row row(int pk, int ck, int age, float score) throws Exception
+    {
+        Row row = table.row(pk, ck, "age", age);
+        return RowService.addIndexedColumn(rowMapper(), row, 1, Float.toString(score));
+    }
+
+    private static Row row(int pk, int ck) throws Exception
+    {
+        return row(pk, ck, 0, 0);
+    }
+
+    /**
+     * Asserts that the specified rows have the specified primary keys, in the specified order.
+     */
+    private static void assertRows(List<Row> rows, int[]... keys)
+    {
+        List<String> expected = new ArrayList<>();
+        for (int[] key : keys)
+        {
+            expected.add(key[0] + ":" + key[1]);
+        }
+        List<String> actual = new ArrayList<>();
+        for (Row row : rows)
+        {
+            CellName cellName = row.cf.iterator().next().name();
+            int pk = Int32Type.instance.compose(row.key.getKey());
+            int ck = Int32Type.instance.compose(cellName.get(0));
+            actual.add(pk + ":" + ck);
+        }
+        Assert.assertEquals(expected, actual);
+    }
+
+    private static int[] key(int pk, int ck)
+    {
+        return new int[]{pk, ck};
+    }
+
+    @Test
+    public void testNaturalOrderFastPath() throws Exception
+    {
+        // Two nodes, each one returning its rows in natural order
+        List<Row> rows = Arrays.asList(row(1, 1), row(1, 3), row(3, 1), row(1, 2), row(2, 1), row(4, 1));
+        assertRows(merger(NATURAL).merge(rows, 10),
+                   key(1, 1), key(1, 2), key(1, 3), key(2, 1), key(3, 1), key(4, 1));
+    }
+
+    @Test
+    public void testNaturalOrderLimit() throws Exception
+    {
+        List<Row> rows = Arrays.asList(row(1, 1), row(3, 1), row(2, 1), row(4, 1));
+        assertRows(merger(NATURAL).merge(rows, 2), key(1, 1), key(2, 1));
+    }
+
+    @Test
+    public void testDuplicatesAcrossRuns() throws Exception
+    {
+        // The same rows returned by several replicas or overlapping ranges
+        List<Row> rows = Arrays.asList(row(1, 1), row(2, 1), row(1, 1), row(2, 1), row(3, 1), row(2, 1));
+        assertRows(merger(NATURAL).merge(rows, 10), key(1, 1), key(2, 1), key(3, 1));
+        assertRows(merger(SORTING).merge(rows, 10), key(1, 1), key(2, 1), key(3, 1));
+    }
+
+    @Test
+    public void testUnsortedInput() throws Exception
+    {
+        // Every row starts a new run
+        List<Row> rows = Arrays.asList(row(5, 1), row(4, 1), row(3, 2), row(3, 1), row(2, 1), row(1, 1), row(3, 2));
+        assertRows(merger(NATURAL).merge(rows, 10),
+                   key(1, 1), key(2, 1), key(3, 1), key(3, 2), key(4, 1), key(5, 1));
+    }
+
+    @Test
+    public void testNonPositiveLimit() throws Exception
+    {
+        List<Row> rows = Arrays.asList(row(1, 1), row(2, 1));
+        for (String json : Arrays.asList(NATURAL, RELEVANCE, SORTING))
+        {
+            Assert.assertTrue(merger(json).merge(rows, 0).isEmpty());
+            Assert.assertTrue(merger(json).merge(rows, -1).isEmpty());
+        }
+    }
+
+    @Test
+    public void testEmptyInput() throws Exception
+    {
+        for (String json : Arrays.asList(NATURAL, RELEVANCE, SORTING))
+        {
+            Assert.assertTrue(merger(json).merge(Collections.<Row>emptyList(), 10).isEmpty());
+        }
+    }
+
+    @Test
+    public void testRelevance() throws Exception
+    {
+        List<Row> rows = Arrays.asList(row(1, 1, 0, 0.1f),
+                                       row(2, 1, 0, 0.9f),
+                                       row(3, 1, 0, 0.5f),
+                                       row(1, 2, 0, 0.7f),
+                                       row(4, 1, 0, 0.3f));
+        assertRows(merger(RELEVANCE).merge(rows, 10), key(2, 1), key(1, 2), key(3, 1), key(4, 1), key(1, 1));
+        assertRows(merger(RELEVANCE).merge(rows, 3), key(2, 1), key(1, 2), key(3, 1));
+    }
+
+    @Test
+    public void testRelevanceTies() throws Exception
+    {
+        // Ties on score are resolved by natural order, whatever the input order is
+        List<Row> rows = Arrays.asList(row(3, 1, 0, 0.5f),
+                                       row(4, 1, 0, 0.9f),
+                                       row(1, 1, 0, 0.5f),
+                                       row(2, 1, 0, 0.5f));
+        assertRows(merger(RELEVANCE).merge(rows, 10), key(4, 1), key(1, 1), key(2, 1), key(3, 1));
+        assertRows(merger(RELEVANCE).merge(rows, 2), key(4, 1), key(1, 1));
+    }
+
+    @Test
+    public void testSorting() throws Exception
+    {
+        List<Row> rows = Arrays.asList(row(1, 1, 30, 0),
+                                       row(2, 1, 10, 0),
+                                       row(3, 1, 50, 0),
+                                       row(1, 2, 40, 0),
+                                       row(4, 1, 20, 0));
+        assertRows(merger(SORTING).merge(rows, 10), key(3, 1), key(1, 2), key(1, 1), key(4, 1), key(2, 1));
+        assertRows(merger(SORTING).merge(rows, 2), key(3, 1), key(1, 2));
+    }
+
+    @Test
+    public void testSortingTies() throws Exception
+    {
+        // Ties on the sort field are resolved by natural order
+        List<Row> rows = Arrays.asList(row(3, 1, 20, 0),
+                                       row(2, 1, 20, 0),
+                                       row(4, 1, 10, 0),
+                                       row(1, 1, 20, 0));
+        assertRows(merger(SORTING).merge(rows, 10), key(1, 1), key(2, 1), key(3, 1), key(4, 1));
+        assertRows(merger(SORTING).merge(rows, 2), key(1, 1), key(2, 1));
+    }
+
+    @Test
+    public void testSortingDecodesEachRowOnce() throws Exception
+    {
+        RowMapper rowMapper = rowMapper();
+        Search search = Search.fromJson(SORTING);
+        final AtomicInteger decodedRows = new AtomicInteger();
+        RowComparatorSorting comparator = new RowComparatorSorting(rowMapper, search.getSort())
+        {
+            @Override
+            public Columns sortKey(Row row)
+            {
+                decodedRows.incrementAndGet();
+                return super.sortKey(row);
+            }
+
+            @Override
+            public int compare(Row row1, Row row2)
+            {
+                throw new AssertionError("Rows should be compared by their sort keys");
+            }
+        };
+        List<Row> rows = Arrays.asList(row(1, 1, 30, 0),
+                                       row(2, 1, 10, 0),
+                                       row(3, 1, 50, 0),
+                                       row(1, 2, 40, 0),
+                                       row(4, 1, 20, 0));
+        RowMerger merger = new RowMerger(rowMapper, comparator, search);
+        assertRows(merger.merge(rows, 2), key(3, 1), key(1, 2));
+        Assert.assertEquals(rows.size(), decodedRows.get());
+    }
+
+    @Test
+    public void testSortingOverridesRelevance() throws Exception
+    {
+        String json = "{query : {type : \"range\", field : \"age\", lower : 0}, " +
+                      "sort : {fields : [{field : \"age\"}]}}";
+        List<Row> rows = Arrays.asList(row(1, 1, 30, 0.9f), row(2, 1, 10, 0.1f), row(3, 1, 20, 0.5f));
+        assertRows(merger(json).merge(rows, 10), key(2, 1), key(3, 1), key(1, 1));
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.google.common.io.Files;
+import com.stratio.cassandra.index.query.AggregationResult;
+import com.stratio.cassandra.index.query.AggregationResults;
+import com.stratio.cassandra.index.query.StatsAggregation;
+import com.stratio.cassandra.index.query.TermsAggregation;
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ArrayBackedSortedColumns;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.composites.CellNameType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.io.sstable.CQLSSTableWriter;
+import org.apache.cassandra.io.sstable.Component;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.SSTableReader;
+import org.apache.cassandra.io.util.FileUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class RowServiceTest
+{
+
+    private static final String SCHEMA = "CREATE TABLE ks.t (pk int PRIMARY KEY, name text)";
+
+    private static final String INSERT = "INSERT INTO ks.t (pk, name) VALUES (?, ?)";
+
+    private static final CFMetaData metadata = CFMetaData.compile("CREATE TABLE t (pk int PRIMARY KEY, name text)",
+                                                                  "ks");
+
+    private static final CFMetaData wideMetadata = CFMetaData.compile("CREATE TABLE t (pk int, ck int, name text, " +
+                                                                      "lucene text, PRIMARY KEY (pk, ck))",
+                                                                      "ks");
+
+    private static File directory;
+
+    @BeforeClass
+    public static void setUp()
+    {
+        directory = Files.createTempDir();
+    }
+
+    @AfterClass
+    public static void tearDown()
+    {
+        FileUtils.deleteRecursive(directory);
+    }
+
+    /**
+     * Writes a new SSTable with the specified rows into the specified directory and returns its reader.
+     */
+    private static SSTableReader sstable(File dataDirectory, int... keys) throws Exception
+    {
+        dataDirectory.mkdirs();
+        CQLSSTableWriter writer = CQLSSTableWriter.builder()
+                                                  .inDirectory(dataDirectory)
+                                                  .forTable(SCHEMA)
+                                                  .withPartitioner(DatabaseDescriptor.getPartitioner())
+                                                  .using(INSERT)
+                                                  .build();
+        for (int key : keys)
+        {
+            writer.addRow(key, "name" + key);
+        }
+        writer.close();
+        return open(latest(dataDirectory));
+    }
+
+    private static Descriptor latest(File dataDirectory)
+    {
+        Descriptor latest = null;
+        for (File file : dataDirectory.listFiles())
+        {
+            if (file.getName().endsWith(Component.DATA.name()))
+            {
+                Descriptor descriptor = Descriptor.fromFilename(file.getPath());
+                if (latest == null || descriptor.generation > latest.generation)
+                {
+                    latest = descriptor;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static SSTableReader open(Descriptor descriptor) throws Exception
+    {
+        return SSTableReader.open(descriptor,
+                                  SSTableReader.componentsFor(descriptor),
+                                  metadata,
+                                  DatabaseDescriptor.getPartitioner());
+    }
+
+    /**
+     * Copies the specified SSTable into the specified directory with a new generation, as it's done by a refresh.
+     */
+    private static SSTableReader copy(SSTableReader sstable, File dataDirectory, int generation) throws Exception
+    {
+        dataDirectory.mkdirs();
+        Descriptor source = sstable.descriptor;
+        Descriptor target = new Descriptor(source.version,
+                                           dataDirectory,
+                                           source.ksname,
+                                           source.cfname,
+                                           generation,
+                                           source.type);
+        for (Component component : SSTableReader.componentsFor(source))
+        {
+            Files.copy(new File(source.filenameFor(component)), new File(target.filenameFor(component)));
+        }
+        return open(target);
+    }
+
+    @Test
+    public void testFingerprint() throws Exception
+    {
+        SSTableReader sstable = sstable(new File(directory, "fingerprint/ks/t"), 1, 2, 3);
+        SSTableReader other = sstable(new File(directory, "fingerprint/ks/t"), 4, 5);
+        SSTableReader renamed = copy(sstable, new File(directory, "fingerprint_copy/ks/t"), 42);
+        Assert.assertFalse(sstable.descriptor.equals(renamed.descriptor));
+        Assert.assertEquals(RowService.fingerprint(sstable), RowService.fingerprint(renamed));
+        Assert.assertFalse(RowService.fingerprint(sstable).equals(RowService.fingerprint(other)));
+    }
+
+    @Test
+    public void testUnindexedSSTablesWithoutSnapshot() throws Exception
+    {
+        List<SSTableReader> sstables = Arrays.asList(sstable(new File(directory, "no_snapshot/ks/t"), 1));
+        Assert.assertSame(sstables, RowService.unindexedSSTables(null, sstables));
+        Assert.assertSame(sstables, RowService.unindexedSSTables("", sstables));
+    }
+
+    @Test
+    public void testUnindexedSSTablesAfterRestore() throws Exception
+    {
+        // Snapshot including the first two SSTables
+        File dataDirectory = new File(directory, "snapshot/ks/t");
+        SSTableReader first = sstable(dataDirectory, 1, 2);
+        SSTableReader second = sstable(dataDirectory, 3);
+        String snapshotFingerprints = RowService.fingerprints(Arrays.asList(first, second));
+
+        // An incremental backup taken after the snapshot
+        SSTableReader backup = sstable(dataDirectory, 4);
+
+        // The restored SSTables are loaded by a refresh with new generations
+        File restoreDirectory = new File(directory, "restore/ks/t");
+        SSTableReader restoredFirst = copy(first, restoreDirectory, 10);
+        SSTableReader restoredSecond = copy(second, restoreDirectory, 11);
+        SSTableReader restoredBackup = copy(backup, restoreDirectory, 12);
+
+        Collection<SSTableReader> unindexed = RowService.unindexedSSTables(snapshotFingerprints,
+                                                                           Arrays.asList(restoredFirst,
+                                                                                         restoredSecond,
+                                                                                         restoredBackup));
+        Assert.assertEquals(Collections.singletonList(restoredBackup), unindexed);
+    }
+
+    /**
+     * Returns the row carrying the specified aggregation results that a node would return for an aggregating search.
+     */
+    private static Row aggregationRow(RowMapper rowMapper, int pk, int ck, long timestamp, AggregationResults results)
+    {
+        CellNameType comparator = wideMetadata.comparator;
+        ColumnFamily cf = ArrayBackedSortedColumns.factory.create(wideMetadata);
+        cf.addColumn(comparator.rowMarker(comparator.make(ck)), UTF8Type.instance.decompose(""), timestamp);
+        Row row = new Row(DatabaseDescriptor.getPartitioner().decorateKey(Int32Type.instance.decompose(pk)), cf);
+        return RowService.addIndexedColumn(rowMapper, row, timestamp, results.toJson());
+    }
+
+    private static AggregationResults results(long n0, long n1, long count, double min, double max, double sum)
+    {
+        Map<String, Long> counts = new HashMap<>();
+        counts.put("n0", n0);
+        counts.put("n1", n1);
+        Map<String, AggregationResult> results = new HashMap<>();
+        results.put("name", new TermsAggregation.Result(counts, 10));
+        results.put("age", new StatsAggregation.Result(count, min, max, sum));
+        return new AggregationResults(results);
+    }
+
+    @Test
+    public void testMergeAggregations() throws Exception
+    {
+        Schema schema = Schema.fromJson("{fields:{name:{type:\"string\"}}}");
+        RowMapper rowMapper = RowMapper.build(wideMetadata,
+                                              wideMetadata.getColumnDefinition(UTF8Type.instance.decompose("lucene")),
+                                              schema);
+
+        // The partial results of two nodes owning different token ranges
+        Row first = aggregationRow(rowMapper, 1, 1, 10, results(3, 1, 4, 10, 40, 100));
+        Row second = aggregationRow(rowMapper, 2, 7, 20, results(2, 5, 7, 5, 30, 140));
+
+        List<Row> merged = RowService.mergeAggregations(rowMapper, Arrays.asList(first, second));
+        Assert.assertEquals(1, merged.size());
+        Assert.assertEquals(first.key, merged.get(0).key);
+
+        AggregationResults results = AggregationResults.fromJson(RowService.indexedValue(rowMapper, merged.get(0)));
+        TermsAggregation.Result terms = (TermsAggregation.Result) results.get("name");
+        Assert.assertEquals(5L, (long) terms.getCounts().get("n0"));
+        Assert.assertEquals(6L, (long) terms.getCounts().get("n1"));
+        StatsAggregation.Result ages = (StatsAggregation.Result) results.get("age");
+        Assert.assertEquals(11, ages.getCount());
+        Assert.assertEquals(5, ages.getMin(), 0);
+        Assert.assertEquals(40, ages.getMax(), 0);
+        Assert.assertEquals(240, ages.getSum(), 0);
+    }
+
+    @Test
+    public void testMergeNoAggregations() throws Exception
+    {
+        Schema schema = Schema.fromJson("{fields:{name:{type:\"string\"}}}");
+        RowMapper rowMapper = RowMapper.build(wideMetadata,
+                                              wideMetadata.getColumnDefinition(UTF8Type.instance.decompose("lucene")),
+                                              schema);
+        Assert.assertTrue(RowService.mergeAggregations(rowMapper, Collections.<Row>emptyList()).isEmpty());
+    }
+}
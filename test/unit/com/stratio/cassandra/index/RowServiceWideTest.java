@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.CellNameType;
+import org.apache.cassandra.db.filter.ColumnSlice;
+import org.apache.lucene.search.ScoreDoc;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class RowServiceWideTest
+{
+
+    private static final TestTable table = new TestTable("pk int, ck int, name text, lucene text, " +
+                                                         "PRIMARY KEY (pk, ck)");
+
+    private static final CellNameType comparator = table.getMetadata().comparator;
+
+    private static RowMapperWide rowMapper() throws Exception
+    {
+        return (RowMapperWide) table.rowMapper("{fields:{name:{type:\"string\"}}}");
+    }
+
+    private static DecoratedKey partitionKey(int pk)
+    {
+        return table.partitionKey(pk);
+    }
+
+    private static CellName clusteringKey(int ck)
+    {
+        return table.marker(ck);
+    }
+
+    private static SearchResult hit(int pk, int ck, float score, boolean adjacent)
+    {
+        SearchResult searchResult = new SearchResult(partitionKey(pk), clusteringKey(ck), new ScoreDoc(ck, score));
+        searchResult.setAdjacent(adjacent);
+        return searchResult;
+    }
+
+    /**
+     * Returns the rows of the specified partition with the specified clustering keys, as they would be read from the
+     * storage engine.
+     */
+    private static Map<CellName, Row> partition(int pk, int... cks)
+    {
+        Map<CellName, Row> rows = new TreeMap<>(comparator);
+        for (int ck : cks)
+        {
+            rows.put(clusteringKey(ck), table.row(pk, ck));
+        }
+        return rows;
+    }
+
+    private static void assertSlices(ColumnSlice[] slices, int[]... ranges)
+    {
+        Assert.assertEquals(ranges.length, slices.length);
+        for (int i = 0; i < ranges.length; i++)
+        {
+            Assert.assertTrue(slices[i].includes(comparator, clusteringKey(ranges[i][0])));
+            Assert.assertTrue(slices[i].includes(comparator, clusteringKey(ranges[i][1])));
+            Assert.assertFalse(slices[i].includes(comparator, clusteringKey(ranges[i][0] - 1)));
+            Assert.assertFalse(slices[i].includes(comparator, clusteringKey(ranges[i][1] + 1)));
+        }
+    }
+
+    /**
+     * Asserts that the specified rows, indexed by the position of their hits, have the specified primary keys, with
+     * {@code null} meaning that there is no row for the hit.
+     */
+    private static void assertRows(Row[] hitRows, int[]... keys)
+    {
+        Assert.assertEquals(keys.length, hitRows.length);
+        for (int i = 0; i < keys.length; i++)
+        {
+            Row row = hitRows[i];
+            if (keys[i] == null)
+            {
+                Assert.assertNull(row);
+                continue;
+            }
+            Assert.assertEquals(partitionKey(keys[i][0]), row.key);
+            CellName clusteringKey = row.cf.iterator().next().name();
+            Assert.assertEquals(0, comparator.compare(clusteringKey(keys[i][1]), clusteringKey));
+        }
+    }
+
+    private static Row[] rows(int numHits, RowServiceWide.PartitionHits hits, Map<CellName, Row> partitionRows)
+    {
+        Row[] hitRows = new Row[numHits];
+        hits.rows(partitionRows, hitRows);
+        return hitRows;
+    }
+
+    private static List<RowServiceWide.PartitionHits> partitionHits(SearchResult... searchResults) throws Exception
+    {
+        List<SearchResult> list = new ArrayList<>();
+        for (SearchResult searchResult : searchResults)
+        {
+            list.add(searchResult);
+        }
+        Collection<RowServiceWide.PartitionHits> hits = RowServiceWide.partitionHits(list, rowMapper(), comparator);
+        return new ArrayList<>(hits);
+    }
+
+    @Test
+    public void testAdjacentHits() throws Exception
+    {
+        List<RowServiceWide.PartitionHits> hits = partitionHits(hit(1, 1, 0.1f, false),
+                                                                hit(1, 2, 0.2f, true),
+                                                                hit(1, 3, 0.3f, true),
+                                                                hit(1, 7, 0.7f, false));
+        Assert.assertEquals(1, hits.size());
+        RowServiceWide.PartitionHits partitionHits = hits.get(0);
+        Assert.assertEquals(partitionKey(1), partitionHits.getPartitionKey());
+        assertSlices(partitionHits.columnSlices(), new int[]{1, 3}, new int[]{7, 7});
+        assertRows(rows(4, partitionHits, partition(1, 1, 2, 3, 7)),
+                   new int[]{1, 1}, new int[]{1, 2}, new int[]{1, 3}, new int[]{1, 7});
+    }
+
+    @Test
+    public void testHitsInReverseOrder() throws Exception
+    {
+        List<RowServiceWide.PartitionHits> hits = partitionHits(hit(1, 5, 0.5f, false),
+                                                                hit(1, 3, 0.3f, false),
+                                                                hit(1, 1, 0.1f, false));
+        Assert.assertEquals(1, hits.size());
+        RowServiceWide.PartitionHits partitionHits = hits.get(0);
+        assertSlices(partitionHits.columnSlices(), new int[]{1, 1}, new int[]{3, 3}, new int[]{5, 5});
+        assertRows(rows(3, partitionHits, partition(1, 1, 3, 5)), new int[]{1, 5}, new int[]{1, 3}, new int[]{1, 1});
+    }
+
+    @Test
+    public void testRowInsideCoalescedRangeIsDiscarded() throws Exception
+    {
+        // The hits 1 and 3 were adjacent in the index, but the row 2 has been written after the index was read
+        List<RowServiceWide.PartitionHits> hits = partitionHits(hit(1, 1, 0.1f, false), hit(1, 3, 0.3f, true));
+        RowServiceWide.PartitionHits partitionHits = hits.get(0);
+        assertSlices(partitionHits.columnSlices(), new int[]{1, 3});
+        assertRows(rows(2, partitionHits, partition(1, 1, 2, 3)), new int[]{1, 1}, new int[]{1, 3});
+    }
+
+    @Test
+    public void testEqualClusteringKeysInDifferentPartitions() throws Exception
+    {
+        List<RowServiceWide.PartitionHits> hits = partitionHits(hit(1, 1, 0.1f, false),
+                                                                hit(2, 1, 0.2f, true),
+                                                                hit(2, 2, 0.3f, true),
+                                                                hit(1, 2, 0.4f, true));
+        Assert.assertEquals(2, hits.size());
+        Iterator<RowServiceWide.PartitionHits> iterator = hits.iterator();
+
+        RowServiceWide.PartitionHits first = iterator.next();
+        Assert.assertEquals(partitionKey(1), first.getPartitionKey());
+        assertSlices(first.columnSlices(), new int[]{1, 1}, new int[]{2, 2});
+        Row[] hitRows = new Row[4];
+        first.rows(partition(1, 1, 2), hitRows);
+        assertRows(hitRows, new int[]{1, 1}, null, null, new int[]{1, 2});
+
+        RowServiceWide.PartitionHits second = iterator.next();
+        Assert.assertEquals(partitionKey(2), second.getPartitionKey());
+        assertSlices(second.columnSlices(), new int[]{1, 2});
+        second.rows(partition(2, 1, 2), hitRows);
+        assertRows(hitRows, new int[]{1, 1}, new int[]{2, 1}, new int[]{2, 2}, new int[]{1, 2});
+    }
+}
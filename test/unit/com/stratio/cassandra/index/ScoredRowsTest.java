@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Row;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ScoredRowsTest
+{
+
+    private static Row row()
+    {
+        return new Row((DecoratedKey) null, null);
+    }
+
+    @Test
+    public void testGrow()
+    {
+        ScoredRows scoredRows = new ScoredRows(0);
+        Row[] rows = new Row[100];
+        for (int i = 0; i < rows.length; i++)
+        {
+            rows[i] = row();
+            scoredRows.add(rows[i], i / 2f);
+        }
+        Assert.assertEquals(100, scoredRows.size());
+        for (int i = 0; i < rows.length; i++)
+        {
+            Assert.assertSame(rows[i], scoredRows.getRow(i));
+            Assert.assertEquals(i / 2f, scoredRows.getScore(i), 0);
+        }
+        Assert.assertEquals(Arrays.asList(rows), scoredRows.getRows());
+    }
+
+    @Test
+    public void testAddAll()
+    {
+        Row row1 = row();
+        Row row2 = row();
+        Row row3 = row();
+        ScoredRows scoredRows = new ScoredRows(1);
+        scoredRows.add(row1, 1.5f);
+        ScoredRows other = new ScoredRows(2);
+        other.add(row2, 0.5f);
+        other.add(row3, 2.5f);
+        scoredRows.addAll(other);
+        scoredRows.addAll(new ScoredRows(0));
+        Assert.assertEquals(Arrays.asList(row1, row2, row3), scoredRows.getRows());
+        Assert.assertEquals(1.5f, scoredRows.getScore(0), 0);
+        Assert.assertEquals(0.5f, scoredRows.getScore(1), 0);
+        Assert.assertEquals(2.5f, scoredRows.getScore(2), 0);
+    }
+}
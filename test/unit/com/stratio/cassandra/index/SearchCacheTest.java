@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.query.Search;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class SearchCacheTest
+{
+
+    private static final String JSON = "{filter:{type:\"match\",field:\"name\",value:\"aaa\"}}";
+
+    private static SearchCache.Key key(long readerVersion, String value, int after)
+    {
+        Set<String> fields = Collections.singleton("field");
+        Set<String> docValues = Collections.emptySet();
+        TermQuery query = new TermQuery(new Term("name", value));
+        ScoreDoc afterDoc = after < 0 ? null : new ScoreDoc(after, 1);
+        return new SearchCache.Key("path", readerVersion, query, null, afterDoc, 100, fields, docValues, false);
+    }
+
+    @Test
+    public void testSearches()
+    {
+        SearchCache cache = new SearchCache(10, 10);
+        Search search = cache.search(JSON);
+        Assert.assertNotNull(search);
+        Assert.assertSame(search, cache.search(JSON));
+        Assert.assertEquals(0.5, cache.getSearchesHitRate(), 0);
+    }
+
+    @Test
+    public void testSearchesDisabled()
+    {
+        SearchCache cache = new SearchCache(0, 0);
+        Assert.assertNotSame(cache.search(JSON), cache.search(JSON));
+        Assert.assertEquals(0, cache.getSearchesHitRate(), 0);
+    }
+
+    @Test
+    public void testKey()
+    {
+        Assert.assertEquals(key(1, "a", -1), key(1, "a", -1));
+        Assert.assertEquals(key(1, "a", -1).hashCode(), key(1, "a", -1).hashCode());
+        Assert.assertFalse(key(1, "a", -1).equals(key(2, "a", -1)));
+        Assert.assertFalse(key(1, "a", -1).equals(key(1, "b", -1)));
+        Assert.assertFalse(key(1, "a", -1).equals(key(1, "a", 7)));
+    }
+
+    @Test
+    public void testPages()
+    {
+        SearchCache cache = new SearchCache(10, 10);
+        List<SearchResult> page = Collections.emptyList();
+        Assert.assertNull(cache.getPage(key(1, "a", -1)));
+        cache.putPage(key(1, "a", -1), page);
+        Assert.assertSame(page, cache.getPage(key(1, "a", -1)));
+        Assert.assertNull(cache.getPage(key(2, "a", -1)));
+        cache.invalidatePages();
+        Assert.assertNull(cache.getPage(key(1, "a", -1)));
+        Assert.assertEquals(0.25, cache.getPagesHitRate(), 0);
+    }
+
+    @Test
+    public void testPagesDisabled()
+    {
+        SearchCache cache = new SearchCache(10, 0);
+        cache.putPage(key(1, "a", -1), Collections.<SearchResult>emptyList());
+        Assert.assertNull(cache.getPage(key(1, "a", -1)));
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SearchPageSizerTest
+{
+
+    @Test
+    public void testFirstPageWithoutHistory()
+    {
+        SearchPageSizer pageSizer = new SearchPageSizer(1000);
+        Assert.assertEquals(1.0, pageSizer.getSurvivalRatio(), 0);
+        Assert.assertEquals(100, pageSizer.firstPageSize(100));
+        Assert.assertEquals(1000, pageSizer.firstPageSize(5000));
+    }
+
+    @Test
+    public void testFirstPageWithHistory()
+    {
+        SearchPageSizer pageSizer = new SearchPageSizer(100000);
+        for (int i = 0; i < 100; i++)
+        {
+            pageSizer.update(100, 50);
+        }
+        Assert.assertEquals(0.5, pageSizer.getSurvivalRatio(), 0.001);
+        Assert.assertEquals(240, pageSizer.firstPageSize(100));
+    }
+
+    @Test
+    public void testFirstPageWithoutSurvivors()
+    {
+        SearchPageSizer pageSizer = new SearchPageSizer(100000);
+        for (int i = 0; i < 100; i++)
+        {
+            pageSizer.update(100, 0);
+        }
+        Assert.assertEquals(12000, pageSizer.firstPageSize(100));
+    }
+
+    @Test
+    public void testNextPage()
+    {
+        SearchPageSizer pageSizer = new SearchPageSizer(100000);
+        Assert.assertEquals(120, pageSizer.nextPageSize(100, 100, 50));
+        Assert.assertEquals(SearchPageSizer.MIN_NEXT_PAGE_SIZE, pageSizer.nextPageSize(100, 100, 99));
+    }
+
+    @Test
+    public void testUpdateWithoutDocs()
+    {
+        SearchPageSizer pageSizer = new SearchPageSizer(100000);
+        pageSizer.update(0, 0);
+        Assert.assertEquals(1.0, pageSizer.getSurvivalRatio(), 0);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import org.apache.cassandra.db.RowPosition;
+import org.apache.cassandra.dht.AbstractBounds;
+import org.apache.cassandra.dht.Bounds;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.dht.LongToken;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.Range;
+import org.apache.cassandra.dht.Token;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ShardedLuceneIndexTest
+{
+
+    private static final IPartitioner partitioner = new Murmur3Partitioner();
+
+    private static ShardedLuceneIndex index(int numShards)
+    {
+        return index(numShards, 64);
+    }
+
+    private static ShardedLuceneIndex index(int numShards, int ramBufferMB)
+    {
+        return new ShardedLuceneIndex(null,
+                                      partitioner,
+                                      numShards,
+                                      "path",
+                                      60.0,
+                                      0.1,
+                                      ramBufferMB,
+                                      5,
+                                      30,
+                                      0,
+                                      true,
+                                      null,
+                                      null,
+                                      null,
+                                      new SearchCache(0, 0));
+    }
+
+    private static Token token(long value)
+    {
+        return new LongToken(value);
+    }
+
+    private static AbstractBounds<RowPosition> bounds(long left, long right)
+    {
+        return new Bounds<RowPosition>(token(left).minKeyBound(partitioner),
+                                       token(right).maxKeyBound(partitioner),
+                                       partitioner);
+    }
+
+    private static AbstractBounds<RowPosition> range(Token left, Token right)
+    {
+        return new Range<RowPosition>(left.maxKeyBound(partitioner), right.maxKeyBound(partitioner), partitioner);
+    }
+
+    @Test
+    public void testBoundaries()
+    {
+        Assert.assertEquals(0, ShardedLuceneIndex.boundaries(partitioner, 1).length);
+        Assert.assertArrayEquals(new Token[]{token(-1)}, ShardedLuceneIndex.boundaries(partitioner, 2));
+        Assert.assertArrayEquals(new Token[]{token((-1L << 62) - 1), token(-1), token((1L << 62) - 1)},
+                                 ShardedLuceneIndex.boundaries(partitioner, 4));
+        Assert.assertEquals(2, ShardedLuceneIndex.boundaries(partitioner, 3).length);
+    }
+
+    @Test
+    public void testShardByToken()
+    {
+        ShardedLuceneIndex index = index(4);
+        Assert.assertEquals(0, index.shard(partitioner.getMinimumToken()));
+        Assert.assertEquals(0, index.shard(token((-1L << 62) - 1)));
+        Assert.assertEquals(1, index.shard(token(-1L << 62)));
+        Assert.assertEquals(1, index.shard(token(-1)));
+        Assert.assertEquals(2, index.shard(token(0)));
+        Assert.assertEquals(3, index.shard(token(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testSingleShard()
+    {
+        ShardedLuceneIndex index = index(1);
+        Assert.assertEquals(0, index.shard(token(Long.MAX_VALUE)));
+        Assert.assertEquals(Arrays.asList(0), index.shards(bounds(-1, 1)));
+    }
+
+    @Test
+    public void testShardsByRange()
+    {
+        ShardedLuceneIndex index = index(4);
+        Token minimum = partitioner.getMinimumToken();
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), index.shards(range(minimum, minimum)));
+        Assert.assertEquals(Arrays.asList(1), index.shards(bounds(-5, -1)));
+        Assert.assertEquals(Arrays.asList(1, 2), index.shards(bounds(-5, 5)));
+        Assert.assertEquals(Arrays.asList(2, 3), index.shards(range(token(1), minimum)));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), index.shards(range(token(5), token(-5))));
+    }
+
+    @Test
+    public void testRamBufferSplit()
+    {
+        index(4, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRamBufferLowerThanShards()
+    {
+        index(4, 3);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void testMergeByRelevance() throws Exception
+    {
+        List<SearchResult>[] shardResults = new List[]{results(new ScoreDoc(0, 3f), new ScoreDoc(1, 1f)),
+                                                       results(new ScoreDoc(0, 2f), new ScoreDoc(1, 1f))};
+        List<SearchResult> merged = ShardedLuceneIndex.merge(null, 3, shardResults);
+        Assert.assertEquals(3, merged.size());
+        Assert.assertSame(shardResults[0].get(0), merged.get(0));
+        Assert.assertSame(shardResults[1].get(0), merged.get(1));
+        Assert.assertSame(shardResults[0].get(1), merged.get(2));
+
+        // The next page of each shard starts after the tied hits of the previous shards
+        SearchResult last = merged.get(2);
+        Assert.assertSame(last, ShardedLuceneIndex.after(last, 0));
+        ScoreDoc after = ShardedLuceneIndex.after(last, 1).getScoreDoc();
+        Assert.assertEquals(-1, after.doc);
+        Assert.assertEquals(1f, after.score, 0);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Test
+    public void testMergeSorted() throws Exception
+    {
+        Sort sort = new Sort(new SortField("field", SortField.Type.INT));
+        SearchResult a = new SearchResult(null, null, new FieldDoc(0, Float.NaN, new Object[]{1}));
+        SearchResult b = new SearchResult(null, null, new FieldDoc(1, Float.NaN, new Object[]{2}));
+        b.setAdjacent(true);
+        SearchResult c = new SearchResult(null, null, new FieldDoc(0, Float.NaN, new Object[]{2}));
+        List<SearchResult>[] shardResults = new List[]{Arrays.asList(c), Arrays.asList(a, b)};
+        List<SearchResult> merged = ShardedLuceneIndex.merge(sort, 10, shardResults);
+        Assert.assertEquals(3, merged.size());
+        Assert.assertSame(a, merged.get(0));
+        Assert.assertSame(c, merged.get(1));
+        Assert.assertSame(b.getScoreDoc(), merged.get(2).getScoreDoc());
+
+        // Adjacency is kept only between hits of the same shard
+        Assert.assertFalse(merged.get(2).isAdjacent());
+        Assert.assertTrue(b.isAdjacent());
+
+        // The shards after the one of the cursor start at the tied hits
+        FieldDoc after = (FieldDoc) ShardedLuceneIndex.after(merged.get(1), 1).getScoreDoc();
+        Assert.assertEquals(-1, after.doc);
+        Assert.assertArrayEquals(new Object[]{2}, after.fields);
+    }
+
+    private static List<SearchResult> results(ScoreDoc... scoreDocs)
+    {
+        List<SearchResult> results = new ArrayList<>(scoreDocs.length);
+        for (ScoreDoc scoreDoc : scoreDocs)
+        {
+            results.add(new SearchResult(null, null, scoreDoc));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.db.BufferCell;
+import org.apache.cassandra.db.BufferExpiringCell;
+import org.apache.cassandra.db.Cell;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.ExpiringCell;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+public class StoredCellsMapperTest
+{
+
+    private static final TestTable table = new TestTable("pk int, ck int, name text, age int, " +
+                                                         "tags map<text, int>, lucene text, PRIMARY KEY (pk, ck)");
+
+    private static final long TIMESTAMP = 1234567890123L;
+
+    private static final int EXPIRATION = (int) (System.currentTimeMillis() / 1000) + 60;
+
+    private static StoredCellsMapper mapper(TestTable table, String storedColumns) throws Exception
+    {
+        Schema schema = Schema.fromJson("{fields:{name:{type:\"string\"}}, stored_columns:[" + storedColumns + "]}");
+        return StoredCellsMapper.instance(table.getMetadata(), table.indexedColumn(), schema);
+    }
+
+    private static CellName marker(int ck)
+    {
+        return table.marker(ck);
+    }
+
+    private static CellName name(int ck, String column)
+    {
+        return table.name(ck, column);
+    }
+
+    private static CellName name(int ck, String column, String element)
+    {
+        return table.name(ck, column, element);
+    }
+
+    private static Row row(Cell... cells)
+    {
+        return table.row(1, table.columnFamily(cells));
+    }
+
+    private static ColumnFamily roundTrip(StoredCellsMapper mapper, Row row)
+    {
+        Document document = new Document();
+        mapper.addFields(document, row);
+        return mapper.columnFamily(document);
+    }
+
+    private static void assertCell(Cell expected, Cell actual)
+    {
+        Assert.assertEquals(expected.name(), actual.name());
+        Assert.assertEquals(expected.value(), actual.value());
+        Assert.assertEquals(expected.timestamp(), actual.timestamp());
+        Assert.assertEquals(expected instanceof ExpiringCell, actual instanceof ExpiringCell);
+        if (expected instanceof ExpiringCell)
+        {
+            Assert.assertEquals(((ExpiringCell) expected).getTimeToLive(), ((ExpiringCell) actual).getTimeToLive());
+            Assert.assertEquals(expected.getLocalDeletionTime(), actual.getLocalDeletionTime());
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        StoredCellsMapper mapper = mapper(table, "\"name\", \"age\"");
+        Cell name = new BufferCell(name(1, "name"), UTF8Type.instance.decompose("alice"), TIMESTAMP);
+        Cell age = new BufferExpiringCell(name(1, "age"), Int32Type.instance.decompose(42), TIMESTAMP, 60, EXPIRATION);
+        Cell tags = new BufferCell(name(1, "tags", "a"), Int32Type.instance.decompose(1), TIMESTAMP);
+        ColumnFamily cf = roundTrip(mapper, row(new BufferCell(marker(1), ByteBuffer.allocate(0), TIMESTAMP),
+                                                name,
+                                                age,
+                                                tags));
+        Assert.assertEquals(2, cf.getColumnCount()); // Neither the unstored collection nor the marker are stored
+        assertCell(name, cf.getColumn(name.name()));
+        assertCell(age, cf.getColumn(age.name()));
+    }
+
+    @Test
+    public void testBinaryLayout() throws Exception
+    {
+        StoredCellsMapper mapper = mapper(table, "\"age\"");
+        Cell age = new BufferExpiringCell(name(1, "age"), Int32Type.instance.decompose(42), TIMESTAMP, 60, EXPIRATION);
+        Document document = new Document();
+        mapper.addFields(document, row(age));
+        BytesRef bytesRef = document.getField(StoredCellsMapper.FIELD_NAME).binaryValue();
+        ByteBuffer bb = ByteBuffer.wrap(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+        ByteBuffer name = age.name().toByteBuffer();
+        Assert.assertEquals(name.remaining(), bb.getShort() & 0xFFFF);
+        bb.position(bb.position() + name.remaining());
+        Assert.assertEquals(TIMESTAMP, bb.getLong());
+        Assert.assertEquals(60, bb.getInt());
+        Assert.assertEquals(EXPIRATION, bb.getInt());
+        Assert.assertEquals(42, bb.getInt());
+        Assert.assertFalse(bb.hasRemaining());
+    }
+
+    @Test
+    public void testRoundTripWithCollectionCells() throws Exception
+    {
+        // Collection columns are rejected by the schema validation, but their cells are serialized as any other cell
+        StoredCellsMapper mapper = mapper(table, "\"tags\"");
+        Cell first = new BufferCell(name(1, "tags", "a"), Int32Type.instance.decompose(1), TIMESTAMP);
+        Cell second = new BufferExpiringCell(name(1, "tags", "b"),
+                                             Int32Type.instance.decompose(2),
+                                             TIMESTAMP,
+                                             60,
+                                             EXPIRATION);
+        ColumnFamily cf = roundTrip(mapper, row(first, second));
+        Assert.assertEquals(2, cf.getColumnCount());
+        Iterator<Cell> iterator = cf.iterator();
+        assertCell(first, iterator.next());
+        assertCell(second, iterator.next());
+    }
+
+    @Test
+    public void testRoundTripWithLongValue() throws Exception
+    {
+        StoredCellsMapper mapper = mapper(table, "\"name\"");
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 70000; i++)
+        {
+            value.append('x');
+        }
+        Cell name = new BufferCell(name(1, "name"), UTF8Type.instance.decompose(value.toString()), TIMESTAMP);
+        ColumnFamily cf = roundTrip(mapper, row(name));
+        assertCell(name, cf.getColumn(name.name()));
+    }
+
+    @Test
+    public void testNoStoredCells() throws Exception
+    {
+        StoredCellsMapper mapper = mapper(table, "");
+        Row row = row(new BufferCell(name(1, "name"), UTF8Type.instance.decompose("alice"), TIMESTAMP));
+        Assert.assertNull(roundTrip(mapper, row));
+        Assert.assertFalse(mapper.isCovering());
+    }
+
+    @Test
+    public void testCovering() throws Exception
+    {
+        TestTable table = new TestTable(TestTable.WIDE_COLUMNS);
+        Assert.assertTrue(mapper(table, "\"name\", \"age\"").isCovering());
+    }
+
+    @Test
+    public void testNotCoveringWithUnstoredColumn() throws Exception
+    {
+        TestTable table = new TestTable(TestTable.WIDE_COLUMNS);
+        Assert.assertFalse(mapper(table, "\"name\"").isCovering());
+    }
+
+    @Test
+    public void testNotCoveringWithStaticColumns() throws Exception
+    {
+        TestTable table = new TestTable("pk int, ck int, s int static, name text, lucene text, PRIMARY KEY (pk, ck)");
+        Assert.assertFalse(mapper(table, "\"name\"").isCovering());
+    }
+
+    @Test
+    public void testCoveringStoresRowMarker() throws Exception
+    {
+        TestTable table = new TestTable("pk int, ck int, name text, lucene text, PRIMARY KEY (pk, ck)");
+        StoredCellsMapper mapper = mapper(table, "\"name\"");
+        Cell marker = new BufferCell(table.marker(1), ByteBuffer.allocate(0), TIMESTAMP);
+        Cell name = new BufferCell(table.name(1, "name"), UTF8Type.instance.decompose("alice"), TIMESTAMP);
+        Document document = new Document();
+        mapper.addFields(document, table.row(1, table.columnFamily(marker, name)));
+        ColumnFamily stored = mapper.columnFamily(document);
+        Assert.assertEquals(2, stored.getColumnCount());
+        assertCell(marker, stored.getColumn(marker.name()));
+        assertCell(name, stored.getColumn(name.name()));
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index;
+
+import com.stratio.cassandra.index.schema.Schema;
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.config.ColumnDefinition;
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.ArrayBackedSortedColumns;
+import org.apache.cassandra.db.Cell;
+import org.apache.cassandra.db.ColumnFamily;
+import org.apache.cassandra.db.DecoratedKey;
+import org.apache.cassandra.db.Row;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.CellNameType;
+import org.apache.cassandra.db.composites.Composite;
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.utils.ByteBufferUtil;
+
+/**
+ * A table with an {@code int} partition key named {@code pk} and an indexed column named {@code lucene}, used by the
+ * tests and the microbenchmarks to build the metadata, the mappers and the {@link Row}s of the indexed data.
+ *
+ * @author Andres de la Pena <adelapena@stratio.com>
+ */
+public class TestTable
+{
+    /** The default name of the keyspace of the table. */
+    public static final String KEYSPACE_NAME = "ks";
+
+    /** The default name of the table. */
+    public static final String TABLE_NAME = "t";
+
+    /** The name of the indexed column. */
+    public static final String INDEXED_COLUMN_NAME = "lucene";
+
+    /** The columns of the wide table used by most of the tests, with two mapped regular columns. */
+    public static final String WIDE_COLUMNS = "pk int, ck int, name text, age int, lucene text, PRIMARY KEY (pk, ck)";
+
+    /** The JSON representation of the {@link Schema} mapping the regular columns of {@link #WIDE_COLUMNS}. */
+    public static final String WIDE_SCHEMA = "{fields:{name:{type:\"string\"}, age:{type:\"integer\"}}}";
+
+    private final CFMetaData metadata;
+
+    /**
+     * Builds a new {@link TestTable} in the default keyspace and with the default name.
+     *
+     * @param columns The CQL definition of the columns and the primary key of the table.
+     */
+    public TestTable(String columns)
+    {
+        this(KEYSPACE_NAME, TABLE_NAME, columns);
+    }
+
+    /**
+     * Builds a new {@link TestTable}.
+     *
+     * @param keyspaceName The name of the keyspace of the table.
+     * @param tableName    The name of the table.
+     * @param columns      The CQL definition of the columns and the primary key of the table.
+     */
+    public TestTable(String keyspaceName, String tableName, String columns)
+    {
+        metadata = CFMetaData.compile("CREATE TABLE " + tableName + " (" + columns + ")", keyspaceName);
+    }
+
+    /**
+     * Returns the {@link CFMetaData} of the table.
+     *
+     * @return The {@link CFMetaData} of the table.
+     */
+    public CFMetaData getMetadata()
+    {
+        return metadata;
+    }
+
+    /**
+     * Returns the {@link ColumnDefinition} of the specified column.
+     *
+     * @param name The name of a column.
+     * @return The {@link ColumnDefinition} of the column named {@code name}.
+     */
+    public ColumnDefinition column(String name)
+    {
+        return metadata.getColumnDefinition(UTF8Type.instance.decompose(name));
+    }
+
+    /**
+     * Returns the {@link ColumnDefinition} of the indexed column.
+     *
+     * @return The {@link ColumnDefinition} of the indexed column.
+     */
+    public ColumnDefinition indexedColumn()
+    {
+        return column(INDEXED_COLUMN_NAME);
+    }
+
+    /**
+     * Returns a new {@link RowMapper} for the table and the specified {@link Schema}.
+     *
+     * @param schema The mapping {@link Schema}.
+     * @return A new {@link RowMapper} for the table.
+     */
+    public RowMapper rowMapper(Schema schema)
+    {
+        return RowMapper.build(metadata, indexedColumn(), schema);
+    }
+
+    /**
+     * Returns a new {@link RowMapper} for the table and the {@link Schema} with the specified JSON representation.
+     *
+     * @param schema The JSON representation of the mapping {@link Schema}.
+     * @return A new {@link RowMapper} for the table.
+     * @throws Exception If the {@link Schema} can't be parsed.
+     */
+    public RowMapper rowMapper(String schema) throws Exception
+    {
+        return rowMapper(Schema.fromJson(schema));
+    }
+
+    /**
+     * Returns the specified partition key.
+     *
+     * @param pk The value of the partition key.
+     * @return The specified partition key.
+     */
+    public DecoratedKey partitionKey(int pk)
+    {
+        return DatabaseDescriptor.getPartitioner().decorateKey(Int32Type.instance.decompose(pk));
+    }
+
+    /**
+     * Returns the prefix of the cell names of the CQL3 row with the specified clustering key.
+     *
+     * @param ck The value of the clustering key, ignored if the table has no clustering key.
+     * @return The prefix of the cell names of the CQL3 row with clustering key {@code ck}.
+     */
+    public Composite prefix(Object ck)
+    {
+        CellNameType comparator = metadata.comparator;
+        return metadata.clusteringColumns().isEmpty() ? comparator.builder().build() : comparator.make(ck);
+    }
+
+    /**
+     * Returns the name of the row marker of the CQL3 row with the specified clustering key.
+     *
+     * @param ck The value of the clustering key.
+     * @return The name of the row marker of the CQL3 row with clustering key {@code ck}.
+     */
+    public CellName marker(Object ck)
+    {
+        return metadata.comparator.rowMarker(prefix(ck));
+    }
+
+    /**
+     * Returns the name of the cell of the specified column in the CQL3 row with the specified clustering key.
+     *
+     * @param ck     The value of the clustering key.
+     * @param column The name of a regular column.
+     * @return The name of the cell of {@code column} in the CQL3 row with clustering key {@code ck}.
+     */
+    public CellName name(Object ck, String column)
+    {
+        return metadata.comparator.create(prefix(ck), column(column));
+    }
+
+    /**
+     * Returns the name of the cell of the specified collection element in the CQL3 row with the specified clustering
+     * key.
+     *
+     * @param ck      The value of the clustering key.
+     * @param column  The name of a collection column.
+     * @param element The collection element, that is, the key of a map or the value of a set.
+     * @return The name of the cell of {@code element} of {@code column} in the CQL3 row with clustering key {@code ck}.
+     */
+    public CellName name(Object ck, String column, String element)
+    {
+        return metadata.comparator.create(prefix(ck), column(column), UTF8Type.instance.decompose(element));
+    }
+
+    /**
+     * Returns a new {@link ColumnFamily} of the table containing the specified {@link Cell}s.
+     *
+     * @param cells The {@link Cell}s of the {@link ColumnFamily}.
+     * @return A new {@link ColumnFamily} containing {@code cells}.
+     */
+    public ColumnFamily columnFamily(Cell... cells)
+    {
+        ColumnFamily cf = ArrayBackedSortedColumns.factory.create(metadata);
+        for (Cell cell : cells)
+        {
+            cf.addColumn(cell);
+        }
+        return cf;
+    }
+
+    /**
+     * Returns a new {@link Row} of the table in the specified partition with the specified {@link ColumnFamily}.
+     *
+     * @param pk           The value of the partition key.
+     * @param columnFamily The {@link ColumnFamily} of the {@link Row}.
+     * @return A new {@link Row} in partition {@code pk} with {@code columnFamily}.
+     */
+    public Row row(int pk, ColumnFamily columnFamily)
+    {
+        return new Row(partitionKey(pk), columnFamily);
+    }
+
+    /**
+     * Returns a new {@link Row} containing the CQL3 row with the specified primary key, with its row marker and the
+     * specified regular column values, all of them written at timestamp {@code 1}.
+     *
+     * @param pk             The value of the partition key.
+     * @param ck             The value of the clustering key, ignored if the table has no clustering key.
+     * @param namesAndValues The alternated names and values of the regular columns.
+     * @return A new {@link Row} containing the CQL3 row with the specified primary key and columns.
+     */
+    @SuppressWarnings("unchecked")
+    public Row row(int pk, Object ck, Object... namesAndValues)
+    {
+        ColumnFamily cf = ArrayBackedSortedColumns.factory.create(metadata);
+        cf.addColumn(marker(ck), ByteBufferUtil.EMPTY_BYTE_BUFFER, 1);
+        for (int i = 0; i < namesAndValues.length; i += 2)
+        {
+            ColumnDefinition columnDefinition = column((String) namesAndValues[i]);
+            AbstractType<Object> type = (AbstractType<Object>) columnDefinition.type;
+            cf.addColumn(metadata.comparator.create(prefix(ck), columnDefinition),
+                         type.decompose(namesAndValues[i + 1]),
+                         1);
+        }
+        return new Row(partitionKey(pk), cf);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import static com.stratio.cassandra.index.query.builder.SearchBuilders.filter;
+import static com.stratio.cassandra.index.query.builder.SearchBuilders.match;
+
+public class SearchTest extends AbstractConditionTest
+{
+
+    @Test
+    public void testMaxStalenessJson()
+    {
+        testJsonCondition(filter(match("name", "aaa")).maxStaleness(0.5));
+        Search search = Search.fromJson("{filter:{type:\"match\",field:\"name\",value:\"aaa\"},max_staleness_seconds:0}");
+        Assert.assertEquals(0, search.getMaxStalenessSeconds(), 0);
+    }
+
+    @Test
+    public void testWithoutMaxStaleness()
+    {
+        Search search = Search.fromJson("{filter:{type:\"match\",field:\"name\",value:\"aaa\"}}");
+        Assert.assertNull(search.getMaxStalenessSeconds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testValidateNegativeMaxStaleness()
+    {
+        new Search(null, null, null, -1d, null).validate(null);
+    }
+}
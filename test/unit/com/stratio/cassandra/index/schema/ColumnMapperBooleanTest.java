@@ -21,6 +21,8 @@ import java.util.UUID;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.util.BytesRef;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -160,6 +162,16 @@ public class ColumnMapperBooleanTest
         Assert.assertFalse(field.fieldType().stored());
     }
 
+    @Test
+    public void testDocValuesField()
+    {
+        ColumnMapperBoolean mapper = new ColumnMapperBoolean();
+        Field field = mapper.docValuesField("name", "true");
+        Assert.assertEquals(FieldInfo.DocValuesType.SORTED, field.fieldType().docValueType());
+        Assert.assertEquals(new BytesRef(mapper.indexValue("name", "true")), field.binaryValue());
+        Assert.assertEquals("name", field.name());
+    }
+
     @Test
     public void testExtractAnalyzers()
     {
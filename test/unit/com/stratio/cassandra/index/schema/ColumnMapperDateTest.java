@@ -22,6 +22,7 @@ import java.util.Date;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.FieldInfo;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -158,6 +159,16 @@ public class ColumnMapperDateTest
         Assert.assertEquals(false, field.fieldType().stored());
     }
 
+    @Test
+    public void testDocValuesField()
+    {
+        ColumnMapperDate mapper = new ColumnMapperDate(PATTERN);
+        Field field = mapper.docValuesField("name", "2014-03-19");
+        Assert.assertEquals(FieldInfo.DocValuesType.NUMERIC, field.fieldType().docValueType());
+        Assert.assertEquals(mapper.indexValue("name", "2014-03-19"), field.numericValue());
+        Assert.assertEquals("name", field.name());
+    }
+
     @Test
     public void testExtractAnalyzers()
     {
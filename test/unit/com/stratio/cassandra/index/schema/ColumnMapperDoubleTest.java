@@ -19,6 +19,7 @@ import java.io.IOException;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.FieldInfo;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -136,6 +137,16 @@ public class ColumnMapperDoubleTest
         Assert.assertEquals(false, field.fieldType().stored());
     }
 
+    @Test
+    public void testDocValuesField()
+    {
+        ColumnMapperDouble mapper = new ColumnMapperDouble(1f);
+        Field field = mapper.docValuesField("name", "3.2");
+        Assert.assertEquals(FieldInfo.DocValuesType.NUMERIC, field.fieldType().docValueType());
+        Assert.assertEquals(3.2d, Double.longBitsToDouble(field.numericValue().longValue()), 0);
+        Assert.assertEquals("name", field.name());
+    }
+
     @Test
     public void testExtractAnalyzers()
     {
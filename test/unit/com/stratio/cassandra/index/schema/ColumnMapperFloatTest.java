@@ -19,6 +19,7 @@ import java.io.IOException;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.FieldInfo;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -137,6 +138,16 @@ public class ColumnMapperFloatTest
         Assert.assertEquals(false, field.fieldType().stored());
     }
 
+    @Test
+    public void testDocValuesField()
+    {
+        ColumnMapperFloat mapper = new ColumnMapperFloat(1f);
+        Field field = mapper.docValuesField("name", "3.2");
+        Assert.assertEquals(FieldInfo.DocValuesType.NUMERIC, field.fieldType().docValueType());
+        Assert.assertEquals(3.2f, Float.intBitsToFloat(field.numericValue().intValue()), 0);
+        Assert.assertEquals("name", field.name());
+    }
+
     @Test
     public void testExtractAnalyzers()
     {
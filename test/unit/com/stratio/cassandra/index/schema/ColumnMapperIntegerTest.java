@@ -19,6 +19,7 @@ import java.io.IOException;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.index.FieldInfo;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -138,6 +139,16 @@ public class ColumnMapperIntegerTest
         Assert.assertEquals(false, field.fieldType().stored());
     }
 
+    @Test
+    public void testDocValuesField()
+    {
+        ColumnMapperInteger mapper = new ColumnMapperInteger(1f);
+        Field field = mapper.docValuesField("name", "3.2");
+        Assert.assertEquals(FieldInfo.DocValuesType.NUMERIC, field.fieldType().docValueType());
+        Assert.assertEquals(3L, field.numericValue());
+        Assert.assertEquals("name", field.name());
+    }
+
     @Test
     public void testExtractAnalyzers()
     {
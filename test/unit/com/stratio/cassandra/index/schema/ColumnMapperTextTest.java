@@ -161,6 +161,13 @@ public class ColumnMapperTextTest
         Assert.assertEquals(false, field.fieldType().stored());
     }
 
+    @Test
+    public void testDocValuesField()
+    {
+        ColumnMapperText mapper = new ColumnMapperText("org.apache.lucene.analysis.en.EnglishAnalyzer");
+        Assert.assertNull(mapper.docValuesField("name", "hello"));
+    }
+
     @Test
     public void testExtractAnalyzers()
     {
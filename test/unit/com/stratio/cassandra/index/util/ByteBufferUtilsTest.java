@@ -0,0 +1,54 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.util;
+
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class ByteBufferUtilsTest
+{
+
+    @Test
+    public void testBytesRef()
+    {
+        ByteBuffer byteBuffer = ByteBufferUtil.bytes("partition_key");
+        BytesRef bytesRef = ByteBufferUtils.bytesRef(byteBuffer);
+        Assert.assertEquals(byteBuffer, ByteBufferUtils.byteBuffer(bytesRef));
+        Assert.assertEquals(0, byteBuffer.position());
+    }
+
+    @Test
+    public void testByteBufferWithOffset()
+    {
+        byte[] bytes = new byte[]{1, 2, 3, 4, 5};
+        BytesRef bytesRef = new BytesRef(bytes, 1, 3);
+        ByteBuffer byteBuffer = ByteBufferUtils.byteBuffer(bytesRef);
+        Assert.assertEquals(ByteBuffer.wrap(new byte[]{2, 3, 4}), byteBuffer);
+        Assert.assertEquals(0, byteBuffer.position());
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        BytesRef bytesRef = ByteBufferUtils.bytesRef(ByteBufferUtil.EMPTY_BYTE_BUFFER);
+        Assert.assertEquals(0, bytesRef.length);
+        Assert.assertTrue(ByteBufferUtils.isEmpty(ByteBufferUtils.byteBuffer(bytesRef)));
+    }
+}
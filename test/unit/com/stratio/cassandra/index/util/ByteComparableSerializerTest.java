@@ -0,0 +1,183 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.util;
+
+import org.apache.cassandra.config.CFMetaData;
+import org.apache.cassandra.db.composites.CellName;
+import org.apache.cassandra.db.composites.CellNameType;
+import org.apache.cassandra.db.marshal.BooleanType;
+import org.apache.cassandra.db.marshal.BytesType;
+import org.apache.cassandra.db.marshal.DoubleType;
+import org.apache.cassandra.db.marshal.FloatType;
+import org.apache.cassandra.db.marshal.Int32Type;
+import org.apache.cassandra.db.marshal.LongType;
+import org.apache.cassandra.db.marshal.TimeUUIDType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.db.marshal.UUIDType;
+import org.apache.cassandra.dht.BigIntegerToken;
+import org.apache.cassandra.dht.BytesToken;
+import org.apache.cassandra.dht.Murmur3Partitioner;
+import org.apache.cassandra.dht.RandomPartitioner;
+import org.apache.cassandra.dht.StringToken;
+import org.apache.cassandra.dht.Token;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.lucene.util.BytesRef;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ByteComparableSerializerTest
+{
+
+    private final Random random = new Random(0);
+
+    private static int signum(int value)
+    {
+        return value < 0 ? -1 : value > 0 ? 1 : 0;
+    }
+
+    private ByteBuffer randomValue(int kind)
+    {
+        if (random.nextInt(20) == 0)
+        {
+            return ByteBufferUtil.EMPTY_BYTE_BUFFER;
+        }
+        switch (kind)
+        {
+            case 0:
+                return Int32Type.instance.decompose(random.nextInt(7) - 3);
+            case 1:
+                String[] strings = {"", "a", "ab", "a\u0000", "a\u0000b", "b", "á", "😀"};
+                return UTF8Type.instance.decompose(strings[random.nextInt(strings.length)]);
+            case 2:
+                double[] doubles = {-Double.MAX_VALUE, -1.5, -0.0, 0.0, 1.5, Double.POSITIVE_INFINITY, Double.NaN};
+                return DoubleType.instance.decompose(doubles[random.nextInt(doubles.length)]);
+            default:
+                return LongType.instance.decompose(random.nextLong() >> random.nextInt(64));
+        }
+    }
+
+    @Test
+    public void testSupports()
+    {
+        Assert.assertTrue(ByteComparableSerializer.supports(Int32Type.instance));
+        Assert.assertTrue(ByteComparableSerializer.supports(BooleanType.instance));
+        Assert.assertTrue(ByteComparableSerializer.supports(BytesType.instance));
+        Assert.assertTrue(ByteComparableSerializer.supports(FloatType.instance));
+        Assert.assertFalse(ByteComparableSerializer.supports(UUIDType.instance));
+        Assert.assertFalse(ByteComparableSerializer.supports(TimeUUIDType.instance));
+        Assert.assertTrue(ByteComparableSerializer.supports(new RandomPartitioner()));
+        Assert.assertFalse(ByteComparableSerializer.supports(new Murmur3Partitioner()));
+    }
+
+    @Test
+    public void testClusteringKeys()
+    {
+        CFMetaData metadata = CFMetaData.compile("CREATE TABLE t (k int, c1 int, c2 text, c3 double, c4 bigint, " +
+                                                 "v int, PRIMARY KEY (k, c1, c2, c3, c4)) " +
+                                                 "WITH CLUSTERING ORDER BY (c1 ASC, c2 DESC, c3 DESC, c4 ASC)", "ks");
+        CellNameType type = metadata.comparator;
+        Assert.assertTrue(ByteComparableSerializer.supports(type, 4));
+
+        List<CellName> cellNames = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+        {
+            cellNames.add(type.makeCellName(randomValue(0),
+                                            randomValue(1),
+                                            randomValue(2),
+                                            randomValue(3),
+                                            ByteBufferUtil.EMPTY_BYTE_BUFFER));
+        }
+        for (CellName cellName1 : cellNames)
+        {
+            BytesRef bytesRef1 = ByteComparableSerializer.serialize(cellName1, type, 4);
+            for (CellName cellName2 : cellNames)
+            {
+                BytesRef bytesRef2 = ByteComparableSerializer.serialize(cellName2, type, 4);
+                int expected = signum(type.compare(cellName1, cellName2));
+                int actual = signum(bytesRef1.compareTo(bytesRef2));
+                Assert.assertEquals(cellName1 + " vs " + cellName2, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testFloats()
+    {
+        float[] floats = {Float.NEGATIVE_INFINITY, -3.5f, -Float.MIN_VALUE, -0.0f, 0.0f, 1f, Float.MAX_VALUE, Float.NaN};
+        CellNameType type = CFMetaData.compile("CREATE TABLE t (k int, c float, v int, PRIMARY KEY (k, c))", "ks")
+                                      .comparator;
+        BytesRef previous = null;
+        for (float f : floats)
+        {
+            CellName cellName = type.makeCellName(FloatType.instance.decompose(f), ByteBufferUtil.EMPTY_BYTE_BUFFER);
+            BytesRef bytesRef = ByteComparableSerializer.serialize(cellName, type, 1);
+            if (previous != null)
+            {
+                Assert.assertTrue(previous.compareTo(bytesRef) < 0);
+            }
+            previous = bytesRef;
+        }
+    }
+
+    @Test
+    public void testTokens()
+    {
+        List<Token> tokens = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+        {
+            tokens.add(new BigIntegerToken(new BigInteger(127, random).add(BigInteger.valueOf(random.nextInt(3) - 1))));
+        }
+        tokens.add(new BigIntegerToken(BigInteger.ONE.negate()));
+        tokens.add(new BigIntegerToken(BigInteger.ONE.shiftLeft(127)));
+        assertSameOrder(tokens);
+
+        tokens.clear();
+        for (int i = 0; i < 100; i++)
+        {
+            byte[] bytes = new byte[random.nextInt(4)];
+            random.nextBytes(bytes);
+            tokens.add(new BytesToken(bytes));
+        }
+        assertSameOrder(tokens);
+
+        tokens.clear();
+        for (String string : new String[]{"", "a", "ab", "b", "á", "😀", "�", "a\u0000"})
+        {
+            tokens.add(new StringToken(string));
+        }
+        assertSameOrder(tokens);
+    }
+
+    private static void assertSameOrder(List<Token> tokens)
+    {
+        for (Token token1 : tokens)
+        {
+            for (Token token2 : tokens)
+            {
+                int expected = signum(token1.compareTo(token2));
+                int actual = signum(ByteComparableSerializer.serialize(token1)
+                                                            .compareTo(ByteComparableSerializer.serialize(token2)));
+                Assert.assertEquals(token1 + " vs " + token2, expected, actual);
+            }
+        }
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2014, Stratio.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.stratio.cassandra.index.util;
+
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TaskQueueTest
+{
+
+    private static final TaskQueue.BatchProcessor<Runnable> RUNNER = new TaskQueue.BatchProcessor<Runnable>()
+    {
+        @Override
+        public void process(List<Runnable> items)
+        {
+            for (Runnable item : items)
+            {
+                item.run();
+            }
+        }
+    };
+
+    private static <T> TaskQueue<T> taskQueue(int numThreads,
+                                              int queuesSize,
+                                              int batchSize,
+                                              long batchMillis,
+                                              TaskQueue.BatchProcessor<T> processor,
+                                              Histogram batchSizes)
+    {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram queueWaits = registry.newHistogram(TaskQueueTest.class, "queueWaits");
+        return new TaskQueue<>(numThreads, queuesSize, batchSize, batchMillis, processor, batchSizes, queueWaits);
+    }
+
+    private static TaskQueue<Runnable> taskQueue(int numThreads, int queuesSize, int batchSize, Histogram batchSizes)
+    {
+        return taskQueue(numThreads, queuesSize, batchSize, 0, RUNNER, batchSizes);
+    }
+
+    @Test
+    public void testSameIdOrdered()
+    {
+        Histogram batchSizes = new MetricsRegistry().newHistogram(TaskQueueTest.class, "batchSizes");
+        TaskQueue<Runnable> taskQueue = taskQueue(4, 10, 5, batchSizes);
+        final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+        for (int i = 0; i < 100; i++)
+        {
+            final int value = i;
+            taskQueue.submitAsynchronous("id", new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    executed.add(value);
+                }
+            });
+        }
+        taskQueue.await();
+        Assert.assertEquals(100, executed.size());
+        for (int i = 0; i < 100; i++)
+        {
+            Assert.assertEquals(Integer.valueOf(i), executed.get(i));
+        }
+        Assert.assertTrue(batchSizes.max() <= 5);
+        taskQueue.shutdown();
+    }
+
+    @Test
+    public void testSubmitSynchronous()
+    {
+        Histogram batchSizes = new MetricsRegistry().newHistogram(TaskQueueTest.class, "batchSizes");
+        TaskQueue<Runnable> taskQueue = taskQueue(3, 10, 10, batchSizes);
+        final AtomicInteger counter = new AtomicInteger();
+        for (int i = 0; i < 50; i++)
+        {
+            taskQueue.submitAsynchronous(i, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    counter.incrementAndGet();
+                }
+            });
+        }
+        taskQueue.submitSynchronous(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Assert.assertEquals(50, counter.get());
+            }
+        });
+        Assert.assertEquals(0, taskQueue.size());
+        taskQueue.shutdown();
+    }
+
+    @Test
+    public void testFailedBatchDoesNotStopQueue() throws Exception
+    {
+        Histogram batchSizes = new MetricsRegistry().newHistogram(TaskQueueTest.class, "batchSizes");
+        TaskQueue<Runnable> taskQueue = taskQueue(1, 10, 10, batchSizes);
+        final AtomicInteger counter = new AtomicInteger();
+        Future<?> failed = taskQueue.submitAsynchronous(1, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                throw new RuntimeException("Expected failure");
+            }
+        });
+        taskQueue.await();
+        try
+        {
+            failed.get();
+            Assert.fail("The failure of the batch should be reported");
+        }
+        catch (ExecutionException e)
+        {
+            Assert.assertEquals("Expected failure", e.getCause().getMessage());
+        }
+        taskQueue.submitAsynchronous(1, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                counter.incrementAndGet();
+            }
+        });
+        taskQueue.await();
+        Assert.assertEquals(1, counter.get());
+        taskQueue.shutdown();
+    }
+
+    @Test
+    public void testBatchedItems() throws Exception
+    {
+        Histogram batchSizes = new MetricsRegistry().newHistogram(TaskQueueTest.class, "batchSizes");
+        final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+        TaskQueue.BatchProcessor<Integer> processor = new TaskQueue.BatchProcessor<Integer>()
+        {
+            @Override
+            public void process(List<Integer> items)
+            {
+                batches.add(new ArrayList<>(items));
+            }
+        };
+        TaskQueue<Integer> taskQueue = taskQueue(1, 100, 5, TimeUnit.MINUTES.toMillis(1), processor, batchSizes);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+        {
+            futures.add(taskQueue.submitAsynchronous("id", i));
+        }
+        futures.get(9).get(10, TimeUnit.SECONDS); // Full batches don't wait
+        Assert.assertFalse(futures.get(10).isDone());
+        taskQueue.await(); // Closes the last batch
+        Assert.assertEquals(3, batches.size());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4), batches.get(0));
+        Assert.assertEquals(Arrays.asList(5, 6, 7, 8, 9), batches.get(1));
+        Assert.assertEquals(Arrays.asList(10, 11), batches.get(2));
+        taskQueue.shutdown();
+    }
+
+    @Test
+    public void testBatchLatencyBound() throws Exception
+    {
+        Histogram batchSizes = new MetricsRegistry().newHistogram(TaskQueueTest.class, "batchSizes");
+        final AtomicInteger counter = new AtomicInteger();
+        TaskQueue.BatchProcessor<Integer> processor = new TaskQueue.BatchProcessor<Integer>()
+        {
+            @Override
+            public void process(List<Integer> items)
+            {
+                counter.addAndGet(items.size());
+            }
+        };
+        TaskQueue<Integer> taskQueue = taskQueue(1, 100, 100, 200, processor, batchSizes);
+        long startTime = System.nanoTime();
+        Future<?> future = taskQueue.submitAsynchronous("id", 1);
+        future.get(10, TimeUnit.SECONDS); // Not full, closed by its first item wait
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        Assert.assertTrue(elapsedMillis >= 200);
+        Assert.assertEquals(1, counter.get());
+        Assert.assertEquals(1, batchSizes.max(), 0);
+        taskQueue.shutdown();
+    }
+
+    @Test
+    public void testSubmitAfterShutdown()
+    {
+        Histogram batchSizes = new MetricsRegistry().newHistogram(TaskQueueTest.class, "batchSizes");
+        TaskQueue<Runnable> taskQueue = taskQueue(2, 10, 10, batchSizes);
+        taskQueue.shutdown();
+        Runnable task = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+        try
+        {
+            taskQueue.submitAsynchronous(1, task);
+            Assert.fail("Asynchronous submission after shutdown should be rejected");
+        }
+        catch (RuntimeException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        try
+        {
+            taskQueue.submitSynchronous(task);
+            Assert.fail("Synchronous submission after shutdown should be rejected");
+        }
+        catch (RuntimeException e)
+        {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testShutdownReleasesBlockedSubmission() throws Exception
+    {
+        Histogram batchSizes = new MetricsRegistry().newHistogram(TaskQueueTest.class, "batchSizes");
+        final TaskQueue<Runnable> taskQueue = taskQueue(1, 1, 1, batchSizes);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable noop = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+        taskQueue.submitAsynchronous(1, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                running.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        running.await();
+        Future<?> queued = taskQueue.submitAsynchronous(1, noop); // Fills the queue
+
+        final AtomicReference<Exception> error = new AtomicReference<>();
+        Thread submitter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    taskQueue.submitAsynchronous(1, noop); // Blocks until shutdown
+                }
+                catch (Exception e)
+                {
+                    error.set(e);
+                }
+            }
+        };
+        submitter.start();
+
+        Thread shutdown = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                taskQueue.shutdown(); // Blocks until the running task finishes
+            }
+        };
+        shutdown.start();
+        submitter.join(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertFalse(submitter.isAlive());
+        Assert.assertTrue(queued.isCancelled());
+        Assert.assertTrue(error.get().getCause() instanceof RejectedExecutionException);
+        Assert.assertTrue(shutdown.isAlive());
+        release.countDown();
+        shutdown.join(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertFalse(shutdown.isAlive());
+    }
+
+    @Test
+    public void testShutdownWaitsForRunningTasks() throws Exception
+    {
+        Histogram batchSizes = new MetricsRegistry().newHistogram(TaskQueueTest.class, "batchSizes");
+        TaskQueue<Runnable> taskQueue = taskQueue(2, 10, 10, batchSizes);
+        final CountDownLatch running = new CountDownLatch(2);
+        final AtomicInteger finished = new AtomicInteger();
+        final AtomicInteger interrupted = new AtomicInteger();
+        for (int i = 0; i < 2; i++)
+        {
+            taskQueue.submitAsynchronous(i, new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    running.countDown();
+                    try
+                    {
+                        Thread.sleep(200);
+                        finished.incrementAndGet();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        running.await();
+        taskQueue.shutdown();
+        Assert.assertEquals(2, finished.get());
+        Assert.assertEquals(0, interrupted.get());
+    }
+}